@@ -18,8 +18,8 @@ SET BINDIR=bin
 SET BINERR=jap-javac.err
 SET JARNAME=JAP.jar
 SET MAINCLASSBIN=cs.CSModel
-SET BINLIST=cs/*.class ca/*.class support/*.class gl/controller/*.class gl/model/*.class gl/view/*.class tm/server/view/*.class tm/server/model/*.class tm/server/controller/*.class tm/client/view/*.class tm/client/model/*.class tm/client/controller/*.class
-SET PACKAGELIST=src/cs/*.java src/ca/*.java src/support/*.java src/gl/controller/*.java src/gl/model/*.java src/gl/view/*.java src/tm/server/view/*.java src/tm/server/model/*.java src/tm/server/controller/*.java src/tm/client/view/*.java src/tm/client/model/*.java 
+SET BINLIST=cs/*.class ca/*.class support/*.class gl/controller/*.class gl/model/*.class gl/view/*.class gl/batch/*.class tm/server/view/*.class tm/server/model/*.class tm/server/controller/*.class tm/client/view/*.class tm/client/model/*.class tm/client/controller/*.class
+SET PACKAGELIST=src/cs/*.java src/ca/*.java src/support/*.java src/gl/controller/*.java src/gl/model/*.java src/gl/view/*.java src/gl/batch/*.java src/tm/server/view/*.java src/tm/server/model/*.java src/tm/server/controller/*.java src/tm/client/view/*.java src/tm/client/model/*.java 
 SET RESOURCES=resources
 SET JAROUT=jap-jar.out
 SET JARERR=jap-jar.err
@@ -0,0 +1,491 @@
+package gl.batch;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Random;
+
+import gl.model.GLAdaptiveEngine;
+import gl.model.GLBitSlicedEngine;
+import gl.model.GLBoard;
+import gl.model.GLEngine;
+import gl.model.GLHashLifeEngine;
+import gl.model.GLJournal;
+import gl.model.GLParallelEngine;
+import gl.model.GLPattern;
+import gl.model.GLRules;
+import gl.model.GLSimulation;
+import gl.model.GLSnapshot;
+import gl.model.GLSparseEngine;
+import gl.model.GLTopology;
+
+/**
+ * The {@code GLBatchRunner} class runs a Game of Life from the command line,
+ * without a display. It loads a pattern, or fills the board at random, runs
+ * a number of generations as fast as the chosen engine can, and prints the
+ * population and the throughput as it goes, as tab-separated lines that
+ * regression and benchmark scripts can read. The final generation can be
+ * written out as a pattern to compare against a known result. Runs can also
+ * start from and end in binary snapshots ({@code .gls}), which keep the
+ * generation, the rule and the edges of the game, and every generation can
+ * be recorded to a journal ({@code .glj}) to replay the run afterwards.
+ *
+ * <pre>
+ * java -cp JAP.jar gl.batch.GLBatchRunner --pattern gosper.rle --generations 100000 --engine hashlife --output result.rle
+ * </pre>
+ *
+ * Only the headless core of the game, {@link GLSimulation}, is used, so
+ * JavaFX does not need to be installed.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public final class GLBatchRunner {
+	/**
+	 * The exit status of a run that completed.
+	 */
+	public static final int EXIT_OK = 0;
+
+	/**
+	 * The exit status when a pattern cannot be read or written.
+	 */
+	public static final int EXIT_IO_ERROR = 1;
+
+	/**
+	 * The exit status when the arguments are invalid.
+	 */
+	public static final int EXIT_USAGE = 2;
+
+	/**
+	 * The number of rows and columns of a board filled at random when no size
+	 * is given.
+	 */
+	private static final int DEFAULT_SIZE = 256;
+
+	/**
+	 * The number of dead cells left around a pattern when no size is given.
+	 */
+	private static final int DEFAULT_MARGIN = 64;
+
+	/**
+	 * The number of reports printed during a run when no interval is given.
+	 */
+	private static final int DEFAULT_REPORTS = 10;
+
+	/**
+	 * The usage printed when the arguments are invalid.
+	 */
+	private static final String USAGE = String.join("\n",
+			"Usage: java gl.batch.GLBatchRunner [--help | options]",
+			"  --pattern FILE      pattern or snapshot to load (.rle, .gls or plaintext); random cells if omitted",
+			"  --size ROWSxCOLS    board size (default: the pattern plus " + DEFAULT_MARGIN
+					+ " cells around it, or " + DEFAULT_SIZE + "x" + DEFAULT_SIZE + ")",
+			"  --generations N     generations to run (default 1000)",
+			"  --engine NAME       auto, bitsliced, parallel, hashlife or sparse (default auto)",
+			"  --rule RULE         B3/S23 notation or 18-character binary rule (default: the pattern's, or B3/S23)",
+			"  --edges NAME        clipped, torus or klein (default: the snapshot's, or clipped)",
+			"  --report N          print statistics every N generations (default: " + DEFAULT_REPORTS + " reports)",
+			"  --seed N            seed of the random cells",
+			"  --density P         fraction of random cells alive (default 0.5)",
+			"  --output FILE       write the final generation (.rle, .gls, else plaintext; - for standard output)",
+			"  --journal FILE      record every generation to a journal (.glj)");
+
+	/**
+	 * The pattern file, or null for random cells.
+	 */
+	private String patternPath;
+
+	/**
+	 * The number of rows of the board, or -1 to fit the pattern.
+	 */
+	private int rows = -1;
+
+	/**
+	 * The number of columns of the board, or -1 to fit the pattern.
+	 */
+	private int cols = -1;
+
+	/**
+	 * The number of generations to run.
+	 */
+	private long generations = 1000;
+
+	/**
+	 * The name of the engine.
+	 */
+	private String engineName = "auto";
+
+	/**
+	 * The rule, or null for the pattern's.
+	 */
+	private String rule;
+
+	/**
+	 * How the edges of the board meet, or null for the snapshot's.
+	 */
+	private GLTopology topology;
+
+	/**
+	 * The number of generations between reports, or 0 for the default.
+	 */
+	private long reportInterval;
+
+	/**
+	 * The seed of the random cells.
+	 */
+	private long seed = System.nanoTime();
+
+	/**
+	 * The fraction of random cells alive.
+	 */
+	private double density = 0.5;
+
+	/**
+	 * The file the final generation is written to, or null.
+	 */
+	private String outputPath;
+
+	/**
+	 * The journal file the generations are recorded to, or null.
+	 */
+	private String journalPath;
+
+
+	/**
+	 * Runs a batch from the command line and exits with its status.
+	 *
+	 * @param args The command-line arguments.
+	 */
+	public static void main(String[] args) {
+		System.exit(new GLBatchRunner().run(args, System.out, System.err));
+	}
+
+	/**
+	 * Runs a batch.
+	 *
+	 * @param args The command-line arguments.
+	 * @param out  Receives the statistics, and the final generation if it is
+	 *             written to standard output.
+	 * @param err  Receives the errors.
+	 * @return The exit status.
+	 */
+	public int run(String[] args, PrintStream out, PrintStream err) {
+		if (args.length == 1 && args[0].equals("--help")) {
+			out.println(USAGE);
+			return EXIT_OK;
+		}
+		GLSimulation simulation;
+		try {
+			parseArguments(args);
+			simulation = load();
+		} catch (IllegalArgumentException e) {
+			err.println(e.getMessage());
+			err.println(USAGE);
+			return EXIT_USAGE;
+		} catch (IOException e) {
+			err.println("Cannot read " + patternPath + ": " + e.getMessage());
+			return EXIT_IO_ERROR;
+		}
+
+		GLBoard board = simulation.getBoard();
+		// Intermediate generations are not kept for undo
+		board.setRecording(false);
+		out.printf(Locale.ROOT, "# engine=%s rule=%s size=%dx%d edges=%s generations=%d%n",
+				simulation.getEngine().getName(), simulation.getRules().getNotation(), board.getRows(),
+				board.getCols(), board.getTopology(), generations);
+		out.println("generation\tpopulation\telapsed_ms\tgenerations_per_s");
+		report(out, 0, simulation.getPopulation(), 0);
+
+		GLJournal journal = null;
+		if (journalPath != null) {
+			try {
+				journal = GLJournal.create(Paths.get(journalPath), board);
+			} catch (IOException e) {
+				err.println("Cannot write " + journalPath + ": " + e.getMessage());
+				return EXIT_IO_ERROR;
+			}
+			simulation.setJournal(journal);
+		}
+
+		long interval = reportInterval > 0 ? reportInterval : Math.max(1, generations / DEFAULT_REPORTS);
+		long start = System.nanoTime();
+		long done = 0;
+		while (done < generations) {
+			long chunk = Math.min(interval, generations - done);
+			simulation.advance(chunk);
+			done += chunk;
+			report(out, done, simulation.getPopulation(), System.nanoTime() - start);
+		}
+		long elapsed = System.nanoTime() - start;
+		out.printf(Locale.ROOT, "# total %d generations in %.3f ms (%.1f generations/s), final population %d%n",
+				generations, elapsed / 1e6, rate(generations, elapsed), simulation.getPopulation());
+
+		if (journal != null) {
+			simulation.setJournal(null);
+			try {
+				journal.close();
+			} catch (IOException e) {
+				err.println("Cannot write " + journalPath + ": " + e.getMessage());
+				return EXIT_IO_ERROR;
+			}
+			out.printf(Locale.ROOT, "# journal %d generations recorded, %d dropped%n", journal.getWrittenCount(),
+					journal.getDroppedCount());
+		}
+
+		if (outputPath != null) {
+			try {
+				writeSnapshot(simulation, out);
+			} catch (IOException e) {
+				err.println("Cannot write " + outputPath + ": " + e.getMessage());
+				return EXIT_IO_ERROR;
+			}
+		}
+		return EXIT_OK;
+	}
+
+	/**
+	 * Reads the options from the command-line arguments.
+	 *
+	 * @param args The command-line arguments.
+	 * @throws IllegalArgumentException If an argument is invalid.
+	 */
+	private void parseArguments(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Missing value for " + option);
+			}
+			String value = args[++i];
+			try {
+				switch (option) {
+				case "--pattern":
+					patternPath = value;
+					break;
+				case "--size":
+					String[] size = value.toLowerCase(Locale.ROOT).split("x");
+					if (size.length != 2) {
+						throw new IllegalArgumentException("Invalid size: " + value);
+					}
+					rows = Integer.parseInt(size[0]);
+					cols = Integer.parseInt(size[1]);
+					if (rows <= 0 || cols <= 0) {
+						throw new IllegalArgumentException("Invalid size: " + value);
+					}
+					break;
+				case "--generations":
+					generations = Long.parseLong(value);
+					if (generations < 0) {
+						throw new IllegalArgumentException("Invalid number of generations: " + value);
+					}
+					break;
+				case "--engine":
+					engineName = value.toLowerCase(Locale.ROOT);
+					engineFor(engineName);
+					break;
+				case "--rule":
+					rule = value;
+					break;
+				case "--edges":
+					topology = topologyFor(value.toLowerCase(Locale.ROOT));
+					break;
+				case "--report":
+					reportInterval = Long.parseLong(value);
+					if (reportInterval <= 0) {
+						throw new IllegalArgumentException("Invalid report interval: " + value);
+					}
+					break;
+				case "--seed":
+					seed = Long.parseLong(value);
+					break;
+				case "--density":
+					density = Double.parseDouble(value);
+					if (!(density >= 0 && density <= 1)) {
+						throw new IllegalArgumentException("Invalid density: " + value);
+					}
+					break;
+				case "--output":
+					outputPath = value;
+					break;
+				case "--journal":
+					journalPath = value;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option: " + option);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+			}
+		}
+	}
+
+	/**
+	 * Sets up the simulation from the options: the board with the pattern
+	 * centred on it, or random cells, the rules, the edges and the engine.
+	 *
+	 * @return The simulation, at generation 0.
+	 * @throws IOException If the pattern cannot be read.
+	 */
+	private GLSimulation load() throws IOException {
+		if (patternPath != null && patternPath.toLowerCase(Locale.ROOT).endsWith(GLSnapshot.EXTENSION)) {
+			return restore();
+		}
+		GLPattern pattern = null;
+		if (patternPath != null) {
+			try (FileChannel in = FileChannel.open(Paths.get(patternPath))) {
+				pattern = GLPattern.read(in);
+			}
+		}
+		if (rows < 0) {
+			rows = pattern != null ? pattern.getCells().getRows() + 2 * DEFAULT_MARGIN : DEFAULT_SIZE;
+			cols = pattern != null ? pattern.getCells().getCols() + 2 * DEFAULT_MARGIN : DEFAULT_SIZE;
+		}
+
+		GLSimulation simulation = new GLSimulation(rows, cols);
+		String ruleText = rule != null ? rule : pattern != null ? pattern.getRule() : null;
+		if (ruleText != null) {
+			simulation.setRules(GLRules.parse(ruleText));
+		}
+		simulation.setEngine(engineFor(engineName));
+		GLBoard board = simulation.getBoard();
+		board.setTopology(topology != null ? topology : GLTopology.CLIPPED);
+		if (pattern != null) {
+			simulation.load(pattern);
+		} else {
+			Random random = new Random(seed);
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < cols; c++) {
+					if (random.nextDouble() < density) {
+						board.setAlive(r, c, true);
+					}
+				}
+			}
+		}
+		return simulation;
+	}
+
+	/**
+	 * Sets up the simulation from a snapshot, at its generation. The rule and
+	 * the edges given as options replace the snapshot's; the size is the
+	 * snapshot's.
+	 *
+	 * @return The simulation.
+	 * @throws IOException If the snapshot cannot be read.
+	 */
+	private GLSimulation restore() throws IOException {
+		GLSnapshot snapshot = GLSnapshot.open(Paths.get(patternPath), false);
+		GLSimulation simulation = new GLSimulation(snapshot.getRows(), snapshot.getCols());
+		simulation.setEngine(engineFor(engineName));
+		simulation.restore(snapshot);
+		if (rule != null) {
+			simulation.setRules(GLRules.parse(rule));
+		}
+		if (topology != null) {
+			simulation.getBoard().setTopology(topology);
+		}
+		return simulation;
+	}
+
+	/**
+	 * Writes the final generation to the output file.
+	 *
+	 * @param simulation The simulation.
+	 * @param out        The standard output.
+	 * @throws IOException If the file cannot be written.
+	 */
+	private void writeSnapshot(GLSimulation simulation, PrintStream out) throws IOException {
+		if (outputPath.toLowerCase(Locale.ROOT).endsWith(GLSnapshot.EXTENSION)) {
+			simulation.save(Paths.get(outputPath));
+			return;
+		}
+		boolean toStdout = outputPath.equals("-");
+		WritableByteChannel channel = toStdout ? Channels.newChannel(out)
+				: FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			if (outputPath.toLowerCase(Locale.ROOT).endsWith(".rle") || toStdout) {
+				GLPattern.writeRle(simulation.getBoard(), simulation.getRules(), channel);
+			} else {
+				GLPattern.writePlaintext(simulation.getBoard(), channel);
+			}
+		} finally {
+			if (toStdout) {
+				out.flush();
+			} else {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Prints one line of statistics.
+	 *
+	 * @param out        The standard output.
+	 * @param generation The generation reached.
+	 * @param population The number of live cells.
+	 * @param elapsed    The time since the run started, in nanoseconds.
+	 */
+	private static void report(PrintStream out, long generation, long population, long elapsed) {
+		out.printf(Locale.ROOT, "%d\t%d\t%.3f\t%.1f%n", generation, population, elapsed / 1e6,
+				rate(generation, elapsed));
+	}
+
+	/**
+	 * Computes a number of generations per second.
+	 *
+	 * @param generations The number of generations.
+	 * @param elapsed     The time they took, in nanoseconds.
+	 * @return The generations per second, or 0 if no time passed.
+	 */
+	private static double rate(long generations, long elapsed) {
+		return elapsed > 0 ? generations * 1e9 / elapsed : 0;
+	}
+
+	/**
+	 * Creates the engine of the given name.
+	 *
+	 * @param name The name of the engine.
+	 * @return The engine.
+	 * @throws IllegalArgumentException If no engine has that name.
+	 */
+	private static GLEngine engineFor(String name) {
+		switch (name) {
+		case "auto":
+			return new GLAdaptiveEngine();
+		case "bitsliced":
+			return new GLBitSlicedEngine();
+		case "parallel":
+			return new GLParallelEngine();
+		case "hashlife":
+			return new GLHashLifeEngine();
+		case "sparse":
+			return new GLSparseEngine();
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + name);
+		}
+	}
+
+	/**
+	 * Gets the topology of the given name.
+	 *
+	 * @param name The name of the topology.
+	 * @return The topology.
+	 * @throws IllegalArgumentException If no topology has that name.
+	 */
+	private static GLTopology topologyFor(String name) {
+		switch (name) {
+		case "clipped":
+			return GLTopology.CLIPPED;
+		case "torus":
+			return GLTopology.TORUS;
+		case "klein":
+			return GLTopology.KLEIN_BOTTLE;
+		default:
+			throw new IllegalArgumentException("Unknown edges: " + name);
+		}
+	}
+}
@@ -1,11 +1,23 @@
 package gl.controller;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicLong;
 
+import gl.model.GLEngine;
+import gl.model.GLJournalReader;
 import gl.model.GLModel;
+import gl.model.GLPattern;
+import gl.model.GLSnapshot;
+import gl.model.GLTopology;
 import gl.view.GLFooter;
 import gl.view.GLView;
+import javafx.concurrent.Task;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
@@ -107,6 +119,19 @@ public class GLController {
         gameModel.prevStep();
     }
 
+    /**
+     * Brings the game to the generation entered by the user.
+     *
+     * @param generation The generation to go to, as entered.
+     */
+    public void seekGeneration(String generation) {
+        try {
+            gameModel.seekGeneration(Long.parseLong(generation.trim()));
+        } catch (NumberFormatException e) {
+            gameView.showInvalidInputAlert(bundle.getString("invalidGenerationMessage"));
+        }
+    }
+
     /**
      * Restarts the game by stopping it and clearing the board.
      */
@@ -114,6 +139,177 @@ public class GLController {
         gameModel.restartGame();
     }
 
+    /**
+     * Reads a pattern file, run-length encoded or plaintext. An alert tells
+     * the user when it cannot be read.
+     *
+     * @param file The pattern file.
+     * @return The pattern, or null if it could not be read.
+     */
+    public GLPattern readPattern(File file) {
+        try (FileChannel in = FileChannel.open(file.toPath())) {
+            return GLPattern.read(in);
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("patternReadError") + "\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts a new game with a pattern centred on the board.
+     *
+     * @param pattern The pattern to play.
+     */
+    public void loadPattern(GLPattern pattern) {
+        gameModel.loadPattern(pattern);
+    }
+
+    /**
+     * Saves the board to a pattern file, as plaintext if its name ends with
+     * {@code .cells} or {@code .txt}, run-length encoded otherwise. An alert
+     * tells the user when it cannot be written.
+     *
+     * @param file The pattern file.
+     */
+    public void savePattern(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        boolean rle = !name.endsWith(".cells") && !name.endsWith(".txt");
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            gameModel.savePattern(out, rle);
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("patternWriteError") + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a snapshot file. An alert tells the user when it cannot be read.
+     *
+     * @param file The snapshot file.
+     * @return The snapshot, mapped read only, or null if it could not be read.
+     */
+    public GLSnapshot readSnapshot(File file) {
+        try {
+            return GLSnapshot.open(file.toPath(), false);
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("snapshotReadError") + "\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Restores the game saved to a snapshot.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void restoreSnapshot(GLSnapshot snapshot) {
+        gameModel.restoreSnapshot(snapshot);
+    }
+
+    /**
+     * Saves the game to a snapshot file. An alert tells the user when it
+     * cannot be written.
+     *
+     * @param file The snapshot file.
+     */
+    public void saveSnapshot(File file) {
+        try {
+            gameModel.saveSnapshot(file.toPath());
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("snapshotWriteError") + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts recording the generations of the game to a journal file. An
+     * alert tells the user when it cannot be created.
+     *
+     * @param file The journal file.
+     * @return true if the journal is recorded.
+     */
+    public boolean startJournal(File file) {
+        try {
+            gameModel.startJournal(file.toPath());
+            return true;
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("journalWriteError") + "\n" + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops recording the generations of the game. An alert tells the user
+     * when some could not be written.
+     */
+    public void stopJournal() {
+        try {
+            gameModel.stopJournal();
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("journalWriteError") + "\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a journal file to replay it. An alert tells the user when it
+     * cannot be read.
+     *
+     * @param file The journal file.
+     * @return The reader of the journal, or null if it could not be read.
+     */
+    public GLJournalReader openJournal(File file) {
+        try {
+            return GLJournalReader.open(file.toPath());
+        } catch (IOException e) {
+            gameView.showInvalidInputAlert(bundle.getString("journalReadError") + "\n" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Selects the engine computing the generations of the game.
+     *
+     * @param engine The engine to use.
+     */
+    public void setEngine(GLEngine engine) {
+        gameModel.setEngine(engine);
+    }
+
+    /**
+     * Sets how many generations per second are computed while the game runs.
+     *
+     * @param rate The simulation rate, or {@link GLModel#UNLIMITED_RATE}.
+     */
+    public void setSimulationRate(int rate) {
+        gameModel.setSimulationRate(rate);
+    }
+
+    /**
+     * Sets whether the game stops by itself once it settles into a cycle.
+     *
+     * @param stopOnCycle true to stop the game once settled.
+     */
+    public void setStopOnCycle(boolean stopOnCycle) {
+        gameModel.setStopOnCycle(stopOnCycle);
+    }
+
+    /**
+     * Selects how the edges of the board meet.
+     *
+     * @param topology The topology of the board.
+     */
+    public void setTopology(GLTopology topology) {
+        gameModel.setTopology(topology);
+    }
+
+    /**
+     * Starts or stops tracking the ages and activity of the cells.
+     *
+     * @param enabled true to track the cells.
+     */
+    public void setCellStatsEnabled(boolean enabled) {
+        gameModel.setCellStatsEnabled(enabled);
+    }
+
     /**
      * Validates and sets the new rule input for the game.
      *
@@ -152,8 +348,7 @@ public class GLController {
      */
     public void setCellState(int x, int y) {
         if (gameModel.isManualMode()) {
-            gameModel.getBoardState()[x][y].toggleAlive();
-            footerView.updateUIFromBoardState();
+            gameModel.toggleCellState(x, y);
         }
     }
 
@@ -161,6 +356,7 @@ public class GLController {
      * Handles the execution of a user-specified number of steps in the game.
      * Shows a dialog for the user to input the number of steps, then executes the
      * specified number of steps in the game. If no input is provided, it executes 100 steps.
+     * The steps are executed in the background while their progress is shown.
      */
     public void handleSolution() {
         // Create a dialog to get user input for the number of steps, with a default value of "100".
@@ -187,18 +383,62 @@ public class GLController {
                 int numSteps = Integer.parseInt(result.get());
 
                 // Execute the specified number of steps in the game model.
-                gameModel.executeSolution(numSteps);
-                gameModel.setCurrentStep(numSteps);
+                executeSolution(numSteps);
             } catch (NumberFormatException e) {
                 // Handle the case where the user input is not a valid integer.
                 gameView.showInvalidInputAlert(bundle.getString("solutionErrorText"));
             }
         } else {
             // If no input is provided, execute 100 steps in the game model.
-            gameModel.executeSolution(100);
+            executeSolution(100);
         }
     }
 
+    /**
+     * Executes a number of steps in the game model on a background thread,
+     * showing their progress and letting the user cancel them. The board is
+     * shown once the steps are executed, cancelled or failed, and the step
+     * counter set to the number of steps executed. A failure is reported in
+     * an alert.
+     *
+     * @param numSteps The number of steps to execute.
+     */
+    private void executeSolution(int numSteps) {
+        gameModel.stopGame();
+        AtomicLong executed = new AtomicLong();
+        Task<Long> task = new Task<Long>() {
+            @Override
+            protected Long call() {
+                return gameModel.executeSolution(numSteps, this::isCancelled, done -> {
+                    executed.set(done);
+                    updateProgress(done, numSteps);
+                });
+            }
+        };
+        task.setOnSucceeded(e -> {
+            gameModel.setCurrentStep((int) (long) task.getValue());
+            gameModel.refresh();
+        });
+        task.setOnCancelled(e -> {
+            // Wait for the chunk in flight, then count the steps it reached
+            gameModel.stopGame();
+            gameModel.setCurrentStep((int) executed.get());
+            gameModel.refresh();
+        });
+        task.setOnFailed(e -> {
+            // The board stays at the last chunk computed, which the counter shows
+            gameModel.setCurrentStep((int) executed.get());
+            gameModel.refresh();
+            gameView.showInvalidInputAlert(bundle.getString("solutionFailedError") + "\n"
+                    + task.getException().getMessage());
+        });
+        gameView.showSolutionProgress(task);
+
+        Thread thread = new Thread(task, "GL solution");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Changes the language resource bundle for the controller.
      *
@@ -0,0 +1,503 @@
+package gl.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+/**
+ * The {@code GLAdaptiveEngine} class picks the engine computing the
+ * generations by itself, so users do not have to. Every few generations it
+ * samples the board: its size, how dense it is and how many of its tiles
+ * changed, which is the work a generation costs. Boards with enough changing
+ * tiles to keep several cores busy are evolved by the {@link GLParallelEngine};
+ * smaller or settled ones by the serial {@link GLBitSlicedEngine}, which does
+ * not pay for scheduling stripes, as are empty boards. The time each engine
+ * takes per changed tile is measured as it runs, and an engine found slower
+ * than the other is not switched to, until {@link #REPROBE_GENERATIONS}
+ * generations later: the measure is then stale, since the board has had
+ * time to grow or get busier, and the engine is tried again.
+ *
+ * Jumps of many generations at once, as solutions and seeks make, go to the
+ * {@link GLHashLifeEngine} when the board is large and sparse, which is
+ * where its memoized tree wins; dense or small boards are stepped. So are
+ * boards recording their undo history, which HashLife would clear: each
+ * generation stepped stays one undo away.
+ *
+ * The thresholds to switch one way and back are far apart, and a switch
+ * waits for several samples in a row to agree, so a board hovering around
+ * one threshold does not flip between engines. The engines evolve the board
+ * in place with the same tile bookkeeping, so switching costs nothing. The
+ * sparse engine is not a candidate: it evolves the universe beyond the edges
+ * of the board, which would change the game.
+ *
+ * Every switch is logged, and the latest ones are kept with the samples
+ * that led to them so the choices can be audited.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLAdaptiveEngine implements GLEngine {
+	/**
+	 * The default number of generations between samples.
+	 */
+	public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+	/**
+	 * The number of changed tiles per generation from which the parallel
+	 * engine is switched to.
+	 */
+	static final int PARALLEL_ENTER_TILES = 64;
+
+	/**
+	 * The number of changed tiles per generation below which the serial engine
+	 * is switched back to.
+	 */
+	static final int PARALLEL_EXIT_TILES = 16;
+
+	/**
+	 * The number of cells from which a board may be jumped by HashLife.
+	 */
+	static final long HASHLIFE_MIN_CELLS = 256 * 256;
+
+	/**
+	 * The fewest generations jumped by HashLife.
+	 */
+	static final long HASHLIFE_MIN_GENERATIONS = 256;
+
+	/**
+	 * The density of live cells under which jumps go to HashLife.
+	 */
+	static final double HASHLIFE_ENTER_DENSITY = 1.0 / 64;
+
+	/**
+	 * The density of live cells over which jumps are stepped again.
+	 */
+	static final double HASHLIFE_EXIT_DENSITY = 1.0 / 16;
+
+	/**
+	 * The number of samples in a row that must call for a switch.
+	 */
+	static final int CONFIRMATIONS = 2;
+
+	/**
+	 * The number of decisions kept for {@link #getDecisions()}.
+	 */
+	private static final int KEPT_DECISIONS = 64;
+
+	/**
+	 * The weight of the latest measure in the average cost of an engine.
+	 */
+	private static final double COST_WEIGHT = 0.25;
+
+	/**
+	 * The number of generations after which the cost measured for an engine
+	 * is stale, and the engine may be tried again.
+	 */
+	static final long REPROBE_GENERATIONS = 1024;
+
+	/**
+	 * The log the decisions are written to.
+	 */
+	private static final Logger LOG = Logger.getLogger(GLAdaptiveEngine.class.getName());
+
+	/**
+	 * A switch from one engine to another, with the sample that caused it.
+	 */
+	public static final class Decision {
+		/** The number of generations the adaptive engine had computed. */
+		private final long generation;
+		/** The engine switched from. */
+		private final String from;
+		/** The engine switched to. */
+		private final String to;
+		/** The number of cells of the board. */
+		private final long cells;
+		/** The fraction of the cells alive. */
+		private final double density;
+		/** The fraction of the tiles that changed in the last generation. */
+		private final double changeRate;
+
+		/**
+		 * Constructs a decision.
+		 *
+		 * @param generation The number of generations computed.
+		 * @param from       The engine switched from.
+		 * @param to         The engine switched to.
+		 * @param cells      The number of cells of the board.
+		 * @param density    The fraction of the cells alive.
+		 * @param changeRate The fraction of the tiles that changed.
+		 */
+		Decision(long generation, String from, String to, long cells, double density, double changeRate) {
+			this.generation = generation;
+			this.from = from;
+			this.to = to;
+			this.cells = cells;
+			this.density = density;
+			this.changeRate = changeRate;
+		}
+
+		/**
+		 * Gets the number of generations the adaptive engine had computed.
+		 *
+		 * @return The generation of the decision.
+		 */
+		public long getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * Gets the name of the engine switched from.
+		 *
+		 * @return The previous engine.
+		 */
+		public String getFrom() {
+			return from;
+		}
+
+		/**
+		 * Gets the name of the engine switched to.
+		 *
+		 * @return The new engine.
+		 */
+		public String getTo() {
+			return to;
+		}
+
+		/**
+		 * Gets the number of cells of the board.
+		 *
+		 * @return The board size in cells.
+		 */
+		public long getCells() {
+			return cells;
+		}
+
+		/**
+		 * Gets the fraction of the cells alive.
+		 *
+		 * @return The density, from 0 to 1.
+		 */
+		public double getDensity() {
+			return density;
+		}
+
+		/**
+		 * Gets the fraction of the tiles that changed in the last generation.
+		 *
+		 * @return The change rate, from 0 to 1.
+		 */
+		public double getChangeRate() {
+			return changeRate;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "generation %d: %s -> %s (%d cells, density %.4f, change rate %.4f)",
+					generation, from, to, cells, density, changeRate);
+		}
+	}
+
+	/**
+	 * The serial engine.
+	 */
+	private final GLBitSlicedEngine serial = new GLBitSlicedEngine();
+
+	/**
+	 * The parallel engine.
+	 */
+	private final GLParallelEngine parallel;
+
+	/**
+	 * The number of threads the parallel engine runs on.
+	 */
+	private final int parallelism;
+
+	/**
+	 * The engine jumping sparse boards, created on first use.
+	 */
+	private GLHashLifeEngine hashLife;
+
+	/**
+	 * The engine computing the generations.
+	 */
+	private GLBitSlicedEngine current = serial;
+
+	/**
+	 * Whether the last generations were computed by a HashLife jump.
+	 */
+	private boolean jumping;
+
+	/**
+	 * The number of generations between samples.
+	 */
+	private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+
+	/**
+	 * The number of generations computed.
+	 */
+	private long generation;
+
+	/**
+	 * The number of generations computed since the last sample.
+	 */
+	private int sinceSample;
+
+	/**
+	 * The time spent computing them, in nanoseconds.
+	 */
+	private long nanosSinceSample;
+
+	/**
+	 * The number of samples in a row that called for a switch.
+	 */
+	private int votes;
+
+	/**
+	 * The average time per changed tile of the serial and the parallel
+	 * engines, in nanoseconds, or 0 until measured.
+	 */
+	private double serialCost, parallelCost;
+
+	/**
+	 * The generation the cost of the serial and the parallel engines were
+	 * last measured at.
+	 */
+	private long serialMeasured, parallelMeasured;
+
+	/**
+	 * The latest decisions, oldest first.
+	 */
+	private final Deque<Decision> decisions = new ArrayDeque<>();
+
+
+	/**
+	 * Constructs an adaptive engine running the parallel engine on the common
+	 * pool.
+	 */
+	public GLAdaptiveEngine() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs an adaptive engine.
+	 *
+	 * @param pool The pool the parallel engine runs on.
+	 */
+	public GLAdaptiveEngine(ForkJoinPool pool) {
+		this.parallel = new GLParallelEngine(pool, 0);
+		this.parallelism = pool.getParallelism();
+	}
+
+	@Override
+	public String getName() {
+		return "Automatic";
+	}
+
+	/**
+	 * Gets the engine currently computing the generations.
+	 *
+	 * @return The selected engine.
+	 */
+	public GLEngine getSelectedEngine() {
+		return jumping ? hashLife : current;
+	}
+
+	/**
+	 * Gets the number of generations between samples.
+	 *
+	 * @return The sample interval.
+	 */
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Sets the number of generations between samples. Shorter intervals react
+	 * faster to the board changing, longer ones cost less.
+	 *
+	 * @param sampleInterval The sample interval.
+	 * @throws IllegalArgumentException If the interval is not positive.
+	 */
+	public void setSampleInterval(int sampleInterval) {
+		if (sampleInterval <= 0) {
+			throw new IllegalArgumentException("Invalid sample interval: " + sampleInterval);
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Gets the latest switches between engines, oldest first.
+	 *
+	 * @return A copy of the decisions.
+	 */
+	public List<Decision> getDecisions() {
+		return new ArrayList<>(decisions);
+	}
+
+	@Override
+	public void step(GLBoard board, GLRules rules) {
+		if (jumping) {
+			jumping = false;
+			record(board, hashLife.getName(), current.getName());
+		}
+		long start = System.nanoTime();
+		current.step(board, rules);
+		nanosSinceSample += System.nanoTime() - start;
+		generation++;
+		if (++sinceSample >= sampleInterval) {
+			sample(board);
+		}
+	}
+
+	@Override
+	public void advance(GLBoard board, GLRules rules, long generations) {
+		if (!jump(board, generations)) {
+			GLEngine.super.advance(board, rules, generations);
+			return;
+		}
+		if (hashLife == null) {
+			hashLife = new GLHashLifeEngine();
+		}
+		if (!jumping) {
+			jumping = true;
+			record(board, current.getName(), hashLife.getName());
+		}
+		hashLife.advance(board, rules, generations);
+		generation += generations;
+	}
+
+	/**
+	 * Checks whether a number of generations should be jumped by HashLife:
+	 * enough of them, on a board large and sparse enough and not recording
+	 * its undo history. The density
+	 * threshold depends on whether the last generations were jumped, so the
+	 * choice sticks until the density has changed by a large factor.
+	 *
+	 * @param board       The board being evolved.
+	 * @param generations The number of generations to compute.
+	 * @return true to jump with HashLife, false to step.
+	 */
+	private boolean jump(GLBoard board, long generations) {
+		long cells = (long) board.getRows() * board.getCols();
+		if (generations < HASHLIFE_MIN_GENERATIONS || cells < HASHLIFE_MIN_CELLS || board.isRecording()) {
+			return false;
+		}
+		double density = board.getPopulation() / (double) cells;
+		return density < (jumping ? HASHLIFE_EXIT_DENSITY : HASHLIFE_ENTER_DENSITY);
+	}
+
+	@Override
+	public void reset() {
+		serial.reset();
+		parallel.reset();
+		if (hashLife != null) {
+			hashLife.reset();
+		}
+		sinceSample = 0;
+		nanosSinceSample = 0;
+		votes = 0;
+	}
+
+	/**
+	 * Samples the board, updates the cost of the current engine and switches
+	 * engines if enough samples in a row call for it.
+	 *
+	 * @param board The board being evolved.
+	 */
+	private void sample(GLBoard board) {
+		boolean[] changed = board.getTileChanged();
+		int changedTiles = 0;
+		for (boolean tile : changed) {
+			if (tile) {
+				changedTiles++;
+			}
+		}
+		double cost = nanosSinceSample / (double) sinceSample / Math.max(1, changedTiles);
+		// A stale cost is replaced rather than averaged with the new measure
+		if (current == serial) {
+			serialCost = isFresh(serialCost, serialMeasured) ? serialCost + COST_WEIGHT * (cost - serialCost) : cost;
+			serialMeasured = generation;
+		} else {
+			parallelCost = isFresh(parallelCost, parallelMeasured) ? parallelCost + COST_WEIGHT * (cost - parallelCost)
+					: cost;
+			parallelMeasured = generation;
+		}
+		sinceSample = 0;
+		nanosSinceSample = 0;
+
+		GLBitSlicedEngine wanted = choose(changedTiles, board.getPopulation());
+		if (wanted == current) {
+			votes = 0;
+			return;
+		}
+		if (++votes < CONFIRMATIONS) {
+			return;
+		}
+		votes = 0;
+		record(board, current.getName(), wanted.getName());
+		current = wanted;
+	}
+
+	/**
+	 * Logs a switch between engines and keeps it for {@link #getDecisions()}.
+	 *
+	 * @param board The board being evolved.
+	 * @param from  The engine switched from.
+	 * @param to    The engine switched to.
+	 */
+	private void record(GLBoard board, String from, String to) {
+		boolean[] changed = board.getTileChanged();
+		int changedTiles = 0;
+		for (boolean tile : changed) {
+			if (tile) {
+				changedTiles++;
+			}
+		}
+		long cells = (long) board.getRows() * board.getCols();
+		Decision decision = new Decision(generation, from, to, cells,
+				cells == 0 ? 0 : board.getPopulation() / (double) cells,
+				changed.length == 0 ? 0 : changedTiles / (double) changed.length);
+		if (decisions.size() == KEPT_DECISIONS) {
+			decisions.removeFirst();
+		}
+		decisions.addLast(decision);
+		LOG.info(decision.toString());
+	}
+
+	/**
+	 * Chooses the engine for the work of a generation. The thresholds depend
+	 * on the engine running, so the choice sticks until the work has changed
+	 * by a large factor.
+	 *
+	 * @param changedTiles The number of tiles that changed in the last generation.
+	 * @param population   The number of live cells.
+	 * @return The engine to run.
+	 */
+	private GLBitSlicedEngine choose(int changedTiles, long population) {
+		if (parallelism <= 1 || population == 0) {
+			return serial;
+		}
+		if (current == serial) {
+			boolean slower = isFresh(parallelCost, parallelMeasured) && parallelCost >= serialCost;
+			return changedTiles >= PARALLEL_ENTER_TILES && !slower ? parallel : serial;
+		}
+		boolean slower = isFresh(serialCost, serialMeasured) && serialCost < parallelCost;
+		return changedTiles < PARALLEL_EXIT_TILES || slower ? serial : parallel;
+	}
+
+	/**
+	 * Checks whether the cost of an engine was measured recently enough to be
+	 * trusted.
+	 *
+	 * @param cost     The cost of the engine, or 0 if it was never measured.
+	 * @param measured The generation it was last measured at.
+	 * @return true if the cost is known and not stale.
+	 */
+	private boolean isFresh(double cost, long measured) {
+		return cost != 0 && generation - measured < REPROBE_GENERATIONS;
+	}
+}
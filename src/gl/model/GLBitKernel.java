@@ -0,0 +1,269 @@
+package gl.model;
+
+/**
+ * The {@code GLBitKernel} class computes Game of Life generations on the packed
+ * cell buffers of a {@link GLBoard}, 64 cells per operation.
+ *
+ * For each word, the eight neighbour bitboards are formed by shifting
+ * the words of the row above, the row itself and the row below. They are
+ * summed with word-wide full and half adders into four bit planes that hold
+ * the neighbour count (0 to 8) of each of the 64 cells. The rule is then
+ * applied as a fixed network of multiplexers over those planes and the cell
+ * state, so every birth/survival rule accepted by {@link GLRules} costs the
+ * same and no cell is visited on its own.
+ *
+ * The kernel relies on the halo of the board buffers: the words around the
+ * ones being computed are always readable, so there are no edge checks.
+ *
+ * When the board tracks {@link GLCellStats}, the words that change are
+ * handed to them as they are computed, so ages and activity cost nothing
+ * for the words that stay the same. The hash of the board is moved by the
+ * same words, so it too costs nothing for the words that stay the same.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+final class GLBitKernel {
+	/**
+	 * Flag set in the result of {@link #evolveColumn} when any cell changed.
+	 */
+	static final long CHANGED = 1L << 32;
+
+	/**
+	 * Outcome for a dead cell with 0 to 8 alive neighbours, as all-zero or all-one words.
+	 */
+	private final long born0, born1, born2, born3, born4, born5, born6, born7, born8;
+
+	/**
+	 * Outcome for a live cell with 0 to 8 alive neighbours, as all-zero or all-one words.
+	 */
+	private final long keep0, keep1, keep2, keep3, keep4, keep5, keep6, keep7, keep8;
+
+
+	/**
+	 * Constructs a kernel that applies the given rules.
+	 *
+	 * @param rules The rules of the game.
+	 */
+	GLBitKernel(GLRules rules) {
+		int birth = rules.getBirthMask();
+		int survival = rules.getSurvivalMask();
+		born0 = spread(birth, 0);
+		born1 = spread(birth, 1);
+		born2 = spread(birth, 2);
+		born3 = spread(birth, 3);
+		born4 = spread(birth, 4);
+		born5 = spread(birth, 5);
+		born6 = spread(birth, 6);
+		born7 = spread(birth, 7);
+		born8 = spread(birth, 8);
+		keep0 = spread(survival, 0);
+		keep1 = spread(survival, 1);
+		keep2 = spread(survival, 2);
+		keep3 = spread(survival, 3);
+		keep4 = spread(survival, 4);
+		keep5 = spread(survival, 5);
+		keep6 = spread(survival, 6);
+		keep7 = spread(survival, 7);
+		keep8 = spread(survival, 8);
+	}
+
+	/**
+	 * Computes the next generation of one word column over a range of rows,
+	 * the cells of one tile.
+	 *
+	 * @param src      The buffer holding the current generation.
+	 * @param dst      The buffer receiving the next generation.
+	 * @param stride   The row stride of both buffers.
+	 * @param wordMask The mask of valid bits in the word.
+	 * @param rowFrom  The first row to compute (inclusive).
+	 * @param rowTo    The last row to compute (exclusive).
+	 * @param word     The index of the word within a row.
+	 * @param stats    The cell statistics recording the flips, or null.
+	 * @param hashes   The changes to the hash of the board, per tile.
+	 * @param tile     The index of the tile in {@code hashes}.
+	 * @return The number of live cells computed, with {@link #CHANGED} set if
+	 *         any of them differs from the current generation.
+	 */
+	long evolveColumn(long[] src, long[] dst, int stride, long wordMask, int rowFrom, int rowTo, int word,
+			GLCellStats stats, long[] hashes, int tile) {
+		int mid = (rowFrom + 1) * stride + 1 + word;
+		int birth = stats != null ? stats.getGeneration() + 1 : 0;
+
+		// Slide a three-row window down the column
+		long aL = src[mid - stride - 1], a = src[mid - stride], aR = src[mid - stride + 1];
+		long bL = src[mid - 1], b = src[mid], bR = src[mid + 1];
+		long population = 0;
+		long diff = 0;
+		long hash = 0;
+		for (int r = rowFrom; r < rowTo; r++, mid += stride) {
+			long cL = src[mid + stride - 1], c = src[mid + stride], cR = src[mid + stride + 1];
+			long n = next(aL, a, aR, bL, b, bR, cL, c, cR) & wordMask;
+			dst[mid] = n;
+			population += Long.bitCount(n);
+			if (n != b) {
+				// The halo may hold a cell past the last column, which is not a flip
+				long flipped = (n ^ b) & wordMask;
+				if (flipped != 0) {
+					diff |= flipped;
+					hash ^= GLBoard.hashWord(mid, n ^ flipped) ^ GLBoard.hashWord(mid, n);
+					if (stats != null) {
+						stats.record(r, word, flipped, n, birth);
+					}
+				}
+			}
+			aL = bL;
+			a = b;
+			aR = bR;
+			bL = cL;
+			b = c;
+			bR = cR;
+		}
+		hashes[tile] ^= hash;
+		return diff != 0 ? population | CHANGED : population;
+	}
+
+	/**
+	 * Counts the live neighbours of the cells of one word column over a range
+	 * of rows, with the same adders as {@link #next}, writing the count
+	 * planes instead of applying the rules.
+	 *
+	 * @param src     The buffer holding the cells.
+	 * @param n0      The count plane of weight 1, laid out like {@code src}.
+	 * @param n1      The count plane of weight 2.
+	 * @param n2      The count plane of weight 4.
+	 * @param n3      The count plane of weight 8.
+	 * @param stride  The row stride of the buffers.
+	 * @param rowFrom The first row to count (inclusive).
+	 * @param rowTo   The last row to count (exclusive).
+	 * @param word    The index of the word within a row.
+	 */
+	static void countColumn(long[] src, long[] n0, long[] n1, long[] n2, long[] n3, int stride, int rowFrom,
+			int rowTo, int word) {
+		int mid = (rowFrom + 1) * stride + 1 + word;
+		for (int r = rowFrom; r < rowTo; r++, mid += stride) {
+			long a = src[mid - stride], b = src[mid], c = src[mid + stride];
+			long aw = (a << 1) | (src[mid - stride - 1] >>> 63);
+			long ae = (a >>> 1) | (src[mid - stride + 1] << 63);
+			long ax = aw ^ a;
+			long a0 = ax ^ ae;
+			long a1 = (aw & a) | (ax & ae);
+			long cw = (c << 1) | (src[mid + stride - 1] >>> 63);
+			long ce = (c >>> 1) | (src[mid + stride + 1] << 63);
+			long cx = cw ^ c;
+			long c0 = cx ^ ce;
+			long c1 = (cw & c) | (cx & ce);
+			long bw = (b << 1) | (src[mid - 1] >>> 63);
+			long be = (b >>> 1) | (src[mid + 1] << 63);
+			long b0 = bw ^ be;
+			long b1 = bw & be;
+
+			long x0 = a0 ^ c0;
+			long k0 = (a0 & c0) | (x0 & b0);
+			long x1 = a1 ^ c1;
+			long t1 = x1 ^ b1;
+			long k1 = (a1 & c1) | (x1 & b1);
+			long k2 = t1 & k0;
+			n0[mid] = x0 ^ b0;
+			n1[mid] = t1 ^ k0;
+			n2[mid] = k1 ^ k2;
+			n3[mid] = k1 & k2;
+		}
+	}
+
+	/**
+	 * Computes the next state of the 64 cells of one word.
+	 *
+	 * @param aL The word left of the one above.
+	 * @param a  The word above.
+	 * @param aR The word right of the one above.
+	 * @param bL The word to the left.
+	 * @param b  The word being computed.
+	 * @param bR The word to the right.
+	 * @param cL The word left of the one below.
+	 * @param c  The word below.
+	 * @param cR The word right of the one below.
+	 * @return The next state of the cells of {@code b}.
+	 */
+	long next(long aL, long a, long aR, long bL, long b, long bR, long cL, long c, long cR) {
+		// Row above: west, centre and east neighbours through a full adder
+		long aw = (a << 1) | (aL >>> 63);
+		long ae = (a >>> 1) | (aR << 63);
+		long ax = aw ^ a;
+		long a0 = ax ^ ae;
+		long a1 = (aw & a) | (ax & ae);
+
+		// Row below: the same
+		long cw = (c << 1) | (cL >>> 63);
+		long ce = (c >>> 1) | (cR << 63);
+		long cx = cw ^ c;
+		long c0 = cx ^ ce;
+		long c1 = (cw & c) | (cx & ce);
+
+		// Own row: west and east neighbours through a half adder
+		long bw = (b << 1) | (bL >>> 63);
+		long be = (b >>> 1) | (bR << 63);
+		long b0 = bw ^ be;
+		long b1 = bw & be;
+
+		// Add the three two-bit partial sums into the count planes n0 to n3
+		long x0 = a0 ^ c0;
+		long n0 = x0 ^ b0;
+		long k0 = (a0 & c0) | (x0 & b0);
+		long x1 = a1 ^ c1;
+		long t1 = x1 ^ b1;
+		long k1 = (a1 & c1) | (x1 & b1);
+		long n1 = t1 ^ k0;
+		long k2 = t1 & k0;
+		long n2 = k1 ^ k2;
+		long n3 = k1 & k2;
+
+		// Select the outcome for each count: n0 to n2 pick among counts 0 to 7,
+		// and n3 is only set for a count of 8, when the other planes are clear
+		long born = select(n0, n1, n2, n3, born0, born1, born2, born3, born4, born5, born6, born7, born8);
+		long keep = select(n0, n1, n2, n3, keep0, keep1, keep2, keep3, keep4, keep5, keep6, keep7, keep8);
+		return born ^ (b & (born ^ keep));
+	}
+
+	/**
+	 * Selects, for every bit, the outcome matching the neighbour count encoded
+	 * by the count planes.
+	 *
+	 * @param n0 The count plane of weight 1.
+	 * @param n1 The count plane of weight 2.
+	 * @param n2 The count plane of weight 4.
+	 * @param n3 The count plane of weight 8.
+	 * @param o0 The outcome for a count of 0.
+	 * @param o1 The outcome for a count of 1.
+	 * @param o2 The outcome for a count of 2.
+	 * @param o3 The outcome for a count of 3.
+	 * @param o4 The outcome for a count of 4.
+	 * @param o5 The outcome for a count of 5.
+	 * @param o6 The outcome for a count of 6.
+	 * @param o7 The outcome for a count of 7.
+	 * @param o8 The outcome for a count of 8.
+	 * @return The selected outcome bits.
+	 */
+	private static long select(long n0, long n1, long n2, long n3, long o0, long o1, long o2, long o3, long o4,
+			long o5, long o6, long o7, long o8) {
+		long o01 = o0 ^ (n0 & (o0 ^ o1));
+		long o23 = o2 ^ (n0 & (o2 ^ o3));
+		long o45 = o4 ^ (n0 & (o4 ^ o5));
+		long o67 = o6 ^ (n0 & (o6 ^ o7));
+		long o03 = o01 ^ (n1 & (o01 ^ o23));
+		long o47 = o45 ^ (n1 & (o45 ^ o67));
+		long o07 = o03 ^ (n2 & (o03 ^ o47));
+		return o07 ^ (n3 & (o07 ^ o8));
+	}
+
+	/**
+	 * Turns one bit of a rule mask into an all-zero or all-one word.
+	 *
+	 * @param mask The birth or survival mask.
+	 * @param n    The neighbour count.
+	 * @return -1 if the bit for {@code n} is set, 0 otherwise.
+	 */
+	private static long spread(int mask, int n) {
+		return (mask & (1 << n)) != 0 ? -1L : 0L;
+	}
+}
@@ -0,0 +1,186 @@
+package gl.model;
+
+/**
+ * The {@code GLBitSlicedEngine} class is the default Game of Life engine. It
+ * evolves the board with the bit-parallel {@link GLBitKernel}, 64 cells per
+ * operation.
+ *
+ * Only the tiles of the board whose neighbourhood changed in the last
+ * generation are computed. A tile whose eight neighbours and itself are all
+ * unchanged sees the same cells it saw one generation ago, so its next state
+ * is its current one: it is copied into the back buffer instead, and not even
+ * copied once the back buffer already holds it. Stable regions cost a flag
+ * check per tile. Changing the rules marks every tile as changed.
+ *
+ * The edges of the board follow its {@link GLTopology}: the halo is filled
+ * once before the generation, so the kernel is the same for every topology.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLBitSlicedEngine implements GLEngine {
+	/**
+	 * The rules the cached kernel was built for.
+	 */
+	private GLRules kernelRules;
+
+	/**
+	 * The kernel for {@link #kernelRules}.
+	 */
+	private GLBitKernel kernel;
+
+
+	@Override
+	public String getName() {
+		return "Bit-sliced";
+	}
+
+	@Override
+	public void step(GLBoard board, GLRules rules) {
+		board.useRules(rules);
+		board.fillHalo();
+		long delta = evolveTiles(kernelFor(rules), board, 0, board.getTileRows());
+		board.clearHalo();
+		// Swap the buffers so the next generation becomes the current one
+		board.swapTrackedBuffers(delta);
+	}
+
+	/**
+	 * Gets the kernel for the given rules, building it when the rules change.
+	 *
+	 * @param rules The rules of the game.
+	 * @return The kernel applying the rules.
+	 */
+	GLBitKernel kernelFor(GLRules rules) {
+		if (rules != kernelRules) {
+			kernel = new GLBitKernel(rules);
+			kernelRules = rules;
+		}
+		return kernel;
+	}
+
+	/**
+	 * Writes the next generation of a range of tile rows into the back buffer
+	 * and updates their bookkeeping. Ranges of tile rows can be evolved
+	 * concurrently.
+	 *
+	 * @param kernel      The kernel applying the rules.
+	 * @param board       The board being evolved.
+	 * @param tileRowFrom The first row of tiles (inclusive).
+	 * @param tileRowTo   The last row of tiles (exclusive).
+	 * @return The change in the number of live cells of the range.
+	 */
+	static long evolveTiles(GLBitKernel kernel, GLBoard board, int tileRowFrom, int tileRowTo) {
+		long[] src = board.getWords();
+		long[] dst = board.getBackWords();
+		int stride = board.getStride();
+		int rows = board.getRows();
+		int tileRows = board.getTileRows();
+		int tileCols = board.getTileCols();
+		long lastWordMask = board.getLastWordMask();
+		boolean[] changed = board.getTileChanged();
+		boolean[] nextChanged = board.getNextTileChanged();
+		byte[] stableFor = board.getTileStableFor();
+		int[] tilePopulation = board.getTilePopulation();
+		GLTopology topology = board.getTopology();
+		GLCellStats stats = board.getCellStats();
+		long[] hashes = board.getTileHashDelta();
+
+		long delta = 0;
+		for (int tr = tileRowFrom; tr < tileRowTo; tr++) {
+			int rowFrom = tr * GLBoard.TILE_ROWS;
+			int rowTo = Math.min(rowFrom + GLBoard.TILE_ROWS, rows);
+			for (int tc = 0; tc < tileCols; tc++) {
+				int tile = tr * tileCols + tc;
+				long mask = tc == tileCols - 1 ? lastWordMask : -1L;
+				if (isNeighbourhoodChanged(changed, tileRows, tileCols, tr, tc, topology)) {
+					long result = kernel.evolveColumn(src, dst, stride, mask, rowFrom, rowTo, tc, stats, hashes,
+							tile);
+					int population = (int) result;
+					delta += population - tilePopulation[tile];
+					tilePopulation[tile] = population;
+					if ((result & GLBitKernel.CHANGED) != 0) {
+						nextChanged[tile] = true;
+						stableFor[tile] = 0;
+						continue;
+					}
+				} else if (stableFor[tile] == 0) {
+					// The back buffer holds the generation before, which already
+					// matches the tile unless it changed in the last generation
+					for (int i = board.rowOffset(rowFrom) + tc, end = i + (rowTo - rowFrom) * stride; i < end; i += stride) {
+						dst[i] = src[i] & mask;
+					}
+				}
+				nextChanged[tile] = false;
+				if (stableFor[tile] < Byte.MAX_VALUE) {
+					stableFor[tile]++;
+				}
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * Checks whether a tile or any of the eight around it changed in the last
+	 * generation. On a Klein bottle the tiles across the top and bottom edges
+	 * are mirrored and do not line up, so the whole opposite row of tiles is
+	 * checked instead.
+	 *
+	 * @param changed  The changed flags of the tiles.
+	 * @param tileRows The number of rows of tiles.
+	 * @param tileCols The number of columns of tiles.
+	 * @param tr       The row of the tile.
+	 * @param tc       The column of the tile.
+	 * @param topology How the edges of the board meet.
+	 * @return true if the tile has to be computed.
+	 */
+	static boolean isNeighbourhoodChanged(boolean[] changed, int tileRows, int tileCols, int tr, int tc,
+			GLTopology topology) {
+		boolean wrap = topology != GLTopology.CLIPPED;
+		for (int dr = -1; dr <= 1; dr++) {
+			int r = tr + dr;
+			if (r < 0 || r >= tileRows) {
+				if (!wrap) {
+					continue;
+				}
+				r = Math.floorMod(r, tileRows);
+				if (topology == GLTopology.KLEIN_BOTTLE) {
+					if (isRowChanged(changed, tileCols, r)) {
+						return true;
+					}
+					continue;
+				}
+			}
+			for (int dc = -1; dc <= 1; dc++) {
+				int c = tc + dc;
+				if (c < 0 || c >= tileCols) {
+					if (!wrap) {
+						continue;
+					}
+					c = Math.floorMod(c, tileCols);
+				}
+				if (changed[r * tileCols + c]) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether any tile of a row of tiles changed in the last generation.
+	 *
+	 * @param changed  The changed flags of the tiles.
+	 * @param tileCols The number of columns of tiles.
+	 * @param tr       The row of tiles.
+	 * @return true if a tile of the row changed.
+	 */
+	private static boolean isRowChanged(boolean[] changed, int tileCols, int tr) {
+		for (int c = tr * tileCols, end = c + tileCols; c < end; c++) {
+			if (changed[c]) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -1,13 +1,61 @@
 package gl.model;
 
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * Represents the game board for the Game of Life.
- * 
+ *
  * This class manages the cells on the game board and provides methods for
- * accessing and manipulating them.
- * 
+ * accessing and manipulating them. Cells are stored packed, one bit per cell,
+ * in rows of {@code long} words: bit {@code c & 63} of word {@code c >>> 6} in
+ * a row holds the cell in column {@code c}. Bits past the last column are
+ * always kept clear.
+ *
+ * Every buffer is surrounded by a halo: one ghost row above and below the
+ * board and one ghost word to the left and right of every row. Ghost cells
+ * are dead, so kernels can read the eight neighbours of any cell without edge
+ * checks. When the edges of the board are joined (see {@link GLTopology}),
+ * {@link #fillHalo()} copies the cells across the edges into the halo before
+ * a generation is computed and {@link #clearHalo()} clears it again.
+ *
+ * Each row is followed by {@link #ROW_PADDING} spare words, the right ghost
+ * word among them, so the last word of a row and the first word of the next
+ * are never on the same cache line and rows can be written by different
+ * threads. Word {@code w} of row {@code r} is stored at index
+ * {@code (r + 1) * stride + w + 1}.
+ *
+ * The board is double-buffered: the generation on display lives in the front
+ * buffer while the next one is written into the back buffer, and the two are
+ * swapped once it is complete. The generation a swap retires is recorded in a
+ * {@link GLHistory} as its difference with the new one, so undo history costs
+ * memory in proportion to how much the board changes, not to its size.
+ *
+ * The board is also divided into tiles of {@link #TILE_ROWS} rows by one word.
+ * Each tile records whether it changed in the last generation, for how many
+ * generations it has not changed and how many live cells it holds, so engines
+ * can skip tiles whose neighbourhood is settled and the population is known
+ * without counting. Tiles also collect whether they changed since they were
+ * last drawn, so the view repaints only those.
+ *
+ * The number of live neighbours of every cell is available too, for the view
+ * to color cells by it. The counts are computed by the kernel's adders, 64
+ * cells at a time, into four bit planes laid out like the cells. They are
+ * cached, and only the tiles around the ones that changed since they were
+ * last asked for are counted again.
+ *
+ * The board can also track the age and the activity of every cell in
+ * {@link GLCellStats}, so views can color cells by them. Tracking is off
+ * until enabled: the kernel then records the words that change as it
+ * computes them, and the board records its edits.
+ *
+ * Finally, the board keeps a hash of its cells, Zobrist-style: the XOR of a
+ * 64-bit mix of every non-empty word with its position. A word that changes
+ * moves the hash by the mixes of its old and new values, so the kernel
+ * updates it from the words it changes, tile by tile, and a generation costs
+ * nothing more for the words that stay the same. Equal boards have equal
+ * hashes, which lets {@link GLCycleDetector} tell when a game repeats.
+ *
  * @author David Burchat
  * @author Marcos Astudillo
  */
@@ -23,41 +71,1070 @@ public class GLBoard {
 	private int cols;
 
 	/**
-	 * A two-dimensional array representing the grid cells.
+	 * The number of {@code long} words used to store one row of cells.
 	 */
-	private GLCell[][] cells;
+	private int wordsPerRow;
+
+	/**
+	 * The distance in words between the starts of two consecutive rows,
+	 * {@link #wordsPerRow} plus the left ghost word and the row padding.
+	 */
+	private int stride;
+
+	/**
+	 * The number of words after the cells of a row, right ghost word included.
+	 * With the left ghost word, this puts 64 bytes between the cells of two
+	 * rows.
+	 */
+	public static final int ROW_PADDING = 7;
+
+	/**
+	 * The default number of generations kept for undo.
+	 */
+	public static final int DEFAULT_HISTORY_DEPTH = 1 << 20;
+
+	/**
+	 * The number of rows in a tile. Tiles are one word, 64 columns, wide.
+	 */
+	public static final int TILE_ROWS = 64;
+
+	/**
+	 * The front buffer: packed cell bits, row after row.
+	 */
+	private long[] words;
+
+	/**
+	 * The back buffer, laid out like {@link #words}.
+	 */
+	private long[] backWords;
+
+	/**
+	 * The retired generations kept for undo.
+	 */
+	private final GLHistory history;
+
+	/**
+	 * The XOR of the front buffer with the generation last swapped in, which
+	 * records the edits made since. Allocated on the first edit.
+	 */
+	private long[] edits;
+
+	/**
+	 * Whether {@link #edits} holds edits not yet merged into the history.
+	 */
+	private boolean editsPending;
+
+	/**
+	 * Whether the generations retired by a swap are recorded in the history.
+	 */
+	private boolean recording = true;
+
+	/**
+	 * The number of rows of tiles.
+	 */
+	private int tileRows;
+
+	/**
+	 * The number of columns of tiles, equal to {@link #wordsPerRow}.
+	 */
+	private int tileCols;
+
+	/**
+	 * Whether each tile changed in the last generation, row of tiles after row
+	 * of tiles.
+	 */
+	private boolean[] tileChanged;
+
+	/**
+	 * The flags being written for the next generation, swapped with
+	 * {@link #tileChanged} when the generation is complete.
+	 */
+	private boolean[] nextTileChanged;
+
+	/**
+	 * The number of generations each tile has gone unchanged, saturating at
+	 * {@link Byte#MAX_VALUE}.
+	 */
+	private byte[] tileStableFor;
+
+	/**
+	 * The number of live cells in each tile.
+	 */
+	private int[] tilePopulation;
+
+	/**
+	 * Which tiles changed since the renderer last took them.
+	 */
+	private boolean[] tileDirty;
+
+	/**
+	 * The neighbour counts of the cells of the front buffer, as bit planes of
+	 * weight 1, 2, 4 and 8 laid out like it, or null until first asked for.
+	 */
+	private long[] count0, count1, count2, count3;
+
+	/**
+	 * Which tiles changed since the neighbour counts were last brought up to
+	 * date.
+	 */
+	private boolean[] countStale;
+
+	/**
+	 * Whether any tile is set in {@link #countStale}.
+	 */
+	private boolean countsStale;
+
+	/**
+	 * The ages and activity of the cells, or null when they are not tracked.
+	 */
+	private GLCellStats cellStats;
+
+	/**
+	 * The dirty flags last handed to the renderer, reused for the next ones.
+	 */
+	private boolean[] takenTileDirty;
+
+	/**
+	 * The rule the tiles were last evolved with, since a tile settled under
+	 * one rule may change under another.
+	 */
+	private String tileRule;
+
+	/**
+	 * The changes to {@link #hash} made by the kernel in each tile during the
+	 * generation being computed, folded in when the buffers are swapped.
+	 */
+	private long[] tileHashDelta;
+
+	/**
+	 * The number of live cells on the board.
+	 */
+	private long population;
+
+	/**
+	 * The hash of the cells of the front buffer.
+	 */
+	private long hash;
+
+	/**
+	 * Counts the changes made to the front buffer, by edits and generations.
+	 */
+	private long modCount;
+
+	/**
+	 * How the edges of the board meet.
+	 */
+	private GLTopology topology = GLTopology.CLIPPED;
+
+	/**
+	 * Legacy {@link GLCell} view of the board, created on first use of
+	 * {@link #getCells()}.
+	 */
+	private GLCell[][] cellView;
 
 
     /**
      * Constructs a new GameBoard with the specified number of rows and columns.
+     * All cells start dead.
      *
      * @param rows The number of rows in the game board.
      * @param cols The number of columns in the game board.
      */
     public GLBoard(int rows, int cols) {
+        this(rows, cols, DEFAULT_HISTORY_DEPTH);
+    }
+
+    /**
+     * Constructs a new GameBoard keeping the given number of generations for undo.
+     *
+     * @param rows         The number of rows in the game board.
+     * @param cols         The number of columns in the game board.
+     * @param historyDepth The number of generations that can be undone.
+     * @throws IllegalArgumentException If the history depth is negative.
+     */
+    public GLBoard(int rows, int cols, int historyDepth) {
         this.rows = rows;
         this.cols = cols;
-        this.cells = new GLCell[rows][cols];
-        
-        // Initialize each cell in the board.
+        this.wordsPerRow = wordsFor(cols);
+        this.stride = wordsPerRow + 1 + ROW_PADDING;
+        this.history = new GLHistory(historyDepth);
+        allocatePlanes();
+        allocateTiles();
+    }
+
+    /**
+     * Gets the number of rows of the board.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of the board.
+     *
+     * @return The number of columns.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Gets the number of {@code long} words used to store one row.
+     *
+     * @return The words per row.
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Gets the distance in words between the starts of two consecutive rows in
+     * the cell buffers, ghost and padding words included.
+     *
+     * @return The row stride.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Gets the index in the cell buffers of the first word of a row.
+     *
+     * @param row The row, from -1 (upper ghost row) to {@code rows} (lower ghost row).
+     * @return The index of the row's first word.
+     */
+    public int rowOffset(int row) {
+        return (row + 1) * stride + 1;
+    }
+
+    /**
+     * Gets the mask of the bits in the last word of a row that hold cells.
+     *
+     * @return The mask of valid bits.
+     */
+    public long getLastWordMask() {
+        return lastWordMask(cols);
+    }
+
+    /**
+     * Gets the packed cell words of the front buffer. The array is live: writes
+     * change the board. Callers must keep the bits past the last column and the
+     * halo clear, and call {@link #invalidate()} once they are done writing.
+     *
+     * @return The packed cell words.
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * Gets the packed cell words of the back buffer, which the next generation
+     * is written into before {@link #swapBuffers()}. Its contents are stale
+     * and every row must be overwritten.
+     *
+     * @return The packed cell words of the back buffer.
+     */
+    public long[] getBackWords() {
+        return backWords;
+    }
+
+    /**
+     * Makes the back buffer the front buffer. The previous front is kept as
+     * undo history. Every tile is considered changed.
+     */
+    public void swapBuffers() {
+        swapBuffers(1);
+    }
+
+    /**
+     * Makes the back buffer, holding the cells a number of generations later,
+     * the front buffer. Every tile is considered changed. Cells born during a
+     * jump of several generations are taken to be born at its end.
+     *
+     * The previous front is kept as undo history only when it is one
+     * generation back, so an undo always goes back one generation. A jump of
+     * several generations clears the history instead, since the generations
+     * in between were never computed on the board.
+     *
+     * @param generations The number of generations between the buffers.
+     */
+    void swapBuffers(long generations) {
+        if (cellStats != null) {
+            int birth = (int) Math.min(Integer.MAX_VALUE, cellStats.getGeneration() + generations);
+            for (int r = 0; r < rows; r++) {
+                int base = rowOffset(r);
+                for (int w = 0; w < wordsPerRow; w++) {
+                    long next = backWords[base + w];
+                    if (next != words[base + w]) {
+                        cellStats.record(r, w, next ^ words[base + w], next, birth);
+                    }
+                }
+            }
+            cellStats.advance(generations);
+        }
+        if (generations == 1) {
+            retire(null);
+        } else {
+            clearHistory();
+        }
+        rotate();
+        recount();
+    }
+
+    /**
+     * Copies the cells across the joined edges of the board into the halo of
+     * the front buffer, so kernels see the topology without edge checks. When
+     * the last word of a row is not full, the cell past the last column is
+     * also set. Every call must be followed by {@link #clearHalo()} once the
+     * generation is computed.
+     */
+    void fillHalo() {
+        if (topology == GLTopology.CLIPPED || rows == 0 || cols == 0) {
+            return;
+        }
+        int top = rowOffset(-1);
+        int bottom = rowOffset(rows);
+        if (topology == GLTopology.TORUS) {
+            System.arraycopy(words, rowOffset(rows - 1), words, top, wordsPerRow);
+            System.arraycopy(words, rowOffset(0), words, bottom, wordsPerRow);
+        } else {
+            reverseRow(rowOffset(rows - 1), top);
+            reverseRow(rowOffset(0), bottom);
+        }
+        for (int i = -1; i <= rows; i++) {
+            int base = rowOffset(i);
+            long last = words[base + wordsPerRow - 1];
+            // West of the first column is the last one, east of the last is the first
+            words[base - 1] = (last >>> ((cols - 1) & 63)) << 63;
+            long first = words[base] & 1;
+            if ((cols & 63) == 0) {
+                words[base + wordsPerRow] = first;
+            } else {
+                words[base + wordsPerRow - 1] = last | (first << cols);
+            }
+        }
+    }
+
+    /**
+     * Clears the halo of the front buffer filled by {@link #fillHalo()}.
+     */
+    void clearHalo() {
+        if (topology == GLTopology.CLIPPED || rows == 0 || cols == 0) {
+            return;
+        }
+        long mask = lastWordMask(cols);
+        Arrays.fill(words, rowOffset(-1) - 1, rowOffset(0) - 1, 0L);
+        Arrays.fill(words, rowOffset(rows) - 1, rowOffset(rows + 1) - 1, 0L);
         for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                cells[i][j] = new GLCell();
+            int base = rowOffset(i);
+            words[base - 1] = 0L;
+            words[base + wordsPerRow - 1] &= mask;
+            words[base + wordsPerRow] = 0L;
+        }
+    }
+
+    /**
+     * Writes a row of the front buffer mirrored, the first column becoming the
+     * last, into another row.
+     *
+     * @param from The index of the first word of the source row.
+     * @param to   The index of the first word of the target row.
+     */
+    private void reverseRow(int from, int to) {
+        int shift = wordsPerRow * 64 - cols;
+        for (int w = 0; w < wordsPerRow; w++) {
+            long word = Long.reverse(words[from + wordsPerRow - 1 - w]) >>> shift;
+            if (shift != 0 && w < wordsPerRow - 1) {
+                word |= Long.reverse(words[from + wordsPerRow - 2 - w]) << (64 - shift);
+            }
+            words[to + w] = word;
+        }
+    }
+
+    /**
+     * Makes the back buffer the front buffer after an engine has evolved it
+     * tile by tile, writing the flags returned by {@link #getNextTileChanged()},
+     * the stability counters and the tile populations as it went.
+     *
+     * @param populationDelta The change in the number of live cells.
+     */
+    void swapTrackedBuffers(long populationDelta) {
+        retire(nextTileChanged);
+        rotate();
+        boolean[] changed = tileChanged;
+        tileChanged = nextTileChanged;
+        nextTileChanged = changed;
+        for (int i = 0; i < tileChanged.length; i++) {
+            tileDirty[i] |= tileChanged[i];
+            countStale[i] |= tileChanged[i];
+            if (tileChanged[i]) {
+                hash ^= tileHashDelta[i];
+                tileHashDelta[i] = 0;
+            }
+        }
+        countsStale = true;
+        population += populationDelta;
+        modCount++;
+        if (cellStats != null) {
+            cellStats.advance(1);
+        }
+    }
+
+    /**
+     * Gets a counter that is incremented whenever the cells on the board
+     * change, whether by an edit or by a generation. Engines that keep their
+     * own copy of the cells compare it to detect outside changes.
+     *
+     * @return The modification count.
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Brings back the generation before the current one, if it is still kept.
+     * Edits made since the current generation was computed are discarded.
+     *
+     * @return true if a generation was restored, false if no history is left.
+     */
+    public boolean undo() {
+        return undo(1) == 1;
+    }
+
+    /**
+     * Goes back several generations at once, as far as the history allows.
+     * Edits made since the current generation was computed are discarded.
+     *
+     * @param generations The number of generations to go back.
+     * @return The number of generations actually gone back.
+     */
+    public int undo(int generations) {
+        if (generations <= 0 || history.size() == 0) {
+            return 0;
+        }
+        mergeEdits();
+        int count = history.undo(words, generations);
+        recount();
+        if (cellStats != null) {
+            cellStats.rewind(count, this);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of generations that can currently be undone.
+     *
+     * @return The number of restorable generations.
+     */
+    public int getUndoAvailable() {
+        return history.size();
+    }
+
+    /**
+     * Forgets every retired generation.
+     */
+    public void clearHistory() {
+        history.clear();
+        if (editsPending) {
+            Arrays.fill(edits, 0L);
+            editsPending = false;
+        }
+    }
+
+    /**
+     * Gets the number of generations that can be kept for undo.
+     *
+     * @return The history depth.
+     */
+    public int getHistoryDepth() {
+        return history.getMaxGenerations();
+    }
+
+    /**
+     * Changes the number of generations kept for undo, dropping the oldest
+     * ones past it.
+     *
+     * @param historyDepth The number of generations that can be undone.
+     * @throws IllegalArgumentException If the depth is negative.
+     */
+    public void setHistoryDepth(int historyDepth) {
+        history.setMaxGenerations(historyDepth);
+    }
+
+    /**
+     * Checks whether the generations retired by a swap are recorded for undo.
+     *
+     * @return true if the history is recorded.
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Starts or stops recording the generations retired by a swap for undo,
+     * so long runs whose intermediate generations are not wanted skip the
+     * cost of encoding them. While stopped, the history is kept empty, since
+     * it could not be undone across the generations missed.
+     *
+     * @param recording true to record the history.
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+        if (!recording) {
+            clearHistory();
+        }
+    }
+
+    /**
+     * Gets the undo history, to tune its memory budget and keyframes.
+     *
+     * @return The history of the board.
+     */
+    public GLHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Gets the number of rows of tiles.
+     *
+     * @return The tile rows.
+     */
+    public int getTileRows() {
+        return tileRows;
+    }
+
+    /**
+     * Gets the number of columns of tiles.
+     *
+     * @return The tile columns.
+     */
+    public int getTileCols() {
+        return tileCols;
+    }
+
+    /**
+     * Checks whether a tile changed in the last generation or was edited since.
+     *
+     * @param tileRow The row of the tile.
+     * @param tileCol The column of the tile.
+     * @return true if the tile changed.
+     */
+    public boolean isTileChanged(int tileRow, int tileCol) {
+        return tileChanged[tileRow * tileCols + tileCol];
+    }
+
+    /**
+     * Gets which tiles changed since the last call, by generations or edits,
+     * and starts collecting again. A renderer calls this once per frame to
+     * repaint only those tiles, however many generations passed. The array is
+     * reused by the next call.
+     *
+     * @return The dirty flags of the tiles, indexed by
+     *         {@code tileRow * tileCols + tileCol}.
+     */
+    public boolean[] takeDirtyTiles() {
+        boolean[] taken = tileDirty;
+        tileDirty = takenTileDirty;
+        Arrays.fill(tileDirty, false);
+        takenTileDirty = taken;
+        return taken;
+    }
+
+    /**
+     * Gets the changed flags of the tiles, indexed by
+     * {@code tileRow * tileCols + tileCol}.
+     *
+     * @return The live array of flags.
+     */
+    boolean[] getTileChanged() {
+        return tileChanged;
+    }
+
+    /**
+     * Gets the changed flags being written for the next generation.
+     *
+     * @return The live array of flags.
+     */
+    boolean[] getNextTileChanged() {
+        return nextTileChanged;
+    }
+
+    /**
+     * Marks every tile as changed if the rules differ from those the board was
+     * last evolved with. Engines skipping settled tiles call this before each
+     * generation.
+     *
+     * @param rules The rules of the generation about to be computed.
+     */
+    void useRules(GLRules rules) {
+        String rule = rules.getCurrentRule();
+        if (!rule.equals(tileRule)) {
+            Arrays.fill(tileChanged, true);
+            Arrays.fill(tileStableFor, (byte) 0);
+            tileRule = rule;
+        }
+    }
+
+    /**
+     * Gets the number of generations each tile has gone unchanged.
+     *
+     * @return The live array of counters.
+     */
+    byte[] getTileStableFor() {
+        return tileStableFor;
+    }
+
+    /**
+     * Gets the number of live cells in each tile.
+     *
+     * @return The live array of counts.
+     */
+    int[] getTilePopulation() {
+        return tilePopulation;
+    }
+
+    /**
+     * Gets the changes to the hash made by the kernel in each tile, which
+     * {@link #swapTrackedBuffers(long)} folds in. A tile is computed by a
+     * single thread, so tiles can be updated concurrently.
+     *
+     * @return The live array of changes.
+     */
+    long[] getTileHashDelta() {
+        return tileHashDelta;
+    }
+
+    /**
+     * Gets the hash of the cells on the board. Boards of the same dimensions
+     * holding the same cells have the same hash; different cells give the
+     * same hash with a chance of about one in 2<sup>64</sup>. The hash is
+     * kept up to date as the board changes, so this does not scan the cells.
+     *
+     * @return The hash of the cells.
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Computes the share of one word of cells in the hash of the board.
+     * Empty words have no share, so a dead board hashes to 0.
+     *
+     * @param index The index of the word in the buffer.
+     * @param word  The cells of the word.
+     * @return The share of the word, XOR-ed into the hash.
+     */
+    static long hashWord(int index, long word) {
+        if (word == 0) {
+            return 0;
+        }
+        // The SplitMix64 finalizer, over the word and its scrambled position
+        long z = word + index * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Marks every tile as changed and recounts the live cells. Called after
+     * the front buffer was written directly. Such changes can't be told apart
+     * from the generations before, so the undo history is cleared.
+     */
+    public void invalidate() {
+        clearHistory();
+        recount();
+        if (cellStats != null) {
+            cellStats.sync(this);
+        }
+    }
+
+    /**
+     * Marks every tile as changed, recounts the live cells and hashes them
+     * again.
+     */
+    private void recount() {
+        Arrays.fill(tileChanged, true);
+        Arrays.fill(tileStableFor, (byte) 0);
+        Arrays.fill(tileDirty, true);
+        Arrays.fill(countStale, true);
+        countsStale = true;
+        modCount++;
+        population = 0;
+        hash = 0;
+        Arrays.fill(tileHashDelta, 0L);
+        for (int tr = 0; tr < tileRows; tr++) {
+            int rowFrom = tr * TILE_ROWS;
+            int rowTo = Math.min(rowFrom + TILE_ROWS, rows);
+            for (int tc = 0; tc < tileCols; tc++) {
+                int count = 0;
+                for (int i = rowFrom; i < rowTo; i++) {
+                    int index = rowOffset(i) + tc;
+                    count += Long.bitCount(words[index]);
+                    hash ^= hashWord(index, words[index]);
+                }
+                tilePopulation[tr * tileCols + tc] = count;
+                population += count;
             }
         }
     }
-    
+
+    /**
+     * Gets how the edges of the board meet.
+     *
+     * @return The topology of the board.
+     */
+    public GLTopology getTopology() {
+        return topology;
+    }
+
     /**
-     * Gets the 2D array representing the cells on the game board.
+     * Sets how the edges of the board meet. Every tile is considered changed,
+     * since the neighbourhood of the edges changes.
+     *
+     * @param topology The topology of the board.
+     */
+    public void setTopology(GLTopology topology) {
+        this.topology = topology;
+        recount();
+    }
+
+    /**
+     * Checks whether the cell at the given position is alive.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return true if the cell is alive, false otherwise.
+     */
+    public boolean isAlive(int row, int col) {
+        return (words[rowOffset(row) + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Checks whether the cell at the given position is alive, following the
+     * topology for positions past the edges of the board.
+     *
+     * @param row The row of the cell, which may lie outside the board.
+     * @param col The column of the cell, which may lie outside the board.
+     * @return true if the cell is alive, false otherwise.
+     */
+    public boolean isAliveAcrossEdges(int row, int col) {
+        switch (topology) {
+        case TORUS:
+            return isAlive(Math.floorMod(row, rows), Math.floorMod(col, cols));
+        case KLEIN_BOTTLE:
+            if (row < 0 || row >= rows) {
+                col = cols - 1 - col;
+            }
+            return isAlive(Math.floorMod(row, rows), Math.floorMod(col, cols));
+        default:
+            return row >= 0 && row < rows && col >= 0 && col < cols && isAlive(row, col);
+        }
+    }
+
+    /**
+     * Sets the state of the cell at the given position.
+     *
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     * @param alive true to set the cell as alive, false to set it as dead.
+     */
+    public void setAlive(int row, int col, boolean alive) {
+        checkBounds(row, col);
+        int index = rowOffset(row) + (col >>> 6);
+        long before = words[index];
+        if (alive) {
+            words[index] |= 1L << col;
+        } else {
+            words[index] &= ~(1L << col);
+        }
+        if (words[index] != before) {
+            cellChanged(row, col, alive ? 1 : -1);
+        }
+    }
+
+    /**
+     * Toggles the state of the cell at the given position.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     */
+    public void toggleAlive(int row, int col) {
+        checkBounds(row, col);
+        int index = rowOffset(row) + (col >>> 6);
+        words[index] ^= 1L << col;
+        cellChanged(row, col, (words[index] & (1L << col)) != 0 ? 1 : -1);
+    }
+
+    /**
+     * Counts the live cells in a range of columns of a row, a word at a time.
+     *
+     * @param row     The row.
+     * @param colFrom The first column (inclusive).
+     * @param colTo   The last column (exclusive).
+     * @return The number of live cells in the range.
+     */
+    public int countAlive(int row, int colFrom, int colTo) {
+        int base = rowOffset(row);
+        int count = 0;
+        for (int c = colFrom; c < colTo; c = (c | 63) + 1) {
+            int end = Math.min(colTo, (c | 63) + 1);
+            count += Long.bitCount(words[base + (c >>> 6)] & bitRange(c & 63, ((end - 1) & 63) + 1));
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of live neighbours of a cell, across the edges if they
+     * are joined. The counts are cached: only the tiles around those that
+     * changed since the last call are counted again, a word at a time.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The number of live neighbours, from 0 to 8.
+     * @throws IndexOutOfBoundsException If the position is outside the board.
+     */
+    public int getNeighbourCount(int row, int col) {
+        checkBounds(row, col);
+        if (countsStale || count0 == null) {
+            updateNeighbourCounts();
+        }
+        int i = rowOffset(row) + (col >>> 6);
+        return (int) (((count0[i] >>> col) & 1) | (((count1[i] >>> col) & 1) << 1)
+                | (((count2[i] >>> col) & 1) << 2) | (((count3[i] >>> col) & 1) << 3));
+    }
+
+    /**
+     * Counts again the neighbours of the cells of every tile whose
+     * neighbourhood changed since the counts were last brought up to date.
+     */
+    private void updateNeighbourCounts() {
+        if (count0 == null) {
+            count0 = new long[words.length];
+            count1 = new long[words.length];
+            count2 = new long[words.length];
+            count3 = new long[words.length];
+            Arrays.fill(countStale, true);
+        }
+        fillHalo();
+        for (int tr = 0; tr < tileRows; tr++) {
+            int rowFrom = tr * TILE_ROWS;
+            int rowTo = Math.min(rowFrom + TILE_ROWS, rows);
+            for (int tc = 0; tc < tileCols; tc++) {
+                if (GLBitSlicedEngine.isNeighbourhoodChanged(countStale, tileRows, tileCols, tr, tc, topology)) {
+                    GLBitKernel.countColumn(words, count0, count1, count2, count3, stride, rowFrom, rowTo, tc);
+                }
+            }
+        }
+        clearHalo();
+        Arrays.fill(countStale, false);
+        countsStale = false;
+    }
+
+    /**
+     * Checks whether the ages and activity of the cells are tracked.
+     *
+     * @return true if they are tracked.
+     */
+    public boolean isCellStatsEnabled() {
+        return cellStats != null;
+    }
+
+    /**
+     * Starts or stops tracking the ages and activity of the cells. Tracking
+     * starts with every live cell one generation old and no activity, and
+     * stopping it frees the statistics.
+     *
+     * @param enabled true to track the cells.
+     */
+    public void setCellStatsEnabled(boolean enabled) {
+        if (enabled == (cellStats != null)) {
+            return;
+        }
+        cellStats = enabled ? new GLCellStats(rows, cols) : null;
+        if (enabled) {
+            cellStats.sync(this);
+        }
+    }
+
+    /**
+     * Gets the statistics of the cells, for the kernel to record flips in.
+     *
+     * @return The statistics, or null when they are not tracked.
+     */
+    GLCellStats getCellStats() {
+        return cellStats;
+    }
+
+    /**
+     * Gets the number of generations a cell has been alive, counted from its
+     * last birth or from when tracking started.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return 1 for a cell born in the current generation, more for older
+     *         ones, 0 for a dead cell.
+     * @throws IndexOutOfBoundsException If the position is outside the board.
+     * @throws IllegalStateException     If the cells are not tracked.
+     */
+    public int getAge(int row, int col) {
+        checkBounds(row, col);
+        return trackedStats().getAge(row, col);
+    }
+
+    /**
+     * Gets the number of times a cell was born or died since tracking
+     * started, whether by a generation or an edit.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The number of flips.
+     * @throws IndexOutOfBoundsException If the position is outside the board.
+     * @throws IllegalStateException     If the cells are not tracked.
+     */
+    public int getActivity(int row, int col) {
+        checkBounds(row, col);
+        return trackedStats().getActivity(row, col);
+    }
+
+    /**
+     * Gets the statistics of the cells, which must be tracked.
+     *
+     * @return The statistics.
+     * @throws IllegalStateException If the cells are not tracked.
+     */
+    private GLCellStats trackedStats() {
+        if (cellStats == null) {
+            throw new IllegalStateException("Cell statistics are not tracked");
+        }
+        return cellStats;
+    }
+
+    /**
+     * Gets the number of live cells on the board. The count is kept up to date
+     * as the board changes, so this does not scan the cells.
+     *
+     * @return The number of live cells.
+     */
+    public long getPopulation() {
+        return population;
+    }
+
+    /**
+     * Kills every cell on the board.
+     */
+    public void clear() {
+        beginBulkEdit();
+        Arrays.fill(words, 0L);
+        endBulkEdit();
+    }
+
+    /**
+     * Copies the cell states of another board with the same dimensions.
+     *
+     * @param other The board to copy from.
+     * @throws IllegalArgumentException If the dimensions of the boards differ.
+     */
+    public void copyFrom(GLBoard other) {
+        checkSameShape(other);
+        beginBulkEdit();
+        System.arraycopy(other.words, 0, words, 0, words.length);
+        endBulkEdit();
+    }
+
+    /**
+     * Sets the live cells of another board on this one, clipped to its edges.
+     * The other cells are left as they are. Rows are copied a word at a time,
+     * shifted to the column they go to.
+     *
+     * @param pattern The board holding the cells to set.
+     * @param row     The row the top of the pattern goes to.
+     * @param col     The column the left of the pattern goes to.
+     */
+    public void paste(GLBoard pattern, int row, int col) {
+        int colFrom = Math.max(0, -col);
+        int colTo = (int) Math.min(pattern.cols, (long) cols - col);
+        int rowFrom = Math.max(0, -row);
+        int rowTo = (int) Math.min(pattern.rows, (long) rows - row);
+        if (colFrom >= colTo || rowFrom >= rowTo) {
+            return;
+        }
+        beginBulkEdit();
+        for (int r = rowFrom; r < rowTo; r++) {
+            int source = pattern.rowOffset(r);
+            int target = rowOffset(row + r);
+            for (int w = colFrom >>> 6; w <= (colTo - 1) >>> 6; w++) {
+                // Only the columns landing on the board are copied
+                int from = Math.max(colFrom, w << 6) - (w << 6);
+                int to = Math.min(colTo, (w + 1) << 6) - (w << 6);
+                long bits = pattern.words[source + w] & bitRange(from, to);
+                if (bits == 0) {
+                    continue;
+                }
+                long first = ((long) w << 6) + col;
+                int word = (int) Math.floorDiv(first, 64L);
+                int shift = (int) Math.floorMod(first, 64L);
+                long low = bits << shift;
+                long high = shift == 0 ? 0 : bits >>> (64 - shift);
+                if (low != 0) {
+                    words[target + word] |= low;
+                }
+                if (high != 0) {
+                    words[target + word + 1] |= high;
+                }
+            }
+        }
+        endBulkEdit();
+    }
+
+    /**
+     * Takes a packed copy of the current cell states.
+     *
+     * @return A copy of the packed cell words.
+     */
+    public long[] snapshot() {
+        return words.clone();
+    }
+
+    /**
+     * Restores the cell states from a copy taken with {@link #snapshot()}.
+     *
+     * @param snapshot The packed cell words to restore.
+     * @throws IllegalArgumentException If the snapshot does not match the board's dimensions.
+     */
+    public void restore(long[] snapshot) {
+        if (snapshot == null || snapshot.length != words.length) {
+            throw new IllegalArgumentException("Invalid snapshot dimensions");
+        }
+        beginBulkEdit();
+        System.arraycopy(snapshot, 0, words, 0, words.length);
+        endBulkEdit();
+    }
+
+    /**
+     * Gets a two-dimensional {@link GLCell} view of the board. This is an
+     * adapter kept for older callers: every cell of the view reads and writes
+     * the packed board directly, so it never goes stale. The view is only
+     * built on first use.
      *
      * @return The 2D array of cells.
      */
     public GLCell[][] getCells() {
-        return cells;
+        if (cellView == null) {
+            cellView = new GLCell[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    cellView[i][j] = new GLCell(this, i, j);
+                }
+            }
+        }
+        return cellView;
     }
 
     /**
-     * Sets the cells on the game board with a new 2D cell array.
+     * Sets the cells on the game board from a 2D cell array. The states are
+     * copied into the packed storage.
      *
      * @param cells The new 2D array of cells.
      * @throws IllegalArgumentException If the dimensions of the provided cell array do not match the board's dimensions.
@@ -66,7 +1143,11 @@ public class GLBoard {
         if (cells == null || cells.length != rows || cells[0].length != cols) {
             throw new IllegalArgumentException("Invalid cell array dimensions");
         }
-        this.cells = cells;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                setAlive(i, j, cells[i][j].isAlive());
+            }
+        }
     }
 
     /**
@@ -74,33 +1155,230 @@ public class GLBoard {
      */
     public void randomizeState() {
         Random random = new Random();
+        long lastWordMask = lastWordMask(cols);
+        beginBulkEdit();
         for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                cells[i][j].setAlive(random.nextBoolean());
+            int base = rowOffset(i);
+            for (int w = 0; w < wordsPerRow; w++) {
+                words[base + w] = random.nextLong();
             }
+            words[base + wordsPerRow - 1] &= lastWordMask;
         }
+        endBulkEdit();
     }
-    
+
     /**
-     * Resizes the game board to the specified new width and height.
+     * Resizes the game board to the specified new width and height, keeping the
+     * cells that fall inside both the old and the new dimensions. The undo
+     * history is cleared.
      *
      * @param newWidth  The new width for the game board.
      * @param newHeight The new height for the game board.
      */
     public void resize(int newWidth, int newHeight) {
-        // Create a new matrix of cells with the new dimensions.
-        GLCell[][] newCells = new GLCell[newWidth][newHeight];
+        int newWordsPerRow = wordsFor(newHeight);
+        int newStride = newWordsPerRow + 1 + ROW_PADDING;
+        long[] newWords = new long[(newWidth + 2) * newStride];
 
-        // Copy the existing cells to the new matrix (adjusting as necessary).
+        // Copy the existing rows to the new storage (adjusting as necessary).
+        int keptWords = Math.min(wordsPerRow, newWordsPerRow);
+        long lastWordMask = lastWordMask(Math.min(cols, newHeight));
         for (int i = 0; i < Math.min(rows, newWidth); i++) {
-            for (int j = 0; j < Math.min(cols, newHeight); j++) {
-                newCells[i][j] = cells[i][j];
-            }
+            int newBase = (i + 1) * newStride + 1;
+            System.arraycopy(words, rowOffset(i), newWords, newBase, keptWords);
+            newWords[newBase + keptWords - 1] &= lastWordMask;
         }
 
-        // Update the dimensions and cell matrix.
+        // Update the dimensions and cell storage.
         rows = newWidth;
         cols = newHeight;
-        cells = newCells;
+        wordsPerRow = newWordsPerRow;
+        stride = newStride;
+        allocatePlanes();
+        System.arraycopy(newWords, 0, words, 0, words.length);
+        cellView = null;
+        allocateTiles();
+    }
+
+    /**
+     * Allocates the front and back buffers for the current dimensions. All
+     * cells start dead and the history is empty.
+     */
+    private void allocatePlanes() {
+        words = new long[(rows + 2) * stride];
+        backWords = new long[(rows + 2) * stride];
+        edits = null;
+        editsPending = false;
+        count0 = count1 = count2 = count3 = null;
+        history.clear();
+    }
+
+    /**
+     * Allocates the tile bookkeeping for the current dimensions and fills it
+     * from the front buffer.
+     */
+    private void allocateTiles() {
+        tileRows = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        tileCols = wordsPerRow;
+        tileChanged = new boolean[tileRows * tileCols];
+        nextTileChanged = new boolean[tileRows * tileCols];
+        tileStableFor = new byte[tileRows * tileCols];
+        tilePopulation = new int[tileRows * tileCols];
+        tileDirty = new boolean[tileRows * tileCols];
+        tileHashDelta = new long[tileRows * tileCols];
+        takenTileDirty = new boolean[tileRows * tileCols];
+        countStale = new boolean[tileRows * tileCols];
+        recount();
+        if (cellStats != null) {
+            cellStats = new GLCellStats(rows, cols);
+            cellStats.sync(this);
+        }
+    }
+
+    /**
+     * Records the change of one cell in the bookkeeping of its tile.
+     *
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     * @param delta +1 if the cell was born, -1 if it died.
+     */
+    private void cellChanged(int row, int col, int delta) {
+        if (edits == null) {
+            edits = new long[words.length];
+        }
+        int index = rowOffset(row) + (col >>> 6);
+        edits[index] ^= 1L << col;
+        editsPending = true;
+        hash ^= hashWord(index, words[index] ^ (1L << col)) ^ hashWord(index, words[index]);
+        int tile = (row / TILE_ROWS) * tileCols + (col >>> 6);
+        tileChanged[tile] = true;
+        tileStableFor[tile] = 0;
+        tileDirty[tile] = true;
+        countStale[tile] = true;
+        countsStale = true;
+        tilePopulation[tile] += delta;
+        population += delta;
+        modCount++;
+        if (cellStats != null) {
+            cellStats.record(row, col >>> 6, 1L << col, words[index], cellStats.getGeneration());
+        }
+    }
+
+    /**
+     * Computes the number of words needed to store a row of cells.
+     *
+     * @param cols The number of columns.
+     * @return The words per row.
+     */
+    static int wordsFor(int cols) {
+        return Math.max(1, (cols + 63) >>> 6);
+    }
+
+    /**
+     * Computes the mask of a range of bits of a word.
+     *
+     * @param from The first bit (inclusive), from 0 to 63.
+     * @param to   The last bit (exclusive), from 1 to 64.
+     * @return The mask with the bits of the range set.
+     */
+    static long bitRange(int from, int to) {
+        return (-1L >>> (64 - to)) & (-1L << from);
+    }
+
+    /**
+     * Computes the mask of valid bits in the last word of a row.
+     *
+     * @param cols The number of columns.
+     * @return The mask with one bit set per column stored in the last word.
+     */
+    static long lastWordMask(int cols) {
+        int used = cols & 63;
+        return used == 0 ? (cols == 0 ? 0L : -1L) : (1L << used) - 1;
+    }
+
+    /**
+     * Records the front buffer in the history before the back buffer, holding
+     * the next generation, replaces it.
+     *
+     * @param changed Which tiles differ between the buffers, or null if unknown.
+     */
+    private void retire(boolean[] changed) {
+        if (!recording) {
+            clearHistory();
+            return;
+        }
+        mergeEdits();
+        history.record(words, backWords, this, changed);
+    }
+
+    /**
+     * Exchanges the front and back buffers.
+     */
+    private void rotate() {
+        long[] front = words;
+        words = backWords;
+        backWords = front;
+    }
+
+    /**
+     * Merges the edits made since the last generation into the history.
+     */
+    private void mergeEdits() {
+        if (editsPending) {
+            history.mergeEdits(edits, this);
+            editsPending = false;
+        }
+    }
+
+    /**
+     * Starts an edit of many cells, recorded by XOR-ing the cells before and
+     * after it into {@link #edits}.
+     */
+    private void beginBulkEdit() {
+        if (edits == null) {
+            edits = new long[words.length];
+        }
+        for (int i = 0; i < words.length; i++) {
+            edits[i] ^= words[i];
+        }
+    }
+
+    /**
+     * Ends an edit started with {@link #beginBulkEdit()}.
+     */
+    private void endBulkEdit() {
+        for (int i = 0; i < words.length; i++) {
+            edits[i] ^= words[i];
+        }
+        editsPending = true;
+        recount();
+        if (cellStats != null) {
+            cellStats.sync(this);
+        }
+    }
+
+    /**
+     * Checks that a position lies on the board.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @throws IndexOutOfBoundsException If the position is outside the board.
+     */
+    private void checkBounds(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Cell (" + row + ", " + col + ") is outside the board");
+        }
+    }
+
+    /**
+     * Checks that another board has the same dimensions as this one.
+     *
+     * @param other The board to compare with.
+     * @throws IllegalArgumentException If the dimensions differ.
+     */
+    private void checkSameShape(GLBoard other) {
+        if (other.rows != rows || other.cols != cols) {
+            throw new IllegalArgumentException("Invalid board dimensions");
+        }
     }
 }
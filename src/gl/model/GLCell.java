@@ -4,7 +4,9 @@ package gl.model;
  * Represents a single cell in the Game of Life grid.
  * 
  * This class represents an individual cell within the Game of Life grid and
- * provides methods for checking and manipulating its state.
+ * provides methods for checking and manipulating its state. A cell is either a
+ * standalone value or a view onto one position of a packed {@link GLBoard}, in
+ * which case reads and writes go straight to the board.
  * 
  * @author David Burchat
  * @author Marcos Astudillo
@@ -15,12 +17,43 @@ public class GLCell {
 	 */
 	private boolean alive;
 
+	/**
+	 * The board this cell is a view of, or null for a standalone cell.
+	 */
+	private final GLBoard board;
+
+	/**
+	 * The row of this cell on the board it views.
+	 */
+	private final int row;
+
+	/**
+	 * The column of this cell on the board it views.
+	 */
+	private final int col;
+
 
     /**
      * Constructs a new cell with the initial state set to dead (not alive).
      */
     public GLCell() {
         this.alive = false;
+        this.board = null;
+        this.row = 0;
+        this.col = 0;
+    }
+
+    /**
+     * Constructs a cell that views the given position of a board.
+     *
+     * @param board The board holding the cell state.
+     * @param row   The row of the cell.
+     * @param col   The column of the cell.
+     */
+    GLCell(GLBoard board, int row, int col) {
+        this.board = board;
+        this.row = row;
+        this.col = col;
     }
     
     /**
@@ -29,6 +62,9 @@ public class GLCell {
      * @return true if the cell is alive, false otherwise.
      */
     public boolean isAlive() {
+        if (board != null) {
+            return board.isAlive(row, col);
+        }
         return alive;
     }
 
@@ -38,6 +74,10 @@ public class GLCell {
      * @param alive true to set the cell as alive, false to set it as dead.
      */
     public void setAlive(boolean alive) {
+        if (board != null) {
+            board.setAlive(row, col, alive);
+            return;
+        }
         this.alive = alive;
     }
     
@@ -45,6 +85,10 @@ public class GLCell {
      * Toggles the cell's alive state. If it's alive, it becomes dead, and vice versa.
      */
     public void toggleAlive() {
+        if (board != null) {
+            board.toggleAlive(row, col);
+            return;
+        }
         alive = !alive;
     }
 }
@@ -0,0 +1,160 @@
+package gl.model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code GLCellStats} class keeps, for every cell of a {@link GLBoard},
+ * the generation it was last born in and how many times it has flipped, so
+ * views can color cells by age or draw a heatmap of activity.
+ *
+ * Both planes are written only for the cells that flip, by the kernel as it
+ * computes a generation and by the board as it is edited. A cell that stays
+ * alive grows older without being touched, since its age is the difference
+ * between the current generation and its birth, so a settled board costs
+ * nothing to track. The planes hold one {@code int} per cell, row after row.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+final class GLCellStats {
+	/**
+	 * The birth of a dead cell.
+	 */
+	private static final int DEAD = -1;
+
+	/**
+	 * The number of columns of the board.
+	 */
+	private final int cols;
+
+	/**
+	 * The generation each live cell was born in, or {@link #DEAD}.
+	 */
+	private final int[] births;
+
+	/**
+	 * The number of times each cell was born or died, saturating at
+	 * {@link Integer#MAX_VALUE}.
+	 */
+	private final int[] flips;
+
+	/**
+	 * The generation of the front buffer, counted from when tracking started.
+	 */
+	private int generation;
+
+
+	/**
+	 * Constructs the statistics of a board whose cells are all dead.
+	 *
+	 * @param rows The number of rows of the board.
+	 * @param cols The number of columns of the board.
+	 */
+	GLCellStats(int rows, int cols) {
+		this.cols = cols;
+		this.births = new int[rows * cols];
+		this.flips = new int[rows * cols];
+		Arrays.fill(births, DEAD);
+	}
+
+	/**
+	 * Gets the generation of the front buffer.
+	 *
+	 * @return The generation, counted from when tracking started.
+	 */
+	int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Records the cells of one word that flipped. Called by the kernel for
+	 * every word of the next generation that differs from the current one;
+	 * ranges of rows can be recorded concurrently.
+	 *
+	 * @param row     The row of the word.
+	 * @param word    The index of the word within the row.
+	 * @param flipped The cells that flipped.
+	 * @param alive   The cells of the word after the flips.
+	 * @param birth   The generation the cells born are born in.
+	 */
+	void record(int row, int word, long flipped, long alive, int birth) {
+		int base = row * cols + (word << 6);
+		while (flipped != 0) {
+			int bit = Long.numberOfTrailingZeros(flipped);
+			flipped &= flipped - 1;
+			int i = base + bit;
+			if (flips[i] != Integer.MAX_VALUE) {
+				flips[i]++;
+			}
+			births[i] = (alive & (1L << bit)) != 0 ? birth : DEAD;
+		}
+	}
+
+	/**
+	 * Moves on by a number of generations, once they have been recorded.
+	 *
+	 * @param generations The number of generations computed.
+	 */
+	void advance(long generations) {
+		generation = (int) Math.min(Integer.MAX_VALUE, generation + generations);
+	}
+
+	/**
+	 * Goes back a number of generations, after the board was restored from
+	 * its history. Ages are clamped to the generations tracked.
+	 *
+	 * @param generations The number of generations gone back.
+	 * @param board       The board, holding the restored generation.
+	 */
+	void rewind(int generations, GLBoard board) {
+		generation = Math.max(0, generation - generations);
+		sync(board);
+	}
+
+	/**
+	 * Brings the births in line with the cells after they were written
+	 * without being recorded cell by cell, as by a bulk edit. Cells found
+	 * alive with no known birth are born in the current generation; cells
+	 * found dead are forgotten. Flips are not counted.
+	 *
+	 * @param board The board.
+	 */
+	void sync(GLBoard board) {
+		long[] words = board.getWords();
+		int rows = board.getRows();
+		for (int r = 0; r < rows; r++) {
+			int offset = board.rowOffset(r);
+			for (int c = 0, i = r * cols; c < cols; c++, i++) {
+				if ((words[offset + (c >>> 6)] & (1L << c)) == 0) {
+					births[i] = DEAD;
+				} else if (births[i] == DEAD || births[i] > generation) {
+					births[i] = generation;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of generations a cell has been alive.
+	 *
+	 * @param row The row of the cell.
+	 * @param col The column of the cell.
+	 * @return 1 for a cell born in the current generation, more for older
+	 *         ones, 0 for a dead cell.
+	 */
+	int getAge(int row, int col) {
+		int birth = births[row * cols + col];
+		return birth == DEAD ? 0 : generation - birth + 1;
+	}
+
+	/**
+	 * Gets the number of times a cell was born or died since tracking started.
+	 *
+	 * @param row The row of the cell.
+	 * @param col The column of the cell.
+	 * @return The number of flips.
+	 */
+	int getActivity(int row, int col) {
+		return flips[row * cols + col];
+	}
+}
@@ -0,0 +1,925 @@
+package gl.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code GLCensus} class counts the objects on a board by kind: blocks,
+ * blinkers, gliders and so on. An object is a group of live cells each at
+ * most {@link #REACH} cells from another, so the phases of oscillators such
+ * as the toad and the beacon, whose cells come apart, stay one object.
+ *
+ * The cells are labelled tile by tile, on the tiles of the {@link GLBoard}:
+ * the runs of live cells of each row are joined with a union-find to the
+ * runs close enough in the rows above. A census relabels only the tiles
+ * whose cells changed since the last one, so a board that has mostly
+ * settled costs little more than comparing its words. The objects lying
+ * inside a tile are named as the tile is labelled and keep their name until
+ * it changes; the pieces close to the edge of a tile are joined across tiles
+ * with a second union-find on every census, then named.
+ *
+ * An object is named by the canonical form of its shape: the least of its
+ * eight rotations and reflections, so every orientation of a shape has the
+ * same form. The forms of the phases of the objects in a catalogue of common
+ * still lifes, oscillators and spaceships of Conway's Life are computed once.
+ * Shapes are cached as they are seen, in the orientation they were seen in,
+ * so a shape seen before is named without computing its form. Objects not in
+ * the catalogue, or wider or taller than {@link #MAX_SHAPE_SIZE} cells, are
+ * counted as {@link #OTHER}.
+ *
+ * Objects across the joined edges of a board are counted as the pieces on
+ * each side.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLCensus {
+	/**
+	 * The name of the objects that are not in the catalogue.
+	 */
+	public static final String OTHER = "other";
+
+	/**
+	 * The largest distance between two cells of an object, along rows or
+	 * columns.
+	 */
+	public static final int REACH = 2;
+
+	/**
+	 * The largest width and height of an object that is named.
+	 */
+	public static final int MAX_SHAPE_SIZE = 64;
+
+	/**
+	 * The number of shapes cached before the cache is emptied.
+	 */
+	private static final int MAX_CACHED_SHAPES = 1 << 16;
+
+	/**
+	 * The objects known by name: the name, the period, then the rows of one
+	 * phase, a live cell as {@code O}.
+	 */
+	private static final String[][] KNOWN_OBJECTS = {
+			{ "block", "1", "OO", "OO" },
+			{ "beehive", "1", ".OO.", "O..O", ".OO." },
+			{ "loaf", "1", ".OO.", "O..O", ".O.O", "..O." },
+			{ "boat", "1", "OO.", "O.O", ".O." },
+			{ "ship", "1", "OO.", "O.O", ".OO" },
+			{ "tub", "1", ".O.", "O.O", ".O." },
+			{ "pond", "1", ".OO.", "O..O", "O..O", ".OO." },
+			{ "long boat", "1", "OO..", "O.O.", ".O.O", "..O." },
+			{ "barge", "1", ".O..", "O.O.", ".O.O", "..O." },
+			{ "mango", "1", ".OO..", "O..O.", ".O..O", "..OO." },
+			{ "eater 1", "1", "OO..", "O.O.", "..O.", "..OO" },
+			{ "snake", "1", "OO.O", "O.OO" },
+			{ "aircraft carrier", "1", "OO..", "O..O", "..OO" },
+			{ "bi-block", "1", "OO.OO", "OO.OO" },
+			{ "blinker", "2", "OOO" },
+			{ "toad", "2", ".OOO", "OOO." },
+			{ "beacon", "2", "OO..", "OO..", "..OO", "..OO" },
+			{ "clock", "2", "..O.", "O.O.", ".O.O", ".O.." },
+			{ "pulsar", "3", "..OOO...OOO..", ".............", "O....O.O....O", "O....O.O....O",
+					"O....O.O....O", "..OOO...OOO..", ".............", "..OOO...OOO..", "O....O.O....O",
+					"O....O.O....O", "O....O.O....O", ".............", "..OOO...OOO.." },
+			{ "glider", "4", ".O.", "..O", "OOO" },
+			{ "lightweight spaceship", "4", ".O..O", "O....", "O...O", "OOOO." },
+			{ "middleweight spaceship", "4", "...O..", ".O...O", "O.....", "O....O", "OOOOO." },
+			{ "heavyweight spaceship", "4", "...OO..", ".O....O", "O......", "O.....O", "OOOOOO." } };
+
+	/**
+	 * The names of the canonical forms of the phases of the known objects.
+	 */
+	private static final Map<Shape, String> CATALOGUE = buildCatalogue();
+
+	/**
+	 * The names of the shapes seen, in the orientation they were seen in.
+	 */
+	private final Map<Shape, String> shapes = new HashMap<>();
+
+	/**
+	 * The shape looked up in {@link #shapes}, reused.
+	 */
+	private final Shape probe = new Shape(new long[MAX_SHAPE_SIZE]);
+
+	/**
+	 * The board the tiles were labelled from.
+	 */
+	private GLBoard board;
+
+	/**
+	 * The modification count of the board when it was last counted.
+	 */
+	private long modCount;
+
+	/**
+	 * The labels of the tiles, row of tiles after row of tiles.
+	 */
+	private Tile[] tiles;
+
+	/**
+	 * The number of rows of tiles.
+	 */
+	private int tileRows;
+
+	/**
+	 * The number of columns of tiles.
+	 */
+	private int tileCols;
+
+	/**
+	 * The number of tiles relabelled by the last census.
+	 */
+	private int relabelled;
+
+	/**
+	 * The counts of the last census.
+	 */
+	private Map<String, Integer> counts = Collections.emptyMap();
+
+	/**
+	 * The number of objects found by the last census.
+	 */
+	private int objectCount;
+
+	/**
+	 * The first pieces joined across tiles: the first piece of each tile, the
+	 * parent of each piece in the union-find, and the runs close to the edges
+	 * of the tiles row after row of the board.
+	 */
+	private int[] pieceBase = new int[0], pieceParent = new int[0], edgeRowFirst = new int[0];
+
+	/**
+	 * The runs close to the edges of the tiles: their first and last columns
+	 * on the board and their piece.
+	 */
+	private int[] edgeStart = new int[0], edgeEnd = new int[0], edgePiece = new int[0];
+
+	/**
+	 * The object of each piece root, and the bounds and cells of the objects.
+	 */
+	private int[] pieceObject = new int[0], objectTop = new int[0], objectBottom = new int[0],
+			objectLeft = new int[0], objectRight = new int[0], objectFirstRow = new int[0];
+
+	/**
+	 * The rows of the shapes of the objects, one after the other.
+	 */
+	private long[] objectRows = new long[0];
+
+	/**
+	 * The rows of the shape of an object inside a tile, reused.
+	 */
+	private final long[] shapeBuffer = new long[GLBoard.TILE_ROWS];
+
+
+	/**
+	 * Counts the objects on a board by kind. Only the tiles that changed since
+	 * the last census of the same board are labelled again.
+	 *
+	 * @param board The board.
+	 * @return The number of objects of each kind, most frequent first.
+	 */
+	public Map<String, Integer> count(GLBoard board) {
+		if (board == this.board && board.getModCount() == modCount) {
+			return counts;
+		}
+		if (board != this.board || tileRows != board.getTileRows() || tileCols != board.getTileCols()) {
+			this.board = board;
+			tileRows = board.getTileRows();
+			tileCols = board.getTileCols();
+			tiles = new Tile[tileRows * tileCols];
+		}
+		modCount = board.getModCount();
+
+		relabelled = 0;
+		long[] words = board.getWords();
+		int rows = board.getRows();
+		long lastWordMask = board.getLastWordMask();
+		for (int tr = 0; tr < tileRows; tr++) {
+			int rowFrom = tr * GLBoard.TILE_ROWS;
+			int height = Math.min(GLBoard.TILE_ROWS, rows - rowFrom);
+			for (int tc = 0; tc < tileCols; tc++) {
+				int t = tr * tileCols + tc;
+				long mask = tc == tileCols - 1 ? lastWordMask : -1L;
+				if (tiles[t] == null) {
+					tiles[t] = new Tile();
+				}
+				if (tiles[t].load(words, board.rowOffset(rowFrom) + tc, board.getStride(), height, mask)) {
+					tiles[t].label(this);
+					relabelled++;
+				}
+			}
+		}
+
+		Map<String, Integer> found = new HashMap<>();
+		objectCount = 0;
+		for (Tile tile : tiles) {
+			for (int c = 0; c < tile.compCount; c++) {
+				if (tile.compName[c] != null) {
+					found.merge(tile.compName[c], 1, Integer::sum);
+					objectCount++;
+				}
+			}
+		}
+		countAcrossTiles(found);
+
+		List<Map.Entry<String, Integer>> entries = new ArrayList<>(found.entrySet());
+		entries.sort((a, b) -> a.getValue().equals(b.getValue()) ? a.getKey().compareTo(b.getKey())
+				: b.getValue() - a.getValue());
+		Map<String, Integer> sorted = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : entries) {
+			sorted.put(entry.getKey(), entry.getValue());
+		}
+		counts = Collections.unmodifiableMap(sorted);
+		return counts;
+	}
+
+	/**
+	 * Gets the number of objects found by the last census.
+	 *
+	 * @return The number of objects.
+	 */
+	public int getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * Gets the number of tiles the last census labelled again, because their
+	 * cells changed.
+	 *
+	 * @return The number of tiles relabelled.
+	 */
+	public int getRelabelledTiles() {
+		return relabelled;
+	}
+
+	/**
+	 * Joins the pieces of objects close to the edges of the tiles into
+	 * objects, and counts them.
+	 *
+	 * @param found The counts, by name, to add to.
+	 */
+	private void countAcrossTiles(Map<String, Integer> found) {
+		// Number the pieces of all the tiles, and gather the runs close to the
+		// edges row after row of the board, in column order
+		int pieces = 0;
+		int edges = 0;
+		pieceBase = ensure(pieceBase, tiles.length);
+		for (int t = 0; t < tiles.length; t++) {
+			pieceBase[t] = pieces;
+			pieces += tiles[t].pieceCount;
+			edges += tiles[t].edgeCount;
+		}
+		if (pieces == 0) {
+			return;
+		}
+		int rows = board.getRows();
+		pieceParent = ensure(pieceParent, pieces);
+		for (int i = 0; i < pieces; i++) {
+			pieceParent[i] = i;
+		}
+		edgeRowFirst = ensure(edgeRowFirst, rows + 1);
+		edgeStart = ensure(edgeStart, edges);
+		edgeEnd = ensure(edgeEnd, edges);
+		edgePiece = ensure(edgePiece, edges);
+		int e = 0;
+		for (int r = 0; r < rows; r++) {
+			edgeRowFirst[r] = e;
+			int tr = r / GLBoard.TILE_ROWS;
+			int row = r - tr * GLBoard.TILE_ROWS;
+			for (int tc = 0; tc < tileCols; tc++) {
+				int t = tr * tileCols + tc;
+				Tile tile = tiles[t];
+				for (int i = tile.rowFirst[row], end = tile.rowFirst[row + 1]; i < end; i++) {
+					if (tile.isEdgeRun(i)) {
+						edgeStart[e] = (tc << 6) + tile.runStart[i];
+						edgeEnd[e] = (tc << 6) + tile.runEnd[i];
+						edgePiece[e] = pieceBase[t] + tile.compPiece[tile.runComp[i]];
+						e++;
+					}
+				}
+			}
+		}
+		edgeRowFirst[rows] = e;
+
+		// Join the runs close enough, in the same row and the two rows below
+		for (int r = 0; r < rows; r++) {
+			for (int i = edgeRowFirst[r] + 1; i < edgeRowFirst[r + 1]; i++) {
+				if (edgeStart[i] - edgeEnd[i - 1] <= REACH) {
+					union(pieceParent, edgePiece[i - 1], edgePiece[i]);
+				}
+			}
+			for (int d = 1; d <= REACH && r + d < rows; d++) {
+				int j = edgeRowFirst[r + d];
+				int jEnd = edgeRowFirst[r + d + 1];
+				for (int i = edgeRowFirst[r]; i < edgeRowFirst[r + 1]; i++) {
+					while (j < jEnd && edgeEnd[j] < edgeStart[i] - REACH) {
+						j++;
+					}
+					for (int k = j; k < jEnd && edgeStart[k] <= edgeEnd[i] + REACH; k++) {
+						union(pieceParent, edgePiece[i], edgePiece[k]);
+					}
+				}
+			}
+		}
+
+		// Number the objects and find their bounds
+		pieceObject = ensure(pieceObject, pieces);
+		Arrays.fill(pieceObject, 0, pieces, -1);
+		int objects = 0;
+		for (int p = 0; p < pieces; p++) {
+			int root = find(pieceParent, p);
+			if (pieceObject[root] < 0) {
+				pieceObject[root] = objects++;
+			}
+		}
+		objectTop = ensure(objectTop, objects);
+		objectBottom = ensure(objectBottom, objects);
+		objectLeft = ensure(objectLeft, objects);
+		objectRight = ensure(objectRight, objects);
+		Arrays.fill(objectTop, 0, objects, Integer.MAX_VALUE);
+		Arrays.fill(objectLeft, 0, objects, Integer.MAX_VALUE);
+		Arrays.fill(objectBottom, 0, objects, -1);
+		Arrays.fill(objectRight, 0, objects, -1);
+		for (int t = 0; t < tiles.length; t++) {
+			Tile tile = tiles[t];
+			int top = (t / tileCols) * GLBoard.TILE_ROWS;
+			int left = (t % tileCols) << 6;
+			for (int c = 0; c < tile.compCount; c++) {
+				if (tile.compPiece[c] >= 0) {
+					int o = pieceObject[find(pieceParent, pieceBase[t] + tile.compPiece[c])];
+					objectTop[o] = Math.min(objectTop[o], top + tile.compTop[c]);
+					objectBottom[o] = Math.max(objectBottom[o], top + tile.compBottom[c]);
+					objectLeft[o] = Math.min(objectLeft[o], left + tile.compLeft[c]);
+					objectRight[o] = Math.max(objectRight[o], left + tile.compRight[c]);
+				}
+			}
+		}
+
+		// Draw the objects small enough to be named
+		objectFirstRow = ensure(objectFirstRow, objects + 1);
+		int shapeRows = 0;
+		for (int o = 0; o < objects; o++) {
+			objectFirstRow[o] = shapeRows;
+			if (isNamed(o)) {
+				shapeRows += objectBottom[o] - objectTop[o] + 1;
+			}
+		}
+		objectFirstRow[objects] = shapeRows;
+		objectRows = ensureLong(objectRows, shapeRows);
+		Arrays.fill(objectRows, 0, shapeRows, 0L);
+		for (int t = 0; t < tiles.length; t++) {
+			Tile tile = tiles[t];
+			if (tile.pieceCount == 0) {
+				continue;
+			}
+			int top = (t / tileCols) * GLBoard.TILE_ROWS;
+			int left = (t % tileCols) << 6;
+			for (int i = 0; i < tile.runCount; i++) {
+				int piece = tile.compPiece[tile.runComp[i]];
+				if (piece < 0) {
+					continue;
+				}
+				int o = pieceObject[find(pieceParent, pieceBase[t] + piece)];
+				if (isNamed(o)) {
+					int length = tile.runEnd[i] - tile.runStart[i] + 1;
+					int shift = left + tile.runStart[i] - objectLeft[o];
+					objectRows[objectFirstRow[o] + top + tile.runRow[i] - objectTop[o]] |= (-1L >>> (64 - length)) << shift;
+				}
+			}
+		}
+
+		for (int o = 0; o < objects; o++) {
+			String name = isNamed(o)
+					? name(objectRows, objectFirstRow[o], objectBottom[o] - objectTop[o] + 1,
+							objectRight[o] - objectLeft[o] + 1)
+					: OTHER;
+			found.merge(name, 1, Integer::sum);
+		}
+		objectCount += objects;
+	}
+
+	/**
+	 * Checks whether an object joined across tiles is small enough to be
+	 * named.
+	 *
+	 * @param o The object.
+	 * @return true if its shape fits in {@link #MAX_SHAPE_SIZE} cells.
+	 */
+	private boolean isNamed(int o) {
+		return objectBottom[o] - objectTop[o] < MAX_SHAPE_SIZE && objectRight[o] - objectLeft[o] < MAX_SHAPE_SIZE;
+	}
+
+	/**
+	 * Names the shape of an object, from the cache, or from the catalogue by
+	 * its canonical form when it was not seen before.
+	 *
+	 * @param rows   The rows of the shape, bit {@code c} of a row holding
+	 *               column {@code c}.
+	 * @param first  The index of the first row.
+	 * @param height The number of rows.
+	 * @param width  The number of columns.
+	 * @return The name of the object, or {@link #OTHER}.
+	 */
+	String name(long[] rows, int first, int height, int width) {
+		probe.set(rows, first, height, width);
+		String name = shapes.get(probe);
+		if (name == null) {
+			Shape shape = probe.copy();
+			name = CATALOGUE.getOrDefault(shape.canonical(), OTHER);
+			if (shapes.size() >= MAX_CACHED_SHAPES) {
+				shapes.clear();
+			}
+			shapes.put(shape, name);
+		}
+		return name;
+	}
+
+	/**
+	 * Computes the canonical forms of every phase of the known objects, by
+	 * running each for its period.
+	 *
+	 * @return The names of the canonical forms.
+	 */
+	private static Map<Shape, String> buildCatalogue() {
+		Map<Shape, String> catalogue = new HashMap<>();
+		GLRules rules = new GLRules(GLSimulation.CONWAY_RULE);
+		GLEngine engine = new GLBitSlicedEngine();
+		for (String[] object : KNOWN_OBJECTS) {
+			int period = Integer.parseInt(object[1]);
+			int height = object.length - 2;
+			int width = object[2].length();
+			// Leave room for the spaceships to move and the phases to grow
+			int margin = period + 4;
+			GLBoard board = new GLBoard(height + 2 * margin, width + 2 * margin, 0);
+			for (int r = 0; r < height; r++) {
+				for (int c = 0; c < width; c++) {
+					if (object[r + 2].charAt(c) == 'O') {
+						board.setAlive(margin + r, margin + c, true);
+					}
+				}
+			}
+			for (int phase = 0; phase < period; phase++) {
+				catalogue.put(Shape.of(board).canonical(), object[0]);
+				engine.step(board, rules);
+			}
+		}
+		return catalogue;
+	}
+
+	/**
+	 * Joins two sets of a union-find.
+	 *
+	 * @param parent The parents of the elements.
+	 * @param a      An element of the first set.
+	 * @param b      An element of the second set.
+	 */
+	static void union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+		if (a != b) {
+			// The smaller root is kept, so roots come first in scan order
+			if (a < b) {
+				parent[b] = a;
+			} else {
+				parent[a] = b;
+			}
+		}
+	}
+
+	/**
+	 * Finds the root of the set of an element of a union-find, halving the
+	 * path to it.
+	 *
+	 * @param parent The parents of the elements.
+	 * @param a      The element.
+	 * @return The root of its set.
+	 */
+	static int find(int[] parent, int a) {
+		while (parent[a] != a) {
+			parent[a] = parent[parent[a]];
+			a = parent[a];
+		}
+		return a;
+	}
+
+	/**
+	 * Makes sure an array holds a number of elements, growing it if needed.
+	 *
+	 * @param array  The array.
+	 * @param length The number of elements needed.
+	 * @return The array, or a larger one.
+	 */
+	static int[] ensure(int[] array, int length) {
+		return array.length >= length ? array : new int[Math.max(length, array.length * 2)];
+	}
+
+	/**
+	 * Makes sure an array holds a number of elements, growing it if needed.
+	 *
+	 * @param array  The array.
+	 * @param length The number of elements needed.
+	 * @return The array, or a larger one.
+	 */
+	private static long[] ensureLong(long[] array, int length) {
+		return array.length >= length ? array : new long[Math.max(length, array.length * 2)];
+	}
+
+	/**
+	 * The labels of the cells of one tile: the runs of live cells of each
+	 * row, joined into components. A component lying inside the tile is a
+	 * whole object, named as it is labelled; one close to an edge of the tile
+	 * is a piece, joined with the pieces of the tiles around it on every
+	 * census.
+	 */
+	private static final class Tile {
+		/** The cells labelled, one word per row. */
+		final long[] words = new long[GLBoard.TILE_ROWS];
+		/** The number of rows of the tile. */
+		int height = -1;
+		/** The first run of each row, and the end of the runs after the last. */
+		final int[] rowFirst = new int[GLBoard.TILE_ROWS + 1];
+		/** The number of runs. */
+		int runCount;
+		/** The row, first and last column and component of each run. */
+		int[] runRow = new int[16], runStart = new int[16], runEnd = new int[16], runComp = new int[16];
+		/** The parent of each run in the union-find joining them. */
+		int[] runParent = new int[16];
+		/** The number of components. */
+		int compCount;
+		/** The name of each component lying inside the tile, or null for a piece. */
+		String[] compName = new String[16];
+		/** The number of each piece among the pieces of the tile, or -1. */
+		int[] compPiece = new int[16];
+		/** The bounds of each component in the tile. */
+		int[] compTop = new int[16], compBottom = new int[16], compLeft = new int[16], compRight = new int[16];
+		/** The number of pieces. */
+		int pieceCount;
+		/** The number of runs close to the edges of the tile. */
+		int edgeCount;
+
+		/**
+		 * Copies the cells of the tile from the board, if they changed.
+		 *
+		 * @param words  The cell words of the board.
+		 * @param first  The index of the word of the first row of the tile.
+		 * @param stride The row stride of the board.
+		 * @param height The number of rows of the tile.
+		 * @param mask   The mask of the columns of the board in the word.
+		 * @return true if the cells changed and have to be labelled again.
+		 */
+		boolean load(long[] words, int first, int stride, int height, long mask) {
+			boolean changed = height != this.height;
+			this.height = height;
+			for (int r = 0, i = first; r < height; r++, i += stride) {
+				long word = words[i] & mask;
+				if (word != this.words[r]) {
+					this.words[r] = word;
+					changed = true;
+				}
+			}
+			return changed;
+		}
+
+		/**
+		 * Checks whether a run is close enough to an edge of the tile to be
+		 * joined with cells of another tile.
+		 *
+		 * @param i The run.
+		 * @return true if the run is within {@link GLCensus#REACH} of an edge.
+		 */
+		boolean isEdgeRun(int i) {
+			return runRow[i] < REACH || runRow[i] >= height - REACH || runStart[i] < REACH
+					|| runEnd[i] >= 64 - REACH;
+		}
+
+		/**
+		 * Labels the cells of the tile into components, and names the ones
+		 * lying inside it.
+		 *
+		 * @param census The census naming the components.
+		 */
+		void label(GLCensus census) {
+			// Find the runs of live cells of each row
+			runCount = 0;
+			for (int r = 0; r < height; r++) {
+				rowFirst[r] = runCount;
+				long word = words[r];
+				while (word != 0) {
+					int start = Long.numberOfTrailingZeros(word);
+					long rest = ~word & (-1L << start);
+					int end = rest == 0 ? 63 : Long.numberOfTrailingZeros(rest) - 1;
+					addRun(r, start, end);
+					word = end == 63 ? 0 : word & (-1L << (end + 1));
+				}
+			}
+			rowFirst[height] = runCount;
+
+			// Join the runs close enough, in the same row and the two rows above
+			int[] parent = runParent;
+			for (int i = 0; i < runCount; i++) {
+				parent[i] = i;
+			}
+			for (int r = 0; r < height; r++) {
+				for (int i = rowFirst[r] + 1; i < rowFirst[r + 1]; i++) {
+					if (runStart[i] - runEnd[i - 1] <= REACH) {
+						union(parent, i - 1, i);
+					}
+				}
+				for (int d = 1; d <= REACH && r - d >= 0; d++) {
+					int j = rowFirst[r - d];
+					int jEnd = rowFirst[r - d + 1];
+					for (int i = rowFirst[r]; i < rowFirst[r + 1]; i++) {
+						while (j < jEnd && runEnd[j] < runStart[i] - REACH) {
+							j++;
+						}
+						for (int k = j; k < jEnd && runStart[k] <= runEnd[i] + REACH; k++) {
+							union(parent, k, i);
+						}
+					}
+				}
+			}
+
+			// Number the components and find their bounds; the root of a set is
+			// its first run, so it is numbered before the others
+			compCount = 0;
+			edgeCount = 0;
+			for (int i = 0; i < runCount; i++) {
+				int root = find(parent, i);
+				int c;
+				if (root == i) {
+					c = compCount++;
+					growComponents(compCount);
+					compTop[c] = runRow[i];
+					compLeft[c] = runStart[i];
+					compRight[c] = runEnd[i];
+					compPiece[c] = -1;
+				} else {
+					c = runComp[root];
+					compLeft[c] = Math.min(compLeft[c], runStart[i]);
+					compRight[c] = Math.max(compRight[c], runEnd[i]);
+				}
+				compBottom[c] = runRow[i];
+				runComp[i] = c;
+				if (isEdgeRun(i)) {
+					// Marked as a piece, numbered below
+					compPiece[c] = 0;
+					edgeCount++;
+				}
+			}
+
+			// Number the pieces, and name the whole objects
+			pieceCount = 0;
+			for (int c = 0; c < compCount; c++) {
+				if (compPiece[c] == 0) {
+					compPiece[c] = pieceCount++;
+					compName[c] = null;
+				} else {
+					compName[c] = nameInside(census, c, census.shapeBuffer);
+				}
+			}
+		}
+
+		/**
+		 * Names a component lying inside the tile.
+		 *
+		 * @param census The census naming the component.
+		 * @param c      The component.
+		 * @param shape  A buffer for the rows of its shape.
+		 * @return The name of the component.
+		 */
+		private String nameInside(GLCensus census, int c, long[] shape) {
+			int top = compTop[c];
+			int rows = compBottom[c] - top + 1;
+			Arrays.fill(shape, 0, rows, 0L);
+			for (int r = top; r <= compBottom[c]; r++) {
+				for (int i = rowFirst[r]; i < rowFirst[r + 1]; i++) {
+					if (runComp[i] == c) {
+						shape[r - top] |= bits(runStart[i], runEnd[i]) >>> compLeft[c];
+					}
+				}
+			}
+			return census.name(shape, 0, rows, compRight[c] - compLeft[c] + 1);
+		}
+
+		/**
+		 * Adds a run to the tile.
+		 *
+		 * @param row   The row of the run.
+		 * @param start The first column of the run.
+		 * @param end   The last column of the run.
+		 */
+		private void addRun(int row, int start, int end) {
+			if (runCount == runRow.length) {
+				int length = runCount * 2;
+				runRow = Arrays.copyOf(runRow, length);
+				runStart = Arrays.copyOf(runStart, length);
+				runEnd = Arrays.copyOf(runEnd, length);
+				runComp = Arrays.copyOf(runComp, length);
+				runParent = Arrays.copyOf(runParent, length);
+			}
+			runRow[runCount] = row;
+			runStart[runCount] = start;
+			runEnd[runCount] = end;
+			runCount++;
+		}
+
+		/**
+		 * Makes room for a number of components.
+		 *
+		 * @param count The number of components.
+		 */
+		private void growComponents(int count) {
+			if (count > compName.length) {
+				int length = compName.length * 2;
+				compName = Arrays.copyOf(compName, length);
+				compPiece = Arrays.copyOf(compPiece, length);
+				compTop = Arrays.copyOf(compTop, length);
+				compBottom = Arrays.copyOf(compBottom, length);
+				compLeft = Arrays.copyOf(compLeft, length);
+				compRight = Arrays.copyOf(compRight, length);
+			}
+		}
+
+		/**
+		 * Computes the mask of a run of columns.
+		 *
+		 * @param start The first column.
+		 * @param end   The last column.
+		 * @return The mask with the bits of the columns set.
+		 */
+		private static long bits(int start, int end) {
+			return (-1L >>> (63 - end + start)) << start;
+		}
+	}
+
+	/**
+	 * The shape of an object: its rows, bit {@code c} of a row holding column
+	 * {@code c}, with the object touching the first row and column.
+	 */
+	private static final class Shape {
+		/** The rows of the shape; only the first {@link #height} are used. */
+		final long[] rows;
+		/** The number of rows. */
+		int height;
+		/** The number of columns. */
+		int width;
+		/** The hash code of the shape. */
+		int hash;
+
+		/**
+		 * Constructs a shape over a buffer of rows.
+		 *
+		 * @param rows The rows.
+		 */
+		Shape(long[] rows) {
+			this.rows = rows;
+		}
+
+		/**
+		 * Takes the shape of the live cells of a board.
+		 *
+		 * @param board The board.
+		 * @return The shape of its cells.
+		 */
+		static Shape of(GLBoard board) {
+			int top = Integer.MAX_VALUE, bottom = -1, left = Integer.MAX_VALUE, right = -1;
+			for (int r = 0; r < board.getRows(); r++) {
+				for (int c = 0; c < board.getCols(); c++) {
+					if (board.isAlive(r, c)) {
+						top = Math.min(top, r);
+						bottom = r;
+						left = Math.min(left, c);
+						right = Math.max(right, c);
+					}
+				}
+			}
+			Shape shape = new Shape(new long[bottom - top + 1]);
+			for (int r = top; r <= bottom; r++) {
+				for (int c = left; c <= right; c++) {
+					if (board.isAlive(r, c)) {
+						shape.rows[r - top] |= 1L << (c - left);
+					}
+				}
+			}
+			shape.height = bottom - top + 1;
+			shape.width = right - left + 1;
+			shape.rehash();
+			return shape;
+		}
+
+		/**
+		 * Sets the shape to rows of another buffer.
+		 *
+		 * @param from   The buffer.
+		 * @param first  The index of the first row.
+		 * @param height The number of rows.
+		 * @param width  The number of columns.
+		 */
+		void set(long[] from, int first, int height, int width) {
+			System.arraycopy(from, first, rows, 0, height);
+			this.height = height;
+			this.width = width;
+			rehash();
+		}
+
+		/**
+		 * Copies the shape into a buffer of its own.
+		 *
+		 * @return The copy.
+		 */
+		Shape copy() {
+			Shape copy = new Shape(Arrays.copyOf(rows, height));
+			copy.height = height;
+			copy.width = width;
+			copy.hash = hash;
+			return copy;
+		}
+
+		/**
+		 * Computes the canonical form of the shape: the least of its eight
+		 * rotations and reflections, comparing heights, widths, then rows.
+		 *
+		 * @return The canonical form.
+		 */
+		Shape canonical() {
+			Shape best = null;
+			for (int transform = 0; transform < 8; transform++) {
+				boolean transpose = (transform & 4) != 0;
+				boolean mirror = (transform & 1) != 0;
+				boolean flip = (transform & 2) != 0;
+				int h = transpose ? width : height;
+				int w = transpose ? height : width;
+				Shape shape = new Shape(new long[h]);
+				shape.height = h;
+				shape.width = w;
+				for (int r = 0; r < height; r++) {
+					for (long row = rows[r]; row != 0; row &= row - 1) {
+						int c = Long.numberOfTrailingZeros(row);
+						int y = transpose ? c : r;
+						int x = transpose ? r : c;
+						if (mirror) {
+							x = w - 1 - x;
+						}
+						if (flip) {
+							y = h - 1 - y;
+						}
+						shape.rows[y] |= 1L << x;
+					}
+				}
+				if (best == null || shape.compareTo(best) < 0) {
+					best = shape;
+				}
+			}
+			best.rehash();
+			return best;
+		}
+
+		/**
+		 * Compares two shapes by height, width, then rows.
+		 *
+		 * @param other The other shape.
+		 * @return A negative number, zero or a positive number as this shape
+		 *         comes before, with or after the other.
+		 */
+		int compareTo(Shape other) {
+			if (height != other.height) {
+				return height - other.height;
+			}
+			if (width != other.width) {
+				return width - other.width;
+			}
+			for (int r = 0; r < height; r++) {
+				if (rows[r] != other.rows[r]) {
+					return Long.compareUnsigned(rows[r], other.rows[r]);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Computes the hash code of the shape.
+		 */
+		private void rehash() {
+			long h = height * 31L + width;
+			for (int r = 0; r < height; r++) {
+				h = h * 0x9E3779B97F4A7C15L + rows[r];
+			}
+			hash = (int) (h ^ (h >>> 32));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Shape && ((Shape) o).hash == hash && compareTo((Shape) o) == 0;
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package gl.model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code GLCycleDetector} class tells when a game has settled: when the
+ * board comes back to a state it was in a few generations before, every
+ * generation after it repeats, since the rules are deterministic. Still lifes
+ * settle with a period of 1, blinkers with a period of 2, and so on.
+ *
+ * Each generation observed is looked up by the hash of its board,
+ * {@link GLBoard#getHash()}, which the kernel keeps up to date, in a table
+ * from hash to generation holding the last {@link #getWindow()} generations.
+ * A generation is observed in constant time and memory, and periods up to
+ * the window are found the first time the board repeats: the period is the
+ * distance to the generation it repeats, which is the first generation of
+ * the cycle. Boards are told apart by their hashes only, so two different
+ * boards are taken for the same with a chance of about one in 2<sup>64</sup>.
+ *
+ * Edits to the board, changes of the rules or of the edges, and generations
+ * skipped or gone back to break the sequence of generations, which then
+ * starts again from the board as it is.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLCycleDetector {
+	/**
+	 * The default number of generations remembered, the longest period found.
+	 */
+	public static final int DEFAULT_WINDOW = 4096;
+
+	/**
+	 * The number of generations remembered.
+	 */
+	private final int window;
+
+	/**
+	 * The hashes of the generations remembered, by generation modulo the
+	 * window, to forget them in turn.
+	 */
+	private final long[] recent;
+
+	/**
+	 * The hashes in the table, open addressed with linear probing.
+	 */
+	private final long[] keys;
+
+	/**
+	 * The generation of each hash in the table plus one, or 0 for a free slot.
+	 */
+	private final long[] generations;
+
+	/**
+	 * The mask of an index into the table.
+	 */
+	private final int mask;
+
+	/**
+	 * The number of generations observed since the sequence last started.
+	 */
+	private long observed;
+
+	/**
+	 * The board last observed.
+	 */
+	private GLBoard board;
+
+	/**
+	 * The generation last observed, or -1.
+	 */
+	private long lastGeneration = -1;
+
+	/**
+	 * The modification count of the board when it was last observed.
+	 */
+	private long modCount;
+
+	/**
+	 * The rule the generations observed were computed with.
+	 */
+	private String rule;
+
+	/**
+	 * How the edges of the board met in the generations observed.
+	 */
+	private GLTopology topology;
+
+	/**
+	 * The period of the cycle found, or 0.
+	 */
+	private long period;
+
+	/**
+	 * The first generation of the cycle found, or -1.
+	 */
+	private long cycleStart = -1;
+
+
+	/**
+	 * Constructs a detector finding periods up to {@link #DEFAULT_WINDOW}.
+	 */
+	public GLCycleDetector() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Constructs a detector finding periods up to a number of generations.
+	 *
+	 * @param window The number of generations remembered, the longest period
+	 *               found.
+	 * @throws IllegalArgumentException If the window is not positive.
+	 */
+	public GLCycleDetector(int window) {
+		if (window <= 0 || window > 1 << 24) {
+			throw new IllegalArgumentException("Invalid window: " + window);
+		}
+		this.window = window;
+		this.recent = new long[window];
+		// At most a quarter full, so probes stay short
+		int capacity = Integer.highestOneBit(window - 1 | 1) << 3;
+		this.keys = new long[capacity];
+		this.generations = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Gets the number of generations remembered.
+	 *
+	 * @return The longest period found.
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Forgets the generations observed and the cycle found.
+	 */
+	public void reset() {
+		if (observed > 0) {
+			Arrays.fill(generations, 0L);
+		}
+		observed = 0;
+		board = null;
+		lastGeneration = -1;
+		period = 0;
+		cycleStart = -1;
+	}
+
+	/**
+	 * Starts the sequence again if the board was edited, or the rules or the
+	 * edges changed, since the last generation observed. Called before
+	 * stepping.
+	 *
+	 * @param generation The current generation.
+	 * @param board      The board.
+	 * @param rules      The rules the next generation is computed with.
+	 */
+	public void sync(long generation, GLBoard board, GLRules rules) {
+		if (!isCurrent(generation, board) || board.getTopology() != topology
+				|| !rules.getCurrentRule().equals(rule)) {
+			reset();
+		}
+	}
+
+	/**
+	 * Takes note of a generation reached by stepping forward. The sequence
+	 * starts again from it unless it follows the one last observed.
+	 *
+	 * @param generation The generation reached.
+	 * @param board      The board.
+	 * @param rules      The rules the generation was computed with.
+	 * @return true if the game is in a cycle.
+	 */
+	public boolean observe(long generation, GLBoard board, GLRules rules) {
+		if (generation != lastGeneration + 1 || board != this.board) {
+			reset();
+			this.board = board;
+			this.rule = rules.getCurrentRule();
+			this.topology = board.getTopology();
+		}
+		lastGeneration = generation;
+		modCount = board.getModCount();
+		if (period > 0) {
+			// Every generation after the start of a cycle is in it
+			return true;
+		}
+
+		long hash = board.getHash();
+		int slot = find(hash);
+		if (generations[slot] != 0) {
+			cycleStart = generations[slot] - 1;
+			period = generation - cycleStart;
+			return true;
+		}
+		if (observed >= window) {
+			// Forget the generation falling out of the window
+			remove(find(recent[(int) (observed % window)]));
+		}
+		recent[(int) (observed % window)] = hash;
+		observed++;
+		slot = find(hash);
+		keys[slot] = hash;
+		generations[slot] = generation + 1;
+		return false;
+	}
+
+	/**
+	 * Checks whether the generation and the board are still the ones last
+	 * observed, unedited.
+	 *
+	 * @param generation The current generation.
+	 * @param board      The board.
+	 * @return true if nothing happened since the last generation observed.
+	 */
+	public boolean isCurrent(long generation, GLBoard board) {
+		return board == this.board && generation == lastGeneration && board.getModCount() == modCount;
+	}
+
+	/**
+	 * Gets the period of the cycle the game is in.
+	 *
+	 * @return The number of generations after which the board repeats, or 0
+	 *         if no cycle was found.
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Gets the first generation of the cycle the game is in, the one the
+	 * board first repeats.
+	 *
+	 * @return The first generation of the cycle, or -1 if no cycle was found.
+	 */
+	public long getCycleStart() {
+		return cycleStart;
+	}
+
+	/**
+	 * Finds the slot of a hash in the table, or the free slot it would take.
+	 *
+	 * @param hash The hash.
+	 * @return The index of the slot.
+	 */
+	private int find(long hash) {
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (generations[slot] != 0 && keys[slot] != hash) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Frees a slot of the table, moving back the entries after it that
+	 * probed past it, so every hash stays reachable from its home slot.
+	 *
+	 * @param slot The slot to free.
+	 */
+	private void remove(int slot) {
+		if (generations[slot] == 0) {
+			return;
+		}
+		int free = slot;
+		for (int next = (free + 1) & mask; generations[next] != 0; next = (next + 1) & mask) {
+			int home = (int) (keys[next] ^ (keys[next] >>> 32)) & mask;
+			// Move the entry unless its home lies after the free slot, up to it
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				generations[free] = generations[next];
+				free = next;
+			}
+		}
+		generations[free] = 0;
+	}
+}
@@ -0,0 +1,62 @@
+package gl.model;
+
+/**
+ * The {@code GLEngine} interface is implemented by the algorithms that compute
+ * Game of Life generations. The {@link GLModel} delegates every step to its
+ * selected engine, so engines can be swapped while a game is loaded.
+ *
+ * An engine writes the next generation into the board's back buffer and swaps
+ * it in, which keeps the generations it replaces available for undo.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public interface GLEngine {
+	/**
+	 * Gets a short name for the engine, used in menus and logs.
+	 *
+	 * @return The engine name.
+	 */
+	String getName();
+
+	/**
+	 * Advances the board by one generation.
+	 *
+	 * @param board The board to evolve.
+	 * @param rules The rules of the game.
+	 */
+	void step(GLBoard board, GLRules rules);
+
+	/**
+	 * Advances the board by the given number of generations. Engines that can
+	 * skip ahead override this; by default the board is stepped one generation
+	 * at a time.
+	 *
+	 * @param board       The board to evolve.
+	 * @param rules       The rules of the game.
+	 * @param generations The number of generations to advance.
+	 */
+	default void advance(GLBoard board, GLRules rules, long generations) {
+		for (long i = 0; i < generations; i++) {
+			step(board, rules);
+		}
+	}
+
+	/**
+	 * Gets the number of live cells in the game, which for engines that keep
+	 * cells beyond the board may be more than the board holds.
+	 *
+	 * @param board The board being evolved.
+	 * @return The number of live cells.
+	 */
+	default long getPopulation(GLBoard board) {
+		return board.getPopulation();
+	}
+
+	/**
+	 * Forgets any cells the engine keeps beside the board, when a new game
+	 * starts.
+	 */
+	default void reset() {
+	}
+}
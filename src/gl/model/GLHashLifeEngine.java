@@ -0,0 +1,753 @@
+package gl.model;
+
+/**
+ * The {@code GLHashLifeEngine} class advances the Game of Life with Gosper's
+ * HashLife algorithm. The board is stored as a quadtree whose nodes are
+ * hash-consed: identical squares anywhere on the board, and in any generation,
+ * are the same node. Each node memoizes the centre of its square advanced in
+ * time, so repeated and periodic structures are only ever computed once and a
+ * node of level {@code k} can jump {@code 2^(k-2)} generations in one call.
+ *
+ * A jump of {@code n} generations is split into one jump per set bit of
+ * {@code n}. Before each, the tree is padded with empty space until the
+ * pattern sits in the middle of the root, so nothing can reach the edge of the
+ * tree during the jump.
+ *
+ * The tree is unbounded, while the cells beyond the edges of the board are
+ * dead, as with every other engine. The two agree for as many generations as
+ * the live cells are away from the edges, since nothing can be born beyond
+ * them sooner. A jump is therefore split into HashLife jumps no longer than
+ * the distance from the live cells to the nearest edge, measured before each,
+ * and the generations computed while that distance is under
+ * {@link #MIN_JUMP} are computed by the bit-sliced engine. Once the board
+ * repeats itself there, as patterns that end against an edge soon do, the
+ * whole periods left are skipped. The result does not depend on how the
+ * generations are split into calls. Single steps are
+ * computed by the bit-sliced engine too, as are rules where dead cells with
+ * no neighbours are born, since those would fill the unbounded tree, and
+ * boards whose edges are joined.
+ *
+ * The node cache is bounded. When it grows past {@link #getMaxNodes()} nodes,
+ * everything except the current tree is evicted and the memoized results are
+ * dropped.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLHashLifeEngine implements GLEngine {
+	/**
+	 * The default number of nodes kept in the cache before eviction.
+	 */
+	public static final int DEFAULT_MAX_NODES = 1 << 21;
+
+	/**
+	 * The level of the largest tree the engine builds, limited so that
+	 * coordinates fit in a {@code long}.
+	 */
+	private static final int MAX_LEVEL = 60;
+
+	/**
+	 * The shortest HashLife jump. When the live cells are closer than this to
+	 * an edge, building the tree would cost more than it saves.
+	 */
+	static final int MIN_JUMP = 64;
+
+	/**
+	 * The number of generations computed by the bit-sliced engine before the
+	 * distance to the edges is measured again.
+	 */
+	private static final int FALLBACK_RUN = 64;
+
+	/**
+	 * A canonical quadtree node covering a square of {@code 2^level} cells per
+	 * side. Level-0 nodes are single cells.
+	 */
+	private static final class Node {
+		/** The north-west quadrant. */
+		final Node nw;
+		/** The north-east quadrant. */
+		final Node ne;
+		/** The south-west quadrant. */
+		final Node sw;
+		/** The south-east quadrant. */
+		final Node se;
+		/** The level of the node. */
+		final int level;
+		/** The number of live cells in the square. */
+		final long population;
+		/** A unique number, used for hashing. */
+		final int id;
+		/** The hash of the four quadrants. */
+		final int hash;
+		/** The next node in the same cache bucket. */
+		Node next;
+		/** The centre advanced by {@code 2^(level-2)} generations, once computed. */
+		Node result;
+		/** The centre advanced by {@code 2^stepLog} generations, once computed. */
+		Node stepResult;
+		/** The step of {@link #stepResult}, or -1. */
+		int stepLog = -1;
+		/** The last collection that visited the node. */
+		int mark;
+
+		/**
+		 * Constructs a single cell.
+		 *
+		 * @param alive Whether the cell is alive.
+		 * @param id    The unique number of the node.
+		 */
+		Node(boolean alive, int id) {
+			this.nw = this.ne = this.sw = this.se = null;
+			this.level = 0;
+			this.population = alive ? 1 : 0;
+			this.id = id;
+			this.hash = id;
+		}
+
+		/**
+		 * Constructs a node from its quadrants.
+		 *
+		 * @param nw   The north-west quadrant.
+		 * @param ne   The north-east quadrant.
+		 * @param sw   The south-west quadrant.
+		 * @param se   The south-east quadrant.
+		 * @param hash The hash of the quadrants.
+		 * @param id   The unique number of the node.
+		 */
+		Node(Node nw, Node ne, Node sw, Node se, int hash, int id) {
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.level = nw.level + 1;
+			this.population = nw.population + ne.population + sw.population + se.population;
+			this.id = id;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * The dead cell.
+	 */
+	private final Node off = new Node(false, 0);
+
+	/**
+	 * The live cell.
+	 */
+	private final Node on = new Node(true, 1);
+
+	/**
+	 * The engine used for single steps and for rules HashLife cannot run.
+	 */
+	private final GLBitSlicedEngine fallback = new GLBitSlicedEngine();
+
+	/**
+	 * Finds when the board settles while the bit-sliced engine computes it,
+	 * to skip the whole periods left.
+	 */
+	private final GLCycleDetector cycles = new GLCycleDetector();
+
+	/**
+	 * The hash-consing cache, chained through {@link Node#next}.
+	 */
+	private Node[] table;
+
+	/**
+	 * The number of nodes in the cache.
+	 */
+	private int size;
+
+	/**
+	 * The number given to the next node created.
+	 */
+	private int nextId = 2;
+
+	/**
+	 * The number of the current collection.
+	 */
+	private int collection;
+
+	/**
+	 * The empty node of each level, created on demand.
+	 */
+	private Node[] empty = new Node[MAX_LEVEL + 1];
+
+	/**
+	 * The number of nodes kept in the cache before eviction.
+	 */
+	private int maxNodes;
+
+	/**
+	 * The rules the cache was built for. Memoized results are only valid for them.
+	 */
+	private GLRules cachedRules;
+
+	/**
+	 * Next state of the centre 2x2 cells for every 4x4 square, indexed by the
+	 * square's 16 cells (bit {@code 4 * row + col}) and holding the four
+	 * results in the same layout as the square's bits 5, 6, 9 and 10.
+	 */
+	private final char[] baseTable = new char[1 << 16];
+
+
+	/**
+	 * Constructs a HashLife engine with the default cache size.
+	 */
+	public GLHashLifeEngine() {
+		this(DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * Constructs a HashLife engine.
+	 *
+	 * @param maxNodes The number of nodes kept in the cache before eviction.
+	 */
+	public GLHashLifeEngine(int maxNodes) {
+		setMaxNodes(maxNodes);
+		resetCache();
+	}
+
+	@Override
+	public String getName() {
+		return "HashLife";
+	}
+
+	/**
+	 * Gets the number of nodes kept in the cache before eviction.
+	 *
+	 * @return The maximum number of cached nodes.
+	 */
+	public int getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * Sets the number of nodes kept in the cache before eviction.
+	 *
+	 * @param maxNodes The maximum number of cached nodes.
+	 * @throws IllegalArgumentException If the limit is not positive.
+	 */
+	public void setMaxNodes(int maxNodes) {
+		if (maxNodes <= 0) {
+			throw new IllegalArgumentException("Invalid cache size: " + maxNodes);
+		}
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Gets the number of nodes currently cached.
+	 *
+	 * @return The number of cached nodes.
+	 */
+	public int getCachedNodes() {
+		return size;
+	}
+
+	@Override
+	public void step(GLBoard board, GLRules rules) {
+		fallback.step(board, rules);
+	}
+
+	@Override
+	public void advance(GLBoard board, GLRules rules, long generations) {
+		if (generations <= 1 || (rules.getBirthMask() & 1) != 0 || board.getTopology() != GLTopology.CLIPPED) {
+			fallback.advance(board, rules, generations);
+			return;
+		}
+		prepare(rules);
+
+		cycles.reset();
+		long done = 0;
+		long remaining = generations;
+		while (remaining > 0) {
+			long margin = edgeDistance(board);
+			if (margin < MIN_JUMP) {
+				// Cells close to an edge are clipped by it, which the tree can't do
+				if (!cycles.isCurrent(done, board)) {
+					cycles.observe(done, board, rules);
+				}
+				for (long n = Math.min(remaining, FALLBACK_RUN); n > 0; n--) {
+					fallback.step(board, rules);
+					done++;
+					remaining--;
+					if (cycles.observe(done, board, rules)) {
+						// The board repeats, so whole periods change nothing
+						fallback.advance(board, rules, remaining % cycles.getPeriod());
+						return;
+					}
+				}
+			} else {
+				long n = Math.min(remaining, margin);
+				jump(board, n);
+				done += n;
+				remaining -= n;
+			}
+		}
+	}
+
+	/**
+	 * Advances the board in the unbounded tree, which is exact as long as no
+	 * live cell can reach an edge.
+	 *
+	 * @param board       The board.
+	 * @param generations The number of generations, at most the distance from
+	 *                    the live cells to the nearest edge.
+	 */
+	private void jump(GLBoard board, long generations) {
+		Node root = importBoard(board);
+		long originRow = 0;
+		long originCol = 0;
+
+		// Jump once for every set bit of the number of generations
+		long remaining = generations;
+		for (int j = 0; remaining != 0 && root.population != 0; j++, remaining >>>= 1) {
+			if ((remaining & 1) == 0) {
+				continue;
+			}
+			// Pad the tree until the jump fits and the pattern is in the middle
+			while (root.level < j + 3 || !isCentred(root)) {
+				if (root.level == MAX_LEVEL) {
+					throw new IllegalStateException("Pattern too large for HashLife");
+				}
+				long shift = 1L << (root.level - 1);
+				root = expand(root);
+				originRow -= shift;
+				originCol -= shift;
+			}
+			root = advance(root, j);
+			originRow += 1L << (root.level - 1);
+			originCol += 1L << (root.level - 1);
+			if (size > maxNodes) {
+				collect(root);
+			}
+		}
+
+		exportBoard(root, originRow, originCol, board);
+		board.swapBuffers(generations);
+	}
+
+	/**
+	 * Measures the distance from the live cells to the nearest edge of the
+	 * board: the number of dead rows or columns between them and it.
+	 *
+	 * @param board The board.
+	 * @return The distance, or {@link Long#MAX_VALUE} if no cell is alive.
+	 */
+	private static long edgeDistance(GLBoard board) {
+		long[] words = board.getWords();
+		int wordsPerRow = board.getWordsPerRow();
+		int top = -1;
+		int bottom = -1;
+		int left = Integer.MAX_VALUE;
+		int right = -1;
+		for (int r = 0; r < board.getRows(); r++) {
+			int base = board.rowOffset(r);
+			for (int w = 0; w < wordsPerRow; w++) {
+				long word = words[base + w];
+				if (word == 0) {
+					continue;
+				}
+				if (top < 0) {
+					top = r;
+				}
+				bottom = r;
+				left = Math.min(left, (w << 6) + Long.numberOfTrailingZeros(word));
+				right = Math.max(right, (w << 6) + 63 - Long.numberOfLeadingZeros(word));
+			}
+		}
+		if (top < 0) {
+			return Long.MAX_VALUE;
+		}
+		return Math.min(Math.min(top, left), Math.min(board.getRows() - 1 - bottom, board.getCols() - 1 - right));
+	}
+
+	/**
+	 * Clears the cache when the rules have changed since it was filled.
+	 *
+	 * @param rules The rules of the game.
+	 */
+	private void prepare(GLRules rules) {
+		if (rules == cachedRules) {
+			return;
+		}
+		resetCache();
+		cachedRules = rules;
+		int birth = rules.getBirthMask();
+		int survival = rules.getSurvivalMask();
+		for (int square = 0; square < baseTable.length; square++) {
+			int next = 0;
+			for (int r = 1; r <= 2; r++) {
+				for (int c = 1; c <= 2; c++) {
+					int neighbours = 0;
+					for (int dr = -1; dr <= 1; dr++) {
+						for (int dc = -1; dc <= 1; dc++) {
+							if ((dr != 0 || dc != 0) && (square & (1 << ((r + dr) * 4 + c + dc))) != 0) {
+								neighbours++;
+							}
+						}
+					}
+					boolean alive = (square & (1 << (r * 4 + c))) != 0;
+					int mask = alive ? survival : birth;
+					if ((mask & (1 << neighbours)) != 0) {
+						next |= 1 << (r * 4 + c);
+					}
+				}
+			}
+			baseTable[square] = (char) next;
+		}
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	private void resetCache() {
+		table = new Node[1 << 16];
+		size = 0;
+		empty = new Node[MAX_LEVEL + 1];
+		empty[0] = off;
+	}
+
+	/**
+	 * Gets the canonical node with the given quadrants.
+	 *
+	 * @param nw The north-west quadrant.
+	 * @param ne The north-east quadrant.
+	 * @param sw The south-west quadrant.
+	 * @param se The south-east quadrant.
+	 * @return The node.
+	 */
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		long k = nw.id + 0x9E3779B97F4A7C15L * (ne.id + 0x9E3779B97F4A7C15L * (sw.id + 0x9E3779B97F4A7C15L * se.id));
+		int hash = (int) (k ^ (k >>> 29));
+		int index = hash & (table.length - 1);
+		for (Node n = table[index]; n != null; n = n.next) {
+			if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se) {
+				return n;
+			}
+		}
+		Node n = new Node(nw, ne, sw, se, hash, nextId++);
+		insert(n);
+		return n;
+	}
+
+	/**
+	 * Adds a node to the cache, growing the table when it gets crowded.
+	 *
+	 * @param n The node to add.
+	 */
+	private void insert(Node n) {
+		int index = n.hash & (table.length - 1);
+		n.next = table[index];
+		table[index] = n;
+		if (++size > table.length - (table.length >>> 2)) {
+			Node[] old = table;
+			table = new Node[old.length << 1];
+			for (Node head : old) {
+				while (head != null) {
+					Node next = head.next;
+					int i = head.hash & (table.length - 1);
+					head.next = table[i];
+					table[i] = head;
+					head = next;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the empty node of a level.
+	 *
+	 * @param level The level.
+	 * @return The node with no live cells.
+	 */
+	private Node empty(int level) {
+		Node n = empty[level];
+		if (n == null) {
+			Node e = empty(level - 1);
+			n = join(e, e, e, e);
+			empty[level] = n;
+		}
+		return n;
+	}
+
+	/**
+	 * Computes the centre of a node advanced by {@code 2^j} generations.
+	 *
+	 * @param n The node, of level 2 or more.
+	 * @param j The log2 of the number of generations, at most {@code level - 2}.
+	 * @return The centre of the node, one level down, advanced in time.
+	 */
+	private Node advance(Node n, int j) {
+		if (n.population == 0) {
+			return empty(n.level - 1);
+		}
+		boolean full = j == n.level - 2;
+		if (full && n.result != null) {
+			return n.result;
+		}
+		if (!full && n.stepLog == j) {
+			return n.stepResult;
+		}
+
+		Node result;
+		if (n.level == 2) {
+			result = advanceBase(n);
+		} else {
+			// The nine overlapping squares of the level below
+			Node h01 = join(n.nw.ne, n.ne.nw, n.nw.se, n.ne.sw);
+			Node h21 = join(n.sw.ne, n.se.nw, n.sw.se, n.se.sw);
+			Node v10 = join(n.nw.sw, n.nw.se, n.sw.nw, n.sw.ne);
+			Node v12 = join(n.ne.sw, n.ne.se, n.se.nw, n.se.ne);
+			Node c11 = join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+
+			// At full speed each of them is advanced by half the jump, otherwise
+			// only their centres are taken
+			Node n00, n01, n02, n10, n11, n12, n20, n21, n22;
+			if (full) {
+				n00 = advance(n.nw, j - 1);
+				n01 = advance(h01, j - 1);
+				n02 = advance(n.ne, j - 1);
+				n10 = advance(v10, j - 1);
+				n11 = advance(c11, j - 1);
+				n12 = advance(v12, j - 1);
+				n20 = advance(n.sw, j - 1);
+				n21 = advance(h21, j - 1);
+				n22 = advance(n.se, j - 1);
+			} else {
+				n00 = centre(n.nw);
+				n01 = centre(h01);
+				n02 = centre(n.ne);
+				n10 = centre(v10);
+				n11 = centre(c11);
+				n12 = centre(v12);
+				n20 = centre(n.sw);
+				n21 = centre(h21);
+				n22 = centre(n.se);
+			}
+
+			// The remaining generations come from the four overlapping quadrants
+			int k = full ? j - 1 : j;
+			result = join(advance(join(n00, n01, n10, n11), k), advance(join(n01, n02, n11, n12), k),
+					advance(join(n10, n11, n20, n21), k), advance(join(n11, n12, n21, n22), k));
+		}
+
+		if (full) {
+			n.result = result;
+		} else {
+			n.stepResult = result;
+			n.stepLog = j;
+		}
+		return result;
+	}
+
+	/**
+	 * Advances the centre of a 4x4 square by one generation.
+	 *
+	 * @param n The node, of level 2.
+	 * @return The centre 2x2 square in the next generation.
+	 */
+	private Node advanceBase(Node n) {
+		int square = quadBits(n.nw) | quadBits(n.ne) << 2 | quadBits(n.sw) << 8 | quadBits(n.se) << 10;
+		int next = baseTable[square];
+		return join(cell(next, 5), cell(next, 6), cell(next, 9), cell(next, 10));
+	}
+
+	/**
+	 * Gets the cells of a level-1 node in the bit layout of a 4x4 square.
+	 *
+	 * @param q The node, of level 1.
+	 * @return Bits 0, 1, 4 and 5 holding the node's cells.
+	 */
+	private static int quadBits(Node q) {
+		return (int) (q.nw.population | q.ne.population << 1 | q.sw.population << 4 | q.se.population << 5);
+	}
+
+	/**
+	 * Gets the cell node for a bit.
+	 *
+	 * @param bits The bits.
+	 * @param bit  The bit to read.
+	 * @return The live or dead cell.
+	 */
+	private Node cell(int bits, int bit) {
+		return (bits & (1 << bit)) != 0 ? on : off;
+	}
+
+	/**
+	 * Gets the centre of a node, not advanced in time.
+	 *
+	 * @param n The node, of level 2 or more.
+	 * @return The centre square, one level down.
+	 */
+	private Node centre(Node n) {
+		return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+	}
+
+	/**
+	 * Surrounds a node with empty space, doubling its size.
+	 *
+	 * @param n The node.
+	 * @return A node one level up with {@code n} as its centre.
+	 */
+	private Node expand(Node n) {
+		Node e = empty(n.level - 1);
+		return join(join(e, e, e, n.nw), join(e, e, n.ne, e), join(e, n.sw, e, e), join(n.se, e, e, e));
+	}
+
+	/**
+	 * Checks whether all live cells of a node are in the middle quarter of its
+	 * side, so the centre can be advanced by up to {@code 2^(level-3)}
+	 * generations without losing anything.
+	 *
+	 * @param n The node.
+	 * @return true if the pattern is centred.
+	 */
+	private boolean isCentred(Node n) {
+		if (n.level < 3) {
+			return false;
+		}
+		long inner = n.nw.se.se.population + n.ne.sw.sw.population + n.sw.ne.ne.population
+				+ n.se.nw.nw.population;
+		return inner == n.population;
+	}
+
+	/**
+	 * Evicts every node not reachable from the given root and drops all memoized
+	 * results.
+	 *
+	 * @param root The tree to keep.
+	 */
+	private void collect(Node root) {
+		table = new Node[Math.max(1 << 16, Integer.highestOneBit(size) >>> 1)];
+		size = 0;
+		empty = new Node[MAX_LEVEL + 1];
+		empty[0] = off;
+		collection++;
+		keep(root);
+	}
+
+	/**
+	 * Puts a node and its descendants back into the cache.
+	 *
+	 * @param n The node to keep.
+	 */
+	private void keep(Node n) {
+		if (n.level == 0 || n.mark == collection) {
+			return;
+		}
+		n.mark = collection;
+		n.result = null;
+		n.stepResult = null;
+		n.stepLog = -1;
+		keep(n.nw);
+		keep(n.ne);
+		keep(n.sw);
+		keep(n.se);
+		insert(n);
+	}
+
+	/**
+	 * Builds the tree for the cells on the board.
+	 *
+	 * @param board The board.
+	 * @return The root of a tree covering the board from its top-left corner.
+	 */
+	private Node importBoard(GLBoard board) {
+		int side = Math.max(board.getRows(), board.getCols());
+		int level = 3;
+		while ((1L << level) < side) {
+			level++;
+		}
+		return build(board, level, 0, 0);
+	}
+
+	/**
+	 * Builds the tree for a square of the board.
+	 *
+	 * @param board The board.
+	 * @param level The level of the square.
+	 * @param row   The top row of the square.
+	 * @param col   The left column of the square.
+	 * @return The node for the square.
+	 */
+	private Node build(GLBoard board, int level, int row, int col) {
+		if (row >= board.getRows() || col >= board.getCols()) {
+			return empty(level);
+		}
+		if (level == 0) {
+			return board.isAlive(row, col) ? on : off;
+		}
+		if (level == 6 && isEmptyBlock(board, row, col)) {
+			return empty(level);
+		}
+		int half = 1 << (level - 1);
+		return join(build(board, level - 1, row, col), build(board, level - 1, row, col + half),
+				build(board, level - 1, row + half, col), build(board, level - 1, row + half, col + half));
+	}
+
+	/**
+	 * Checks whether a 64x64 block of the board, aligned on a word, is empty.
+	 *
+	 * @param board The board.
+	 * @param row   The top row of the block.
+	 * @param col   The left column of the block, a multiple of 64.
+	 * @return true if no cell of the block is alive.
+	 */
+	private static boolean isEmptyBlock(GLBoard board, int row, int col) {
+		long[] words = board.getWords();
+		int word = col >>> 6;
+		int lastRow = Math.min(row + 64, board.getRows());
+		for (int r = row; r < lastRow; r++) {
+			if (words[board.rowOffset(r) + word] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the cells of a tree that fall on the board into its back buffer.
+	 *
+	 * @param root      The tree.
+	 * @param originRow The row of the tree's top-left corner.
+	 * @param originCol The column of the tree's top-left corner.
+	 * @param board     The board.
+	 */
+	private void exportBoard(Node root, long originRow, long originCol, GLBoard board) {
+		long[] back = board.getBackWords();
+		for (int r = 0; r < board.getRows(); r++) {
+			int base = board.rowOffset(r);
+			for (int w = 0; w < board.getWordsPerRow(); w++) {
+				back[base + w] = 0L;
+			}
+		}
+		write(root, originRow, originCol, board, back);
+	}
+
+	/**
+	 * Writes the live cells of a node that fall on the board.
+	 *
+	 * @param n     The node.
+	 * @param row   The row of the node's top-left corner.
+	 * @param col   The column of the node's top-left corner.
+	 * @param board The board.
+	 * @param back  The buffer receiving the cells.
+	 */
+	private void write(Node n, long row, long col, GLBoard board, long[] back) {
+		long side = 1L << n.level;
+		if (n.population == 0 || row >= board.getRows() || col >= board.getCols() || row + side <= 0
+				|| col + side <= 0) {
+			return;
+		}
+		if (n.level == 0) {
+			int c = (int) col;
+			back[board.rowOffset((int) row) + (c >>> 6)] |= 1L << c;
+			return;
+		}
+		long half = side >>> 1;
+		write(n.nw, row, col, board, back);
+		write(n.ne, row, col + half, board, back);
+		write(n.sw, row + half, col, board, back);
+		write(n.se, row + half, col + half, board, back);
+	}
+}
@@ -0,0 +1,421 @@
+package gl.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * The {@code GLHistory} class keeps the past generations of a {@link GLBoard}
+ * for undo, compressed.
+ *
+ * Each generation is stored as a delta: the XOR of its cell words with those
+ * of the generation after it, which is zero wherever nothing changed. Deltas
+ * are compressed a second time against each other: every stored delta is
+ * XOR-ed with the next newer one, so oscillators, which make the same changes
+ * generation after generation, cancel out. Only the newest delta is kept
+ * whole, uncompressed, and undoing walks from it towards the older ones,
+ * restoring each delta from the one after it.
+ *
+ * Deltas are encoded with a {@link GLWordCodec}, so settled boards cost a few
+ * bytes per generation.
+ *
+ * Every {@link #getKeyframeInterval()} generations the full cells of the
+ * generation are also stored, encoded the same way against an empty board.
+ * Going back many generations starts from the nearest such keyframe instead
+ * of undoing the generations one by one.
+ *
+ * The history is bounded by a number of generations and by a memory budget;
+ * the oldest generations are dropped first.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLHistory {
+	/**
+	 * The default memory budget, in bytes.
+	 */
+	public static final long DEFAULT_BUDGET = 128L << 20;
+
+	/**
+	 * The default number of generations between keyframes.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+
+	/**
+	 * The memory counted for an entry besides its encoded bytes.
+	 */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	/**
+	 * One stored generation.
+	 */
+	private static final class Entry {
+		/**
+		 * The encoded XOR of the entry's delta with the next newer one's, or
+		 * null for the newest entry, whose delta is {@link GLHistory#newest}.
+		 */
+		byte[] delta;
+		/** The encoded cells of the generation, or null. */
+		final byte[] keyframe;
+
+		/**
+		 * Constructs the newest entry.
+		 *
+		 * @param keyframe The encoded cells of the generation, or null.
+		 */
+		Entry(byte[] keyframe) {
+			this.keyframe = keyframe;
+		}
+
+		/**
+		 * Gets the memory counted for the entry.
+		 *
+		 * @return The size in bytes.
+		 */
+		long size() {
+			return ENTRY_OVERHEAD + (delta == null ? 0 : delta.length) + (keyframe == null ? 0 : keyframe.length);
+		}
+	}
+
+	/**
+	 * The stored generations, oldest first.
+	 */
+	private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+	/**
+	 * The largest number of generations kept.
+	 */
+	private int maxGenerations;
+
+	/**
+	 * The largest number of bytes kept.
+	 */
+	private long budget = DEFAULT_BUDGET;
+
+	/**
+	 * The number of generations between keyframes.
+	 */
+	private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+
+	/**
+	 * The number of generations recorded since the last keyframe.
+	 */
+	private int sinceKeyframe;
+
+	/**
+	 * The memory used by the stored generations.
+	 */
+	private long bytes;
+
+	/**
+	 * The delta of the newest entry, laid out like the board's cells.
+	 */
+	private long[] newest;
+
+	/**
+	 * The tiles where {@link #newest} may be nonzero, or null if unknown.
+	 */
+	private boolean[] newestTiles;
+
+	/**
+	 * The codec generations are encoded with.
+	 */
+	private final GLWordCodec codec = new GLWordCodec();
+
+
+	/**
+	 * Constructs an empty history.
+	 *
+	 * @param maxGenerations The largest number of generations kept.
+	 * @throws IllegalArgumentException If the number is negative.
+	 */
+	public GLHistory(int maxGenerations) {
+		setMaxGenerations(maxGenerations);
+	}
+
+	/**
+	 * Gets the number of generations that can currently be undone.
+	 *
+	 * @return The number of stored generations.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the memory used by the stored generations.
+	 *
+	 * @return The size in bytes.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the largest number of generations kept.
+	 *
+	 * @return The maximum number of generations.
+	 */
+	public int getMaxGenerations() {
+		return maxGenerations;
+	}
+
+	/**
+	 * Sets the largest number of generations kept, dropping the oldest ones
+	 * past it.
+	 *
+	 * @param maxGenerations The maximum number of generations.
+	 * @throws IllegalArgumentException If the number is negative.
+	 */
+	public void setMaxGenerations(int maxGenerations) {
+		if (maxGenerations < 0) {
+			throw new IllegalArgumentException("Invalid history depth: " + maxGenerations);
+		}
+		this.maxGenerations = maxGenerations;
+		trim();
+	}
+
+	/**
+	 * Gets the memory budget.
+	 *
+	 * @return The largest number of bytes kept.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget, dropping the oldest generations past it.
+	 *
+	 * @param budget The largest number of bytes kept.
+	 * @throws IllegalArgumentException If the budget is negative.
+	 */
+	public void setBudget(long budget) {
+		if (budget < 0) {
+			throw new IllegalArgumentException("Invalid history budget: " + budget);
+		}
+		this.budget = budget;
+		trim();
+	}
+
+	/**
+	 * Gets the number of generations between keyframes.
+	 *
+	 * @return The keyframe interval.
+	 */
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * Sets the number of generations between keyframes. Shorter intervals
+	 * make long undos faster and use more memory.
+	 *
+	 * @param keyframeInterval The keyframe interval.
+	 * @throws IllegalArgumentException If the interval is not positive.
+	 */
+	public void setKeyframeInterval(int keyframeInterval) {
+		if (keyframeInterval <= 0) {
+			throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeInterval);
+		}
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	/**
+	 * Forgets every stored generation.
+	 */
+	public void clear() {
+		entries.clear();
+		bytes = 0;
+		sinceKeyframe = 0;
+		newest = null;
+		newestTiles = null;
+	}
+
+	/**
+	 * Stores a generation that is being replaced.
+	 *
+	 * @param before  The cells of the generation being replaced.
+	 * @param after   The cells of the generation replacing it.
+	 * @param board   The board, giving the layout of the cells and its tiles.
+	 * @param changed Which tiles differ between the two, or null if unknown.
+	 */
+	void record(long[] before, long[] after, GLBoard board, boolean[] changed) {
+		if (maxGenerations == 0) {
+			return;
+		}
+		if (newest == null || newest.length != before.length) {
+			entries.clear();
+			bytes = 0;
+			newest = new long[before.length];
+			newestTiles = null;
+		}
+
+		// The newest delta becomes the XOR with the one being recorded
+		Entry previous = entries.peekLast();
+		if (previous != null) {
+			codec.begin();
+			for (int tile = 0; tile < board.getTileRows() * board.getTileCols(); tile++) {
+				if (isSet(changed, tile) || isSet(newestTiles, tile)) {
+					encodeTile(board, tile, newest, before, after);
+				}
+			}
+			previous.delta = codec.end();
+			bytes += previous.delta.length;
+		}
+
+		// Then the recorded delta is the newest
+		for (int tile = 0; tile < board.getTileRows() * board.getTileCols(); tile++) {
+			if (isSet(changed, tile) || isSet(newestTiles, tile)) {
+				xorTile(board, tile, newest, before, after, isSet(changed, tile));
+			}
+		}
+		newestTiles = changed == null ? null : changed.clone();
+
+		byte[] keyframe = null;
+		if (++sinceKeyframe >= keyframeInterval) {
+			keyframe = codec.encode(before, board);
+			sinceKeyframe = 0;
+		}
+		Entry entry = new Entry(keyframe);
+		entries.addLast(entry);
+		bytes += entry.size();
+		trim();
+	}
+
+	/**
+	 * Merges edits made to the newest generation into its delta, so undoing it
+	 * still leads to the generation before.
+	 *
+	 * @param edits The XOR of the edited cells with the recorded ones. Cleared on return.
+	 * @param board The board, giving the layout of the cells.
+	 */
+	void mergeEdits(long[] edits, GLBoard board) {
+		if (!entries.isEmpty()) {
+			for (int i = 0; i < edits.length; i++) {
+				newest[i] ^= edits[i];
+			}
+			newestTiles = null;
+			// The entry before is stored against the newest delta, so it changes too
+			Iterator<Entry> newestFirst = entries.descendingIterator();
+			newestFirst.next();
+			if (newestFirst.hasNext()) {
+				Entry older = newestFirst.next();
+				GLWordCodec.apply(older.delta, edits);
+				bytes -= older.delta.length;
+				older.delta = codec.encode(edits, board);
+				bytes += older.delta.length;
+			}
+		}
+		Arrays.fill(edits, 0L);
+	}
+
+	/**
+	 * Brings back an earlier generation into the given cells.
+	 *
+	 * @param words       The cells of the current generation, overwritten.
+	 * @param generations The number of generations to go back.
+	 * @return The number of generations actually gone back.
+	 */
+	int undo(long[] words, int generations) {
+		int count = Math.min(generations, entries.size());
+
+		// Find the keyframe closest to the target that is on the way back
+		int keyframeAt = 0;
+		Iterator<Entry> newestFirst = entries.descendingIterator();
+		for (int i = 1; i <= count; i++) {
+			if (newestFirst.next().keyframe != null) {
+				keyframeAt = i;
+			}
+		}
+		for (int i = 1; i <= count; i++) {
+			Entry entry = entries.removeLast();
+			bytes -= entry.size();
+			if (i == keyframeAt) {
+				Arrays.fill(words, 0L);
+				GLWordCodec.apply(entry.keyframe, words);
+			} else if (i > keyframeAt) {
+				for (int k = 0; k < words.length; k++) {
+					words[k] ^= newest[k];
+				}
+			}
+			// Restore the delta of the next older entry, which becomes the newest
+			Entry older = entries.peekLast();
+			if (older != null) {
+				GLWordCodec.apply(older.delta, newest);
+				bytes -= older.delta.length;
+				older.delta = null;
+			}
+		}
+		newestTiles = null;
+		sinceKeyframe = 0;
+		return count;
+	}
+
+	/**
+	 * Drops the oldest generations until the history fits its limits.
+	 */
+	private void trim() {
+		while (!entries.isEmpty() && (entries.size() > maxGenerations || bytes > budget)) {
+			bytes -= entries.removeFirst().size();
+		}
+		if (entries.isEmpty()) {
+			newest = null;
+			newestTiles = null;
+		}
+	}
+
+	/**
+	 * Encodes the words of one tile of {@code delta ^ before ^ after}.
+	 *
+	 * @param board  The board, giving the layout of the cells.
+	 * @param tile   The index of the tile.
+	 * @param delta  The newest delta.
+	 * @param before The cells of the generation being replaced.
+	 * @param after  The cells of the generation replacing it.
+	 */
+	private void encodeTile(GLBoard board, int tile, long[] delta, long[] before, long[] after) {
+		int stride = board.getStride();
+		int rowFrom = (tile / board.getTileCols()) * GLBoard.TILE_ROWS;
+		int height = Math.min(GLBoard.TILE_ROWS, board.getRows() - rowFrom);
+		int index = board.rowOffset(rowFrom) + tile % board.getTileCols();
+		for (int r = 0; r < height; r++, index += stride) {
+			long word = delta[index] ^ before[index] ^ after[index];
+			if (word != 0) {
+				codec.write(index, word);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the words of one tile of the newest delta with
+	 * {@code before ^ after}.
+	 *
+	 * @param board   The board, giving the layout of the cells.
+	 * @param tile    The index of the tile.
+	 * @param delta   The newest delta.
+	 * @param before  The cells of the generation being replaced.
+	 * @param after   The cells of the generation replacing it.
+	 * @param changed Whether the tile differs between the generations.
+	 */
+	private static void xorTile(GLBoard board, int tile, long[] delta, long[] before, long[] after, boolean changed) {
+		int stride = board.getStride();
+		int rowFrom = (tile / board.getTileCols()) * GLBoard.TILE_ROWS;
+		int height = Math.min(GLBoard.TILE_ROWS, board.getRows() - rowFrom);
+		int index = board.rowOffset(rowFrom) + tile % board.getTileCols();
+		for (int r = 0; r < height; r++, index += stride) {
+			delta[index] = changed ? before[index] ^ after[index] : 0L;
+		}
+	}
+
+	/**
+	 * Checks a tile flag, where no flags means every tile is set.
+	 *
+	 * @param tiles The tile flags, or null.
+	 * @param tile  The index of the tile.
+	 * @return true if the tile is set.
+	 */
+	private static boolean isSet(boolean[] tiles, int tile) {
+		return tiles == null || tiles[tile];
+	}
+}
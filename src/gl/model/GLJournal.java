@@ -0,0 +1,559 @@
+package gl.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * The {@code GLJournal} class records the generations of a game to an
+ * append-only journal file, for replaying long runs afterwards with a
+ * {@link GLJournalReader}. Each generation is written as the words of the
+ * board that changed since the generation before, XOR-ed with their old
+ * value, and every few generations as a keyframe holding the whole board. A
+ * sidecar index file lists the offset of every keyframe, so a reader seeks
+ * to any generation by reading the closest keyframe before it and the
+ * changes after it.
+ *
+ * Recording never holds up the simulation: {@link #record(long, GLBoard)}
+ * only copies the board into a plane taken from a small pool and queues it,
+ * and a background thread computes the changes and writes them. The pool
+ * and the queue are bounded; when the writer falls behind and no plane is
+ * free, generations are dropped rather than waited for. A dropped generation
+ * is missing from the journal, and the next one recorded is written against
+ * the last one written, so the journal stays consistent.
+ *
+ * The journal file, all numbers little-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  magic "GLJOURNL"
+ *      8     4  version
+ *     12     4  rows
+ *     16     4  columns
+ *     20     4  words per row
+ *     64        records, each:
+ *                 1  type: 1 keyframe, 2 changes
+ *                 8  generation
+ *                 4  count
+ *                    keyframe: count cell words, row after row
+ *                    changes: count (4-byte word index, 8-byte XOR) pairs
+ * </pre>
+ *
+ * The index file, named after the journal with {@code .idx} appended, holds
+ * (8-byte generation, 8-byte offset) pairs, one per keyframe.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public final class GLJournal implements Closeable {
+	/**
+	 * The extension of journal files.
+	 */
+	public static final String EXTENSION = ".glj";
+
+	/**
+	 * The default number of generations between keyframes.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 256;
+
+	/**
+	 * The extension appended to the name of a journal for its index.
+	 */
+	static final String INDEX_EXTENSION = ".idx";
+
+	/**
+	 * The first bytes of every journal file.
+	 */
+	static final byte[] MAGIC = "GLJOURNL".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The version of the layout written.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * The size of the journal header, which the records follow.
+	 */
+	static final int HEADER_SIZE = 64;
+
+	/**
+	 * The offsets of the fields of the header.
+	 */
+	static final int VERSION_OFFSET = 8, ROWS_OFFSET = 12, COLS_OFFSET = 16, WORDS_OFFSET = 20;
+
+	/**
+	 * The types of records.
+	 */
+	static final byte KEYFRAME = 1, CHANGES = 2;
+
+	/**
+	 * The size of the header of a record: its type, generation and count.
+	 */
+	static final int RECORD_HEADER_SIZE = 13;
+
+	/**
+	 * The size of a changed word in a record of changes.
+	 */
+	static final int CHANGE_SIZE = 12;
+
+	/**
+	 * The size of an entry of the index.
+	 */
+	static final int INDEX_ENTRY_SIZE = 16;
+
+	/**
+	 * The byte order of the files.
+	 */
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * The size of the buffer records are written through.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The most memory taken by the planes waiting to be written, in bytes.
+	 */
+	private static final long QUEUED_BYTES = 64L << 20;
+
+	/**
+	 * The most generations waiting to be written.
+	 */
+	private static final int MAX_QUEUED = 64;
+
+	/**
+	 * The log write failures are reported to.
+	 */
+	private static final Logger LOG = Logger.getLogger(GLJournal.class.getName());
+
+	/**
+	 * A generation waiting to be written.
+	 */
+	private static final class Frame {
+		/** The generation. */
+		final long generation;
+		/** The cells of the generation, or null to stop the writer. */
+		final long[] plane;
+
+		/**
+		 * Constructs a frame.
+		 *
+		 * @param generation The generation.
+		 * @param plane      The cells of the generation.
+		 */
+		Frame(long generation, long[] plane) {
+			this.generation = generation;
+			this.plane = plane;
+		}
+	}
+
+	/**
+	 * The dimensions of the boards recorded.
+	 */
+	private final int rows, cols, wordsPerRow;
+
+	/**
+	 * The number of generations between keyframes.
+	 */
+	private final int keyframeInterval;
+
+	/**
+	 * The journal file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The index file.
+	 */
+	private final FileChannel index;
+
+	/**
+	 * The generations waiting to be written.
+	 */
+	private final BlockingQueue<Frame> queue;
+
+	/**
+	 * The planes written and free to be filled again.
+	 */
+	private final BlockingQueue<long[]> free;
+
+	/**
+	 * The most planes allocated: those queued and the one the writer
+	 * compares the next generation with.
+	 */
+	private final int maxPlanes;
+
+	/**
+	 * The number of planes allocated so far.
+	 */
+	private int allocatedPlanes;
+
+	/**
+	 * The last generation recorded.
+	 */
+	private long lastGeneration = Long.MIN_VALUE;
+
+	/**
+	 * The thread writing the records.
+	 */
+	private final Thread writer;
+
+	/**
+	 * The buffer records are written through. Used by the writer only.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ORDER);
+
+	/**
+	 * The offset of the end of the journal file. Used by the writer only.
+	 */
+	private long position = HEADER_SIZE;
+
+	/**
+	 * The numbers of generations written and dropped.
+	 */
+	private volatile long writtenCount, droppedCount;
+
+	/**
+	 * The error the writer stopped on, or null.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Whether the journal was closed.
+	 */
+	private volatile boolean closed;
+
+
+	/**
+	 * Constructs a journal and starts its writer.
+	 *
+	 * @param channel          The journal file, its header written.
+	 * @param index            The index file.
+	 * @param rows             The number of rows of the boards recorded.
+	 * @param cols             The number of columns of the boards recorded.
+	 * @param keyframeInterval The number of generations between keyframes.
+	 */
+	private GLJournal(FileChannel channel, FileChannel index, int rows, int cols, int keyframeInterval) {
+		this.channel = channel;
+		this.index = index;
+		this.rows = rows;
+		this.cols = cols;
+		this.wordsPerRow = GLBoard.wordsFor(cols);
+		this.keyframeInterval = keyframeInterval;
+		long planeBytes = Math.max(1L, (long) rows * wordsPerRow * Long.BYTES);
+		int queued = (int) Math.max(2, Math.min(MAX_QUEUED, QUEUED_BYTES / planeBytes));
+		this.queue = new ArrayBlockingQueue<>(queued + 1);
+		this.free = new ArrayBlockingQueue<>(queued + 1);
+		this.maxPlanes = queued + 1;
+		this.writer = new Thread(this::write, "GL journal writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Creates a journal file, and its index, for boards of the dimensions of
+	 * a board. Existing files are replaced.
+	 *
+	 * @param path  The journal file.
+	 * @param board A board of the dimensions of those recorded.
+	 * @return The journal, waiting for generations.
+	 * @throws IOException If the files cannot be created.
+	 */
+	public static GLJournal create(Path path, GLBoard board) throws IOException {
+		return create(path, board, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	/**
+	 * Creates a journal file, and its index, for boards of the dimensions of
+	 * a board. Existing files are replaced.
+	 *
+	 * @param path             The journal file.
+	 * @param board            A board of the dimensions of those recorded.
+	 * @param keyframeInterval The number of generations between keyframes.
+	 *                         Shorter intervals seek faster and take more room.
+	 * @return The journal, waiting for generations.
+	 * @throws IOException If the files cannot be created.
+	 */
+	public static GLJournal create(Path path, GLBoard board, int keyframeInterval) throws IOException {
+		if (keyframeInterval <= 0) {
+			throw new IllegalArgumentException("Invalid keyframe interval: " + keyframeInterval);
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+		header.put(MAGIC);
+		header.putInt(VERSION_OFFSET, VERSION);
+		header.putInt(ROWS_OFFSET, board.getRows());
+		header.putInt(COLS_OFFSET, board.getCols());
+		header.putInt(WORDS_OFFSET, board.getWordsPerRow());
+		header.clear();
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			FileChannel index = FileChannel.open(indexPath(path), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			return new GLJournal(channel, index, board.getRows(), board.getCols(), keyframeInterval);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the index file of a journal file.
+	 *
+	 * @param path The journal file.
+	 * @return The index file.
+	 */
+	static Path indexPath(Path path) {
+		return Paths.get(path.toString() + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Records a generation, unless the writer is too far behind. The board
+	 * is copied, so it can be evolved as soon as this returns. Generations
+	 * must be recorded in increasing order; a generation not after the last
+	 * one recorded, as after the game went back, is ignored, and so are
+	 * boards of other dimensions. Calls must not overlap.
+	 *
+	 * @param generation The generation of the board.
+	 * @param board      The board.
+	 * @return true if the generation was queued for writing, false if it was
+	 *         dropped or ignored.
+	 */
+	public boolean record(long generation, GLBoard board) {
+		if (closed || failure != null || generation <= lastGeneration || board.getRows() != rows
+				|| board.getCols() != cols) {
+			return false;
+		}
+		long[] plane = free.poll();
+		if (plane == null) {
+			if (allocatedPlanes == maxPlanes) {
+				droppedCount++;
+				return false;
+			}
+			plane = new long[rows * wordsPerRow];
+			allocatedPlanes++;
+		}
+		long[] words = board.getWords();
+		long lastWordMask = board.getLastWordMask();
+		for (int r = 0; r < rows; r++) {
+			System.arraycopy(words, board.rowOffset(r), plane, r * wordsPerRow, wordsPerRow);
+			// Halo bits can sit past the last column
+			plane[(r + 1) * wordsPerRow - 1] &= lastWordMask;
+		}
+		// There are never more planes than the queue holds
+		queue.add(new Frame(generation, plane));
+		lastGeneration = generation;
+		return true;
+	}
+
+	/**
+	 * Gets the number of generations written to the file so far.
+	 *
+	 * @return The number of generations written.
+	 */
+	public long getWrittenCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * Gets the number of generations dropped because the writer was behind.
+	 *
+	 * @return The number of generations dropped.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Writes the generations still queued and closes the files.
+	 *
+	 * @throws IOException If a generation could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(new Frame(0, null));
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if (failure == null) {
+				channel.force(false);
+			}
+		} finally {
+			channel.close();
+			index.close();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writes the queued generations until the journal is closed. Runs on the
+	 * writer thread.
+	 */
+	private void write() {
+		long[] previous = null;
+		int sinceKeyframe = 0;
+		while (true) {
+			Frame frame;
+			try {
+				frame = queue.take();
+			} catch (InterruptedException e) {
+				// Only closing stops the writer
+				continue;
+			}
+			if (frame.plane == null) {
+				break;
+			}
+			if (failure == null) {
+				try {
+					int changed = previous == null ? 0 : countChanges(previous, frame.plane);
+					if (previous == null || ++sinceKeyframe >= keyframeInterval
+							|| (long) changed * CHANGE_SIZE >= (long) frame.plane.length * Long.BYTES) {
+						writeKeyframe(frame);
+						sinceKeyframe = 0;
+					} else {
+						writeChanges(frame, previous, changed);
+					}
+					writtenCount++;
+				} catch (IOException e) {
+					LOG.warning("Journal stopped: " + e);
+					failure = e;
+				}
+			}
+			if (previous != null) {
+				free.add(previous);
+			}
+			previous = frame.plane;
+		}
+	}
+
+	/**
+	 * Counts the words that differ between two generations.
+	 *
+	 * @param previous The cells of the generation before.
+	 * @param plane    The cells of the generation.
+	 * @return The number of words that differ.
+	 */
+	private static int countChanges(long[] previous, long[] plane) {
+		int changed = 0;
+		for (int i = 0; i < plane.length; i++) {
+			if (previous[i] != plane[i]) {
+				changed++;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Writes a keyframe and adds it to the index.
+	 *
+	 * @param frame The generation.
+	 * @throws IOException If the files cannot be written.
+	 */
+	private void writeKeyframe(Frame frame) throws IOException {
+		long offset = position;
+		writeRecordHeader(KEYFRAME, frame.generation, frame.plane.length);
+		for (long word : frame.plane) {
+			reserve(Long.BYTES);
+			buffer.putLong(word);
+		}
+		flush();
+		ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE).order(ORDER);
+		entry.putLong(frame.generation).putLong(offset).flip();
+		while (entry.hasRemaining()) {
+			index.write(entry);
+		}
+	}
+
+	/**
+	 * Writes the words that changed since the generation before.
+	 *
+	 * @param frame    The generation.
+	 * @param previous The cells of the generation before.
+	 * @param changed  The number of words that changed.
+	 * @throws IOException If the file cannot be written.
+	 */
+	private void writeChanges(Frame frame, long[] previous, int changed) throws IOException {
+		writeRecordHeader(CHANGES, frame.generation, changed);
+		long[] plane = frame.plane;
+		for (int i = 0; i < plane.length; i++) {
+			long flipped = previous[i] ^ plane[i];
+			if (flipped != 0) {
+				reserve(CHANGE_SIZE);
+				buffer.putInt(i).putLong(flipped);
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * Writes the header of a record.
+	 *
+	 * @param type       The type of the record.
+	 * @param generation The generation of the record.
+	 * @param count      The number of words of the record.
+	 * @throws IOException If the file cannot be written.
+	 */
+	private void writeRecordHeader(byte type, long generation, int count) throws IOException {
+		reserve(RECORD_HEADER_SIZE);
+		buffer.put(type).putLong(generation).putInt(count);
+	}
+
+	/**
+	 * Makes room in the buffer, writing it out if it is too full.
+	 *
+	 * @param bytes The number of bytes to make room for.
+	 * @throws IOException If the file cannot be written.
+	 */
+	private void reserve(int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the buffer out to the end of the journal file.
+	 *
+	 * @throws IOException If the file cannot be written.
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,409 @@
+package gl.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@code GLJournalReader} class replays a journal written by a
+ * {@link GLJournal}, bringing a board to any generation recorded. A seek
+ * reads the closest keyframe before the generation and applies the changes
+ * recorded after it; seeking forward from the generation last read only
+ * applies the changes in between, so stepping through a journal costs one
+ * record per generation. Every read is a positional read of the journal
+ * file, so a journal still being written can be replayed up to its last
+ * complete record.
+ *
+ * The keyframes are found through the index file. If it is missing or does
+ * not match the journal, as after a crash, the journal is scanned for them,
+ * reading only the headers of its records.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public final class GLJournalReader implements Closeable {
+	/**
+	 * The size of the buffer records are read through.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The journal file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The dimensions of the boards recorded.
+	 */
+	private final int rows, cols, wordsPerRow;
+
+	/**
+	 * The generations and offsets of the keyframes, in the order written.
+	 */
+	private long[] keyGenerations, keyOffsets;
+
+	/**
+	 * The number of keyframes.
+	 */
+	private int keyCount;
+
+	/**
+	 * The offset of the end of the last complete record.
+	 */
+	private long end;
+
+	/**
+	 * The last generation recorded.
+	 */
+	private long lastGeneration;
+
+	/**
+	 * The cells of the generation last read.
+	 */
+	private final long[] plane;
+
+	/**
+	 * The generation last read, or -1 before the first read.
+	 */
+	private long planeGeneration = -1;
+
+	/**
+	 * The offset of the record after the generation last read.
+	 */
+	private long nextOffset;
+
+	/**
+	 * The buffer records are read through.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(GLJournal.ORDER);
+
+
+	/**
+	 * Constructs a reader of an open journal file.
+	 *
+	 * @param channel The journal file.
+	 * @param path    The journal file's path, to find its index.
+	 * @throws IOException If the file is not a journal or has no generations.
+	 */
+	private GLJournalReader(FileChannel channel, Path path) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = ByteBuffer.allocate(GLJournal.HEADER_SIZE).order(GLJournal.ORDER);
+		readFully(header, 0);
+		for (int i = 0; i < GLJournal.MAGIC.length; i++) {
+			if (header.get(i) != GLJournal.MAGIC[i]) {
+				throw new IOException("Not a journal file");
+			}
+		}
+		if (header.getInt(GLJournal.VERSION_OFFSET) != GLJournal.VERSION) {
+			throw new IOException("Unsupported journal version: " + header.getInt(GLJournal.VERSION_OFFSET));
+		}
+		this.rows = header.getInt(GLJournal.ROWS_OFFSET);
+		this.cols = header.getInt(GLJournal.COLS_OFFSET);
+		this.wordsPerRow = header.getInt(GLJournal.WORDS_OFFSET);
+		if (rows < 0 || cols < 0 || wordsPerRow != GLBoard.wordsFor(cols)
+				|| (long) rows * wordsPerRow > Integer.MAX_VALUE) {
+			throw new IOException("Corrupt journal header");
+		}
+		this.plane = new long[rows * wordsPerRow];
+
+		if (!readIndex(GLJournal.indexPath(path))) {
+			scan(GLJournal.HEADER_SIZE);
+		} else {
+			// Records after the last keyframe are not indexed
+			scan(keyOffsets[keyCount - 1]);
+		}
+		if (keyCount == 0) {
+			throw new IOException("The journal has no generations");
+		}
+	}
+
+	/**
+	 * Opens a journal file to replay it.
+	 *
+	 * @param path The journal file.
+	 * @return The reader.
+	 * @throws IOException If the file is not a journal or has no generations.
+	 */
+	public static GLJournalReader open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new GLJournalReader(channel, path);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the keyframes from the index file, checking that the last one
+	 * lies in the journal.
+	 *
+	 * @param indexPath The index file.
+	 * @return true if the index was read, false if it is missing or does not
+	 *         match the journal.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	private boolean readIndex(Path indexPath) throws IOException {
+		if (!Files.isRegularFile(indexPath)) {
+			return false;
+		}
+		byte[] bytes = Files.readAllBytes(indexPath);
+		int count = bytes.length / GLJournal.INDEX_ENTRY_SIZE;
+		if (count == 0) {
+			return false;
+		}
+		ByteBuffer entries = ByteBuffer.wrap(bytes).order(GLJournal.ORDER);
+		keyGenerations = new long[count];
+		keyOffsets = new long[count];
+		for (int i = 0; i < count; i++) {
+			keyGenerations[i] = entries.getLong();
+			keyOffsets[i] = entries.getLong();
+			if (i > 0 && (keyGenerations[i] <= keyGenerations[i - 1] || keyOffsets[i] <= keyOffsets[i - 1])) {
+				return false;
+			}
+		}
+		long offset = keyOffsets[count - 1];
+		if (offset + GLJournal.RECORD_HEADER_SIZE > channel.size()) {
+			return false;
+		}
+		ByteBuffer record = readRecordHeader(offset);
+		if (record.get(0) != GLJournal.KEYFRAME || record.getLong(1) != keyGenerations[count - 1]) {
+			return false;
+		}
+		keyCount = count;
+		return true;
+	}
+
+	/**
+	 * Reads the headers of the records from an offset to the end of the
+	 * journal, adding the keyframes found after the indexed ones. A record cut
+	 * short, as by a crash while it was written, ends the journal.
+	 *
+	 * @param offset The offset of the first record to read.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	private void scan(long offset) throws IOException {
+		if (keyGenerations == null) {
+			keyGenerations = new long[16];
+			keyOffsets = new long[16];
+		}
+		long size = channel.size();
+		while (offset + GLJournal.RECORD_HEADER_SIZE <= size) {
+			ByteBuffer record = readRecordHeader(offset);
+			byte type = record.get(0);
+			long generation = record.getLong(1);
+			int count = record.getInt(9);
+			long next = offset + GLJournal.RECORD_HEADER_SIZE + recordBytes(type, count);
+			if ((type != GLJournal.KEYFRAME && type != GLJournal.CHANGES) || count < 0 || next > size
+					|| (type == GLJournal.KEYFRAME && count != plane.length)) {
+				break;
+			}
+			if (type == GLJournal.KEYFRAME && (keyCount == 0 || offset > keyOffsets[keyCount - 1])) {
+				if (keyCount == keyGenerations.length) {
+					keyGenerations = Arrays.copyOf(keyGenerations, keyCount * 2);
+					keyOffsets = Arrays.copyOf(keyOffsets, keyCount * 2);
+				}
+				keyGenerations[keyCount] = generation;
+				keyOffsets[keyCount] = offset;
+				keyCount++;
+			}
+			lastGeneration = generation;
+			offset = next;
+		}
+		end = offset;
+	}
+
+	/**
+	 * Computes the size of the words of a record.
+	 *
+	 * @param type  The type of the record.
+	 * @param count The number of words of the record.
+	 * @return The size in bytes, after the header.
+	 */
+	private static long recordBytes(byte type, int count) {
+		return (long) count * (type == GLJournal.KEYFRAME ? Long.BYTES : GLJournal.CHANGE_SIZE);
+	}
+
+	/**
+	 * Gets the number of rows of the boards recorded.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns of the boards recorded.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Gets the first generation recorded.
+	 *
+	 * @return The generation of the first keyframe.
+	 */
+	public long getFirstGeneration() {
+		return keyGenerations[0];
+	}
+
+	/**
+	 * Gets the last generation recorded.
+	 *
+	 * @return The generation of the last complete record.
+	 */
+	public long getLastGeneration() {
+		return lastGeneration;
+	}
+
+	/**
+	 * Gets the number of keyframes of the journal.
+	 *
+	 * @return The number of keyframes.
+	 */
+	public int getKeyframeCount() {
+		return keyCount;
+	}
+
+	/**
+	 * Brings a board to a generation of the journal. Generations dropped
+	 * while recording are missing, so the board gets the latest generation
+	 * recorded at or before the one asked for.
+	 *
+	 * @param generation The generation to go to, clamped to those recorded.
+	 * @param board      The board, of the dimensions of the journal.
+	 * @return The generation the board was brought to.
+	 * @throws IOException              If the journal cannot be read.
+	 * @throws IllegalArgumentException If the board has other dimensions.
+	 */
+	public long seek(long generation, GLBoard board) throws IOException {
+		if (board.getRows() != rows || board.getCols() != cols) {
+			throw new IllegalArgumentException("Invalid board dimensions");
+		}
+		long target = Math.max(getFirstGeneration(), Math.min(lastGeneration, generation));
+		int key = Arrays.binarySearch(keyGenerations, 0, keyCount, target);
+		if (key < 0) {
+			key = -key - 2;
+		}
+		// Going on from the generation last read is cheaper than the keyframe
+		if (planeGeneration < keyGenerations[key] || planeGeneration > target) {
+			nextOffset = keyOffsets[key];
+			planeGeneration = -1;
+		}
+		while (nextOffset < end) {
+			ByteBuffer record = readRecordHeader(nextOffset);
+			byte type = record.get(0);
+			long recordGeneration = record.getLong(1);
+			int count = record.getInt(9);
+			if (recordGeneration > target) {
+				break;
+			}
+			long offset = nextOffset + GLJournal.RECORD_HEADER_SIZE;
+			if (type == GLJournal.KEYFRAME) {
+				readKeyframe(offset);
+			} else {
+				applyChanges(offset, count);
+			}
+			planeGeneration = recordGeneration;
+			nextOffset = offset + recordBytes(type, count);
+		}
+
+		long[] words = board.getWords();
+		for (int r = 0; r < rows; r++) {
+			System.arraycopy(plane, r * wordsPerRow, words, board.rowOffset(r), wordsPerRow);
+		}
+		board.invalidate();
+		return planeGeneration;
+	}
+
+	/**
+	 * Reads the cells of a keyframe into the plane.
+	 *
+	 * @param offset The offset of the cells.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	private void readKeyframe(long offset) throws IOException {
+		int i = 0;
+		while (i < plane.length) {
+			int words = Math.min(plane.length - i, BUFFER_SIZE / Long.BYTES);
+			buffer.clear().limit(words * Long.BYTES);
+			readFully(buffer, offset + (long) i * Long.BYTES);
+			buffer.asLongBuffer().get(plane, i, words);
+			i += words;
+		}
+	}
+
+	/**
+	 * Applies the changes of a record to the plane.
+	 *
+	 * @param offset The offset of the changes.
+	 * @param count  The number of changed words.
+	 * @throws IOException If the journal cannot be read or is corrupt.
+	 */
+	private void applyChanges(long offset, int count) throws IOException {
+		int perRead = BUFFER_SIZE / GLJournal.CHANGE_SIZE;
+		for (int done = 0; done < count; done += perRead) {
+			int changes = Math.min(count - done, perRead);
+			buffer.clear().limit(changes * GLJournal.CHANGE_SIZE);
+			readFully(buffer, offset + (long) done * GLJournal.CHANGE_SIZE);
+			for (int k = 0; k < changes; k++) {
+				int index = buffer.getInt();
+				if (index < 0 || index >= plane.length) {
+					throw new IOException("Corrupt journal record");
+				}
+				plane[index] ^= buffer.getLong();
+			}
+		}
+	}
+
+	/**
+	 * Reads the header of a record.
+	 *
+	 * @param offset The offset of the record.
+	 * @return The type at 0, the generation at 1 and the count at 9.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	private ByteBuffer readRecordHeader(long offset) throws IOException {
+		buffer.clear().limit(GLJournal.RECORD_HEADER_SIZE);
+		readFully(buffer, offset);
+		return buffer;
+	}
+
+	/**
+	 * Fills a buffer from a position of the journal, then flips it.
+	 *
+	 * @param target   The buffer.
+	 * @param position The position to read from.
+	 * @throws IOException If the journal ends before the buffer is full.
+	 */
+	private void readFully(ByteBuffer target, long position) throws IOException {
+		while (target.hasRemaining()) {
+			int read = channel.read(target, position);
+			if (read < 0) {
+				throw new EOFException("Journal ends early");
+			}
+			position += read;
+		}
+		target.flip();
+	}
+
+	/**
+	 * Closes the journal file.
+	 *
+	 * @throws IOException If the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -1,14 +1,18 @@
 package gl.model;
 
-import java.util.Random;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Map;
 import java.util.ResourceBundle;
-import java.util.Stack;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
 
 import gl.controller.GLUpdateListener;
 import gl.view.GLView;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.util.Duration;
+import javafx.animation.AnimationTimer;
 import support.LanguageManager;
 
 /**
@@ -17,16 +21,47 @@ import support.LanguageManager;
  * the game.
  * 
  * This class is responsible for maintaining the state of the Game of Life,
- * including the game board, game rules, and game execution.
+ * including the game board, game rules, and game execution. The board, the
+ * rules and the generations are kept by a {@link GLSimulation}, which has no
+ * user interface; this class runs it for the view.
+ * 
+ * While the game runs, generations are computed on a background thread at the
+ * {@link #getSimulationRate() simulation rate}, and the user interface is
+ * notified once per frame at most, of the latest generation computed. The
+ * board is only touched while holding a lock, which the notifications hold
+ * too, so the view always sees a whole generation.
  * 
  * @author David Burchat
  * @author Marcos Astudillo
  */
 public class GLModel {
 	/**
-	 * The GLBoard instance responsible for managing the game board.
+	 * The simulation rate computing generations as fast as possible.
+	 */
+	public static final int UNLIMITED_RATE = 0;
+
+	/**
+	 * The default number of generations per second while the game runs.
+	 */
+	public static final int DEFAULT_SIMULATION_RATE = 2;
+
+	/**
+	 * The time a chunk of a solution is aimed to take, in nanoseconds. Its
+	 * progress is reported and cancellation is checked between chunks.
+	 */
+	private static final long SOLUTION_CHUNK_NANOS = 50_000_000L;
+
+	/**
+	 * The relative offsets of the eight neighbours of a cell.
+	 */
+	private static final int[][] NEIGHBOUR_OFFSETS = { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 },
+			{ 1, -1 }, { 1, 0 }, { 1, 1 } };
+
+	/**
+	 * The simulation holding the board, the rules, the engine and the
+	 * generations of the game.
 	 */
-	private GLBoard board;
+	private final GLSimulation game;
 
 	/**
 	 * The GLView instance associated with the game controller.
@@ -36,27 +71,63 @@ public class GLModel {
 	/**
 	 * A flag indicating whether the game simulation is currently running.
 	 */
-	private boolean running;
+	private volatile boolean running;
 
 	/**
-	 * A stack that stores previous states of the game board for undo functionality.
+	 * The thread computing the generations while the game runs.
 	 */
-	private Stack<GLCell[][]> previousStates;
+	private Thread simulation;
 
 	/**
-	 * The timeline for the game loop that updates the simulation.
+	 * The timer showing the latest generation once per frame while the game
+	 * runs.
 	 */
-	private Timeline gameLoop;
+	private AnimationTimer frames;
 
 	/**
-	 * The listener responsible for updating the user interface based on game events.
+	 * The lock held while the board is stepped, edited or shown. It is fair, so
+	 * a simulation running as fast as possible does not starve the frames.
 	 */
-	private GLUpdateListener listener;
+	private final ReentrantLock stateLock = new ReentrantLock(true);
+
+	/**
+	 * The number of generations per second while the game runs, or
+	 * {@link #UNLIMITED_RATE}.
+	 */
+	private volatile int simulationRate = DEFAULT_SIMULATION_RATE;
+
+	/**
+	 * Whether the game stops by itself once it settles into a cycle.
+	 */
+	private volatile boolean stopOnCycle;
+
+	/**
+	 * The lock held while a solution is executed, so stopping the game waits
+	 * for it to leave the board.
+	 */
+	private final ReentrantLock solutionLock = new ReentrantLock();
+
+	/**
+	 * Whether the solution being executed is asked to stop after its chunk.
+	 */
+	private volatile boolean solutionStopped;
+
+	/**
+	 * The census counting the objects on the board, which relabels only the
+	 * tiles changed since it last counted.
+	 */
+	private final GLCensus census = new GLCensus();
+
+	/**
+	 * The generation the user interface was last notified of while the game
+	 * ran.
+	 */
+	private long shownGeneration;
 
 	/**
-	 * The rules engine used to determine the next state of cells in the game.
+	 * The listener responsible for updating the user interface based on game events.
 	 */
-	private GLRules gameRules; // Added to handle custom rules
+	private GLUpdateListener listener;
 
 	/**
 	 * A flag indicating whether the game is in manual mode (step-by-step).
@@ -99,10 +170,9 @@ public class GLModel {
      * @param glView The GLFooter instance to update with game changes.
 	 */
 	public GLModel(int rows, int cols, ResourceBundle bundle, GLView glView) {
-		this.board = new GLBoard(rows, cols); // Initialize the game board with the specified dimensions
+		// Initialize the game board with the specified dimensions and Conway's rules
+		this.game = new GLSimulation(rows, cols);
 		this.running = false;
-		this.previousStates = new Stack<>();
-		this.gameRules = new GLRules("000100000001100000"); // Initialize with default Conway's rules
 		this.currentStep = 1; // Initialize step counter to 1
 		this.boardWidth = rows;
 		this.boardHeight = cols;
@@ -150,15 +220,100 @@ public class GLModel {
 	 * @param binaryRule The binary string representing the rules.
 	 */
 	public void setRules(String binaryRule) {
-		this.gameRules = new GLRules(binaryRule);
+		stateLock.lock();
+		try {
+			game.setRules(new GLRules(binaryRule));
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the engine computing the generations of the board.
+	 *
+	 * @return The current engine.
+	 */
+	public GLEngine getEngine() {
+		return game.getEngine();
+	}
+
+	/**
+	 * Selects the engine computing the generations of the board. The board and
+	 * its history are kept.
+	 *
+	 * @param engine The engine to use.
+	 */
+	public void setEngine(GLEngine engine) {
+		stateLock.lock();
+		try {
+			game.setEngine(engine);
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of generations computed per second while the game runs.
+	 *
+	 * @return The simulation rate, or {@link #UNLIMITED_RATE}.
+	 */
+	public int getSimulationRate() {
+		return simulationRate;
+	}
+
+	/**
+	 * Sets the number of generations computed per second while the game runs.
+	 * The rate can be changed while the game runs. The view is refreshed once
+	 * per frame whatever the rate.
+	 *
+	 * @param rate The simulation rate, or {@link #UNLIMITED_RATE} to compute
+	 *             generations as fast as possible.
+	 * @throws IllegalArgumentException If the rate is negative.
+	 */
+	public void setSimulationRate(int rate) {
+		if (rate < 0) {
+			throw new IllegalArgumentException("Invalid simulation rate: " + rate);
+		}
+		simulationRate = rate;
+		// Wake the simulation up so it does not finish waiting at the old rate
+		Thread thread = simulation;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Checks whether the game stops by itself once it settles into a cycle.
+	 *
+	 * @return true if the game stops once settled.
+	 */
+	public boolean isStopOnCycle() {
+		return stopOnCycle;
 	}
 
 	/**
-	 * Notifies the game update listener if it is set.
+	 * Sets whether the game stops by itself once it settles into a cycle,
+	 * such as still lifes and oscillators only. This can be changed while the
+	 * game runs.
+	 *
+	 * @param stopOnCycle true to stop the game once settled.
+	 */
+	public void setStopOnCycle(boolean stopOnCycle) {
+		this.stopOnCycle = stopOnCycle;
+	}
+
+	/**
+	 * Notifies the game update listener if it is set. The state lock is held
+	 * while it is notified, so the board can't change while it is read.
 	 */
 	private void notifyGameUpdateListener() {
 		if (listener != null) {
-			listener.onGameUpdate();
+			stateLock.lock();
+			try {
+				listener.onGameUpdate();
+			} finally {
+				stateLock.unlock();
+			}
 		}
 	}
 
@@ -166,33 +321,29 @@ public class GLModel {
 	 * Fills the game board with random cell states.
 	 */
 	public void fillRandomly() {
-		// Create a random number generator
-		Random random = new Random();
-		// Get the 2D array of cells from the game board
-		GLCell[][] cells = board.getCells();
-		// Iterate through all rows and columns of the board
-		for (int i = 0; i < getBoardWidth(); i++) {
-			for (int j = 0; j < getBoardHeight(); j++) {
-				// Generate a random boolean value to represent the cell's state
-				boolean randomState = random.nextBoolean();
-				// Set the state of the cell in the array to the random state
-				cells[i][j].setAlive(randomState);
-			}
+		stateLock.lock();
+		try {
+			// Start a new game in the engine
+			game.getEngine().reset();
+			// Fill the packed words directly, as one edit
+			game.getBoard().randomizeState();
+			// Notify the game update listener that the board has been updated
+			notifyGameUpdateListener();
+		} finally {
+			stateLock.unlock();
 		}
-		// Notify the game update listener that the board has been updated
-		notifyGameUpdateListener();
 	}
 
 	/**
 	 * Starts the game with the specified number of steps or infinitely if steps is
-	 * empty.
+	 * empty. The generations are computed on a background thread at the
+	 * simulation rate, and the view shows the latest one every frame.
 	 *
 	 * @param steps The number of steps to run the game, or an empty string for
 	 *              infinite mode.
 	 */
 	public void startGame(String steps) {
 		int stepsInt;
-		resetStepCounter();
 		if (steps.isEmpty()) {
 			// If no value is entered for steps, run the game infinitely
 			stepsInt = Integer.MAX_VALUE;
@@ -210,59 +361,244 @@ public class GLModel {
 		if (isRunning()) {
 			return; // If the game is already running, do nothing
 		}
-		// Create a game loop using JavaFX Timeline
-		gameLoop = new Timeline(new KeyFrame(Duration.millis(500), e -> {
-			// Save the current state of the board
-			saveCurrentState();
-			// Evolve the board to the next generation based on the game rules
-			evolve();
-			// Notify the game update listener
-			notifyGameUpdateListener();
-			// Increment the step counter
-			currentStep++;
-			// Check if the desired number of steps has been reached or if the game is over
-			if (currentStep == stepsInt || isGameOver()) {
-				// Stop the game if the specified step count is reached or if there are no live
-				// cells left
-				stopGame();
-			}
-		}));
-		gameLoop.setCycleCount(Timeline.INDEFINITE);
-		// Start the game loop
-		gameLoop.play();
+		// Finish off a game that ended by itself
+		stopGame();
+		resetStepCounter();
+		shownGeneration = game.getGeneration();
 		running = true;
+		simulation = new Thread(() -> simulate(stepsInt), "GL simulation");
+		simulation.setDaemon(true);
+		// Show the latest generation once per frame, skipping the ones in between
+		frames = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				boolean finished = !running;
+				showLatestGeneration();
+				if (finished) {
+					stop();
+				}
+			}
+		};
+		frames.start();
+		simulation.start();
 	}
 
 	/**
-	 * Stops the game if it is running.
+	 * Computes generations until the game is stopped, the number of steps is
+	 * reached or no live cells are left, or until it settles into a cycle if
+	 * it stops then. Runs on the simulation thread.
+	 *
+	 * @param stepsInt The number of steps to run the game.
 	 */
-	public void stopGame() {
-		if (gameLoop != null) {
-			gameLoop.stop();
+	private void simulate(int stepsInt) {
+		long next = System.nanoTime();
+		while (running) {
+			stateLock.lock();
+			try {
+				if (!running) {
+					break;
+				}
+				// Evolve the board to the next generation based on the game rules
+				game.step();
+				// Increment the step counter
+				currentStep++;
+				// Check if the desired number of steps has been reached or if the game is over
+				if (currentStep == stepsInt || isGameOver() || (stopOnCycle && isSettled())) {
+					running = false;
+					break;
+				}
+			} finally {
+				stateLock.unlock();
+			}
+			int rate = simulationRate;
+			if (rate == UNLIMITED_RATE) {
+				next = System.nanoTime();
+				continue;
+			}
+			next += 1_000_000_000L / rate;
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait);
+			} else {
+				// Running behind, do not try to catch up in a burst
+				next = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Notifies the game update listener if a generation was computed since it
+	 * was last notified while the game ran.
+	 */
+	private void showLatestGeneration() {
+		stateLock.lock();
+		try {
+			if (game.getGeneration() != shownGeneration) {
+				shownGeneration = game.getGeneration();
+				notifyGameUpdateListener();
+			}
+		} finally {
+			stateLock.unlock();
 		}
+	}
+
+	/**
+	 * Stops the game if it is running, waiting for the generation being
+	 * computed, and shows the last generation computed. A solution being
+	 * executed is stopped too, once its chunk is computed.
+	 */
+	public void stopGame() {
+		solutionStopped = true;
+		solutionLock.lock();
+		solutionStopped = false;
+		solutionLock.unlock();
 		running = false;
+		Thread thread = simulation;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			boolean interrupted = false;
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			simulation = null;
+		}
+		if (frames != null) {
+			frames.stop();
+			frames = null;
+			showLatestGeneration();
+		}
 	}
 
 	/**
-	 * Advances the game by one step (generation).
+	 * Advances the game by one step (generation), stopping it if it is
+	 * running. The current generation stays available to {@link #prevStep()}.
 	 */
 	public void nextStep() {
-		saveCurrentState();
-		evolve();
+		stopGame();
+		game.step();
 		notifyGameUpdateListener();
 	}
 
 	/**
-	 * Reverts the game to the previous step (generation) if available.
+	 * Reverts the game to the previous step (generation) if available,
+	 * stopping it if it is running. The undo history is used while it lasts,
+	 * then the generation is recomputed from the timeline.
 	 */
 	public void prevStep() {
-		if (!previousStates.isEmpty()) {
-			GLCell[][] lastState = previousStates.pop();
-			board.setCells(lastState);
+		stopGame();
+		if (game.stepBack()) {
 			notifyGameUpdateListener();
 		}
 	}
 
+	/**
+	 * Gets the number of generations since the game was started.
+	 *
+	 * @return The current generation.
+	 */
+	public long getGeneration() {
+		return game.getGeneration();
+	}
+
+	/**
+	 * Gets the period of the cycle the game has settled into, found as the
+	 * generations are computed one at a time.
+	 *
+	 * @return The number of generations after which the board repeats, or 0
+	 *         if the game has not settled.
+	 */
+	public long getCyclePeriod() {
+		return game.getCyclePeriod();
+	}
+
+	/**
+	 * Gets the first generation of the cycle the game has settled into.
+	 *
+	 * @return The first generation of the cycle, or -1 if the game has not
+	 *         settled.
+	 */
+	public long getCycleStart() {
+		return game.getCycleStart();
+	}
+
+	/**
+	 * Counts the objects on the board by kind: blocks, blinkers, gliders and
+	 * so on.
+	 *
+	 * @return The number of objects of each kind, the most common first.
+	 */
+	public Map<String, Integer> takeCensus() {
+		stateLock.lock();
+		try {
+			return census.count(game.getBoard());
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the checkpoints used to go back to past generations.
+	 *
+	 * @return The timeline of the game.
+	 */
+	public GLTimeline getTimeline() {
+		return game.getTimeline();
+	}
+
+	/**
+	 * Brings the game to any generation since it was started, past or future.
+	 * Past generations are recomputed from the closest checkpoint of the
+	 * timeline, so going back costs time rather than memory. The game then
+	 * follows the rules the generation was played with.
+	 *
+	 * @param target The generation to go to.
+	 * @return The generation reached, which is the earliest one kept if the
+	 *         target is before it.
+	 */
+	public long seekGeneration(long target) {
+		stopGame();
+		long reached = game.seek(target);
+		notifyGameUpdateListener();
+		return reached;
+	}
+
+	/**
+	 * Sets how many generations {@link #prevStep()} can go back. The oldest
+	 * generations past it are forgotten.
+	 *
+	 * @param depth The number of generations that can be undone.
+	 */
+	public void setUndoDepth(int depth) {
+		stateLock.lock();
+		try {
+			game.getBoard().setHistoryDepth(depth);
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Sets how much memory the undo history may use. The oldest generations
+	 * are forgotten first when it is exceeded.
+	 *
+	 * @param bytes The memory budget in bytes.
+	 */
+	public void setUndoBudget(long bytes) {
+		stateLock.lock();
+		try {
+			game.getBoard().getHistory().setBudget(bytes);
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
 	/**
 	 * Restarts the game by stopping it, clearing the board, and resetting the step
 	 * counter.
@@ -270,23 +606,136 @@ public class GLModel {
 	public void restartGame() {
 		// Stop the game if it's currently running
 		stopGame();
-		// Get the 2D array of cells from the game board
-		GLCell[][] cells = board.getCells();
-		// Iterate through all rows and columns of the board
-		for (int i = 0; i < cells.length; i++) {
-			for (int j = 0; j < cells[i].length; j++) {
-				// Set the state of each cell to false (dead)
-				cells[i][j].setAlive(false);
-			}
-		}
+		// Set the state of each cell to false (dead) and forget the previous states
+		game.restart();
 		// Reset the step counter to 1
 		resetStepCounter();
-		// Clear the stack of previous states
-		previousStates.clear();
 		// Notify the game update listener that the board has been updated
 		notifyGameUpdateListener();
 	}
 
+	/**
+	 * Starts a new game with a pattern centred on the board, clipped to its
+	 * edges.
+	 *
+	 * @param pattern The pattern read from a file.
+	 */
+	public void loadPattern(GLPattern pattern) {
+		stopGame();
+		stateLock.lock();
+		try {
+			game.load(pattern);
+			resetStepCounter();
+			notifyGameUpdateListener();
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the cells of the board as a pattern.
+	 *
+	 * @param out The channel to write to.
+	 * @param rle true to write the pattern run-length encoded, with the
+	 *            current rules, false to write it as plaintext.
+	 * @throws IOException If the pattern cannot be written.
+	 */
+	public void savePattern(WritableByteChannel out, boolean rle) throws IOException {
+		stateLock.lock();
+		try {
+			if (rle) {
+				GLPattern.writeRle(game.getBoard(), game.getRules(), out);
+			} else {
+				GLPattern.writePlaintext(game.getBoard(), out);
+			}
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Saves the game to a snapshot file, to be restored later.
+	 *
+	 * @param path The snapshot file, replaced if it exists.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void saveSnapshot(Path path) throws IOException {
+		stateLock.lock();
+		try {
+			game.save(path);
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Restores a game saved to a snapshot file, its board taking the
+	 * dimensions of the snapshot.
+	 *
+	 * @param snapshot The snapshot.
+	 */
+	public void restoreSnapshot(GLSnapshot snapshot) {
+		stopGame();
+		stateLock.lock();
+		try {
+			game.restore(snapshot);
+			boardWidth = snapshot.getRows();
+			boardHeight = snapshot.getCols();
+			resetStepCounter();
+			notifyGameUpdateListener();
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts recording the generations of the game to a journal file, from
+	 * the current one, replacing the journal being recorded. Generations are
+	 * written by a background thread; when it falls behind, some are dropped
+	 * so the game never waits for it.
+	 *
+	 * @param path The journal file, replaced if it exists.
+	 * @throws IOException If the journal cannot be created.
+	 */
+	public void startJournal(Path path) throws IOException {
+		stopJournal();
+		stateLock.lock();
+		try {
+			game.setJournal(GLJournal.create(path, game.getBoard()));
+		} finally {
+			stateLock.unlock();
+		}
+	}
+
+	/**
+	 * Stops recording the generations of the game, once the generations
+	 * queued are written.
+	 *
+	 * @throws IOException If a generation could not be written.
+	 */
+	public void stopJournal() throws IOException {
+		GLJournal journal;
+		stateLock.lock();
+		try {
+			journal = game.getJournal();
+			game.setJournal(null);
+		} finally {
+			stateLock.unlock();
+		}
+		if (journal != null) {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Checks whether the generations of the game are recorded to a journal.
+	 *
+	 * @return true if a journal is being recorded.
+	 */
+	public boolean isJournalRecording() {
+		return game.getJournal() != null;
+	}
+
 	/**
 	 * Resets the step counter to 1.
 	 */
@@ -295,100 +744,62 @@ public class GLModel {
 	}
 
 	/**
-	 * Gets the current state of the game board.
+	 * Gets how the edges of the board meet.
 	 *
-	 * @return The 2D array representing the current state of the game board.
+	 * @return The topology of the board.
 	 */
-	public GLCell[][] getBoardState() {
-		return board.getCells();
+	public GLTopology getTopology() {
+		return game.getBoard().getTopology();
 	}
 
 	/**
-	 * Evolves the game board to the next generation based on the current rules.
+	 * Sets how the edges of the board meet.
+	 *
+	 * @param topology The topology of the board.
 	 */
-	private void evolve() {
-		// Get the current state of the board
-		GLCell[][] cells = board.getCells();
-		// Create a new matrix to save the board for the next step (next generation)
-		GLCell[][] nextGeneration = new GLCell[cells.length][cells[0].length];
-
-		// Iterate through each cell of the board
-		for (int i = 0; i < cells.length; i++) {
-			for (int j = 0; j < cells[i].length; j++) {
-				// Count how many neighbors are alive for the current cell
-				int aliveNeighbors = countAliveNeighbors(i, j, cells);
-				// Determine whether the current cell should be alive or dead in the next
-				// generation
-				boolean nextState = gameRules.shouldCellBeAliveNextGeneration(cells[i][j].isAlive(), aliveNeighbors);
-				// Create a new cell for the next generation and set its state (alive or dead)
-				nextGeneration[i][j] = new GLCell();
-				nextGeneration[i][j].setAlive(nextState);
-			}
+	public void setTopology(GLTopology topology) {
+		stateLock.lock();
+		try {
+			game.getBoard().setTopology(topology);
+			notifyGameUpdateListener();
+		} finally {
+			stateLock.unlock();
 		}
-		// Update the game board with the new state for the next generation
-		board.setCells(nextGeneration);
-	}
-
-	/**
-	 * n s=∑ i=a Counts the number of alive neighbors for a cell at the specified
-	 * coordinates.
-	 *
-	 * @param x     The x-coordinate of the cell.
-	 * @param y     The y-coordinate of the cell.
-	 * @param cells The game board cells.
-	 * @return The number of alive neighbors.
-	 */
-	private int countAliveNeighbors(int x, int y, GLCell[][] cells) {
-		// Initialize the count of alive neighbors to 0
-		int count = 0;
-		// Iterate over the neighbors
-		for (int i = -1; i <= 1; i++) {
-			for (int j = -1; j <= 1; j++) {
-				// Exclude the current cell by skipping the position (0,0) (current cell)
-				if (i == 0 && j == 0)
-					continue;
-				// Calculate new x and y coordinates for the current neighbor
-				int newX = x + i;
-				int newY = y + j;
-				// Check if the coordinates are within the board's boundaries and if the
-				// neighbor cell is alive
-				if (newX >= 0 && newX < cells.length && newY >= 0 && newY < cells[newX].length
-						&& cells[newX][newY].isAlive()) {
-					// Increment the count if the neighbor cell is alive
-					count++;
-				}
-			}
+	}
+
+	/**
+	 * Starts or stops tracking the ages and activity of the cells of the
+	 * board, kept across boards replaced by a new game or size.
+	 *
+	 * @param enabled true to track the cells.
+	 */
+	public void setCellStatsEnabled(boolean enabled) {
+		stateLock.lock();
+		try {
+			game.getBoard().setCellStatsEnabled(enabled);
+			notifyGameUpdateListener();
+		} finally {
+			stateLock.unlock();
 		}
-		// Return the total count of alive neighbors
-		return count;
 	}
 
 	/**
-	 * Saves the current state of the game board to the stack of previous states.
+	 * Gets the game board. Cells are read and written through its accessors.
+	 *
+	 * @return The game board.
 	 */
-	private void saveCurrentState() {
-		GLCell[][] currentState = board.getCells();
-		GLCell[][] copiedState = copyState(currentState);
-		previousStates.push(copiedState);
+	public GLBoard getBoard() {
+		return game.getBoard();
 	}
 
 	/**
-	 * Copies the state of the game board to a new 2D array.
+	 * Gets the current state of the game board as a 2D cell array. This is a
+	 * legacy adapter view; prefer {@link #getBoard()}.
 	 *
-	 * @param original The original game board state.
-	 * @return A copy of the game board state.
+	 * @return The 2D array representing the current state of the game board.
 	 */
-	private GLCell[][] copyState(GLCell[][] original) {
-		int rows = original.length;
-		int cols = original[0].length;
-		GLCell[][] copy = new GLCell[rows][cols];
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				copy[i][j] = new GLCell();
-				copy[i][j].setAlive(original[i][j].isAlive());
-			}
-		}
-		return copy;
+	public GLCell[][] getBoardState() {
+		return game.getBoard().getCells();
 	}
 
 	/**
@@ -415,20 +826,18 @@ public class GLModel {
 	 * @return True if the game is over, false otherwise.
 	 */
 	public boolean isGameOver() {
-		// Get the current state of the game board
-		GLCell[][] cells = board.getCells();
-		// Iterate through all rows and columns of the board
-		for (int i = 0; i < cells.length; i++) {
-			for (int j = 0; j < cells[i].length; j++) {
-				// Check if the current cell is alive
-				if (cells[i][j].isAlive()) {
-					// If at least one cell is alive, the game is not over
-					return false;
-				}
-			}
-		}
-		// If no live cells were found, the game is considered over
-		return true;
+		// If no live cells are left in the game, the game is considered over
+		return game.getPopulation() == 0;
+	}
+
+	/**
+	 * Checks if the game has settled into a cycle: still lifes, oscillators,
+	 * or any board that repeats a generation it was in.
+	 *
+	 * @return True if the game has settled, false otherwise.
+	 */
+	public boolean isSettled() {
+		return game.getCyclePeriod() > 0;
 	}
 
 	/**
@@ -437,7 +846,7 @@ public class GLModel {
 	 * @return The current rule as a binary string.
 	 */
 	public String getCurrentRule() {
-		return gameRules.getCurrentRule();
+		return game.getRules().getCurrentRule();
 	}
 
 	/**
@@ -465,7 +874,7 @@ public class GLModel {
 	 */
 	public void setBoardWidth(int width) {
 		boardWidth = width;
-		this.board = new GLBoard(boardWidth, boardHeight);
+		replaceBoard();
 	}
 
 	/**
@@ -475,21 +884,33 @@ public class GLModel {
 	 */
 	public void setBoardHeight(int height) {
 		boardHeight = height;
-		this.board = new GLBoard(boardWidth, boardHeight);
+		replaceBoard();
+	}
+
+	/**
+	 * Replaces the board with an empty one of the current dimensions, keeping
+	 * its history settings, topology and cell tracking.
+	 */
+	private void replaceBoard() {
+		game.replaceBoard(boardWidth, boardHeight);
 	}
 
 	/**
-	 * Resizes the game board to the specified new width and height.
+	 * Resizes the game board to the specified new width and height. The board
+	 * is replaced by an empty one, once.
 	 *
 	 * @param newWidth  The new width for the game board.
 	 * @param newHeight The new height for the game board.
 	 */
 	public void resizeBoard(int newWidth, int newHeight) {
-		board.resize(newWidth, newHeight);
-		setBoardHeight(newHeight);
-		setBoardWidth(newWidth);
-		if (running) {
-			stopGame();
+		stopGame();
+		stateLock.lock();
+		try {
+			boardWidth = newWidth;
+			boardHeight = newHeight;
+			replaceBoard();
+		} finally {
+			stateLock.unlock();
 		}
 		notifyGameUpdateListener();
 	}
@@ -501,60 +922,128 @@ public class GLModel {
 	 * @param y The y-coordinate of the cell.
 	 */
 	public void toggleCellState(int x, int y) {
-		GLCell[][] cells = board.getCells();
-		if (x >= 0 && x < boardWidth && y >= 0 && y < boardHeight) {
-			cells[x][y].toggleAlive();
-			notifyGameUpdateListener();
+		stateLock.lock();
+		try {
+			if (x >= 0 && x < boardWidth && y >= 0 && y < boardHeight) {
+				game.getBoard().toggleAlive(x, y);
+				notifyGameUpdateListener();
+			}
+		} finally {
+			stateLock.unlock();
 		}
 	}
 
 	/**
-	 * Executes the specified number of steps in the game.
+	 * Executes the specified number of steps in the game, for a solution
+	 * computed off the user interface thread. The steps are executed in
+	 * chunks, between which the progress is reported and the execution can be
+	 * cancelled. Chunks start at one generation and are sized by how long the
+	 * last one took, so cancelling takes effect within about
+	 * {@link #SOLUTION_CHUNK_NANOS} whatever the engine and the number of
+	 * steps. The intermediate generations are neither kept for undo nor
+	 * shown: going back from the result goes through the timeline, and the
+	 * listener is not notified, so the caller calls {@link #refresh()} on the
+	 * user interface thread once the execution ends.
 	 *
-	 * @param numSteps The number of steps to execute.
+	 * The execution also stops when the game is stopped, which waits for it
+	 * to end, so the board is not changed once {@link #stopGame()} returns.
+	 *
+	 * @param numSteps  The number of steps to execute.
+	 * @param cancelled Checked between chunks, stops the execution when true.
+	 * @param progress  Receives the number of steps executed after each chunk.
+	 * @return The number of steps executed, fewer than requested if cancelled.
 	 */
-	public void executeSolution(int numSteps) {
-		// Iterate for the specified number of steps
-		for (int i = 0; i < numSteps; i++) {
-			// Check if the game is currently running and stop it if so
-			if (isRunning()) {
-				
-				stopGame(); // Stop the game if it's currently running
+	public long executeSolution(long numSteps, BooleanSupplier cancelled, LongConsumer progress) {
+		solutionLock.lock();
+		try {
+			return executeSolutionChunks(numSteps, cancelled, progress);
+		} finally {
+			solutionLock.unlock();
+		}
+	}
+
+	/**
+	 * Executes the steps of a solution in chunks, while the solution lock is
+	 * held.
+	 *
+	 * @param numSteps  The number of steps to execute.
+	 * @param cancelled Checked between chunks, stops the execution when true.
+	 * @param progress  Receives the number of steps executed after each chunk.
+	 * @return The number of steps executed.
+	 */
+	private long executeSolutionChunks(long numSteps, BooleanSupplier cancelled, LongConsumer progress) {
+		long chunk = 1;
+		long done = 0;
+		stateLock.lock();
+		try {
+			game.getBoard().setRecording(false);
+		} finally {
+			stateLock.unlock();
+		}
+		try {
+			while (done < numSteps && !cancelled.getAsBoolean() && !solutionStopped) {
+				long steps = Math.min(chunk, numSteps - done);
+				long start = System.nanoTime();
+				stateLock.lock();
+				try {
+					game.advance(steps);
+				} finally {
+					stateLock.unlock();
+				}
+				long elapsed = System.nanoTime() - start;
+				done += steps;
+				progress.accept(done);
+				// Grow the chunks while they are quick, shrink them when they are slow
+				if (elapsed < SOLUTION_CHUNK_NANOS / 2 && chunk < Long.MAX_VALUE / 2) {
+					chunk <<= 1;
+				} else if (elapsed > SOLUTION_CHUNK_NANOS) {
+					chunk = Math.max(1, chunk >>> 1);
+				}
+			}
+		} finally {
+			stateLock.lock();
+			try {
+				game.getBoard().setRecording(true);
+			} finally {
+				stateLock.unlock();
 			}
-			nextStep(); // Execute the next step in the game
 		}
-		// Notify the controller or view about the current state after executing the
-		// solution
+		return done;
+	}
+
+	/**
+	 * Notifies the game update listener of the current board, once it was
+	 * changed off the user interface thread or the view needs redrawing. The
+	 * board is held while the listener reads it.
+	 */
+	public void refresh() {
 		notifyGameUpdateListener();
 	}
 
 	/**
 	 * Calculates the number of live neighbors (adjacent cells) for a given cell at
-	 * the specified coordinates.
+	 * the specified coordinates. Cells on the board read the counts the board
+	 * caches.
 	 *
 	 * @param x The x-coordinate of the cell.
 	 * @param y The y-coordinate of the cell.
 	 * @return The number of live neighbors for the cell.
 	 */
 	public int getNumNeighbours(int x, int y) {
+		GLBoard board = game.getBoard();
+		if (x >= 0 && x < board.getRows() && y >= 0 && y < board.getCols()) {
+			return board.getNeighbourCount(x, y);
+		}
 		int numNeighbours = 0;
-		GLCell[][] cells = board.getCells(); // Get the cell array of the board
-
-		// Define relative offsets for neighboring cells
-		int[][] neighborOffsets = { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 },
-				{ 1, 1 } };
 
 		// Iterate through the offsets for neighboring cells
-		for (int[] offset : neighborOffsets) {
+		for (int[] offset : NEIGHBOUR_OFFSETS) {
 			int newX = x + offset[0]; // Calculate the new X coordinate
 			int newY = y + offset[1]; // Calculate the new Y coordinate
 
-			// Check if the coordinates are within the board's boundaries
-			if (newX >= 0 && newX < boardWidth && newY >= 0 && newY < boardHeight) {
-				// Check if the neighboring cell is alive
-				if (cells[newX][newY].isAlive()) {
-					numNeighbours++; // Increment the count of live neighbors
-				}
+			// Check if the neighboring cell is alive, across the edges if they are joined
+			if (board.isAliveAcrossEdges(newX, newY)) {
+				numNeighbours++; // Increment the count of live neighbors
 			}
 		}
 
@@ -0,0 +1,143 @@
+package gl.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@code GLParallelEngine} class evolves the board on several cores. The
+ * rows of tiles are split into stripes that are computed like the bit-sliced
+ * engine does as tasks of a {@link ForkJoinPool}.
+ *
+ * Every stripe reads the current generation and the tile flags, which nobody
+ * writes during a step, and writes a disjoint range of rows and tiles of the
+ * next one, so the result is the same as the serial engine's. The row padding
+ * of {@link GLBoard} keeps the rows written by two stripes off each other's
+ * cache lines.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLParallelEngine extends GLBitSlicedEngine {
+	/**
+	 * The pool the stripes run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The number of rows per stripe, or 0 to choose it from the board size and
+	 * the pool parallelism. Stripes are rounded up to whole rows of tiles.
+	 */
+	private int stripeRows;
+
+
+	/**
+	 * Constructs a parallel engine on the common pool with automatic stripes.
+	 */
+	public GLParallelEngine() {
+		this(ForkJoinPool.commonPool(), 0);
+	}
+
+	/**
+	 * Constructs a parallel engine.
+	 *
+	 * @param pool       The pool the stripes run on.
+	 * @param stripeRows The number of rows per stripe, or 0 for automatic.
+	 */
+	public GLParallelEngine(ForkJoinPool pool, int stripeRows) {
+		this.pool = pool;
+		setStripeRows(stripeRows);
+	}
+
+	@Override
+	public String getName() {
+		return "Parallel";
+	}
+
+	/**
+	 * Gets the number of rows per stripe.
+	 *
+	 * @return The rows per stripe, or 0 if chosen automatically.
+	 */
+	public int getStripeRows() {
+		return stripeRows;
+	}
+
+	/**
+	 * Sets the number of rows per stripe. Smaller stripes balance the load
+	 * better, larger ones cost less scheduling.
+	 *
+	 * @param stripeRows The rows per stripe, or 0 for automatic.
+	 * @throws IllegalArgumentException If the value is negative.
+	 */
+	public void setStripeRows(int stripeRows) {
+		if (stripeRows < 0) {
+			throw new IllegalArgumentException("Invalid stripe size: " + stripeRows);
+		}
+		this.stripeRows = stripeRows;
+	}
+
+	@Override
+	public void step(GLBoard board, GLRules rules) {
+		int tileRows = board.getTileRows();
+		int rows = stripeRows > 0 ? stripeRows : board.getRows() / (pool.getParallelism() * 4);
+		int stripe = Math.max(1, (rows + GLBoard.TILE_ROWS - 1) / GLBoard.TILE_ROWS);
+		if (tileRows <= stripe) {
+			super.step(board, rules);
+			return;
+		}
+		board.useRules(rules);
+		board.fillHalo();
+		long delta = pool.invoke(new StripeTask(kernelFor(rules), board, 0, tileRows, stripe));
+		board.clearHalo();
+		// Swap the buffers so the next generation becomes the current one
+		board.swapTrackedBuffers(delta);
+	}
+
+	/**
+	 * A task computing a range of tile rows, split in halves until the range
+	 * is no larger than one stripe. It yields the change in population.
+	 */
+	private static final class StripeTask extends RecursiveTask<Long> {
+		/** Serial version UID, tasks are never serialized. */
+		private static final long serialVersionUID = 1L;
+		/** The kernel applying the rules. */
+		private final GLBitKernel kernel;
+		/** The board being evolved. */
+		private final GLBoard board;
+		/** The first tile row of the range (inclusive). */
+		private final int rowFrom;
+		/** The last tile row of the range (exclusive). */
+		private final int rowTo;
+		/** The largest range computed without splitting. */
+		private final int stripe;
+
+		/**
+		 * Constructs a task.
+		 *
+		 * @param kernel  The kernel applying the rules.
+		 * @param board   The board being evolved.
+		 * @param rowFrom The first tile row of the range (inclusive).
+		 * @param rowTo   The last tile row of the range (exclusive).
+		 * @param stripe  The largest range computed without splitting.
+		 */
+		StripeTask(GLBitKernel kernel, GLBoard board, int rowFrom, int rowTo, int stripe) {
+			this.kernel = kernel;
+			this.board = board;
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.stripe = stripe;
+		}
+
+		@Override
+		protected Long compute() {
+			if (rowTo - rowFrom <= stripe) {
+				return evolveTiles(kernel, board, rowFrom, rowTo);
+			}
+			int middle = (rowFrom + rowTo) >>> 1;
+			StripeTask lower = new StripeTask(kernel, board, middle, rowTo, stripe);
+			lower.fork();
+			long upper = new StripeTask(kernel, board, rowFrom, middle, stripe).compute();
+			return upper + lower.join();
+		}
+	}
+}
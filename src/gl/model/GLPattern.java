@@ -0,0 +1,535 @@
+package gl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@code GLPattern} class reads and writes Game of Life patterns in the
+ * two text formats pattern collections use: run-length encoded ({@code .rle})
+ * files, whose header gives the size of the pattern and its rule, and
+ * plaintext ({@code .cells}) files, one line per row with {@code O} for live
+ * cells and {@code .} for dead ones.
+ *
+ * Patterns are streamed: the reader parses the bytes of a channel through a
+ * fixed buffer and ORs every run of live cells straight into the packed words
+ * of the pattern's board, and the writers scan the words of a board for runs
+ * and encode them into a fixed buffer. Neither holds the text of the pattern
+ * or a list of its cells, so patterns of millions of cells cost no more
+ * memory than the board they are read into.
+ *
+ * A pattern read is held on a board of its own size, to be placed on a game
+ * board with {@link #placeOn(GLBoard, int, int)}.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public final class GLPattern {
+	/**
+	 * The longest line written in a run-length encoded file.
+	 */
+	private static final int RLE_LINE_LENGTH = 70;
+
+	/**
+	 * The size of the buffers channels are read and written through.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The longest header line read, in bytes.
+	 */
+	private static final int MAX_HEADER_LENGTH = 1 << 12;
+
+	/**
+	 * The first number of rows and columns of a plaintext pattern being read,
+	 * doubled as the pattern turns out larger.
+	 */
+	private static final int INITIAL_PLAINTEXT_SIZE = 64;
+
+	/**
+	 * The cells of the pattern.
+	 */
+	private final GLBoard cells;
+
+	/**
+	 * The rule given by the pattern file, or null.
+	 */
+	private final String rule;
+
+
+	/**
+	 * Constructs a pattern.
+	 *
+	 * @param cells The cells of the pattern.
+	 * @param rule  The rule given by the pattern file, or null.
+	 */
+	private GLPattern(GLBoard cells, String rule) {
+		this.cells = cells;
+		this.rule = rule;
+	}
+
+	/**
+	 * Gets the cells of the pattern, on a board of the pattern's size.
+	 *
+	 * @return The cells.
+	 */
+	public GLBoard getCells() {
+		return cells;
+	}
+
+	/**
+	 * Gets the rule the pattern file was written for.
+	 *
+	 * @return The rule in B/S notation, or null if the file does not give one.
+	 */
+	public String getRule() {
+		return rule;
+	}
+
+	/**
+	 * Sets the cells of the pattern on a board, clipped to its edges. The
+	 * other cells of the board are left as they are.
+	 *
+	 * @param board The board.
+	 * @param row   The row of the board the top of the pattern goes to.
+	 * @param col   The column of the board the left of the pattern goes to.
+	 */
+	public void placeOn(GLBoard board, int row, int col) {
+		board.paste(cells, row, col);
+	}
+
+	/**
+	 * Reads a pattern, run-length encoded if its first line that is not a
+	 * comment is an RLE header, plaintext otherwise. The channel is read to
+	 * the end of the pattern but not closed.
+	 *
+	 * @param in The channel the text of the pattern is read from.
+	 * @return The pattern.
+	 * @throws IOException If the pattern cannot be read or is malformed.
+	 */
+	public static GLPattern read(ReadableByteChannel in) throws IOException {
+		Input input = new Input(in);
+		for (int c = input.next(); c >= 0; c = input.next()) {
+			if (c == '#' || c == '!') {
+				input.skipLine();
+			} else if (c == 'x' || c == 'X') {
+				return readRle(input, input.readLine((char) c));
+			} else if (!isBlank(c)) {
+				return readPlaintext(input, c);
+			}
+		}
+		return new GLPattern(new GLBoard(0, 0), null);
+	}
+
+	/**
+	 * Reads the body of a run-length encoded pattern, the runs of cells
+	 * written into the board as they are parsed.
+	 *
+	 * @param input  The text following the header.
+	 * @param header The header line: {@code x = cols, y = rows, rule = B3/S23}.
+	 * @return The pattern.
+	 * @throws IOException If the pattern is malformed.
+	 */
+	private static GLPattern readRle(Input input, String header) throws IOException {
+		int cols = -1;
+		int rows = -1;
+		String rule = null;
+		for (String field : header.split(",")) {
+			String[] pair = field.split("=", 2);
+			if (pair.length != 2) {
+				throw new IOException("Malformed RLE header: " + header);
+			}
+			String key = pair[0].trim().toLowerCase();
+			String value = pair[1].trim();
+			try {
+				if (key.equals("x")) {
+					cols = Integer.parseInt(value);
+				} else if (key.equals("y")) {
+					rows = Integer.parseInt(value);
+				} else if (key.equals("rule")) {
+					rule = value;
+				}
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed RLE header: " + header);
+			}
+		}
+		if (cols < 0 || rows < 0) {
+			throw new IOException("Malformed RLE header: " + header);
+		}
+
+		GLBoard cells = new GLBoard(rows, cols);
+		long[] words = cells.getWords();
+		int row = 0;
+		int col = 0;
+		int count = 0;
+		boolean lineStart = true;
+		for (int c = input.next(); c >= 0 && c != '!'; c = input.next()) {
+			if (c == '\n') {
+				lineStart = true;
+				continue;
+			}
+			if (lineStart && c == '#') {
+				input.skipLine();
+				continue;
+			}
+			lineStart = false;
+			if (c >= '0' && c <= '9') {
+				if (count > (Integer.MAX_VALUE - 9) / 10) {
+					throw new IOException("RLE run too long");
+				}
+				count = count * 10 + c - '0';
+				continue;
+			}
+			int run = Math.max(1, count);
+			count = 0;
+			if (c == '$') {
+				row += run;
+				col = 0;
+			} else if (c == 'b' || c == '.') {
+				col += run;
+			} else if (Character.isLetter(c)) {
+				// Every state but the dead one is alive
+				if (row >= rows || run > cols - col) {
+					throw new IOException("RLE pattern larger than its header");
+				}
+				setRun(words, cells.rowOffset(row), col, col + run);
+				col += run;
+			} else if (!isBlank(c)) {
+				throw new IOException("Unexpected character in RLE pattern: " + (char) c);
+			}
+		}
+		cells.invalidate();
+		return new GLPattern(cells, rule);
+	}
+
+	/**
+	 * Reads a plaintext pattern. Its size is only known at the end, so the
+	 * board the cells are written into doubles as the rows and columns
+	 * outgrow it, then is cut to the size of the pattern.
+	 *
+	 * @param input The text of the pattern.
+	 * @param first The first character of the first row, already read.
+	 * @return The pattern.
+	 * @throws IOException If the pattern cannot be read.
+	 */
+	private static GLPattern readPlaintext(Input input, int first) throws IOException {
+		GLBoard cells = new GLBoard(INITIAL_PLAINTEXT_SIZE, INITIAL_PLAINTEXT_SIZE);
+		long[] words = cells.getWords();
+		int rows = 0;
+		int cols = 0;
+		int row = 0;
+		int col = 0;
+		boolean lineStart = true;
+		for (int c = first; c >= 0; c = input.next()) {
+			if (c == '\r') {
+				continue;
+			}
+			if (c == '\n') {
+				row++;
+				col = 0;
+				lineStart = true;
+				continue;
+			}
+			if (lineStart && c == '!') {
+				// Comments among the rows are not rows
+				input.skipLine();
+				continue;
+			}
+			lineStart = false;
+			if (row >= cells.getRows() || col >= cells.getCols()) {
+				cells.resize(grow(cells.getRows(), row), grow(cells.getCols(), col));
+				words = cells.getWords();
+			}
+			if (c == 'O' || c == '*') {
+				words[cells.rowOffset(row) + (col >>> 6)] |= 1L << col;
+			}
+			col++;
+			rows = row + 1;
+			cols = Math.max(cols, col);
+		}
+		cells.resize(rows, cols);
+		cells.invalidate();
+		return new GLPattern(cells, null);
+	}
+
+	/**
+	 * Computes the size of a plaintext board after growing to hold an index.
+	 *
+	 * @param size  The current size.
+	 * @param index The row or column to hold.
+	 * @return The new size, doubled as many times as needed.
+	 */
+	private static int grow(int size, int index) {
+		while (size <= index) {
+			size = size > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : size * 2;
+		}
+		return size;
+	}
+
+	/**
+	 * Sets a run of cells of a row alive, a word at a time.
+	 *
+	 * @param words  The packed cells of the board.
+	 * @param offset The offset of the row in the words.
+	 * @param from   The first column of the run.
+	 * @param to     The column after the run.
+	 */
+	private static void setRun(long[] words, int offset, int from, int to) {
+		while (from < to) {
+			int word = from >>> 6;
+			int end = Math.min(to, (word + 1) << 6);
+			words[offset + word] |= GLBoard.bitRange(from & 63, end - (word << 6));
+			from = end;
+		}
+	}
+
+	/**
+	 * Tells whether a character only separates others.
+	 *
+	 * @param c The character.
+	 * @return true for spaces, tabs and line breaks.
+	 */
+	private static boolean isBlank(int c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	/**
+	 * Writes the cells of a board run-length encoded. The runs are found by
+	 * scanning the packed words of the rows, a word at a time. The channel is
+	 * not closed.
+	 *
+	 * @param board The board.
+	 * @param rules The rules written in the header.
+	 * @param out   The channel to write to.
+	 * @throws IOException If the pattern cannot be written.
+	 */
+	public static void writeRle(GLBoard board, GLRules rules, WritableByteChannel out) throws IOException {
+		Output output = new Output(out);
+		output.write("x = " + board.getCols() + ", y = " + board.getRows() + ", rule = " + rules.getNotation() + "\n");
+		long[] words = board.getWords();
+		int cols = board.getCols();
+		int pendingRows = 0;
+		for (int r = 0; r < board.getRows(); r++) {
+			int offset = board.rowOffset(r);
+			int c = 0;
+			while (c < cols) {
+				boolean alive = (words[offset + (c >>> 6)] & (1L << c)) != 0;
+				int end = runEnd(words, offset, c, cols, alive);
+				// Dead cells at the end of a row are left out
+				if (alive || end < cols) {
+					if (pendingRows > 0) {
+						output.run(pendingRows, '$');
+						pendingRows = 0;
+					}
+					output.run(end - c, alive ? 'o' : 'b');
+				}
+				c = end;
+			}
+			pendingRows++;
+		}
+		output.run(1, '!');
+		output.put('\n');
+		output.flush();
+	}
+
+	/**
+	 * Finds where a run of cells of one state ends in a row.
+	 *
+	 * @param words  The packed cells of the board.
+	 * @param offset The offset of the row in the words.
+	 * @param from   The first column of the run.
+	 * @param cols   The number of columns of the board.
+	 * @param alive  The state of the run.
+	 * @return The first column after the run.
+	 */
+	private static int runEnd(long[] words, int offset, int from, int cols, boolean alive) {
+		int word = from >>> 6;
+		long other = (alive ? ~words[offset + word] : words[offset + word]) & (-1L << from);
+		while (other == 0) {
+			if (++word << 6 >= cols) {
+				return cols;
+			}
+			other = alive ? ~words[offset + word] : words[offset + word];
+		}
+		return Math.min(cols, (word << 6) + Long.numberOfTrailingZeros(other));
+	}
+
+	/**
+	 * Writes the cells of a board as plaintext. The channel is not closed.
+	 *
+	 * @param board The board.
+	 * @param out   The channel to write to.
+	 * @throws IOException If the pattern cannot be written.
+	 */
+	public static void writePlaintext(GLBoard board, WritableByteChannel out) throws IOException {
+		Output output = new Output(out);
+		long[] words = board.getWords();
+		for (int r = 0; r < board.getRows(); r++) {
+			int offset = board.rowOffset(r);
+			for (int c = 0; c < board.getCols(); c++) {
+				output.put((words[offset + (c >>> 6)] & (1L << c)) != 0 ? 'O' : '.');
+			}
+			output.put('\n');
+		}
+		output.flush();
+	}
+
+	/**
+	 * The bytes of a channel, read through a fixed buffer.
+	 */
+	private static final class Input {
+		/** The channel read from. */
+		private final ReadableByteChannel channel;
+		/** The bytes read and not yet parsed. */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		/** Whether the channel has no more bytes. */
+		private boolean ended;
+
+		/**
+		 * Constructs the input of a channel.
+		 *
+		 * @param channel The channel to read from.
+		 */
+		Input(ReadableByteChannel channel) {
+			this.channel = channel;
+			buffer.limit(0);
+		}
+
+		/**
+		 * Reads the next byte.
+		 *
+		 * @return The byte, from 0 to 255, or -1 at the end of the channel.
+		 * @throws IOException If the channel cannot be read.
+		 */
+		int next() throws IOException {
+			while (!buffer.hasRemaining()) {
+				if (ended) {
+					return -1;
+				}
+				buffer.clear();
+				ended = channel.read(buffer) < 0;
+				buffer.flip();
+			}
+			return buffer.get() & 0xFF;
+		}
+
+		/**
+		 * Skips the rest of the current line.
+		 *
+		 * @throws IOException If the channel cannot be read.
+		 */
+		void skipLine() throws IOException {
+			for (int c = next(); c >= 0 && c != '\n'; c = next()) {
+				// Skipped
+			}
+		}
+
+		/**
+		 * Reads the rest of the current line.
+		 *
+		 * @param first The first character of the line, already read.
+		 * @return The line, without its line break.
+		 * @throws IOException If the channel cannot be read or the line is too long.
+		 */
+		String readLine(char first) throws IOException {
+			StringBuilder line = new StringBuilder().append(first);
+			for (int c = next(); c >= 0 && c != '\n'; c = next()) {
+				if (line.length() == MAX_HEADER_LENGTH) {
+					throw new IOException("Line too long");
+				}
+				if (c != '\r') {
+					line.append((char) c);
+				}
+			}
+			return line.toString();
+		}
+	}
+
+	/**
+	 * The bytes written to a channel, through a fixed buffer, keeping the
+	 * lines of run-length encoded patterns short.
+	 */
+	private static final class Output {
+		/** The channel written to. */
+		private final WritableByteChannel channel;
+		/** The bytes not yet written. */
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		/** The length of the line being written. */
+		private int lineLength;
+
+		/**
+		 * Constructs the output to a channel.
+		 *
+		 * @param channel The channel to write to.
+		 */
+		Output(WritableByteChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Writes a character.
+		 *
+		 * @param c The character, which is ASCII.
+		 * @throws IOException If the channel cannot be written.
+		 */
+		void put(char c) throws IOException {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+			buffer.put((byte) c);
+			lineLength = c == '\n' ? 0 : lineLength + 1;
+		}
+
+		/**
+		 * Writes a string.
+		 *
+		 * @param text The string, which is ASCII.
+		 * @throws IOException If the channel cannot be written.
+		 */
+		void write(String text) throws IOException {
+			for (byte b : text.getBytes(StandardCharsets.US_ASCII)) {
+				put((char) b);
+			}
+		}
+
+		/**
+		 * Writes a run, starting a new line first when it does not fit on the
+		 * current one.
+		 *
+		 * @param count The length of the run.
+		 * @param tag   The tag of the run.
+		 * @throws IOException If the channel cannot be written.
+		 */
+		void run(int count, char tag) throws IOException {
+			int digits = 0;
+			int scale = 1;
+			if (count > 1) {
+				for (digits = 1; count / scale >= 10; digits++) {
+					scale *= 10;
+				}
+			}
+			if (lineLength + digits + 1 > RLE_LINE_LENGTH) {
+				put('\n');
+			}
+			for (; digits > 0; digits--, scale /= 10) {
+				put((char) ('0' + count / scale % 10));
+			}
+			put(tag);
+		}
+
+		/**
+		 * Writes the buffered bytes to the channel and empties the buffer.
+		 *
+		 * @throws IOException If the channel cannot be written.
+		 */
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -14,8 +14,7 @@ package gl.model;
  * 		Available: https://web.stanford.edu/class/sts145/Library/life.pdf. [Accessed 21 Oct 2023].
  */
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.ResourceBundle;
 
 import support.LanguageManager;
@@ -36,9 +35,21 @@ import support.LanguageManager;
  */
 public class GLRules {
 	/**
-	 * A list of Boolean values representing the binary rules for the Game of Life.
+	 * The number of characters in a binary rule string.
 	 */
-	private List<Boolean> rules;
+	public static final int RULE_LENGTH = 18;
+
+	/**
+	 * The birth half of the rule: bit {@code n} is set when a dead cell with
+	 * {@code n} alive neighbours comes alive (rule characters 0 to 8).
+	 */
+	private int birthMask;
+
+	/**
+	 * The survival half of the rule: bit {@code n} is set when a live cell with
+	 * {@code n} alive neighbours stays alive (rule characters 9 to 17).
+	 */
+	private int survivalMask;
 
 	/**
 	 * The ResourceBundle used for localization.
@@ -60,7 +71,7 @@ public class GLRules {
     public GLRules(String binaryRule) {
         // Check if the binaryRule is null, has an invalid length, or contains
         // non-binary characters.
-        if (binaryRule == null || binaryRule.length() != 18 || !binaryRule.matches("[01]*")) {
+        if (binaryRule == null || binaryRule.length() != RULE_LENGTH || !binaryRule.matches("[01]*")) {
             // Print an error message to the console.
             System.out.println(invalidBinaryRuleMessage);
 
@@ -68,14 +79,41 @@ public class GLRules {
             throw new IllegalArgumentException(bundle.getString("invalidBinaryRuleMessage"));
         }
 
-        // Initialize the list of rules to store the parsed binary values.
-        rules = new ArrayList<>();
+        // Iterate through each character in the binaryRule string and set the
+        // matching bit of the birth or survival mask when the character is '1'.
+        for (int i = 0; i < RULE_LENGTH; i++) {
+            if (binaryRule.charAt(i) == '1') {
+                if (i < 9) {
+                    birthMask |= 1 << i;
+                } else {
+                    survivalMask |= 1 << (i - 9);
+                }
+            }
+        }
+    }
 
-        // Iterate through each character in the binaryRule string.
-        for (char c : binaryRule.toCharArray()) {
-            // Add a Boolean value to the rules list based on whether the character is '1'.
-            rules.add(c == '1');
+    /**
+     * Parses rules written either as a binary rule string or in the B/S
+     * notation of pattern files, such as {@code B3/S23} for Conway's rules.
+     *
+     * @param rule The rule string.
+     * @return The rules.
+     * @throws IllegalArgumentException if the rule is invalid.
+     */
+    public static GLRules parse(String rule) {
+        if (rule == null || !rule.matches("(?i)B[0-8]*/S[0-8]*")) {
+            return new GLRules(rule);
+        }
+        // Set the character of every count listed after B, then after S
+        char[] binary = new char[RULE_LENGTH];
+        Arrays.fill(binary, '0');
+        int slash = rule.indexOf('/');
+        for (int i = 1; i < rule.length(); i++) {
+            if (i != slash && i != slash + 1) {
+                binary[(i < slash ? 0 : 9) + rule.charAt(i) - '0'] = '1';
+            }
         }
+        return new GLRules(new String(binary));
     }
 
     /**
@@ -88,7 +126,6 @@ public class GLRules {
      *         otherwise.
      * @throws IllegalArgumentException  if the number of alive neighbors is not
      *                                   between 0 and 8.
-     * @throws IndexOutOfBoundsException if the rule index is out of bounds.
      */
     public boolean shouldCellBeAliveNextGeneration(boolean isAlive, int aliveNeighbours) {
         // Check if the number of alive neighbors is within the valid range (0 to 8).
@@ -97,18 +134,51 @@ public class GLRules {
                     bundle.getString("invalidAliveNeighborsMessage") + " " + aliveNeighbours);
         }
 
-        // Calculate the index in the rules list based on the current cell state and the
-        // number of alive neighbors.
-        int index = isAlive ? 9 + aliveNeighbours : aliveNeighbours;
+        // Return the rule value (true for alive, false for dead) for the next
+        // generation from the survival or birth half of the rule.
+        int mask = isAlive ? survivalMask : birthMask;
+        return (mask & (1 << aliveNeighbours)) != 0;
+    }
 
-        // Check if the calculated index is within the bounds of the rules list.
-        if (index >= rules.size()) {
-            throw new IndexOutOfBoundsException(bundle.getString("ruleIndexOutOfBoundsMessage") + " " + index);
-        }
+    /**
+     * Gets the birth half of the rule as a bit mask: bit {@code n} is set when
+     * a dead cell with {@code n} alive neighbours comes alive.
+     *
+     * @return The birth mask.
+     */
+    public int getBirthMask() {
+        return birthMask;
+    }
 
-        // Return the rule value (true for alive, false for dead) for the next
-        // generation.
-        return rules.get(index);
+    /**
+     * Gets the survival half of the rule as a bit mask: bit {@code n} is set
+     * when a live cell with {@code n} alive neighbours stays alive.
+     *
+     * @return The survival mask.
+     */
+    public int getSurvivalMask() {
+        return survivalMask;
+    }
+
+    /**
+     * Gets the current rule in the B/S notation of pattern files.
+     *
+     * @return The rule, such as {@code B3/S23}.
+     */
+    public String getNotation() {
+        StringBuilder notation = new StringBuilder("B");
+        for (int n = 0; n < 9; n++) {
+            if ((birthMask & (1 << n)) != 0) {
+                notation.append(n);
+            }
+        }
+        notation.append("/S");
+        for (int n = 0; n < 9; n++) {
+            if ((survivalMask & (1 << n)) != 0) {
+                notation.append(n);
+            }
+        }
+        return notation.toString();
     }
 
     /**
@@ -120,10 +190,11 @@ public class GLRules {
         // Initialize a StringBuilder to construct the binary rule string.
         StringBuilder rule = new StringBuilder();
 
-        // Iterate through the list of rule values (true or false) and append "1" for
-        // true or "0" for false.
-        for (Boolean value : rules) {
-            rule.append(value ? "1" : "0");
+        // Append "1" for every set bit of the birth mask and then of the survival
+        // mask, and "0" for every clear bit.
+        for (int i = 0; i < RULE_LENGTH; i++) {
+            int mask = i < 9 ? birthMask : survivalMask;
+            rule.append((mask & (1 << (i % 9))) != 0 ? "1" : "0");
         }
 
         // Convert the StringBuilder to a string and return the current rule.
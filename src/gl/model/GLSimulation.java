@@ -0,0 +1,359 @@
+package gl.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The {@code GLSimulation} class is the core of the Game of Life: the board,
+ * the rules, the engine computing the generations and the timeline used to go
+ * back to past ones. It has no user interface and does not depend on JavaFX,
+ * so games can be run on machines without a display, as the batch runner
+ * does.
+ *
+ * A simulation is not thread-safe: the {@link GLModel} wrapping it for the
+ * user interface holds its lock around every call.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLSimulation {
+	/**
+	 * The rules of Conway's Game of Life, B3/S23, as a binary rule string.
+	 */
+	public static final String CONWAY_RULE = "000100000001100000";
+
+	/**
+	 * The board the generations are computed on.
+	 */
+	private GLBoard board;
+
+	/**
+	 * The rules the next generation is computed with.
+	 */
+	private GLRules rules;
+
+	/**
+	 * The engine computing the generations of the board.
+	 */
+	private GLEngine engine;
+
+	/**
+	 * The number of generations since the game was started.
+	 */
+	private long generation;
+
+	/**
+	 * The checkpoints used to go back to past generations.
+	 */
+	private final GLTimeline timeline = new GLTimeline();
+
+	/**
+	 * The journal the generations are recorded to, or null.
+	 */
+	private GLJournal journal;
+
+	/**
+	 * Tells when the game settles into a cycle.
+	 */
+	private final GLCycleDetector cycles = new GLCycleDetector();
+
+
+	/**
+	 * Constructs a simulation of an empty board under Conway's rules, evolved
+	 * by the engine the {@link GLAdaptiveEngine} selects.
+	 *
+	 * @param rows The number of rows of the board.
+	 * @param cols The number of columns of the board.
+	 */
+	public GLSimulation(int rows, int cols) {
+		this.board = new GLBoard(rows, cols);
+		this.rules = new GLRules(CONWAY_RULE);
+		this.engine = new GLAdaptiveEngine();
+		this.timeline.reset(0, board, rules);
+	}
+
+	/**
+	 * Gets the board. Cells are read and written through its accessors.
+	 *
+	 * @return The board.
+	 */
+	public GLBoard getBoard() {
+		return board;
+	}
+
+	/**
+	 * Gets the rules the next generation is computed with.
+	 *
+	 * @return The rules.
+	 */
+	public GLRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * Sets the rules the next generations are computed with.
+	 *
+	 * @param rules The rules.
+	 */
+	public void setRules(GLRules rules) {
+		this.rules = rules;
+	}
+
+	/**
+	 * Gets the engine computing the generations of the board.
+	 *
+	 * @return The engine.
+	 */
+	public GLEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Selects the engine computing the generations of the board. The board and
+	 * its history are kept.
+	 *
+	 * @param engine The engine to use.
+	 */
+	public void setEngine(GLEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Gets the number of generations since the game was started.
+	 *
+	 * @return The current generation.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Gets the checkpoints used to go back to past generations.
+	 *
+	 * @return The timeline of the game.
+	 */
+	public GLTimeline getTimeline() {
+		return timeline;
+	}
+
+	/**
+	 * Gets the journal the generations are recorded to.
+	 *
+	 * @return The journal, or null if the generations are not recorded.
+	 */
+	public GLJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Starts or stops recording the generations to a journal, from the
+	 * current one. The journal is not closed when replaced.
+	 *
+	 * @param journal The journal, or null to stop recording.
+	 */
+	public void setJournal(GLJournal journal) {
+		this.journal = journal;
+		if (journal != null) {
+			journal.record(generation, board);
+		}
+	}
+
+	/**
+	 * Gets the period of the cycle the game has settled into. The generations
+	 * computed one at a time are watched, so a cycle is found the first time
+	 * the board repeats, as long as its period is within
+	 * {@link GLCycleDetector#DEFAULT_WINDOW} generations. Cells kept beyond
+	 * the board are not watched.
+	 *
+	 * @return The number of generations after which the board repeats, or 0
+	 *         if the game has not settled or the board was edited since.
+	 */
+	public long getCyclePeriod() {
+		return cycles.isCurrent(generation, board) ? cycles.getPeriod() : 0;
+	}
+
+	/**
+	 * Gets the first generation of the cycle the game has settled into.
+	 *
+	 * @return The first generation of the cycle, or -1 if the game has not
+	 *         settled or the board was edited since.
+	 */
+	public long getCycleStart() {
+		return cycles.isCurrent(generation, board) ? cycles.getCycleStart() : -1;
+	}
+
+	/**
+	 * Gets the number of live cells in the game, beyond the board too with
+	 * engines that keep cells there.
+	 *
+	 * @return The number of live cells.
+	 */
+	public long getPopulation() {
+		return engine.getPopulation(board);
+	}
+
+	/**
+	 * Evolves the board to the next generation. The engine writes the next
+	 * generation into the board's back buffer, which is then swapped in, so
+	 * nothing is allocated.
+	 */
+	public void step() {
+		timeline.sync(generation, board, rules);
+		cycles.sync(generation, board, rules);
+		if (!cycles.isCurrent(generation, board)) {
+			// Start watching from the generation the game is at
+			cycles.observe(generation, board, rules);
+		}
+		engine.step(board, rules);
+		generation++;
+		timeline.record(generation, board, rules);
+		rules = timeline.getRules(generation);
+		cycles.observe(generation, board, rules);
+		if (journal != null) {
+			journal.record(generation, board);
+		}
+	}
+
+	/**
+	 * Advances the board by a number of generations in as few engine calls as
+	 * possible, stopping only where the timeline replays an edit. Engines that
+	 * can skip ahead, such as {@link GLHashLifeEngine}, jump straight to the
+	 * result, and the cycle the game settles into is looked for again from
+	 * the generation reached. While a journal records the game, the
+	 * generations are computed one by one so that each is recorded.
+	 *
+	 * @param generations The number of generations to advance.
+	 */
+	public void advance(long generations) {
+		timeline.sync(generation, board, rules);
+		cycles.sync(generation, board, rules);
+		long target = generation + generations;
+		while (generation < target) {
+			long stop = timeline.nextEdit(generation, target);
+			if (journal != null) {
+				stop = generation + 1;
+			}
+			engine.advance(board, rules, stop - generation);
+			generation = stop;
+			timeline.record(generation, board, rules);
+			rules = timeline.getRules(generation);
+			cycles.observe(generation, board, rules);
+			if (journal != null) {
+				journal.record(generation, board);
+			}
+		}
+	}
+
+	/**
+	 * Goes back one generation. The undo history is used while it lasts, then
+	 * the generation is recomputed from the timeline.
+	 *
+	 * @return true if a generation was gone back to, false if the game is at
+	 *         the earliest generation kept.
+	 */
+	public boolean stepBack() {
+		if (board.undo()) {
+			generation--;
+			timeline.accept(board);
+			rules = timeline.getRules(generation);
+			return true;
+		}
+		if (generation > timeline.getEarliestGeneration()) {
+			seek(generation - 1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Brings the game to any generation since it was started, past or future.
+	 * Past generations are recomputed from the closest checkpoint of the
+	 * timeline, so going back costs time rather than memory. The game then
+	 * follows the rules the generation was played with.
+	 *
+	 * @param target The generation to go to.
+	 * @return The generation reached, which is the earliest one kept if the
+	 *         target is before it.
+	 */
+	public long seek(long target) {
+		generation = timeline.seek(generation, target, board, engine, rules);
+		rules = timeline.getRules(generation);
+		return generation;
+	}
+
+	/**
+	 * Starts the game again on an empty board, forgetting the previous
+	 * generations.
+	 */
+	public void restart() {
+		board.clear();
+		engine.reset();
+		board.clearHistory();
+		generation = 0;
+		timeline.reset(generation, board, rules);
+	}
+
+	/**
+	 * Starts the game again with a pattern centred on the board, clipped to
+	 * its edges, as generation 0.
+	 *
+	 * @param pattern The pattern.
+	 */
+	public void load(GLPattern pattern) {
+		board.clear();
+		GLBoard cells = pattern.getCells();
+		pattern.placeOn(board, (board.getRows() - cells.getRows()) / 2, (board.getCols() - cells.getCols()) / 2);
+		engine.reset();
+		board.clearHistory();
+		generation = 0;
+		timeline.reset(generation, board, rules);
+	}
+
+	/**
+	 * Saves the board, the generation and the rules to a snapshot file.
+	 *
+	 * @param path The snapshot file, replaced if it exists.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void save(Path path) throws IOException {
+		GLSnapshot.write(path, board, generation, rules);
+	}
+
+	/**
+	 * Restores a game saved to a snapshot: its cells, generation, rules and
+	 * topology. The board is replaced if its dimensions differ, and the game
+	 * goes on from the generation of the snapshot, which is the earliest one
+	 * kept.
+	 *
+	 * @param snapshot The snapshot.
+	 */
+	public void restore(GLSnapshot snapshot) {
+		if (board.getRows() != snapshot.getRows() || board.getCols() != snapshot.getCols()) {
+			replaceBoard(snapshot.getRows(), snapshot.getCols());
+		}
+		board.setTopology(snapshot.getTopology());
+		snapshot.copyTo(board);
+		rules = new GLRules(snapshot.getRule());
+		engine.reset();
+		generation = snapshot.getGeneration();
+		timeline.reset(generation, board, rules);
+	}
+
+	/**
+	 * Starts the game again on an empty board of new dimensions, keeping the
+	 * history settings, topology and cell tracking of the current one.
+	 *
+	 * @param rows The number of rows of the board.
+	 * @param cols The number of columns of the board.
+	 */
+	public void replaceBoard(int rows, int cols) {
+		GLBoard replacement = new GLBoard(rows, cols, board.getHistoryDepth());
+		replacement.getHistory().setBudget(board.getHistory().getBudget());
+		replacement.getHistory().setKeyframeInterval(board.getHistory().getKeyframeInterval());
+		replacement.setTopology(board.getTopology());
+		replacement.setCellStatsEnabled(board.isCellStatsEnabled());
+		board = replacement;
+		generation = 0;
+		timeline.reset(generation, board, rules);
+	}
+}
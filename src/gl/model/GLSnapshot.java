@@ -0,0 +1,589 @@
+package gl.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code GLSnapshot} class saves and restores whole Game of Life
+ * universes in a compact binary file: the generation, the rule and the
+ * topology in a header, then the cells packed 64 to a word, row after row,
+ * exactly as a {@link GLBoard} holds them without its halo.
+ *
+ * The cells start on a page boundary and are stored little-endian, the
+ * byte order of the machines the game runs on, so a snapshot is opened by
+ * mapping its file with {@link FileChannel#map} rather than by parsing it:
+ * opening costs the same for a board of a kilobyte or of gigabytes, and only
+ * the pages read are loaded. Restoring a board copies whole rows out of the
+ * mapping.
+ *
+ * A snapshot opened writable is a board of its own, living in the mapped
+ * file rather than on the heap: its cells are read and written in place,
+ * and regions of it are copied to boards small enough to be evolved or
+ * shown. Universes larger than the heap are kept this way.
+ *
+ * The layout, all numbers little-endian:
+ *
+ * <pre>
+ * offset  size  field
+ *      0     8  magic "GLSNAPSH"
+ *      8     4  version
+ *     12     4  rows
+ *     16     4  columns
+ *     20     4  words per row
+ *     24     8  generation
+ *     32     8  population
+ *     40    16  topology name, ASCII, zero padded
+ *     56    32  binary rule string, ASCII, zero padded
+ *   4096        rows x words per row cell words
+ * </pre>
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public final class GLSnapshot {
+	/**
+	 * The extension of snapshot files.
+	 */
+	public static final String EXTENSION = ".gls";
+
+	/**
+	 * The first bytes of every snapshot file.
+	 */
+	private static final byte[] MAGIC = "GLSNAPSH".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The version of the layout written.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The size of the header, which the cells follow. A page, so the cells
+	 * are mapped from a page boundary.
+	 */
+	private static final int HEADER_SIZE = 4096;
+
+	/**
+	 * The offsets of the fields of the header.
+	 */
+	private static final int VERSION_OFFSET = 8, ROWS_OFFSET = 12, COLS_OFFSET = 16, WORDS_OFFSET = 20,
+			GENERATION_OFFSET = 24, POPULATION_OFFSET = 32, TOPOLOGY_OFFSET = 40, RULE_OFFSET = 56;
+
+	/**
+	 * The sizes of the text fields of the header.
+	 */
+	private static final int TOPOLOGY_SIZE = 16, RULE_SIZE = 32;
+
+	/**
+	 * The largest number of bytes mapped at once. Mappings are limited to
+	 * 2 GB, so the cells of larger boards are mapped in segments of rows.
+	 */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	/**
+	 * The byte order of the file.
+	 */
+	private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * The mapped header.
+	 */
+	private final MappedByteBuffer header;
+
+	/**
+	 * The mapped cells, a segment of rows per buffer.
+	 */
+	private final LongBuffer[] segments;
+
+	/**
+	 * The mappings of the segments, kept to force writes to the file.
+	 */
+	private final MappedByteBuffer[] mappings;
+
+	/**
+	 * The number of rows of each segment.
+	 */
+	private final int segmentRows;
+
+	/**
+	 * The dimensions of the universe.
+	 */
+	private final int rows, cols, wordsPerRow;
+
+	/**
+	 * The binary rule string the universe is played with.
+	 */
+	private final String rule;
+
+	/**
+	 * How the edges of the universe meet.
+	 */
+	private final GLTopology topology;
+
+	/**
+	 * Whether the cells can be written.
+	 */
+	private final boolean writable;
+
+
+	/**
+	 * Maps a snapshot file and checks its header.
+	 *
+	 * @param channel  The channel of the file.
+	 * @param writable true to map the cells for writing.
+	 * @throws IOException If the file is not a snapshot or cannot be mapped.
+	 */
+	private GLSnapshot(FileChannel channel, boolean writable) throws IOException {
+		FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+		if (channel.size() < HEADER_SIZE) {
+			throw new IOException("Not a snapshot file");
+		}
+		this.header = channel.map(mode, 0, HEADER_SIZE);
+		header.order(ORDER);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (header.get(i) != MAGIC[i]) {
+				throw new IOException("Not a snapshot file");
+			}
+		}
+		if (header.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException("Unsupported snapshot version: " + header.getInt(VERSION_OFFSET));
+		}
+		this.rows = header.getInt(ROWS_OFFSET);
+		this.cols = header.getInt(COLS_OFFSET);
+		this.wordsPerRow = header.getInt(WORDS_OFFSET);
+		if (rows < 0 || cols < 0 || wordsPerRow != GLBoard.wordsFor(cols)
+				|| channel.size() < HEADER_SIZE + cellBytes(rows, wordsPerRow)) {
+			throw new IOException("Corrupt snapshot header");
+		}
+		this.rule = readText(header, RULE_OFFSET, RULE_SIZE);
+		if (rule.length() != GLRules.RULE_LENGTH || !rule.matches("[01]*")) {
+			throw new IOException("Invalid rule in snapshot: " + rule);
+		}
+		try {
+			this.topology = GLTopology.valueOf(readText(header, TOPOLOGY_OFFSET, TOPOLOGY_SIZE));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown topology in snapshot");
+		}
+		this.writable = writable;
+
+		this.segmentRows = (int) Math.max(1, SEGMENT_BYTES / (wordsPerRow * 8L));
+		int count = rows == 0 ? 0 : (rows - 1) / segmentRows + 1;
+		this.segments = new LongBuffer[count];
+		this.mappings = new MappedByteBuffer[count];
+		for (int s = 0; s < count; s++) {
+			int segmentFrom = s * segmentRows;
+			int segmentTo = Math.min(rows, segmentFrom + segmentRows);
+			mappings[s] = channel.map(mode, HEADER_SIZE + cellBytes(segmentFrom, wordsPerRow),
+					cellBytes(segmentTo - segmentFrom, wordsPerRow));
+			segments[s] = mappings[s].order(ORDER).asLongBuffer();
+		}
+	}
+
+	/**
+	 * Opens a snapshot file by mapping it. The file stays mapped while the
+	 * snapshot is used.
+	 *
+	 * @param path     The snapshot file.
+	 * @param writable true to read and write the cells in place, false to
+	 *                 only read them.
+	 * @return The snapshot.
+	 * @throws IOException If the file is not a snapshot or cannot be mapped.
+	 */
+	public static GLSnapshot open(Path path, boolean writable) throws IOException {
+		try (FileChannel channel = writable
+				? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(path, StandardOpenOption.READ)) {
+			// Mappings outlive the channel they were made from
+			return new GLSnapshot(channel, writable);
+		}
+	}
+
+	/**
+	 * Writes a board to a snapshot file, replacing it if it exists.
+	 *
+	 * @param path       The snapshot file.
+	 * @param board      The board.
+	 * @param generation The generation the board is at.
+	 * @param rules      The rules the board is played with.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(Path path, GLBoard board, long generation, GLRules rules) throws IOException {
+		GLSnapshot snapshot = create(path, board.getRows(), board.getCols(), generation, rules,
+				board.getTopology(), board.getPopulation());
+		snapshot.copyFrom(board);
+		snapshot.force();
+	}
+
+	/**
+	 * Creates a snapshot file of a universe whose cells are all dead, to be
+	 * filled in place. Files are sparse where the system allows it, so even
+	 * huge universes take little room until written.
+	 *
+	 * @param path       The snapshot file, replaced if it exists.
+	 * @param rows       The number of rows of the universe.
+	 * @param cols       The number of columns of the universe.
+	 * @param generation The generation the universe is at.
+	 * @param rules      The rules the universe is played with.
+	 * @param topology   How the edges of the universe meet.
+	 * @return The snapshot, writable.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static GLSnapshot create(Path path, int rows, int cols, long generation, GLRules rules,
+			GLTopology topology) throws IOException {
+		return create(path, rows, cols, generation, rules, topology, 0);
+	}
+
+	/**
+	 * Creates a snapshot file with a header.
+	 *
+	 * @param path       The snapshot file.
+	 * @param rows       The number of rows of the universe.
+	 * @param cols       The number of columns of the universe.
+	 * @param generation The generation the universe is at.
+	 * @param rules      The rules the universe is played with.
+	 * @param topology   How the edges of the universe meet.
+	 * @param population The number of live cells written afterwards.
+	 * @return The snapshot, writable.
+	 * @throws IOException If the file cannot be written.
+	 */
+	private static GLSnapshot create(Path path, int rows, int cols, long generation, GLRules rules,
+			GLTopology topology, long population) throws IOException {
+		if (rows < 0 || cols < 0) {
+			throw new IllegalArgumentException("Invalid snapshot dimensions");
+		}
+		int wordsPerRow = GLBoard.wordsFor(cols);
+		ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE).order(ORDER);
+		head.put(MAGIC);
+		head.putInt(VERSION_OFFSET, VERSION);
+		head.putInt(ROWS_OFFSET, rows);
+		head.putInt(COLS_OFFSET, cols);
+		head.putInt(WORDS_OFFSET, wordsPerRow);
+		head.putLong(GENERATION_OFFSET, generation);
+		head.putLong(POPULATION_OFFSET, population);
+		writeText(head, TOPOLOGY_OFFSET, TOPOLOGY_SIZE, topology.name());
+		writeText(head, RULE_OFFSET, RULE_SIZE, rules.getCurrentRule());
+		head.clear();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SPARSE)) {
+			while (head.hasRemaining()) {
+				channel.write(head, head.position());
+			}
+			long size = HEADER_SIZE + cellBytes(rows, wordsPerRow);
+			if (size > HEADER_SIZE) {
+				// Writing the last byte sizes the file without writing the cells
+				channel.write(ByteBuffer.allocate(1), size - 1);
+			}
+			return new GLSnapshot(channel, true);
+		}
+	}
+
+	/**
+	 * Computes the number of bytes of the cells of some rows.
+	 *
+	 * @param rows        The number of rows.
+	 * @param wordsPerRow The number of words per row.
+	 * @return The size of the rows in bytes.
+	 */
+	private static long cellBytes(int rows, int wordsPerRow) {
+		return (long) rows * wordsPerRow * Long.BYTES;
+	}
+
+	/**
+	 * Reads a zero padded ASCII field of the header.
+	 *
+	 * @param header The header.
+	 * @param offset The offset of the field.
+	 * @param size   The size of the field.
+	 * @return The text of the field.
+	 */
+	private static String readText(ByteBuffer header, int offset, int size) {
+		byte[] text = new byte[size];
+		int length = 0;
+		while (length < size && header.get(offset + length) != 0) {
+			text[length] = header.get(offset + length);
+			length++;
+		}
+		return new String(text, 0, length, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Writes a zero padded ASCII field of the header.
+	 *
+	 * @param header The header.
+	 * @param offset The offset of the field.
+	 * @param size   The size of the field.
+	 * @param text   The text of the field.
+	 * @throws IllegalArgumentException If the text does not fit.
+	 */
+	private static void writeText(ByteBuffer header, int offset, int size, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+		if (bytes.length > size) {
+			throw new IllegalArgumentException("Snapshot field too long: " + text);
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			header.put(offset + i, bytes[i]);
+		}
+	}
+
+	/**
+	 * Gets the number of rows of the universe.
+	 *
+	 * @return The number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns of the universe.
+	 *
+	 * @return The number of columns.
+	 */
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * Gets the generation the universe is at.
+	 *
+	 * @return The generation.
+	 */
+	public long getGeneration() {
+		return header.getLong(GENERATION_OFFSET);
+	}
+
+	/**
+	 * Gets the rule the universe is played with.
+	 *
+	 * @return The binary rule string.
+	 */
+	public String getRule() {
+		return rule;
+	}
+
+	/**
+	 * Gets how the edges of the universe meet.
+	 *
+	 * @return The topology.
+	 */
+	public GLTopology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * Gets the number of live cells of the universe.
+	 *
+	 * @return The population.
+	 */
+	public long getPopulation() {
+		return header.getLong(POPULATION_OFFSET);
+	}
+
+	/**
+	 * Tells whether the cells can be written.
+	 *
+	 * @return true if the snapshot was opened writable.
+	 */
+	public boolean isWritable() {
+		return writable;
+	}
+
+	/**
+	 * Gets the state of a cell.
+	 *
+	 * @param row The row of the cell.
+	 * @param col The column of the cell.
+	 * @return true if the cell is alive.
+	 * @throws IndexOutOfBoundsException If the position is outside the universe.
+	 */
+	public boolean isAlive(int row, int col) {
+		checkBounds(row, col);
+		return (word(row, col >>> 6) & (1L << col)) != 0;
+	}
+
+	/**
+	 * Sets the state of a cell, in the file.
+	 *
+	 * @param row   The row of the cell.
+	 * @param col   The column of the cell.
+	 * @param alive true to make the cell alive.
+	 * @throws IndexOutOfBoundsException If the position is outside the universe.
+	 * @throws IllegalStateException     If the snapshot is read only.
+	 */
+	public void setAlive(int row, int col, boolean alive) {
+		checkBounds(row, col);
+		checkWritable();
+		long word = word(row, col >>> 6);
+		long updated = alive ? word | (1L << col) : word & ~(1L << col);
+		if (updated != word) {
+			segments[row / segmentRows].put(index(row, col >>> 6), updated);
+			header.putLong(POPULATION_OFFSET, getPopulation() + (alive ? 1 : -1));
+		}
+	}
+
+	/**
+	 * Copies the cells of the universe to a board of the same dimensions,
+	 * row by row out of the mapping. The tiles of the board are recounted.
+	 *
+	 * @param board The board.
+	 * @throws IllegalArgumentException If the dimensions differ.
+	 */
+	public void copyTo(GLBoard board) {
+		if (board.getRows() != rows || board.getCols() != cols) {
+			throw new IllegalArgumentException("Invalid board dimensions");
+		}
+		long[] words = board.getWords();
+		for (int r = 0; r < rows; r++) {
+			segments[r / segmentRows].get(index(r, 0), words, board.rowOffset(r), wordsPerRow);
+		}
+		board.invalidate();
+	}
+
+	/**
+	 * Copies a region of the universe to a board, which gets the region of
+	 * its own size whose top left cell is at a position of the universe.
+	 * Cells of the region beyond the universe are dead. The tiles of the
+	 * board are recounted.
+	 *
+	 * @param board The board.
+	 * @param row   The row of the universe the top of the board comes from.
+	 * @param col   The column of the universe the left of the board comes from.
+	 */
+	public void copyTo(GLBoard board, int row, int col) {
+		long[] words = board.getWords();
+		int boardWords = board.getWordsPerRow();
+		long lastWordMask = board.getLastWordMask();
+		for (int r = 0; r < board.getRows(); r++) {
+			int offset = board.rowOffset(r);
+			long source = (long) row + r;
+			for (int w = 0; w < boardWords; w++) {
+				long bits = 0;
+				if (source >= 0 && source < rows) {
+					// The 64 cells from the column of the word, across two words of the universe
+					long first = (long) col + ((long) w << 6);
+					long word = Math.floorDiv(first, 64L);
+					int shift = (int) Math.floorMod(first, 64L);
+					bits = wordAt((int) source, word) >>> shift;
+					if (shift != 0) {
+						bits |= wordAt((int) source, word + 1) << (64 - shift);
+					}
+				}
+				words[offset + w] = w == boardWords - 1 ? bits & lastWordMask : bits;
+			}
+		}
+		board.invalidate();
+	}
+
+	/**
+	 * Copies the cells of a board of the same dimensions into the universe.
+	 * The population is taken from the board.
+	 *
+	 * @param board The board.
+	 * @throws IllegalArgumentException If the dimensions differ.
+	 * @throws IllegalStateException    If the snapshot is read only.
+	 */
+	public void copyFrom(GLBoard board) {
+		if (board.getRows() != rows || board.getCols() != cols) {
+			throw new IllegalArgumentException("Invalid board dimensions");
+		}
+		checkWritable();
+		long[] words = board.getWords();
+		long lastWordMask = board.getLastWordMask();
+		for (int r = 0; r < rows; r++) {
+			LongBuffer segment = segments[r / segmentRows];
+			int offset = board.rowOffset(r);
+			int index = index(r, 0);
+			segment.put(index, words, offset, wordsPerRow - 1);
+			// Halo bits can sit past the last column
+			segment.put(index + wordsPerRow - 1, words[offset + wordsPerRow - 1] & lastWordMask);
+		}
+		header.putLong(POPULATION_OFFSET, board.getPopulation());
+	}
+
+	/**
+	 * Sets the generation the universe is at.
+	 *
+	 * @param generation The generation.
+	 * @throws IllegalStateException If the snapshot is read only.
+	 */
+	public void setGeneration(long generation) {
+		checkWritable();
+		header.putLong(GENERATION_OFFSET, generation);
+	}
+
+	/**
+	 * Writes the changes made to the cells through to the file. The system
+	 * writes them back by itself eventually; this makes sure they are stored.
+	 */
+	public void force() {
+		if (writable) {
+			header.force();
+			for (MappedByteBuffer mapping : mappings) {
+				mapping.force();
+			}
+		}
+	}
+
+	/**
+	 * Gets a word of cells of the universe.
+	 *
+	 * @param row  The row of the word.
+	 * @param word The index of the word within the row.
+	 * @return The cells of the word.
+	 */
+	private long word(int row, int word) {
+		return segments[row / segmentRows].get(index(row, word));
+	}
+
+	/**
+	 * Gets a word of cells of the universe, or no cells past the ends of the row.
+	 *
+	 * @param row  The row of the word.
+	 * @param word The index of the word within the row, which may be outside it.
+	 * @return The cells of the word.
+	 */
+	private long wordAt(int row, long word) {
+		return word < 0 || word >= wordsPerRow ? 0 : word(row, (int) word);
+	}
+
+	/**
+	 * Computes the index of a word in the segment holding its row.
+	 *
+	 * @param row  The row of the word.
+	 * @param word The index of the word within the row.
+	 * @return The index of the word in its segment.
+	 */
+	private int index(int row, int word) {
+		return (row % segmentRows) * wordsPerRow + word;
+	}
+
+	/**
+	 * Checks that a position lies in the universe.
+	 *
+	 * @param row The row of the cell.
+	 * @param col The column of the cell.
+	 * @throws IndexOutOfBoundsException If the position is outside the universe.
+	 */
+	private void checkBounds(int row, int col) {
+		if (row < 0 || row >= rows || col < 0 || col >= cols) {
+			throw new IndexOutOfBoundsException("Cell (" + row + ", " + col + ") is outside the universe");
+		}
+	}
+
+	/**
+	 * Checks that the cells can be written.
+	 *
+	 * @throws IllegalStateException If the snapshot is read only.
+	 */
+	private void checkWritable() {
+		if (!writable) {
+			throw new IllegalStateException("Snapshot opened read only");
+		}
+	}
+}
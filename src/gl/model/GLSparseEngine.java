@@ -0,0 +1,125 @@
+package gl.model;
+
+/**
+ * The {@code GLSparseEngine} class runs the Game of Life in an unbounded
+ * universe. The cells live in a {@link GLSparseUniverse} and the board is a
+ * window on it covering the rows and columns from 0: patterns that leave the
+ * board keep evolving, and may come back, instead of dying at the edge.
+ *
+ * Cells edited on the board are copied into the universe before the next
+ * generation. Undoing a generation brings back the cells on the board only,
+ * the rest of the universe stays where it was. Rules where dead cells with no
+ * neighbours are born would fill the universe, so they are computed on the
+ * board alone by the bit-sliced engine, as are boards whose edges are joined.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLSparseEngine implements GLEngine {
+	/**
+	 * The unbounded universe.
+	 */
+	private final GLSparseUniverse universe = new GLSparseUniverse();
+
+	/**
+	 * The engine providing the kernel, and computing rules the universe can't.
+	 */
+	private final GLBitSlicedEngine fallback = new GLBitSlicedEngine();
+
+	/**
+	 * The board the universe was last written to, or null.
+	 */
+	private GLBoard syncedBoard;
+
+	/**
+	 * The modification count of {@link #syncedBoard} when it was written.
+	 */
+	private long syncedModCount;
+
+
+	@Override
+	public String getName() {
+		return "Unbounded";
+	}
+
+	/**
+	 * Gets the universe the board is a window on.
+	 *
+	 * @return The unbounded universe.
+	 */
+	public GLSparseUniverse getUniverse() {
+		return universe;
+	}
+
+	/**
+	 * Gets the universe the board is a window on, with the cells edited on the
+	 * board since the last generation copied in, to draw beyond the board.
+	 *
+	 * @param board The board being evolved.
+	 * @return The universe, or null if the last generation of the board was
+	 *         not computed in the universe.
+	 */
+	public GLSparseUniverse getUniverse(GLBoard board) {
+		if (board != syncedBoard) {
+			return null;
+		}
+		if (board.getModCount() != syncedModCount) {
+			universe.importWindow(board);
+			syncedModCount = board.getModCount();
+		}
+		return universe;
+	}
+
+	@Override
+	public void step(GLBoard board, GLRules rules) {
+		if ((rules.getBirthMask() & 1) != 0 || board.getTopology() != GLTopology.CLIPPED) {
+			fallback.step(board, rules);
+			syncedBoard = null;
+			return;
+		}
+		sync(board);
+		universe.step(fallback.kernelFor(rules));
+		universe.exportWindow(board, board.getBackWords());
+		// Swap the buffers so the next generation becomes the current one
+		board.swapBuffers();
+		syncedModCount = board.getModCount();
+	}
+
+	@Override
+	public long getPopulation(GLBoard board) {
+		return isSynced(board) ? universe.getPopulation() : board.getPopulation();
+	}
+
+	@Override
+	public void reset() {
+		universe.clear();
+		syncedBoard = null;
+	}
+
+	/**
+	 * Brings the universe up to date with the board. A board the universe has
+	 * not seen starts a new universe; changes made to the board since the last
+	 * generation are copied in.
+	 *
+	 * @param board The board being evolved.
+	 */
+	private void sync(GLBoard board) {
+		if (board != syncedBoard) {
+			universe.clear();
+			universe.importWindow(board);
+			syncedBoard = board;
+		} else if (board.getModCount() != syncedModCount) {
+			universe.importWindow(board);
+		}
+	}
+
+	/**
+	 * Checks whether the universe holds the board's current cells.
+	 *
+	 * @param board The board being evolved.
+	 * @return true if nothing changed the board since the last generation.
+	 */
+	private boolean isSynced(GLBoard board) {
+		return board == syncedBoard && board.getModCount() == syncedModCount;
+	}
+}
@@ -0,0 +1,450 @@
+package gl.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code GLSparseUniverse} class holds an unbounded Game of Life universe.
+ * Cells are stored in chunks of {@link #CHUNK_SIZE} by {@link #CHUNK_SIZE}
+ * cells, one {@code long} word per chunk row, kept in a map keyed by the packed
+ * coordinates of the chunk. Only chunks with live cells are stored, so memory
+ * stays proportional to the live region however far patterns travel.
+ *
+ * Chunk rows and columns are laid out like the words of a {@link GLBoard}:
+ * chunk {@code (r, c)} holds rows {@code 64 r} to {@code 64 r + 63}, and bit
+ * {@code col & 63} of a word is column {@code 64 c + (col & 63)}. The chunk at
+ * {@code (0, 0)} therefore lines up with the first tile of a board, which lets
+ * a board be used as a window on the universe.
+ *
+ * A generation computes every stored chunk, plus the empty chunks next to an
+ * edge that has live cells, since those are the only places activity can
+ * reach. Chunks that come out empty are dropped.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLSparseUniverse {
+	/**
+	 * The number of rows and columns of a chunk.
+	 */
+	public static final int CHUNK_SIZE = 64;
+
+	/**
+	 * An empty chunk, read in place of chunks that are not stored.
+	 */
+	private static final long[] EMPTY = new long[CHUNK_SIZE];
+
+	/**
+	 * The chunks with live cells, keyed by {@link #key(int, int)}.
+	 */
+	private HashMap<Long, long[]> chunks = new HashMap<>();
+
+	/**
+	 * The chunks of the generation being computed.
+	 */
+	private HashMap<Long, long[]> nextChunks = new HashMap<>();
+
+	/**
+	 * Chunk arrays released by the last generation, reused before allocating.
+	 */
+	private final ArrayDeque<long[]> spare = new ArrayDeque<>();
+
+	/**
+	 * The number of live cells in the universe.
+	 */
+	private long population;
+
+	/**
+	 * The number of live cells in {@link #nextChunks}.
+	 */
+	private long nextPopulation;
+
+
+	/**
+	 * Checks whether the cell at the given position is alive.
+	 *
+	 * @param row The row of the cell.
+	 * @param col The column of the cell.
+	 * @return true if the cell is alive, false otherwise.
+	 */
+	public boolean isAlive(long row, long col) {
+		long[] chunk = chunks.get(key(chunkOf(row), chunkOf(col)));
+		return chunk != null && (chunk[(int) (row & 63)] & (1L << col)) != 0;
+	}
+
+	/**
+	 * Sets the state of the cell at the given position. The chunk holding it
+	 * is created or dropped as needed.
+	 *
+	 * @param row   The row of the cell.
+	 * @param col   The column of the cell.
+	 * @param alive true to set the cell as alive, false to set it as dead.
+	 * @throws IndexOutOfBoundsException If the position is outside the range of chunk coordinates.
+	 */
+	public void setAlive(long row, long col, boolean alive) {
+		checkRange(row, col);
+		Long key = key(chunkOf(row), chunkOf(col));
+		long[] chunk = chunks.get(key);
+		if (chunk == null) {
+			if (!alive) {
+				return;
+			}
+			chunk = allocate();
+			chunks.put(key, chunk);
+		}
+		int r = (int) (row & 63);
+		long before = chunk[r];
+		chunk[r] = alive ? before | (1L << col) : before & ~(1L << col);
+		population += Long.bitCount(chunk[r]) - Long.bitCount(before);
+		if (!alive && isEmpty(chunk)) {
+			chunks.remove(key);
+			spare.push(chunk);
+		}
+	}
+
+	/**
+	 * Gets the number of live cells in the universe.
+	 *
+	 * @return The number of live cells.
+	 */
+	public long getPopulation() {
+		return population;
+	}
+
+	/**
+	 * Gets the number of chunks currently stored.
+	 *
+	 * @return The number of chunks with live cells.
+	 */
+	public int getChunkCount() {
+		return chunks.size();
+	}
+
+	/**
+	 * Counts the live cells in blocks of a grid laid over the universe. Block
+	 * {@code (i, j)} covers {@code blockSize} rows from
+	 * {@code rowFrom + i * blockSize} and {@code blockSize} columns from
+	 * {@code colFrom + j * blockSize}, and its count is added to
+	 * {@code counts[i * blockCols + j]}. Only the stored chunks are visited, so
+	 * the cost is in proportion to the live region, not to the area of the
+	 * grid. The universe is only read, so bands of block rows can be counted
+	 * on several threads.
+	 *
+	 * @param rowFrom      The first row of the grid.
+	 * @param colFrom      The first column of the grid.
+	 * @param blockSize    The number of rows and columns of a block.
+	 * @param blockCols    The number of columns of blocks.
+	 * @param blockRowFrom The first row of blocks counted (inclusive).
+	 * @param blockRowTo   The last row of blocks counted (exclusive).
+	 * @param counts       The counts of the blocks, row of blocks after row.
+	 */
+	public void countBlocks(long rowFrom, long colFrom, int blockSize, int blockCols, int blockRowFrom,
+			int blockRowTo, int[] counts) {
+		long top = rowFrom + (long) blockRowFrom * blockSize;
+		long bottom = rowFrom + (long) blockRowTo * blockSize;
+		long colTo = colFrom + (long) blockCols * blockSize;
+		for (Map.Entry<Long, long[]> entry : chunks.entrySet()) {
+			long key = entry.getKey();
+			long chunkTop = (long) (int) (key >> 32) * CHUNK_SIZE;
+			long chunkLeft = (long) (int) key * CHUNK_SIZE;
+			if (chunkTop + CHUNK_SIZE <= top || chunkTop >= bottom || chunkLeft + CHUNK_SIZE <= colFrom
+					|| chunkLeft >= colTo) {
+				continue;
+			}
+			long[] chunk = entry.getValue();
+			int rFrom = (int) Math.max(0, top - chunkTop);
+			int rTo = (int) Math.min(CHUNK_SIZE, bottom - chunkTop);
+			long cFrom = Math.max(chunkLeft, colFrom);
+			long cTo = Math.min(chunkLeft + CHUNK_SIZE, colTo);
+			for (int r = rFrom; r < rTo; r++) {
+				long word = chunk[r];
+				if (word == 0) {
+					continue;
+				}
+				int base = (int) ((chunkTop + r - rowFrom) / blockSize) * blockCols;
+				// Split the word at the edges of the blocks it straddles
+				for (long c = cFrom; c < cTo;) {
+					int blockCol = (int) ((c - colFrom) / blockSize);
+					long end = Math.min(cTo, colFrom + (long) (blockCol + 1) * blockSize);
+					counts[base + blockCol] += Long.bitCount(
+							word & GLBoard.bitRange((int) (c - chunkLeft), (int) (end - chunkLeft)));
+					c = end;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Kills every cell and releases every chunk.
+	 */
+	public void clear() {
+		chunks.clear();
+		spare.clear();
+		population = 0;
+	}
+
+	/**
+	 * Advances the universe by one generation. The rules must not give birth
+	 * to dead cells with no neighbours, or the universe would fill up.
+	 *
+	 * @param kernel The kernel applying the rules.
+	 */
+	void step(GLBitKernel kernel) {
+		nextPopulation = 0;
+		for (Map.Entry<Long, long[]> entry : chunks.entrySet()) {
+			long key = entry.getKey();
+			int chunkRow = (int) (key >> 32);
+			int chunkCol = (int) key;
+			evolveChunk(kernel, chunkRow, chunkCol);
+
+			// Live cells on an edge can spread into the empty chunks across it
+			long[] chunk = entry.getValue();
+			long columns = 0;
+			for (long word : chunk) {
+				columns |= word;
+			}
+			long top = chunk[0];
+			long bottom = chunk[CHUNK_SIZE - 1];
+			if (top != 0) {
+				visit(kernel, chunkRow - 1, chunkCol);
+			}
+			if (bottom != 0) {
+				visit(kernel, chunkRow + 1, chunkCol);
+			}
+			if ((columns & 1) != 0) {
+				visit(kernel, chunkRow, chunkCol - 1);
+			}
+			if (columns < 0) {
+				visit(kernel, chunkRow, chunkCol + 1);
+			}
+			if ((top & 1) != 0) {
+				visit(kernel, chunkRow - 1, chunkCol - 1);
+			}
+			if (top < 0) {
+				visit(kernel, chunkRow - 1, chunkCol + 1);
+			}
+			if ((bottom & 1) != 0) {
+				visit(kernel, chunkRow + 1, chunkCol - 1);
+			}
+			if (bottom < 0) {
+				visit(kernel, chunkRow + 1, chunkCol + 1);
+			}
+		}
+
+		// Retire the old generation, keeping no more spare chunks than live ones
+		for (long[] chunk : chunks.values()) {
+			if (spare.size() < nextChunks.size()) {
+				spare.push(chunk);
+			}
+		}
+		chunks.clear();
+		HashMap<Long, long[]> swap = chunks;
+		chunks = nextChunks;
+		nextChunks = swap;
+		population = nextPopulation;
+	}
+
+	/**
+	 * Copies the cells of a board into the universe, the board covering the
+	 * rows and columns from 0. Cells outside the board are kept.
+	 *
+	 * @param board The board to copy from.
+	 */
+	void importWindow(GLBoard board) {
+		long[] words = board.getWords();
+		int rows = board.getRows();
+		int stride = board.getStride();
+		int wordsPerRow = board.getWordsPerRow();
+		for (int chunkRow = 0; chunkRow * CHUNK_SIZE < rows; chunkRow++) {
+			int rowFrom = chunkRow * CHUNK_SIZE;
+			int height = Math.min(CHUNK_SIZE, rows - rowFrom);
+			for (int chunkCol = 0; chunkCol < wordsPerRow; chunkCol++) {
+				long mask = chunkCol == wordsPerRow - 1 ? board.getLastWordMask() : -1L;
+				Long key = key(chunkRow, chunkCol);
+				long[] chunk = chunks.get(key);
+				if (chunk == null) {
+					chunk = allocate();
+				}
+				int index = board.rowOffset(rowFrom) + chunkCol;
+				for (int r = 0; r < height; r++, index += stride) {
+					long before = chunk[r];
+					chunk[r] = (before & ~mask) | (words[index] & mask);
+					population += Long.bitCount(chunk[r]) - Long.bitCount(before);
+				}
+				if (isEmpty(chunk)) {
+					chunks.remove(key);
+					spare.push(chunk);
+				} else {
+					chunks.put(key, chunk);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the cells of the universe that fall on a board, the board covering
+	 * the rows and columns from 0, into one of the board's buffers.
+	 *
+	 * @param board The board giving the dimensions of the window.
+	 * @param dst   The buffer of the board to write.
+	 */
+	void exportWindow(GLBoard board, long[] dst) {
+		int rows = board.getRows();
+		int stride = board.getStride();
+		int wordsPerRow = board.getWordsPerRow();
+		for (int chunkRow = 0; chunkRow * CHUNK_SIZE < rows; chunkRow++) {
+			int rowFrom = chunkRow * CHUNK_SIZE;
+			int height = Math.min(CHUNK_SIZE, rows - rowFrom);
+			for (int chunkCol = 0; chunkCol < wordsPerRow; chunkCol++) {
+				long mask = chunkCol == wordsPerRow - 1 ? board.getLastWordMask() : -1L;
+				long[] chunk = chunks.getOrDefault(key(chunkRow, chunkCol), EMPTY);
+				int index = board.rowOffset(rowFrom) + chunkCol;
+				for (int r = 0; r < height; r++, index += stride) {
+					dst[index] = chunk[r] & mask;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes an empty chunk next to a live one, unless it was already
+	 * computed this generation.
+	 *
+	 * @param kernel   The kernel applying the rules.
+	 * @param chunkRow The row of the chunk.
+	 * @param chunkCol The column of the chunk.
+	 */
+	private void visit(GLBitKernel kernel, int chunkRow, int chunkCol) {
+		Long key = key(chunkRow, chunkCol);
+		if (!chunks.containsKey(key) && !nextChunks.containsKey(key)) {
+			evolveChunk(kernel, chunkRow, chunkCol);
+		}
+	}
+
+	/**
+	 * Computes the next generation of one chunk into {@link #nextChunks},
+	 * unless it comes out empty.
+	 *
+	 * @param kernel   The kernel applying the rules.
+	 * @param chunkRow The row of the chunk.
+	 * @param chunkCol The column of the chunk.
+	 */
+	private void evolveChunk(GLBitKernel kernel, int chunkRow, int chunkCol) {
+		long[] n = chunk(chunkRow - 1, chunkCol);
+		long[] s = chunk(chunkRow + 1, chunkCol);
+		long[] w = chunk(chunkRow, chunkCol - 1);
+		long[] e = chunk(chunkRow, chunkCol + 1);
+		long[] c = chunk(chunkRow, chunkCol);
+		long[] out = allocate();
+
+		// Slide a three-row window down the chunk, reading the chunks around it
+		long aL = chunk(chunkRow - 1, chunkCol - 1)[CHUNK_SIZE - 1];
+		long a = n[CHUNK_SIZE - 1];
+		long aR = chunk(chunkRow - 1, chunkCol + 1)[CHUNK_SIZE - 1];
+		long bL = w[0], b = c[0], bR = e[0];
+		long count = 0;
+		for (int r = 0; r < CHUNK_SIZE; r++) {
+			long cL, cc, cR;
+			if (r < CHUNK_SIZE - 1) {
+				cL = w[r + 1];
+				cc = c[r + 1];
+				cR = e[r + 1];
+			} else {
+				cL = chunk(chunkRow + 1, chunkCol - 1)[0];
+				cc = s[0];
+				cR = chunk(chunkRow + 1, chunkCol + 1)[0];
+			}
+			out[r] = kernel.next(aL, a, aR, bL, b, bR, cL, cc, cR);
+			count += Long.bitCount(out[r]);
+			aL = bL;
+			a = b;
+			aR = bR;
+			bL = cL;
+			b = cc;
+			bR = cR;
+		}
+
+		if (count == 0) {
+			spare.push(out);
+		} else {
+			nextChunks.put(key(chunkRow, chunkCol), out);
+			nextPopulation += count;
+		}
+	}
+
+	/**
+	 * Gets a stored chunk, or the empty chunk.
+	 *
+	 * @param chunkRow The row of the chunk.
+	 * @param chunkCol The column of the chunk.
+	 * @return The chunk's words.
+	 */
+	private long[] chunk(int chunkRow, int chunkCol) {
+		return chunks.getOrDefault(key(chunkRow, chunkCol), EMPTY);
+	}
+
+	/**
+	 * Takes a cleared chunk array from the spares, or allocates one.
+	 *
+	 * @return A chunk array with no live cells.
+	 */
+	private long[] allocate() {
+		long[] chunk = spare.poll();
+		if (chunk == null) {
+			return new long[CHUNK_SIZE];
+		}
+		Arrays.fill(chunk, 0L);
+		return chunk;
+	}
+
+	/**
+	 * Checks whether a chunk has no live cells.
+	 *
+	 * @param chunk The chunk's words.
+	 * @return true if every word is clear.
+	 */
+	private static boolean isEmpty(long[] chunk) {
+		for (long word : chunk) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Packs the coordinates of a chunk into a map key.
+	 *
+	 * @param chunkRow The row of the chunk.
+	 * @param chunkCol The column of the chunk.
+	 * @return The packed key.
+	 */
+	static long key(int chunkRow, int chunkCol) {
+		return ((long) chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the chunk coordinate holding a cell coordinate.
+	 *
+	 * @param cell The row or column of a cell.
+	 * @return The row or column of its chunk.
+	 */
+	private static int chunkOf(long cell) {
+		return (int) (cell >> 6);
+	}
+
+	/**
+	 * Checks that a position can be stored.
+	 *
+	 * @param row The row of the cell.
+	 * @param col The column of the cell.
+	 * @throws IndexOutOfBoundsException If the chunk coordinates would not fit in an {@code int}.
+	 */
+	private static void checkRange(long row, long col) {
+		if ((row >> 6) != (int) (row >> 6) || (col >> 6) != (int) (col >> 6)) {
+			throw new IndexOutOfBoundsException("Cell (" + row + ", " + col + ") is outside the universe");
+		}
+	}
+}
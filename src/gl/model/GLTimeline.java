@@ -0,0 +1,344 @@
+package gl.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The {@code GLTimeline} class lets the game go back to any past generation
+ * without keeping every generation. It keeps checkpoints of the board, and a
+ * generation between two checkpoints is recomputed forward from the earlier
+ * one.
+ *
+ * A checkpoint is taken every {@link #getInterval()} generations. As they age
+ * the checkpoints are thinned: a checkpoint is dropped while its neighbours
+ * are closer than a spacing that doubles every time its age does, so a run of
+ * n generations keeps O(log n) checkpoints, and going back costs recomputing
+ * a number of generations in proportion to how far back it goes.
+ *
+ * Edits to the board, and changes of the rules, start a new branch: the board
+ * as edited is kept as a checkpoint that is never thinned, and the
+ * checkpoints after it are dropped. Stepping forward through such a
+ * checkpoint replays the edit, and the rules of each generation are kept, so
+ * the timeline is the game as it was played.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLTimeline {
+	/**
+	 * The default number of generations between checkpoints.
+	 */
+	public static final int DEFAULT_INTERVAL = 1024;
+
+	/**
+	 * How many times the spacing of the checkpoints their age has to be before
+	 * the spacing doubles. About half as many checkpoints are kept for each
+	 * doubling of age.
+	 */
+	private static final int CHECKPOINTS_PER_LEVEL = 8;
+
+	/**
+	 * A stored generation.
+	 */
+	private static final class Checkpoint {
+		/** The encoded cells of the board. */
+		final byte[] cells;
+		/** The rules the generations after it follow. */
+		final GLRules rules;
+		/** How the edges of the board met. */
+		final GLTopology topology;
+		/** Whether the board was edited at this generation. */
+		final boolean edit;
+
+		/**
+		 * Constructs a checkpoint.
+		 *
+		 * @param cells    The encoded cells of the board.
+		 * @param rules    The rules the generations after it follow.
+		 * @param topology How the edges of the board met.
+		 * @param edit     Whether the board was edited at this generation.
+		 */
+		Checkpoint(byte[] cells, GLRules rules, GLTopology topology, boolean edit) {
+			this.cells = cells;
+			this.rules = rules;
+			this.topology = topology;
+			this.edit = edit;
+		}
+	}
+
+	/**
+	 * The checkpoints by generation.
+	 */
+	private final TreeMap<Long, Checkpoint> checkpoints = new TreeMap<>();
+
+	/**
+	 * The codec checkpoints are encoded with.
+	 */
+	private final GLWordCodec codec = new GLWordCodec();
+
+	/**
+	 * The number of generations between checkpoints.
+	 */
+	private int interval = DEFAULT_INTERVAL;
+
+	/**
+	 * The modification count of the board when the timeline last saw it, to
+	 * tell edits from steps.
+	 */
+	private long modCount = -1;
+
+
+	/**
+	 * Gets the number of generations between checkpoints.
+	 *
+	 * @return The checkpoint interval.
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Sets the number of generations between checkpoints. Shorter intervals
+	 * make going back faster and use more memory.
+	 *
+	 * @param interval The checkpoint interval.
+	 * @throws IllegalArgumentException If the interval is not positive.
+	 */
+	public void setInterval(int interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Invalid checkpoint interval: " + interval);
+		}
+		this.interval = interval;
+	}
+
+	/**
+	 * Gets the number of checkpoints kept.
+	 *
+	 * @return The number of checkpoints.
+	 */
+	public int getCheckpointCount() {
+		return checkpoints.size();
+	}
+
+	/**
+	 * Gets the earliest generation that can be gone back to.
+	 *
+	 * @return The generation of the first checkpoint, or 0 if there is none.
+	 */
+	public long getEarliestGeneration() {
+		return checkpoints.isEmpty() ? 0 : checkpoints.firstKey();
+	}
+
+	/**
+	 * Gets the rules a generation was played with, which the game follows
+	 * when it is at that generation again.
+	 *
+	 * @param generation The generation.
+	 * @return The rules of the closest checkpoint before the generation.
+	 */
+	public GLRules getRules(long generation) {
+		Map.Entry<Long, Checkpoint> floor = checkpoints.floorEntry(generation);
+		return floor != null ? floor.getValue().rules : checkpoints.firstEntry().getValue().rules;
+	}
+
+	/**
+	 * Forgets every checkpoint and starts over from the current board.
+	 *
+	 * @param generation The generation of the board.
+	 * @param board      The board.
+	 * @param rules      The rules of the game.
+	 */
+	public void reset(long generation, GLBoard board, GLRules rules) {
+		checkpoints.clear();
+		branch(generation, board, rules);
+	}
+
+	/**
+	 * Starts a new branch if the board was edited or the rules changed since
+	 * the timeline last saw it. Called before stepping or seeking.
+	 *
+	 * @param generation The current generation.
+	 * @param board      The board.
+	 * @param rules      The rules of the game.
+	 */
+	public void sync(long generation, GLBoard board, GLRules rules) {
+		Map.Entry<Long, Checkpoint> floor = checkpoints.floorEntry(generation);
+		if (floor == null || board.getModCount() != modCount
+				|| !floor.getValue().rules.getCurrentRule().equals(rules.getCurrentRule())) {
+			branch(generation, board, rules);
+		}
+	}
+
+	/**
+	 * Takes note of the board reached by stepping forward to a generation. An
+	 * edit made at that generation is replayed, and a checkpoint is taken if
+	 * the generation is far enough from the others.
+	 *
+	 * @param generation The generation reached.
+	 * @param board      The board.
+	 * @param rules      The rules the generation was computed with.
+	 */
+	public void record(long generation, GLBoard board, GLRules rules) {
+		Checkpoint at = checkpoints.get(generation);
+		if (at != null && at.edit) {
+			restore(at, board);
+		} else if (at == null) {
+			Long floor = checkpoints.floorKey(generation);
+			Long ceiling = checkpoints.ceilingKey(generation);
+			if ((floor == null || generation - floor >= interval) && (ceiling == null || ceiling - generation >= interval)) {
+				checkpoints.put(generation, new Checkpoint(codec.encode(board.getWords(), board), rules,
+						board.getTopology(), false));
+				thin();
+			}
+		}
+		modCount = board.getModCount();
+	}
+
+	/**
+	 * Takes note of the board reached by undoing generations, which are
+	 * already on the timeline.
+	 *
+	 * @param board The board.
+	 */
+	public void accept(GLBoard board) {
+		modCount = board.getModCount();
+	}
+
+	/**
+	 * Gets the first generation after a given one where the board was edited,
+	 * so stepping can stop there to replay the edit.
+	 *
+	 * @param from The current generation.
+	 * @param to   The generation stepped to.
+	 * @return The generation of the first edit in {@code (from, to]}, or {@code to}.
+	 */
+	public long nextEdit(long from, long to) {
+		for (Map.Entry<Long, Checkpoint> entry : checkpoints.subMap(from, false, to, true).entrySet()) {
+			if (entry.getValue().edit) {
+				return entry.getKey();
+			}
+		}
+		return to;
+	}
+
+	/**
+	 * Brings the board to another generation, recomputing it forward from the
+	 * closest checkpoint before it, or from the current board when that is
+	 * closer. Generations before the earliest checkpoint are out of reach; the
+	 * earliest is used instead. The undo history of the board is cleared when
+	 * it moves: the generations jumped over are not recorded, so an undo never
+	 * goes back more than one generation, and going back past the target
+	 * recomputes it.
+	 *
+	 * Checkpoints hold the cells of the board only. Engines whose universe is
+	 * unbounded, such as {@link GLSparseEngine}, recompute the same
+	 * generations as long as the pattern stayed on the board.
+	 *
+	 * @param generation The current generation.
+	 * @param target     The generation to go to.
+	 * @param board      The board.
+	 * @param engine     The engine recomputing the generations.
+	 * @param rules      The rules of the game.
+	 * @return The generation reached.
+	 */
+	public long seek(long generation, long target, GLBoard board, GLEngine engine, GLRules rules) {
+		sync(generation, board, rules);
+		target = Math.max(target, checkpoints.firstKey());
+		Map.Entry<Long, Checkpoint> from = checkpoints.floorEntry(target);
+		if (target >= generation && from.getKey() <= generation) {
+			// Nothing happened in between, keep going from the current board. The
+			// jump is not recorded for undo, so going back recomputes from here
+			if (target > generation) {
+				boolean recording = board.isRecording();
+				board.setRecording(false);
+				try {
+					engine.advance(board, rules, target - generation);
+				} finally {
+					board.setRecording(recording);
+				}
+			}
+		} else {
+			// Recompute from the checkpoint as it was played, without undo
+			Checkpoint checkpoint = from.getValue();
+			GLTopology topology = board.getTopology();
+			int historyDepth = board.getHistoryDepth();
+			board.setHistoryDepth(0);
+			restore(checkpoint, board);
+			engine.reset();
+			if (checkpoint.topology != topology) {
+				board.setTopology(checkpoint.topology);
+			}
+			engine.advance(board, checkpoint.rules, target - from.getKey());
+			board.setHistoryDepth(historyDepth);
+			record(target, board, checkpoint.rules);
+			if (checkpoint.topology != topology) {
+				// A different topology now is an edit, which the next step branches on
+				board.setTopology(topology);
+			}
+			return target;
+		}
+		record(target, board, rules);
+		return target;
+	}
+
+	/**
+	 * Keeps the board as a checkpoint that is never thinned, replacing the
+	 * checkpoints from its generation on.
+	 *
+	 * @param generation The generation of the board.
+	 * @param board      The board.
+	 * @param rules      The rules of the game.
+	 */
+	private void branch(long generation, GLBoard board, GLRules rules) {
+		checkpoints.tailMap(generation, true).clear();
+		checkpoints.put(generation, new Checkpoint(codec.encode(board.getWords(), board), rules,
+				board.getTopology(), true));
+		modCount = board.getModCount();
+	}
+
+	/**
+	 * Writes the cells of a checkpoint into the board.
+	 *
+	 * @param checkpoint The checkpoint.
+	 * @param board      The board.
+	 */
+	private static void restore(Checkpoint checkpoint, GLBoard board) {
+		long[] words = new long[board.getWords().length];
+		GLWordCodec.apply(checkpoint.cells, words);
+		board.restore(words);
+	}
+
+	/**
+	 * Drops the checkpoints that are closer to their neighbours than their age
+	 * requires, newest first. Edits and the oldest checkpoint are kept.
+	 */
+	private void thin() {
+		Long[] generations = checkpoints.descendingKeySet().toArray(new Long[0]);
+		long latest = generations[0];
+		long newer = latest;
+		for (int i = 1; i < generations.length - 1; i++) {
+			long generation = generations[i];
+			if (!checkpoints.get(generation).edit && newer - generations[i + 1] <= spacing(latest - generation)) {
+				checkpoints.remove(generation);
+			} else {
+				newer = generation;
+			}
+		}
+	}
+
+	/**
+	 * Gets the largest distance allowed between the checkpoints around one of
+	 * a given age: the interval, doubled for every doubling of age past
+	 * {@link #CHECKPOINTS_PER_LEVEL} intervals.
+	 *
+	 * @param age The number of generations since the checkpoint.
+	 * @return The spacing in generations.
+	 */
+	private long spacing(long age) {
+		int level = 64 - Long.numberOfLeadingZeros(age / ((long) interval * CHECKPOINTS_PER_LEVEL));
+		if (level >= Long.numberOfLeadingZeros(interval) - 1) {
+			return Long.MAX_VALUE;
+		}
+		return (long) interval << level;
+	}
+}
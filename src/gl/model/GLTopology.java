@@ -0,0 +1,26 @@
+package gl.model;
+
+/**
+ * The {@code GLTopology} enum lists how the edges of a {@link GLBoard} meet.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public enum GLTopology {
+	/**
+	 * Cells beyond the edges are dead.
+	 */
+	CLIPPED,
+
+	/**
+	 * The left and right edges are joined, and so are the top and bottom ones.
+	 */
+	TORUS,
+
+	/**
+	 * The left and right edges are joined, and the top and bottom ones are
+	 * joined with a half twist: leaving through the top comes back through the
+	 * bottom at the mirrored column.
+	 */
+	KLEIN_BOTTLE
+}
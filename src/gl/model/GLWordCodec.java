@@ -0,0 +1,133 @@
+package gl.model;
+
+import java.util.Arrays;
+
+/**
+ * The {@code GLWordCodec} class encodes the nonzero words of a buffer of
+ * packed cells compactly. Each word is written as the distance to the index of
+ * the previous one, a zigzag variable-length integer, then a byte flagging
+ * which of the word's eight bytes are not zero, then those bytes. Sparse
+ * buffers, such as the difference of two generations of a settled board, cost
+ * a few bytes per nonzero word.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+final class GLWordCodec {
+	/**
+	 * The buffer words are encoded into, grown as needed.
+	 */
+	private byte[] scratch = new byte[4096];
+
+	/**
+	 * The number of bytes used in {@link #scratch}.
+	 */
+	private int length;
+
+	/**
+	 * The index of the previous encoded word.
+	 */
+	private int last;
+
+
+	/**
+	 * Starts a new encoding.
+	 */
+	void begin() {
+		length = 0;
+		last = 0;
+	}
+
+	/**
+	 * Appends one word to the encoding. Words can be written in any order.
+	 *
+	 * @param index The index of the word in the buffer.
+	 * @param word  The word, not zero.
+	 */
+	void write(int index, long word) {
+		if (length + 14 > scratch.length) {
+			scratch = Arrays.copyOf(scratch, scratch.length * 2);
+		}
+		int distance = index - last;
+		last = index;
+		int zigzag = (distance << 1) ^ (distance >> 31);
+		while ((zigzag & ~0x7F) != 0) {
+			scratch[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+			zigzag >>>= 7;
+		}
+		scratch[length++] = (byte) zigzag;
+
+		int flags = length++;
+		int present = 0;
+		for (int k = 0; k < 8; k++) {
+			byte b = (byte) (word >>> (k * 8));
+			if (b != 0) {
+				present |= 1 << k;
+				scratch[length++] = b;
+			}
+		}
+		scratch[flags] = (byte) present;
+	}
+
+	/**
+	 * Finishes the encoding.
+	 *
+	 * @return The encoded words.
+	 */
+	byte[] end() {
+		return Arrays.copyOf(scratch, length);
+	}
+
+	/**
+	 * Encodes all the cells of a buffer laid out like a board.
+	 *
+	 * @param words The cells to encode.
+	 * @param board The board, giving the layout of the cells.
+	 * @return The encoded cells.
+	 */
+	byte[] encode(long[] words, GLBoard board) {
+		begin();
+		for (int i = 0; i < board.getRows(); i++) {
+			int index = board.rowOffset(i);
+			for (int w = 0; w < board.getWordsPerRow(); w++, index++) {
+				if (words[index] != 0) {
+					write(index, words[index]);
+				}
+			}
+		}
+		return end();
+	}
+
+	/**
+	 * XORs encoded words into a buffer.
+	 *
+	 * @param encoded The encoded words.
+	 * @param words   The buffer to change.
+	 */
+	static void apply(byte[] encoded, long[] words) {
+		int index = 0;
+		int pos = 0;
+		while (pos < encoded.length) {
+			// Index distance, zigzag variable-length encoded
+			int zigzag = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = encoded[pos++];
+				zigzag |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			index += (zigzag >>> 1) ^ -(zigzag & 1);
+
+			// Bytes flagged as not zero, lowest first
+			int present = encoded[pos++] & 0xFF;
+			long word = 0;
+			for (int k = 0; present != 0; k++, present >>>= 1) {
+				if ((present & 1) != 0) {
+					word |= (encoded[pos++] & 0xFFL) << (k * 8);
+				}
+			}
+			words[index] ^= word;
+		}
+	}
+}
@@ -0,0 +1,881 @@
+package gl.view;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import gl.model.GLBoard;
+import gl.model.GLSparseUniverse;
+import gl.model.GLTopology;
+import javafx.scene.canvas.Canvas;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * The {@code GLBoardCanvas} class draws the game board on a single
+ * {@link Canvas} instead of one scene graph node per cell. The cells are
+ * written one pixel each straight from the packed words of the board into an
+ * {@code int} array, which backs a {@link PixelBuffer} shared with a
+ * {@link WritableImage}, and the image is drawn scaled to the cell size. The
+ * words are expanded a byte at a time, eight pixels copied from a table
+ * precomputed for the current color. The pixels changed during a frame are
+ * handed to the image in a single texture update. Clicks are mapped to cells
+ * by dividing by the cell size.
+ *
+ * The canvas is a viewport on the board: the mouse wheel zooms around the
+ * pointer and dragging pans, and only the visible part of the board is drawn.
+ * Below one pixel per cell, each pixel is shaded by the density of the cells
+ * it covers, counted a word at a time on several threads. With the unbounded
+ * engine the universe around the board is drawn the same way, counted from
+ * its chunks, so navigating a huge sparse universe costs in proportion to the
+ * pixels and the live chunks in view.
+ *
+ * Drawing is incremental. The canvas keeps the words it last painted and
+ * takes the tiles of the board that changed since; within them, only the
+ * cells whose word differs from what was painted are repainted, and only the
+ * rectangle around those tiles is updated in the texture. A settled board
+ * costs a flag check per tile. In multicolor mode a cell's color depends on
+ * its neighbours, so the tiles around a changed one are repainted whole;
+ * when cells are colored by age, every generation changes the colors of the
+ * live cells, so the whole board is repainted once per frame while it
+ * changes.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLBoardCanvas extends Canvas {
+	/**
+	 * Gives the colors of cells, for boards drawn in several colors.
+	 */
+	@FunctionalInterface
+	public interface CellColors {
+		/**
+		 * Gets the color of a live cell.
+		 *
+		 * @param row The row of the cell.
+		 * @param col The column of the cell.
+		 * @return The color as a 32-bit ARGB value.
+		 */
+		int colorOf(int row, int col);
+
+		/**
+		 * Gets the color of a dead cell. Dead cells are white by default.
+		 *
+		 * @param row The row of the cell.
+		 * @param col The column of the cell.
+		 * @return The color as a 32-bit ARGB value.
+		 */
+		default int deadColorOf(int row, int col) {
+			return DEAD;
+		}
+
+		/**
+		 * Checks whether the colors change with every generation, even for
+		 * cells whose neighbourhood did not change, as ages do.
+		 *
+		 * @return true to repaint every cell whenever the board changes.
+		 */
+		default boolean isAging() {
+			return false;
+		}
+	}
+
+	/**
+	 * Receives the cell under a click.
+	 */
+	@FunctionalInterface
+	public interface CellClickHandler {
+		/**
+		 * Handles a click on a cell.
+		 *
+		 * @param row The row of the cell.
+		 * @param col The column of the cell.
+		 */
+		void cellClicked(int row, int col);
+	}
+
+	/**
+	 * The color of dead cells, as a 32-bit ARGB value.
+	 */
+	private static final int DEAD = 0xFFFFFFFF;
+
+	/**
+	 * The color outside the board, as a 32-bit ARGB value.
+	 */
+	private static final int OUTSIDE = 0xFFD3D3D3;
+
+	/**
+	 * The smallest cell size, in pixels, at which the grid lines are drawn.
+	 */
+	private static final double MIN_GRID_CELL_SIZE = 4;
+
+	/**
+	 * The smallest cell size, in pixels, the view can be zoomed out to.
+	 */
+	private static final double MIN_CELL_SIZE = 1.0 / 1024;
+
+	/**
+	 * The largest cell size, in pixels, the view can be zoomed in to.
+	 */
+	private static final double MAX_CELL_SIZE = 64;
+
+	/**
+	 * The factor the cell size is multiplied or divided by per wheel notch.
+	 */
+	private static final double ZOOM_STEP = 1.25;
+
+	/**
+	 * The number of bands of pixel rows the densities are counted in, so they
+	 * are spread over the threads.
+	 */
+	private static final int DENSITY_BANDS = 32;
+
+	/**
+	 * The number of rows drawn.
+	 */
+	private int rows;
+
+	/**
+	 * The number of columns drawn.
+	 */
+	private int cols;
+
+	/**
+	 * The size of a cell on screen, in pixels.
+	 */
+	private double cellSize;
+
+	/**
+	 * The image holding one pixel per cell, backed by {@link #pixelBuffer}.
+	 */
+	private WritableImage image;
+
+	/**
+	 * The buffer shared by {@link #pixels} and {@link #image}.
+	 */
+	private PixelBuffer<IntBuffer> pixelBuffer;
+
+	/**
+	 * The pixels of {@link #image}, row by row, as premultiplied ARGB values.
+	 */
+	private int[] pixels;
+
+	/**
+	 * The rectangle of {@link #pixels} changed since the image was last
+	 * updated, as its first and last rows and columns (exclusive), or an empty
+	 * one.
+	 */
+	private int changedRowFrom, changedRowTo, changedColFrom, changedColTo;
+
+	/**
+	 * The eight pixels each value of a byte of cells expands to, eight entries
+	 * per value, in the colors of {@link #expandedAlive}.
+	 */
+	private final int[] expansion = new int[256 * 8];
+
+	/**
+	 * The color of live cells in {@link #expansion}.
+	 */
+	private int expandedAlive;
+
+	/**
+	 * Whether {@link #expansion} was built.
+	 */
+	private boolean expanded;
+
+	/**
+	 * The cells last painted, one word per 64 cells, row after row.
+	 */
+	private long[] shown;
+
+	/**
+	 * The board last painted, or null to paint everything next time.
+	 */
+	private GLBoard shownBoard;
+
+	/**
+	 * The color live cells were last painted with.
+	 */
+	private int shownAlive;
+
+	/**
+	 * The colors live cells were last painted with, or null for one color.
+	 */
+	private CellColors shownColors;
+
+	/**
+	 * The modification count of the board when it was last painted whole.
+	 */
+	private long shownModCount;
+
+	/**
+	 * The tiles to repaint in multicolor mode, reused between frames.
+	 */
+	private boolean[] repaint;
+
+	/**
+	 * The handler of clicks on cells, or null.
+	 */
+	private CellClickHandler clickHandler;
+
+	/**
+	 * Called when the view is zoomed, panned or resized, to draw it again.
+	 */
+	private Runnable viewportHandler;
+
+	/**
+	 * The row of the cell at the top edge of the view, in cells.
+	 */
+	private double originRow;
+
+	/**
+	 * The column of the cell at the left edge of the view, in cells.
+	 */
+	private double originCol;
+
+	/**
+	 * The position of the pointer when the view was last dragged.
+	 */
+	private double dragX, dragY;
+
+	/**
+	 * The board last drawn, drawn again when only the view changed.
+	 */
+	private GLBoard drawnBoard;
+
+	/**
+	 * The universe last drawn around the board, or null.
+	 */
+	private GLSparseUniverse drawnUniverse;
+
+	/**
+	 * The image holding one pixel per block of cells when zoomed out, backed
+	 * by {@link #densityPixels}.
+	 */
+	private WritableImage densityImage;
+
+	/**
+	 * The buffer shared by {@link #densityPixels} and {@link #densityImage}.
+	 */
+	private PixelBuffer<IntBuffer> densityBuffer;
+
+	/**
+	 * The pixels of {@link #densityImage}, row by row.
+	 */
+	private int[] densityPixels;
+
+	/**
+	 * The live cells counted in each block of {@link #densityImage}.
+	 */
+	private int[] densityCounts;
+
+
+	/**
+	 * Constructs an empty canvas. {@link #resize(int, int, double)} sets the
+	 * dimensions of the board; the canvas is sized by its container.
+	 */
+	public GLBoardCanvas() {
+		setOnMouseClicked(e -> {
+			if (!e.isStillSincePress()) {
+				return;
+			}
+			double row = Math.floor(originRow + e.getY() / cellSize);
+			double col = Math.floor(originCol + e.getX() / cellSize);
+			if (clickHandler != null && row >= 0 && row < rows && col >= 0 && col < cols) {
+				clickHandler.cellClicked((int) row, (int) col);
+			}
+		});
+		setOnMousePressed(e -> {
+			dragX = e.getX();
+			dragY = e.getY();
+		});
+		setOnMouseDragged(e -> {
+			originCol -= (e.getX() - dragX) / cellSize;
+			originRow -= (e.getY() - dragY) / cellSize;
+			dragX = e.getX();
+			dragY = e.getY();
+			viewportChanged();
+		});
+		setOnScroll(e -> {
+			if (e.getDeltaY() != 0) {
+				zoom(e.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX(), e.getY());
+			}
+		});
+		widthProperty().addListener((observable, oldWidth, newWidth) -> viewportChanged());
+		heightProperty().addListener((observable, oldHeight, newHeight) -> viewportChanged());
+	}
+
+	/**
+	 * Sets what is called when the view is zoomed, panned or resized. It should
+	 * draw the board again.
+	 *
+	 * @param viewportHandler The handler, or null to draw the last board again.
+	 */
+	public void setOnViewportChanged(Runnable viewportHandler) {
+		this.viewportHandler = viewportHandler;
+	}
+
+	/**
+	 * Zooms the view, keeping the cell under a point of the canvas in place.
+	 *
+	 * @param factor The factor to multiply the cell size by.
+	 * @param x      The horizontal position of the point.
+	 * @param y      The vertical position of the point.
+	 */
+	public void zoom(double factor, double x, double y) {
+		double size = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, cellSize * factor));
+		originCol += x / cellSize - x / size;
+		originRow += y / cellSize - y / size;
+		cellSize = size;
+		viewportChanged();
+	}
+
+	/**
+	 * Draws the board again after the view changed.
+	 */
+	private void viewportChanged() {
+		if (viewportHandler != null) {
+			viewportHandler.run();
+		} else if (drawnBoard != null) {
+			render(drawnBoard, shownAlive, drawnUniverse);
+		}
+	}
+
+	/**
+	 * Sets the handler of clicks on cells.
+	 *
+	 * @param clickHandler The handler, or null to ignore clicks.
+	 */
+	public void setOnCellClicked(CellClickHandler clickHandler) {
+		this.clickHandler = clickHandler;
+	}
+
+	/**
+	 * Gets the size of a cell on screen, which zooming changes.
+	 *
+	 * @return The cell size in pixels.
+	 */
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Sets the dimensions of the board drawn and the size of its cells. The
+	 * view is brought back to the top left corner of the board.
+	 *
+	 * @param rows     The number of rows.
+	 * @param cols     The number of columns.
+	 * @param cellSize The size of a cell in pixels.
+	 */
+	public void resize(int rows, int cols, double cellSize) {
+		this.rows = rows;
+		this.cols = cols;
+		this.cellSize = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, cellSize));
+		pixels = new int[Math.max(1, rows) * Math.max(1, cols)];
+		pixelBuffer = new PixelBuffer<>(Math.max(1, cols), Math.max(1, rows), IntBuffer.wrap(pixels),
+				PixelFormat.getIntArgbPreInstance());
+		image = new WritableImage(pixelBuffer);
+		changedRowTo = 0;
+		changedColTo = 0;
+		shownBoard = null;
+		originRow = 0;
+		originCol = 0;
+	}
+
+	/**
+	 * Draws the board, repainting only what changed since the last call.
+	 *
+	 * @param board  The board, of the dimensions set with {@link #resize(int, int, double)}.
+	 * @param alive  The color of live cells.
+	 * @param colors The colors of cells, or null to use {@code alive}.
+	 */
+	public void draw(GLBoard board, Color alive, CellColors colors) {
+		draw(board, alive, colors, null);
+	}
+
+	/**
+	 * Draws the board and the universe it is a window on, repainting only what
+	 * changed on the board since the last call.
+	 *
+	 * @param board    The board, of the dimensions set with {@link #resize(int, int, double)}.
+	 * @param alive    The color of live cells.
+	 * @param colors   The colors of cells, or null to use {@code alive}. The
+	 *                 same instance must be passed while the colors are the
+	 *                 same, since a new one repaints the whole board.
+	 * @param universe The universe around the board, or null to draw the board
+	 *                 alone.
+	 */
+	public void draw(GLBoard board, Color alive, CellColors colors, GLSparseUniverse universe) {
+		int aliveArgb = premultiply(toArgb(alive));
+		boolean[] dirty = board.takeDirtyTiles();
+		if (board != shownBoard || board.getRows() != rows || board.getCols() != cols || aliveArgb != shownAlive
+				|| colors != shownColors || (colors != null && colors.isAging() && board.getModCount() != shownModCount)) {
+			paintAll(board, aliveArgb, colors);
+		} else if (colors == null) {
+			paintFlipped(board, aliveArgb, dirty);
+		} else {
+			paintAround(board, colors, dirty);
+		}
+		updateImage();
+		render(board, aliveArgb, universe);
+	}
+
+	/**
+	 * Draws the visible part of the board, and of the universe around it.
+	 * Zoomed in, the image of the board is drawn scaled; zoomed out, or when
+	 * the universe is drawn, the pixels are shaded by density.
+	 *
+	 * @param board     The board.
+	 * @param aliveArgb The color of live cells.
+	 * @param universe  The universe around the board, or null.
+	 */
+	private void render(GLBoard board, int aliveArgb, GLSparseUniverse universe) {
+		drawnBoard = board;
+		drawnUniverse = universe;
+		GraphicsContext gc = getGraphicsContext2D();
+		gc.setImageSmoothing(false);
+		gc.setFill(universe == null ? Color.LIGHTGRAY : Color.WHITE);
+		gc.fillRect(0, 0, getWidth(), getHeight());
+		if (universe == null && cellSize >= 1) {
+			drawCells(gc);
+		} else {
+			drawDensity(gc, board, aliveArgb, universe);
+		}
+		if (universe != null) {
+			// Outline the board within the universe
+			gc.setStroke(Color.LIGHTGRAY);
+			gc.setLineWidth(1);
+			gc.strokeRect(Math.floor(-originCol * cellSize) + 0.5, Math.floor(-originRow * cellSize) + 0.5,
+					Math.floor(cols * cellSize), Math.floor(rows * cellSize));
+		}
+	}
+
+	/**
+	 * Draws the visible cells of the board from its image, and the grid when
+	 * the cells are large enough.
+	 *
+	 * @param gc The graphics context of the canvas.
+	 */
+	private void drawCells(GraphicsContext gc) {
+		int rowFrom = (int) Math.max(0, Math.floor(originRow));
+		int rowTo = (int) Math.min(rows, Math.ceil(originRow + getHeight() / cellSize));
+		int colFrom = (int) Math.max(0, Math.floor(originCol));
+		int colTo = (int) Math.min(cols, Math.ceil(originCol + getWidth() / cellSize));
+		if (rowTo <= rowFrom || colTo <= colFrom) {
+			return;
+		}
+		gc.drawImage(image, colFrom, rowFrom, colTo - colFrom, rowTo - rowFrom, (colFrom - originCol) * cellSize,
+				(rowFrom - originRow) * cellSize, (colTo - colFrom) * cellSize, (rowTo - rowFrom) * cellSize);
+		if (cellSize >= MIN_GRID_CELL_SIZE) {
+			drawGrid(gc, rowFrom, rowTo, colFrom, colTo);
+		}
+	}
+
+	/**
+	 * Draws the visible cells with one pixel per block of cells, each shaded by
+	 * the share of live cells in its block. The blocks are counted on several
+	 * threads, from the board's words or from the universe's chunks.
+	 *
+	 * @param gc        The graphics context of the canvas.
+	 * @param board     The board.
+	 * @param aliveArgb The color of live cells.
+	 * @param universe  The universe around the board, or null.
+	 */
+	private void drawDensity(GraphicsContext gc, GLBoard board, int aliveArgb, GLSparseUniverse universe) {
+		int blockSize = (int) Math.max(1, Math.ceil(1 / cellSize));
+		double blockPixels = blockSize * cellSize;
+		// The blocks are aligned on multiples of their size, so panning keeps the shading
+		long rowFrom = Math.floorDiv((long) Math.floor(originRow), blockSize) * blockSize;
+		long colFrom = Math.floorDiv((long) Math.floor(originCol), blockSize) * blockSize;
+		int blockRows = (int) Math.ceil(getHeight() / blockPixels) + 1;
+		int blockCols = (int) Math.ceil(getWidth() / blockPixels) + 1;
+		if (densityImage == null || (int) densityImage.getWidth() != blockCols
+				|| (int) densityImage.getHeight() != blockRows) {
+			densityPixels = new int[blockRows * blockCols];
+			densityCounts = new int[blockRows * blockCols];
+			densityBuffer = new PixelBuffer<>(blockCols, blockRows, IntBuffer.wrap(densityPixels),
+					PixelFormat.getIntArgbPreInstance());
+			densityImage = new WritableImage(densityBuffer);
+		}
+
+		int band = (blockRows + DENSITY_BANDS - 1) / DENSITY_BANDS;
+		IntStream.range(0, DENSITY_BANDS).parallel().forEach(b -> {
+			int from = Math.min(blockRows, b * band);
+			int to = Math.min(blockRows, from + band);
+			Arrays.fill(densityCounts, from * blockCols, to * blockCols, 0);
+			if (universe != null) {
+				universe.countBlocks(rowFrom, colFrom, blockSize, blockCols, from, to, densityCounts);
+			} else {
+				countBoardBlocks(board, rowFrom, colFrom, blockSize, blockCols, from, to);
+			}
+			int area = blockSize * blockSize;
+			for (int i = from; i < to; i++) {
+				long top = rowFrom + (long) i * blockSize;
+				for (int j = 0; j < blockCols; j++) {
+					long left = colFrom + (long) j * blockSize;
+					int index = i * blockCols + j;
+					boolean outside = top >= rows || top + blockSize <= 0 || left >= cols || left + blockSize <= 0;
+					densityPixels[index] = universe == null && outside ? OUTSIDE
+							: shade(densityCounts[index], area, aliveArgb);
+				}
+			}
+		});
+
+		densityBuffer.updateBuffer(buffer -> null);
+		gc.drawImage(densityImage, (colFrom - originCol) * cellSize, (rowFrom - originRow) * cellSize,
+				blockCols * blockPixels, blockRows * blockPixels);
+	}
+
+	/**
+	 * Counts the live cells of the board in a band of rows of blocks.
+	 *
+	 * @param board        The board.
+	 * @param rowFrom      The first row of the blocks.
+	 * @param colFrom      The first column of the blocks.
+	 * @param blockSize    The number of rows and columns of a block.
+	 * @param blockCols    The number of columns of blocks.
+	 * @param blockRowFrom The first row of blocks counted (inclusive).
+	 * @param blockRowTo   The last row of blocks counted (exclusive).
+	 */
+	private void countBoardBlocks(GLBoard board, long rowFrom, long colFrom, int blockSize, int blockCols,
+			int blockRowFrom, int blockRowTo) {
+		int boardRows = Math.min(rows, board.getRows());
+		int boardCols = Math.min(cols, board.getCols());
+		for (int i = blockRowFrom; i < blockRowTo; i++) {
+			long top = rowFrom + (long) i * blockSize;
+			int rFrom = (int) Math.max(0, top);
+			int rTo = (int) Math.min(boardRows, top + blockSize);
+			for (int r = rFrom; r < rTo; r++) {
+				for (int j = 0; j < blockCols; j++) {
+					long left = colFrom + (long) j * blockSize;
+					int cFrom = (int) Math.max(0, left);
+					int cTo = (int) Math.min(boardCols, left + blockSize);
+					if (cFrom < cTo) {
+						densityCounts[i * blockCols + j] += board.countAlive(r, cFrom, cTo);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the color of a block, from dead to live by its share of live
+	 * cells. A block with any live cell is shaded at least a quarter of the
+	 * way, so lone cells stay visible.
+	 *
+	 * @param count     The number of live cells in the block.
+	 * @param area      The number of cells in the block.
+	 * @param aliveArgb The color of live cells, premultiplied.
+	 * @return The color as an opaque 32-bit ARGB value.
+	 */
+	private static int shade(int count, int area, int aliveArgb) {
+		if (count == 0) {
+			return DEAD;
+		}
+		double share = 0.25 + 0.75 * Math.min(1, (double) count / area);
+		int argb = 0xFF000000;
+		for (int shift = 0; shift < 24; shift += 8) {
+			int dead = (DEAD >>> shift) & 0xFF;
+			int live = (aliveArgb >>> shift) & 0xFF;
+			argb |= (int) Math.round(dead + (live - dead) * share) << shift;
+		}
+		return argb;
+	}
+
+	/**
+	 * Paints every cell of the board.
+	 *
+	 * @param board     The board.
+	 * @param aliveArgb The color of live cells.
+	 * @param colors    The colors of cells, or null to use {@code aliveArgb}.
+	 */
+	private void paintAll(GLBoard board, int aliveArgb, CellColors colors) {
+		int rowCount = Math.min(rows, board.getRows());
+		int colCount = Math.min(cols, board.getCols());
+		int wordsPerRow = board.getWordsPerRow();
+		long[] words = board.getWords();
+		// Reused while the size is unchanged, since aging colors repaint every generation
+		if (shown == null || shown.length != rows * wordsPerRow) {
+			shown = new long[rows * wordsPerRow];
+		} else {
+			Arrays.fill(shown, rowCount * wordsPerRow, shown.length, 0L);
+		}
+		if (colors == null) {
+			expand(aliveArgb);
+		}
+		for (int r = 0; r < rowCount; r++) {
+			int base = r * cols;
+			Arrays.fill(pixels, base, base + cols, DEAD);
+			int offset = board.rowOffset(r);
+			for (int w = 0; w < wordsPerRow; w++) {
+				long word = words[offset + w];
+				shown[r * wordsPerRow + w] = word;
+				if (colors == null) {
+					expandWord(word, base, w << 6, colCount);
+					continue;
+				}
+				for (int c = w << 6, end = Math.min(c + 64, colCount); c < end; c++) {
+					pixels[base + c] = (word & (1L << c)) != 0 ? colors.colorOf(r, c) : colors.deadColorOf(r, c);
+				}
+			}
+		}
+		Arrays.fill(pixels, rowCount * cols, pixels.length, DEAD);
+		upload(0, rows, 0, cols);
+		shownBoard = board;
+		shownAlive = aliveArgb;
+		shownColors = colors;
+		shownModCount = board.getModCount();
+	}
+
+	/**
+	 * Repaints the cells that flipped in the dirty tiles.
+	 *
+	 * @param board     The board.
+	 * @param aliveArgb The color of live cells.
+	 * @param dirty     The dirty flags of the tiles.
+	 */
+	private void paintFlipped(GLBoard board, int aliveArgb, boolean[] dirty) {
+		int tileCols = board.getTileCols();
+		int wordsPerRow = board.getWordsPerRow();
+		long[] words = board.getWords();
+		expand(aliveArgb);
+		for (int tile = 0; tile < dirty.length; tile++) {
+			if (!dirty[tile]) {
+				continue;
+			}
+			int w = tile % tileCols;
+			int rowFrom = (tile / tileCols) * GLBoard.TILE_ROWS;
+			int rowTo = Math.min(rowFrom + GLBoard.TILE_ROWS, rows);
+			boolean touched = false;
+			for (int r = rowFrom; r < rowTo; r++) {
+				long word = words[board.rowOffset(r) + w];
+				long flipped = word ^ shown[r * wordsPerRow + w];
+				if (flipped == 0) {
+					continue;
+				}
+				shown[r * wordsPerRow + w] = word;
+				touched = true;
+				// Only the bytes with a flipped cell are expanded again
+				int col = w << 6;
+				for (int b = 0; b < 64 && col + b < cols; b += 8) {
+					if (((flipped >>> b) & 0xFF) != 0) {
+						int value = (int) (word >>> b) & 0xFF;
+						System.arraycopy(expansion, value << 3, pixels, r * cols + col + b, Math.min(8, cols - col - b));
+					}
+				}
+			}
+			if (touched) {
+				upload(rowFrom, rowTo, w << 6, Math.min((w + 1) << 6, cols));
+			}
+		}
+	}
+
+	/**
+	 * Repaints whole the dirty tiles and the tiles around them, whose cells
+	 * may have changed color. On boards whose edges are joined, a dirty tile
+	 * on an edge repaints every tile on the edges.
+	 *
+	 * @param board  The board.
+	 * @param colors The colors of cells.
+	 * @param dirty  The dirty flags of the tiles.
+	 */
+	private void paintAround(GLBoard board, CellColors colors, boolean[] dirty) {
+		int tileRows = board.getTileRows();
+		int tileCols = board.getTileCols();
+		boolean wrap = board.getTopology() != GLTopology.CLIPPED;
+		if (repaint == null || repaint.length != dirty.length) {
+			repaint = new boolean[dirty.length];
+		}
+		Arrays.fill(repaint, false);
+		boolean edges = false;
+		for (int tile = 0; tile < dirty.length; tile++) {
+			if (!dirty[tile]) {
+				continue;
+			}
+			int tr = tile / tileCols;
+			int tc = tile % tileCols;
+			edges |= wrap && (tr == 0 || tr == tileRows - 1 || tc == 0 || tc == tileCols - 1);
+			for (int r = Math.max(0, tr - 1); r <= Math.min(tileRows - 1, tr + 1); r++) {
+				for (int c = Math.max(0, tc - 1); c <= Math.min(tileCols - 1, tc + 1); c++) {
+					repaint[r * tileCols + c] = true;
+				}
+			}
+		}
+		for (int tile = 0; tile < repaint.length; tile++) {
+			int tr = tile / tileCols;
+			int tc = tile % tileCols;
+			if (repaint[tile] || (edges && (tr == 0 || tr == tileRows - 1 || tc == 0 || tc == tileCols - 1))) {
+				paintTile(board, colors, tr, tc);
+			}
+		}
+	}
+
+	/**
+	 * Repaints every cell of a tile.
+	 *
+	 * @param board  The board.
+	 * @param colors The colors of cells.
+	 * @param tr     The row of the tile.
+	 * @param tc     The column of the tile.
+	 */
+	private void paintTile(GLBoard board, CellColors colors, int tr, int tc) {
+		int wordsPerRow = board.getWordsPerRow();
+		long[] words = board.getWords();
+		int rowFrom = tr * GLBoard.TILE_ROWS;
+		int rowTo = Math.min(rowFrom + GLBoard.TILE_ROWS, rows);
+		int colFrom = tc << 6;
+		int colTo = Math.min(colFrom + 64, cols);
+		for (int r = rowFrom; r < rowTo; r++) {
+			long word = words[board.rowOffset(r) + tc];
+			shown[r * wordsPerRow + tc] = word;
+			for (int c = colFrom; c < colTo; c++) {
+				pixels[r * cols + c] = (word & (1L << c)) != 0 ? colors.colorOf(r, c) : colors.deadColorOf(r, c);
+			}
+		}
+		upload(rowFrom, rowTo, colFrom, colTo);
+	}
+
+	/**
+	 * Adds a rectangle of {@link #pixels} to the area updated in the image at
+	 * the end of the frame.
+	 *
+	 * @param rowFrom The first row (inclusive).
+	 * @param rowTo   The last row (exclusive).
+	 * @param colFrom The first column (inclusive).
+	 * @param colTo   The last column (exclusive).
+	 */
+	private void upload(int rowFrom, int rowTo, int colFrom, int colTo) {
+		if (rowTo <= rowFrom || colTo <= colFrom) {
+			return;
+		}
+		if (changedRowTo <= changedRowFrom || changedColTo <= changedColFrom) {
+			changedRowFrom = rowFrom;
+			changedRowTo = rowTo;
+			changedColFrom = colFrom;
+			changedColTo = colTo;
+		} else {
+			changedRowFrom = Math.min(changedRowFrom, rowFrom);
+			changedRowTo = Math.max(changedRowTo, rowTo);
+			changedColFrom = Math.min(changedColFrom, colFrom);
+			changedColTo = Math.max(changedColTo, colTo);
+		}
+	}
+
+	/**
+	 * Updates the image with the pixels changed during the frame, in one
+	 * texture update.
+	 */
+	private void updateImage() {
+		if (changedRowTo <= changedRowFrom || changedColTo <= changedColFrom) {
+			return;
+		}
+		Rectangle2D changed = new Rectangle2D(changedColFrom, changedRowFrom, changedColTo - changedColFrom,
+				changedRowTo - changedRowFrom);
+		pixelBuffer.updateBuffer(buffer -> changed);
+		changedRowTo = changedRowFrom;
+	}
+
+	/**
+	 * Builds the table expanding a byte of cells to eight pixels, unless it is
+	 * already built for the color of live cells.
+	 *
+	 * @param aliveArgb The color of live cells, premultiplied.
+	 */
+	private void expand(int aliveArgb) {
+		if (expanded && aliveArgb == expandedAlive) {
+			return;
+		}
+		for (int value = 0; value < 256; value++) {
+			for (int bit = 0; bit < 8; bit++) {
+				expansion[(value << 3) + bit] = (value & (1 << bit)) != 0 ? aliveArgb : DEAD;
+			}
+		}
+		expandedAlive = aliveArgb;
+		expanded = true;
+	}
+
+	/**
+	 * Writes the pixels of one word of cells from the expansion table.
+	 *
+	 * @param word     The cells, one bit each.
+	 * @param base     The index of the first pixel of the row.
+	 * @param col      The column of the first cell of the word.
+	 * @param colCount The number of columns drawn.
+	 */
+	private void expandWord(long word, int base, int col, int colCount) {
+		if (word == 0) {
+			return; // The row was filled with dead cells
+		}
+		for (int b = 0; b < 64 && col + b < colCount; b += 8) {
+			int value = (int) (word >>> b) & 0xFF;
+			if (value != 0) {
+				System.arraycopy(expansion, value << 3, pixels, base + col + b, Math.min(8, colCount - col - b));
+			}
+		}
+	}
+
+	/**
+	 * Draws the lines between the visible cells.
+	 *
+	 * @param gc      The graphics context of the canvas.
+	 * @param rowFrom The first visible row (inclusive).
+	 * @param rowTo   The last visible row (exclusive).
+	 * @param colFrom The first visible column (inclusive).
+	 * @param colTo   The last visible column (exclusive).
+	 */
+	private void drawGrid(GraphicsContext gc, int rowFrom, int rowTo, int colFrom, int colTo) {
+		double left = (colFrom - originCol) * cellSize;
+		double right = (colTo - originCol) * cellSize;
+		double top = (rowFrom - originRow) * cellSize;
+		double bottom = (rowTo - originRow) * cellSize;
+		gc.setStroke(Color.LIGHTGRAY);
+		gc.setLineWidth(1);
+		gc.beginPath();
+		// Lines on half pixels are one pixel wide
+		for (int r = rowFrom; r <= rowTo; r++) {
+			double y = Math.floor((r - originRow) * cellSize) + 0.5;
+			gc.moveTo(left, y);
+			gc.lineTo(right, y);
+		}
+		for (int c = colFrom; c <= colTo; c++) {
+			double x = Math.floor((c - originCol) * cellSize) + 0.5;
+			gc.moveTo(x, top);
+			gc.lineTo(x, bottom);
+		}
+		gc.stroke();
+	}
+
+	/**
+	 * Premultiplies the color channels of a 32-bit ARGB value by its alpha, as
+	 * the pixel buffers hold them.
+	 *
+	 * @param argb The ARGB value.
+	 * @return The premultiplied ARGB value.
+	 */
+	static int premultiply(int argb) {
+		int alpha = argb >>> 24;
+		if (alpha == 0xFF) {
+			return argb;
+		}
+		int pre = alpha << 24;
+		for (int shift = 0; shift < 24; shift += 8) {
+			pre |= (((argb >>> shift) & 0xFF) * alpha + 127) / 255 << shift;
+		}
+		return pre;
+	}
+
+	/**
+	 * Converts a color to a 32-bit ARGB value.
+	 *
+	 * @param color The color.
+	 * @return The ARGB value.
+	 */
+	public static int toArgb(Color color) {
+		return ((int) Math.round(color.getOpacity() * 255) << 24) | ((int) Math.round(color.getRed() * 255) << 16)
+				| ((int) Math.round(color.getGreen() * 255) << 8) | (int) Math.round(color.getBlue() * 255);
+	}
+}
@@ -0,0 +1,132 @@
+package gl.view;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import gl.model.GLCensus;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+
+/**
+ * The {@code GLCensusPanel} class shows, in a window of its own, how many
+ * objects of each kind are on the board: blocks, blinkers, gliders and so on,
+ * the most common first. It is updated with every generation shown while it
+ * is open.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLCensusPanel {
+
+	/**
+	 * The ResourceBundle used for localization.
+	 */
+	private ResourceBundle bundle;
+
+	/**
+	 * The primary stage of the application.
+	 */
+	private Stage primaryStage;
+
+	/**
+	 * The window of the panel, or null until it is first opened.
+	 */
+	private Stage censusStage;
+
+	/**
+	 * The list of the kinds of objects and their counts.
+	 */
+	private ListView<String> objectList = new ListView<>();
+
+	/**
+	 * The label showing the number of objects.
+	 */
+	private Label totalLabel = new Label();
+
+	/**
+	 * The counts last shown, to show them again in another language.
+	 */
+	private Map<String, Integer> counts = Map.of();
+
+
+	/**
+	 * Constructs a new GLCensusPanel.
+	 *
+	 * @param bundle       The ResourceBundle for localization.
+	 * @param primaryStage The primary Stage of the application.
+	 */
+	public GLCensusPanel(ResourceBundle bundle, Stage primaryStage) {
+		this.bundle = bundle;
+		this.primaryStage = primaryStage;
+	}
+
+	/**
+	 * Opens the window of the panel, or brings it to the front if it is open.
+	 */
+	public void open() {
+		if (censusStage == null) {
+			censusStage = new Stage();
+			censusStage.initOwner(primaryStage);
+			InputStream iconImageU = getClass().getResourceAsStream("/resources/AC-logo.png");
+			if (iconImageU != null) {
+				Image iconImage = new Image(iconImageU);
+				censusStage.getIcons().add(iconImage);
+			}
+			BorderPane root = new BorderPane();
+			root.setCenter(objectList);
+			root.setBottom(totalLabel);
+			BorderPane.setMargin(totalLabel, new Insets(10));
+			censusStage.setScene(new Scene(root, 300, 400));
+		}
+		censusStage.setTitle(bundle.getString("censusTitle"));
+		censusStage.show();
+		censusStage.toFront();
+	}
+
+	/**
+	 * Checks whether the window of the panel is open.
+	 *
+	 * @return true if the panel is showing.
+	 */
+	public boolean isShowing() {
+		return censusStage != null && censusStage.isShowing();
+	}
+
+	/**
+	 * Shows the counts of the objects on the board.
+	 *
+	 * @param counts The number of objects of each kind, the most common first.
+	 */
+	public void update(Map<String, Integer> counts) {
+		this.counts = counts;
+		int total = 0;
+		String[] lines = new String[counts.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			String name = GLCensus.OTHER.equals(entry.getKey()) ? bundle.getString("censusOther") : entry.getKey();
+			lines[i++] = entry.getValue() + "  " + name;
+			total += entry.getValue();
+		}
+		objectList.getItems().setAll(lines);
+		totalLabel.setText(bundle.getString("censusObjects") + " " + total);
+	}
+
+	/**
+	 * Changes the language of the panel based on the provided ResourceBundle.
+	 *
+	 * @param newBundle The ResourceBundle containing the updated language strings.
+	 */
+	public void changeLanguage(ResourceBundle newBundle) {
+		this.bundle = newBundle;
+		if (censusStage != null) {
+			censusStage.setTitle(bundle.getString("censusTitle"));
+		}
+		update(counts);
+	}
+}
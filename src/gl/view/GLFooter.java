@@ -1,11 +1,20 @@
 package gl.view;
 
+import java.io.File;
 import java.util.ResourceBundle;
 
 import gl.controller.GLController;
 import gl.controller.GLUpdateListener;
-import gl.model.GLCell;
+import gl.model.GLBoard;
+import gl.model.GLEngine;
+import gl.model.GLJournalReader;
 import gl.model.GLModel;
+import gl.model.GLPattern;
+import gl.model.GLSnapshot;
+import gl.model.GLSparseEngine;
+import gl.model.GLSparseUniverse;
+import gl.model.GLTopology;
+import gl.view.GLBoardCanvas.CellColors;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -20,9 +29,9 @@ import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.Stage;
 import support.LanguageManager;
 
 /**
@@ -38,6 +47,19 @@ import support.LanguageManager;
  * @author Marcos Astudillo
  */
 public class GLFooter implements GLUpdateListener {
+	/**
+	 * The ways live cells can be colored.
+	 */
+	public enum Coloring {
+		/** Every live cell in the selected color. */
+		PLAIN,
+		/** By number of live neighbours. */
+		NEIGHBOURS,
+		/** By the number of generations the cell has been alive. */
+		AGE,
+		/** By the number of times the cell was born or died, dead cells included. */
+		ACTIVITY
+	}
 
 	/**
 	 * The GLController responsible for managing game logic.
@@ -69,6 +91,94 @@ public class GLFooter implements GLUpdateListener {
 	 */
 	private final int FOOTER_HEIGHT = 50;
 
+	/**
+	 * The largest number of rows or columns of the board. In unbounded mode the
+	 * board is only the visible window of the universe.
+	 */
+	private static final int MAX_BOARD_SIZE = 4096;
+
+	/**
+	 * The colors of live cells in multicolor mode by number of neighbours, as
+	 * 32-bit ARGB values.
+	 */
+	private static final int[] NEIGHBOUR_COLORS = new int[9];
+
+	/**
+	 * The number of colors of the age and activity palettes. Each color
+	 * covers twice the range of the one before, the last one everything past.
+	 */
+	private static final int PALETTE_SIZE = 16;
+
+	/**
+	 * The colors of live cells by age, from newborn yellow to old dark blue,
+	 * as 32-bit ARGB values.
+	 */
+	private static final int[] AGE_COLORS = new int[PALETTE_SIZE];
+
+	/**
+	 * The colors of live cells by activity, from calm blue to hot red, as
+	 * 32-bit ARGB values.
+	 */
+	private static final int[] ACTIVITY_COLORS = new int[PALETTE_SIZE];
+
+	/**
+	 * The colors of dead cells by activity, the activity colors faded
+	 * towards white, as 32-bit ARGB values.
+	 */
+	private static final int[] ACTIVITY_TRACE_COLORS = new int[PALETTE_SIZE];
+
+	static {
+		for (int n = 0; n < NEIGHBOUR_COLORS.length; n++) {
+			NEIGHBOUR_COLORS[n] = GLBoardCanvas.toArgb(getRandomColor(n));
+		}
+		for (int i = 0; i < PALETTE_SIZE; i++) {
+			double t = i / (double) (PALETTE_SIZE - 1);
+			AGE_COLORS[i] = GLBoardCanvas.toArgb(Color.hsb(60 + 180 * t, 1, 1 - 0.5 * t));
+			Color heat = Color.hsb(240 * (1 - t), 1, 0.9);
+			ACTIVITY_COLORS[i] = GLBoardCanvas.toArgb(heat);
+			ACTIVITY_TRACE_COLORS[i] = GLBoardCanvas.toArgb(Color.WHITE.interpolate(heat, 0.35));
+		}
+		// Dead cells that never changed stay white
+		ACTIVITY_TRACE_COLORS[0] = GLBoardCanvas.toArgb(Color.WHITE);
+	}
+
+	/**
+	 * Colors live cells by number of neighbours. The board caches the counts,
+	 * so only changed tiles are counted.
+	 */
+	private final CellColors neighbourColors = (row, col) -> NEIGHBOUR_COLORS[gameModel.getBoard()
+			.getNeighbourCount(row, col)];
+
+	/**
+	 * Colors live cells by age.
+	 */
+	private final CellColors ageColors = new CellColors() {
+		@Override
+		public int colorOf(int row, int col) {
+			return AGE_COLORS[paletteIndex(gameModel.getBoard().getAge(row, col) - 1)];
+		}
+
+		@Override
+		public boolean isAging() {
+			return true;
+		}
+	};
+
+	/**
+	 * Colors cells by activity, as a heatmap of where the board changed.
+	 */
+	private final CellColors activityColors = new CellColors() {
+		@Override
+		public int colorOf(int row, int col) {
+			return ACTIVITY_COLORS[paletteIndex(gameModel.getBoard().getActivity(row, col))];
+		}
+
+		@Override
+		public int deadColorOf(int row, int col) {
+			return ACTIVITY_TRACE_COLORS[paletteIndex(gameModel.getBoard().getActivity(row, col))];
+		}
+	};
+
 	/**
 	 * The width of the game window.
 	 */
@@ -90,14 +200,15 @@ public class GLFooter implements GLUpdateListener {
 	private int board_height;
 
 	/**
-	 * Flag indicating whether multicolor mode is enabled.
+	 * How live cells are colored.
 	 */
-	boolean multicolorEnabled = false;
+	private Coloring coloring = Coloring.PLAIN;
 
 	/**
-	 * The color selected for cells.
+	 * The panel counting the objects on the board, or null until it is first
+	 * opened.
 	 */
-	private Rectangle[][] grid;
+	private GLCensusPanel censusPanel;
 
 	/**
 	 * The selected cell color.
@@ -129,6 +240,16 @@ public class GLFooter implements GLUpdateListener {
 	 */
 	private TextField modelInput;
 
+	/**
+	 * Text field for entering the generation to go to.
+	 */
+	private TextField seekInput;
+
+	/**
+	 * Button for going to the entered generation.
+	 */
+	private Button btnSeek;
+
 	/**
 	 * Button for navigating to the previous step.
 	 */
@@ -216,6 +337,8 @@ public class GLFooter implements GLUpdateListener {
 		currentStepLbl = new Label();
 		btnStop = new Button();
 		btnNext = new Button();
+		seekInput = new TextField();
+		btnSeek = new Button();
 		initBoardUI();
 	}
 
@@ -238,7 +361,13 @@ public class GLFooter implements GLUpdateListener {
 		modelInput = createModelInput();
 		modelInput.setPromptText(bundle.getString("modelInputPrompt"));
 
-		buttonsTopRow.getChildren().addAll(btnRandom, modelLabel, modelInput, btnManual);
+		seekInput = new TextField();
+		seekInput.setPromptText(bundle.getString("seekInputPrompt"));
+		seekInput.setOnAction(e -> gameController.seekGeneration(seekInput.getText()));
+		btnSeek = new Button(bundle.getString("btnSeek"));
+		btnSeek.setOnAction(e -> gameController.seekGeneration(seekInput.getText()));
+
+		buttonsTopRow.getChildren().addAll(btnRandom, modelLabel, modelInput, btnManual, seekInput, btnSeek);
 
 		buttonsTopRow.setAlignment(Pos.CENTER);
 
@@ -299,23 +428,14 @@ public class GLFooter implements GLUpdateListener {
 	}
 
 	/**
-	 * Initializes the user interface for the game board.
+	 * Initializes the user interface for the game board, and gives the board
+	 * its dimensions.
 	 */
 	public void initBoardUI() {
-		glView.boardPane.getChildren().clear();
-		grid = new Rectangle[board_width][board_height];
-
-		for (int i = 0; i < board_height; i++) {
-			for (int j = 0; j < board_width; j++) {
-				final int y = j;
-				final int x = i;
-				Rectangle rect = new Rectangle(glView.CELL_SIZE, glView.CELL_SIZE, Color.WHITE);
-				rect.setOnMouseClicked(e -> gameController.handleCellClick(x, y));
-				rect.setStroke(Color.LIGHTGRAY);
-				grid[j][i] = rect;
-				glView.boardPane.add(rect, j, i);
-			}
-		}
+		// The board has one row per unit of width, as resizeBoard lays it out
+		glView.boardCanvas.resize(board_width, board_height, glView.CELL_SIZE);
+		glView.boardCanvas.setOnCellClicked((row, col) -> gameController.handleCellClick(row, col));
+		glView.boardCanvas.setOnViewportChanged(() -> gameModel.refresh());
 		gameModel.resizeBoard(board_width, board_height);
 	}
 
@@ -357,36 +477,80 @@ public class GLFooter implements GLUpdateListener {
 		btnNext.setText(bundle.getString("btnNext"));
 		btnPrev.setText(bundle.getString("btnPrev"));
 		btnStart.setText(bundle.getString("btnStart"));
+		btnSeek.setText(bundle.getString("btnSeek"));
 		defaultMessage = bundle.getString("emptyRuleMessage");
 		lengthErrorMessage = bundle.getString("invalidRuleLengthMessage");
 		adviceMessage = bundle.getString("ruleAdviceMessage");
 		errorAlert = bundle.getString("inputErrorBoardSize");
+		if (censusPanel != null) {
+			censusPanel.changeLanguage(bundle);
+		}
 
 		updateUIFromBoardState();
 	}
 
 	/**
 	 * Updates the user interface to reflect the current state of the game board.
+	 * The board is read through the model, while it holds the board.
 	 */
 	public void updateUIFromBoardState() {
-		GLCell[][] cells = gameModel.getBoardState();
-		for (int i = 0; i < board_height; i++) {
-			for (int j = 0; j < board_width; j++) {
-				if (cells[i][j].isAlive()) {
-					if (multicolorEnabled) {
-						int numNeighbours = gameModel.getNumNeighbours(i, j);
-						Color cellColor = getRandomColor(numNeighbours);
-						grid[j][i].setFill(cellColor);
-					} else {
-						grid[j][i].setFill(selectedCellColor);
-					}
-				} else {
-					grid[j][i].setFill(Color.WHITE);
-				}
-			}
-		}
+		gameModel.refresh();
+	}
+
+	/**
+	 * Draws the board and the labels from the current state of the game, while
+	 * the model holds the board.
+	 */
+	private void drawBoardState() {
+		GLBoard board = gameModel.getBoard();
+		// With the unbounded engine, the universe around the board is drawn too
+		GLEngine engine = gameModel.getEngine();
+		GLSparseUniverse universe = engine instanceof GLSparseEngine ? ((GLSparseEngine) engine).getUniverse(board)
+				: null;
+		glView.boardCanvas.draw(board, selectedCellColor, cellColors(), universe);
 		int currentStep = gameModel.getCurrentStep();
-		currentStepLbl.setText(bundle.getString("currentStepLbl") + " " + currentStep);
+		String step = bundle.getString("currentStepLbl") + " " + currentStep;
+		long period = gameModel.getCyclePeriod();
+		if (period > 0) {
+			// Report the cycle the game settled into
+			step += " (" + bundle.getString("cyclePeriodLbl") + " " + period + ", "
+					+ bundle.getString("cycleStartLbl") + " " + gameModel.getCycleStart() + ")";
+		}
+		currentStepLbl.setText(step);
+		seekInput.setPromptText(bundle.getString("seekInputPrompt") + " " + gameModel.getGeneration());
+		if (censusPanel != null && censusPanel.isShowing()) {
+			// Only the tiles changed since the last census are relabelled
+			censusPanel.update(gameModel.takeCensus());
+		}
+	}
+
+	/**
+	 * Gets the colors of the cells for the selected coloring.
+	 *
+	 * @return The colors, or null to draw every live cell in the selected color.
+	 */
+	private CellColors cellColors() {
+		switch (coloring) {
+		case NEIGHBOURS:
+			return neighbourColors;
+		case AGE:
+			return ageColors;
+		case ACTIVITY:
+			return activityColors;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the color of a value in the age and activity palettes, which grow
+	 * by powers of two.
+	 *
+	 * @param value The age or activity, from 0.
+	 * @return The index of its color.
+	 */
+	private static int paletteIndex(int value) {
+		return Math.min(PALETTE_SIZE - 1, 32 - Integer.numberOfLeadingZeros(value));
 	}
 
 	/**
@@ -395,7 +559,7 @@ public class GLFooter implements GLUpdateListener {
 	 * @param numNeighbours The number of neighboring cells.
 	 * @return A color based on the number of neighbors.
 	 */
-	private Color getRandomColor(int numNeighbours) {
+	private static Color getRandomColor(int numNeighbours) {
 		switch (numNeighbours) {
 		case 0:
 			return Color.RED;
@@ -434,6 +598,161 @@ public class GLFooter implements GLUpdateListener {
 		gameController.handleSolution();
 	}
 
+	/**
+	 * Opens a pattern file and starts a new game with it. The board grows to
+	 * hold the pattern, up to its largest size, and the pattern is clipped
+	 * beyond that.
+	 * 
+	 * @param file The pattern file.
+	 */
+	public void openPatternItem(File file) {
+		GLPattern pattern = gameController.readPattern(file);
+		if (pattern == null) {
+			return;
+		}
+		GLBoard cells = pattern.getCells();
+		int width = Math.min(MAX_BOARD_SIZE, Math.max(board_width, cells.getRows()));
+		int height = Math.min(MAX_BOARD_SIZE, Math.max(board_height, cells.getCols()));
+		if (width != board_width || height != board_height) {
+			changeBoardSize(width, height);
+		}
+		gameController.loadPattern(pattern);
+	}
+
+	/**
+	 * Saves the board to a pattern file.
+	 * 
+	 * @param file The pattern file.
+	 */
+	public void savePatternItem(File file) {
+		gameController.savePattern(file);
+	}
+
+	/**
+	 * Restores a game saved to a snapshot file: the board takes the size of
+	 * the snapshot, and the rule field its rule.
+	 * 
+	 * @param file The snapshot file.
+	 */
+	public void openSnapshotItem(File file) {
+		GLSnapshot snapshot = gameController.readSnapshot(file);
+		if (snapshot == null) {
+			return;
+		}
+		int width = snapshot.getRows();
+		int height = snapshot.getCols();
+		if (width <= 0 || height <= 0 || width > MAX_BOARD_SIZE || height > MAX_BOARD_SIZE) {
+			glView.showInvalidInputAlert(errorAlert);
+			return;
+		}
+		if (width != board_width || height != board_height) {
+			changeBoardSize(width, height);
+		}
+		gameController.restoreSnapshot(snapshot);
+		modelInput.setText(snapshot.getRule());
+	}
+
+	/**
+	 * Saves the game to a snapshot file.
+	 * 
+	 * @param file The snapshot file.
+	 */
+	public void saveSnapshotItem(File file) {
+		gameController.saveSnapshot(file);
+	}
+
+	/**
+	 * Starts recording the generations of the game to a journal file.
+	 * 
+	 * @param file The journal file.
+	 * @return true if the journal is recorded.
+	 */
+	public boolean startJournalItem(File file) {
+		return gameController.startJournal(file);
+	}
+
+	/**
+	 * Stops recording the generations of the game.
+	 */
+	public void stopJournalItem() {
+		gameController.stopJournal();
+	}
+
+	/**
+	 * Replays a journal file in a window of its own.
+	 * 
+	 * @param file  The journal file.
+	 * @param owner The stage owning the replay window.
+	 */
+	public void replayJournalItem(File file, Stage owner) {
+		GLJournalReader journal = gameController.openJournal(file);
+		if (journal != null) {
+			new GLReplayViewer(bundle, owner, glView, selectedCellColor).open(journal);
+		}
+	}
+
+	/**
+	 * Opens a window counting the objects on the board, kept up to date as
+	 * the game runs.
+	 * 
+	 * @param owner The stage owning the census window.
+	 */
+	public void censusItem(Stage owner) {
+		if (censusPanel == null) {
+			censusPanel = new GLCensusPanel(bundle, owner);
+		}
+		censusPanel.open();
+		censusPanel.update(gameModel.takeCensus());
+	}
+
+	/**
+	 * Selects the engine computing the generations.
+	 * 
+	 * @param engine The engine to use.
+	 */
+	public void engineItem(GLEngine engine) {
+		gameController.setEngine(engine);
+	}
+
+	/**
+	 * Selects how live cells are colored. The ages and activity of the cells
+	 * are only tracked while they are shown.
+	 * 
+	 * @param coloring The coloring of the cells.
+	 */
+	public void coloringItem(Coloring coloring) {
+		this.coloring = coloring;
+		// The model redraws the board once the tracking is set
+		gameController.setCellStatsEnabled(coloring == Coloring.AGE || coloring == Coloring.ACTIVITY);
+	}
+
+	/**
+	 * Selects how the edges of the board meet.
+	 * 
+	 * @param topology The topology of the board.
+	 */
+	public void topologyItem(GLTopology topology) {
+		gameController.setTopology(topology);
+	}
+
+	/**
+	 * Selects how many generations per second are computed while the game runs.
+	 * 
+	 * @param rate The simulation rate, or {@link GLModel#UNLIMITED_RATE}.
+	 */
+	public void simulationRateItem(int rate) {
+		gameController.setSimulationRate(rate);
+	}
+
+	/**
+	 * Sets whether the game stops by itself once it settles into a cycle.
+	 * 
+	 * @param stopOnCycle true to stop the game once settled.
+	 */
+	public void stopOnCycleItem(boolean stopOnCycle) {
+		gameController.setStopOnCycle(stopOnCycle);
+	}
+
 	/**
 	 * Updates the board's dimensions.
 	 * 
@@ -441,14 +760,13 @@ public class GLFooter implements GLUpdateListener {
 	 * @param newHeight The new height for the board.
 	 */
 	public void changeBoardSize(int newWidth, int newHeight) {
-		if (newWidth <= 100 || newHeight <= 100) {
+		if (newWidth > 0 && newHeight > 0 && newWidth <= MAX_BOARD_SIZE && newHeight <= MAX_BOARD_SIZE) {
 			board_width = newWidth;
 			board_height = newHeight;
 
 			glView.CELL_SIZE = Math.min((glView.WINDOW_WIDTH - 20.0) / board_width,
 					(glView.WINDOW_HEIGHT - 250.0) / board_height);
 
-			gameModel.resizeBoard(newWidth, newHeight);
 			initBoardUI();
 		} else {
 			glView.showInvalidInputAlert(errorAlert);
@@ -457,6 +775,11 @@ public class GLFooter implements GLUpdateListener {
 
 	@Override
 	public void onGameUpdate() {
-		Platform.runLater(() -> updateUIFromBoardState());
+		// Draw right away on the application thread, while the model holds the board
+		if (Platform.isFxApplicationThread()) {
+			drawBoardState();
+		} else {
+			Platform.runLater(() -> gameModel.refresh());
+		}
 	}
 }
@@ -1,11 +1,20 @@
 package gl.view;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ResourceBundle;
 
 import cs.CSModel;
 import gl.controller.GLController;
+import gl.model.GLAdaptiveEngine;
+import gl.model.GLBitSlicedEngine;
+import gl.model.GLHashLifeEngine;
+import gl.model.GLJournal;
 import gl.model.GLModel;
+import gl.model.GLParallelEngine;
+import gl.model.GLSnapshot;
+import gl.model.GLSparseEngine;
+import gl.model.GLTopology;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
@@ -13,9 +22,12 @@ import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.RadioMenuItem;
+import javafx.scene.control.ToggleGroup;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import support.LanguageManager;
 
@@ -29,6 +41,13 @@ import support.LanguageManager;
  */
 public class GLMenuBar {
 
+	/**
+	 * The simulation rates offered in the speed submenu, in generations per
+	 * second.
+	 */
+	private static final int[] SPEEDS = { 1, GLModel.DEFAULT_SIMULATION_RATE, 10, 60, 1000,
+			GLModel.UNLIMITED_RATE };
+
 	/**
 	 * The controller for managing the Game of Life application.
 	 */
@@ -90,9 +109,79 @@ public class GLMenuBar {
 	private MenuItem changeCellColor;
 
 	/**
-	 * The multicolor option in preferences.
+	 * The multicolor submenu in preferences.
+	 */
+	private Menu multicolorMenu;
+
+	/**
+	 * The coloring options in the multicolor submenu.
+	 */
+	private RadioMenuItem plainColoringOption, neighboursColoringOption, ageColoringOption, activityColoringOption;
+
+	/**
+	 * The engine submenu in preferences.
+	 */
+	private Menu engineMenu;
+
+	/**
+	 * The option letting the engine be selected automatically.
+	 */
+	private RadioMenuItem autoEngineOption;
+
+	/**
+	 * The option selecting the bit-sliced engine.
+	 */
+	private RadioMenuItem bitSlicedEngineOption;
+
+	/**
+	 * The option selecting the parallel engine.
+	 */
+	private RadioMenuItem parallelEngineOption;
+
+	/**
+	 * The option selecting the HashLife engine.
+	 */
+	private RadioMenuItem hashLifeEngineOption;
+
+	/**
+	 * The option selecting the unbounded sparse engine.
+	 */
+	private RadioMenuItem sparseEngineOption;
+
+	/**
+	 * The edges submenu in preferences.
+	 */
+	private Menu edgesMenu;
+
+	/**
+	 * The option making the cells beyond the edges dead.
+	 */
+	private RadioMenuItem clippedEdgesOption;
+
+	/**
+	 * The option joining the edges as a torus.
+	 */
+	private RadioMenuItem torusEdgesOption;
+
+	/**
+	 * The option joining the edges as a Klein bottle.
+	 */
+	private RadioMenuItem kleinBottleEdgesOption;
+
+	/**
+	 * The speed submenu in preferences.
 	 */
-	private CheckMenuItem multicolorOption;
+	private Menu speedMenu;
+
+	/**
+	 * The options selecting the simulation rates of {@link #SPEEDS}.
+	 */
+	private RadioMenuItem[] speedOptions;
+
+	/**
+	 * The option stopping the game once it settles into a cycle.
+	 */
+	private CheckMenuItem stopOnCycleOption;
 
 	/**
 	 * The language menu in the Game of Life application.
@@ -139,6 +228,41 @@ public class GLMenuBar {
 	 */
 	private MenuItem solutionMenuItem;
 
+	/**
+	 * The menu item for opening a pattern file.
+	 */
+	private MenuItem openPatternMenuItem;
+
+	/**
+	 * The menu item for saving the board to a pattern file.
+	 */
+	private MenuItem savePatternMenuItem;
+
+	/**
+	 * The menu item for restoring a game from a snapshot file.
+	 */
+	private MenuItem openSnapshotMenuItem;
+
+	/**
+	 * The menu item for saving the game to a snapshot file.
+	 */
+	private MenuItem saveSnapshotMenuItem;
+
+	/**
+	 * The menu item for recording the generations of the game to a journal.
+	 */
+	private CheckMenuItem recordJournalMenuItem;
+
+	/**
+	 * The menu item for replaying a journal.
+	 */
+	private MenuItem replayJournalMenuItem;
+
+	/**
+	 * The menu item for opening the census of the objects on the board.
+	 */
+	private MenuItem censusMenuItem;
+
 	/**
 	 * The menu item for returning to the main menu.
 	 */
@@ -248,6 +372,61 @@ public class GLMenuBar {
 		}
 		solutionMenuItem.setOnAction(e -> footerView.solutionItem());
 
+		// Pattern file MenuBar options
+		openPatternMenuItem = new MenuItem(bundle.getString("openPatternMenuItem"));
+		openPatternMenuItem.setOnAction(e -> {
+			File file = patternChooser(bundle.getString("openPatternMenuItem")).showOpenDialog(primaryStage);
+			if (file != null) {
+				footerView.openPatternItem(file);
+			}
+		});
+		savePatternMenuItem = new MenuItem(bundle.getString("savePatternMenuItem"));
+		savePatternMenuItem.setOnAction(e -> {
+			File file = patternChooser(bundle.getString("savePatternMenuItem")).showSaveDialog(primaryStage);
+			if (file != null) {
+				footerView.savePatternItem(file);
+			}
+		});
+
+		// Snapshot file MenuBar options
+		openSnapshotMenuItem = new MenuItem(bundle.getString("openSnapshotMenuItem"));
+		openSnapshotMenuItem.setOnAction(e -> {
+			File file = snapshotChooser(bundle.getString("openSnapshotMenuItem")).showOpenDialog(primaryStage);
+			if (file != null) {
+				footerView.openSnapshotItem(file);
+				selectTopology(gameModel.getTopology());
+			}
+		});
+		saveSnapshotMenuItem = new MenuItem(bundle.getString("saveSnapshotMenuItem"));
+		saveSnapshotMenuItem.setOnAction(e -> {
+			File file = snapshotChooser(bundle.getString("saveSnapshotMenuItem")).showSaveDialog(primaryStage);
+			if (file != null) {
+				footerView.saveSnapshotItem(file);
+			}
+		});
+
+		// Journal file MenuBar options
+		recordJournalMenuItem = new CheckMenuItem(bundle.getString("recordJournalMenuItem"));
+		recordJournalMenuItem.setOnAction(e -> {
+			if (!recordJournalMenuItem.isSelected()) {
+				footerView.stopJournalItem();
+				return;
+			}
+			File file = journalChooser(bundle.getString("recordJournalMenuItem")).showSaveDialog(primaryStage);
+			recordJournalMenuItem.setSelected(file != null && footerView.startJournalItem(file));
+		});
+		replayJournalMenuItem = new MenuItem(bundle.getString("replayJournalMenuItem"));
+		replayJournalMenuItem.setOnAction(e -> {
+			File file = journalChooser(bundle.getString("replayJournalMenuItem")).showOpenDialog(primaryStage);
+			if (file != null) {
+				footerView.replayJournalItem(file, primaryStage);
+			}
+		});
+
+		// Census MenuBar option
+		censusMenuItem = new MenuItem(bundle.getString("censusMenuItem"));
+		censusMenuItem.setOnAction(e -> footerView.censusItem(primaryStage));
+
 		// Exit MenuBar option
 		returnMenuItem = new MenuItem(bundle.getString("exitMenuItem"));
 		InputStream imIE = getClass().getResourceAsStream("/resources/exit.gif");
@@ -261,8 +440,10 @@ public class GLMenuBar {
 		}
 		returnMenuItem.setOnAction(e -> handleExit());
 
-		// Adding newGame, solution and exit to Game section
-		gameMenu.getItems().addAll(newGameMenuItem, solutionMenuItem, returnMenuItem);
+		// Adding newGame, solution, pattern, snapshot and journal files, census and exit to Game section
+		gameMenu.getItems().addAll(newGameMenuItem, solutionMenuItem, openPatternMenuItem, savePatternMenuItem,
+				openSnapshotMenuItem, saveSnapshotMenuItem, recordJournalMenuItem, replayJournalMenuItem,
+				censusMenuItem, returnMenuItem);
 
 		// Preferences MenuBar section
 		preferencesMenu = new Menu(bundle.getString("preferencesMenu"));
@@ -296,8 +477,8 @@ public class GLMenuBar {
 			footerView.updateUIFromBoardState();
 		});
 
-		// Multicolor MenuBar option
-		multicolorOption = new CheckMenuItem(bundle.getString("multicolorOption"));
+		// Multicolor MenuBar options
+		multicolorMenu = new Menu(bundle.getString("multicolorOption"));
 		InputStream imIMC = getClass().getResourceAsStream("/resources/multicolor.gif");
 		if (imIMC != null) {
 			Image nIMC = new Image(imIMC);
@@ -305,15 +486,79 @@ public class GLMenuBar {
 			nIVMC.setFitWidth(ICO_HEIGHT);
 			nIVMC.setFitHeight(ICO_WIDTH);
 			nIVMC.setPreserveRatio(true);
-			multicolorOption.setGraphic(nIVMC);
+			multicolorMenu.setGraphic(nIVMC);
 		}
-		multicolorOption.setOnAction(e -> {
-			footerView.multicolorEnabled = multicolorOption.isSelected();
-			footerView.updateUIFromBoardState();
-		});
-		// Adding changeBoardSize, color pallet and multicolor options to preferences
-		// section
-		preferencesMenu.getItems().addAll(changeBoardSize, changeCellColor, multicolorOption);
+		ToggleGroup coloringGroup = new ToggleGroup();
+		plainColoringOption = new RadioMenuItem(bundle.getString("coloringPlain"));
+		plainColoringOption.setToggleGroup(coloringGroup);
+		plainColoringOption.setSelected(true);
+		plainColoringOption.setOnAction(e -> footerView.coloringItem(GLFooter.Coloring.PLAIN));
+		neighboursColoringOption = new RadioMenuItem(bundle.getString("coloringNeighbours"));
+		neighboursColoringOption.setToggleGroup(coloringGroup);
+		neighboursColoringOption.setOnAction(e -> footerView.coloringItem(GLFooter.Coloring.NEIGHBOURS));
+		ageColoringOption = new RadioMenuItem(bundle.getString("coloringAge"));
+		ageColoringOption.setToggleGroup(coloringGroup);
+		ageColoringOption.setOnAction(e -> footerView.coloringItem(GLFooter.Coloring.AGE));
+		activityColoringOption = new RadioMenuItem(bundle.getString("coloringActivity"));
+		activityColoringOption.setToggleGroup(coloringGroup);
+		activityColoringOption.setOnAction(e -> footerView.coloringItem(GLFooter.Coloring.ACTIVITY));
+		multicolorMenu.getItems().addAll(plainColoringOption, neighboursColoringOption, ageColoringOption,
+				activityColoringOption);
+		// Engine MenuBar options
+		engineMenu = new Menu(bundle.getString("engineMenu"));
+		ToggleGroup engineGroup = new ToggleGroup();
+		autoEngineOption = new RadioMenuItem(bundle.getString("engineAuto"));
+		autoEngineOption.setToggleGroup(engineGroup);
+		autoEngineOption.setSelected(true);
+		autoEngineOption.setOnAction(e -> footerView.engineItem(new GLAdaptiveEngine()));
+		bitSlicedEngineOption = new RadioMenuItem(bundle.getString("engineBitSliced"));
+		bitSlicedEngineOption.setToggleGroup(engineGroup);
+		bitSlicedEngineOption.setOnAction(e -> footerView.engineItem(new GLBitSlicedEngine()));
+		parallelEngineOption = new RadioMenuItem(bundle.getString("engineParallel"));
+		parallelEngineOption.setToggleGroup(engineGroup);
+		parallelEngineOption.setOnAction(e -> footerView.engineItem(new GLParallelEngine()));
+		hashLifeEngineOption = new RadioMenuItem(bundle.getString("engineHashLife"));
+		hashLifeEngineOption.setToggleGroup(engineGroup);
+		hashLifeEngineOption.setOnAction(e -> footerView.engineItem(new GLHashLifeEngine()));
+		sparseEngineOption = new RadioMenuItem(bundle.getString("engineSparse"));
+		sparseEngineOption.setToggleGroup(engineGroup);
+		sparseEngineOption.setOnAction(e -> footerView.engineItem(new GLSparseEngine()));
+		engineMenu.getItems().addAll(autoEngineOption, bitSlicedEngineOption, parallelEngineOption, hashLifeEngineOption,
+				sparseEngineOption);
+		// Edges MenuBar options
+		edgesMenu = new Menu(bundle.getString("edgesMenu"));
+		ToggleGroup edgesGroup = new ToggleGroup();
+		clippedEdgesOption = new RadioMenuItem(bundle.getString("edgesClipped"));
+		clippedEdgesOption.setToggleGroup(edgesGroup);
+		clippedEdgesOption.setSelected(true);
+		clippedEdgesOption.setOnAction(e -> footerView.topologyItem(GLTopology.CLIPPED));
+		torusEdgesOption = new RadioMenuItem(bundle.getString("edgesTorus"));
+		torusEdgesOption.setToggleGroup(edgesGroup);
+		torusEdgesOption.setOnAction(e -> footerView.topologyItem(GLTopology.TORUS));
+		kleinBottleEdgesOption = new RadioMenuItem(bundle.getString("edgesKleinBottle"));
+		kleinBottleEdgesOption.setToggleGroup(edgesGroup);
+		kleinBottleEdgesOption.setOnAction(e -> footerView.topologyItem(GLTopology.KLEIN_BOTTLE));
+		edgesMenu.getItems().addAll(clippedEdgesOption, torusEdgesOption, kleinBottleEdgesOption);
+		// Speed MenuBar options
+		speedMenu = new Menu(bundle.getString("speedMenu"));
+		ToggleGroup speedGroup = new ToggleGroup();
+		speedOptions = new RadioMenuItem[SPEEDS.length];
+		for (int i = 0; i < SPEEDS.length; i++) {
+			int rate = SPEEDS[i];
+			speedOptions[i] = new RadioMenuItem(speedText(rate));
+			speedOptions[i].setToggleGroup(speedGroup);
+			speedOptions[i].setSelected(rate == GLModel.DEFAULT_SIMULATION_RATE);
+			speedOptions[i].setOnAction(e -> footerView.simulationRateItem(rate));
+		}
+		speedMenu.getItems().addAll(speedOptions);
+		// Stop on cycle MenuBar option
+		stopOnCycleOption = new CheckMenuItem(bundle.getString("stopOnCycleOption"));
+		stopOnCycleOption.setOnAction(e -> footerView.stopOnCycleItem(stopOnCycleOption.isSelected()));
+
+		// Adding changeBoardSize, color pallet, multicolor, engine, edges, speed
+		// and stop on cycle options to preferences section
+		preferencesMenu.getItems().addAll(changeBoardSize, changeCellColor, multicolorMenu, engineMenu,
+				edgesMenu, speedMenu, stopOnCycleOption);
 
 		// Language Menu Bar section
 		languageMenu = new Menu(bundle.getString("languageBar"));
@@ -394,6 +639,69 @@ public class GLMenuBar {
 		return menuBar;
 	}
 
+	/**
+	 * Creates a file chooser for pattern files, run-length encoded or
+	 * plaintext.
+	 * 
+	 * @param title The title of the chooser.
+	 * @return The file chooser.
+	 */
+	private FileChooser patternChooser(String title) {
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle(title);
+		chooser.getExtensionFilters().addAll(
+				new FileChooser.ExtensionFilter(bundle.getString("patternFilterRle"), "*.rle"),
+				new FileChooser.ExtensionFilter(bundle.getString("patternFilterPlaintext"), "*.cells", "*.txt"));
+		return chooser;
+	}
+
+	/**
+	 * Creates a file chooser for snapshot files.
+	 * 
+	 * @param title The title of the chooser.
+	 * @return The file chooser.
+	 */
+	private FileChooser snapshotChooser(String title) {
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle(title);
+		chooser.getExtensionFilters().add(
+				new FileChooser.ExtensionFilter(bundle.getString("snapshotFilter"), "*" + GLSnapshot.EXTENSION));
+		return chooser;
+	}
+
+	/**
+	 * Creates a file chooser for journal files.
+	 * 
+	 * @param title The title of the chooser.
+	 * @return The file chooser.
+	 */
+	private FileChooser journalChooser(String title) {
+		FileChooser chooser = new FileChooser();
+		chooser.setTitle(title);
+		chooser.getExtensionFilters().add(
+				new FileChooser.ExtensionFilter(bundle.getString("journalFilter"), "*" + GLJournal.EXTENSION));
+		return chooser;
+	}
+
+	/**
+	 * Selects the edges option of a topology, after the game changed it.
+	 * 
+	 * @param topology The topology of the board.
+	 */
+	private void selectTopology(GLTopology topology) {
+		switch (topology) {
+		case TORUS:
+			torusEdgesOption.setSelected(true);
+			break;
+		case KLEIN_BOTTLE:
+			kleinBottleEdgesOption.setSelected(true);
+			break;
+		default:
+			clippedEdgesOption.setSelected(true);
+			break;
+		}
+	}
+
 	/**
 	 * Opens a color picker dialog to choose a color.
 	 * 
@@ -466,7 +774,26 @@ public class GLMenuBar {
 		preferencesMenu.setText(bundle.getString("preferencesMenu"));
 		changeBoardSize.setText(bundle.getString("changeBoardSize"));
 		changeCellColor.setText(bundle.getString("changeCellColor"));
-		multicolorOption.setText(bundle.getString("multicolorOption"));
+		multicolorMenu.setText(bundle.getString("multicolorOption"));
+		plainColoringOption.setText(bundle.getString("coloringPlain"));
+		neighboursColoringOption.setText(bundle.getString("coloringNeighbours"));
+		ageColoringOption.setText(bundle.getString("coloringAge"));
+		activityColoringOption.setText(bundle.getString("coloringActivity"));
+		engineMenu.setText(bundle.getString("engineMenu"));
+		autoEngineOption.setText(bundle.getString("engineAuto"));
+		bitSlicedEngineOption.setText(bundle.getString("engineBitSliced"));
+		parallelEngineOption.setText(bundle.getString("engineParallel"));
+		hashLifeEngineOption.setText(bundle.getString("engineHashLife"));
+		sparseEngineOption.setText(bundle.getString("engineSparse"));
+		edgesMenu.setText(bundle.getString("edgesMenu"));
+		clippedEdgesOption.setText(bundle.getString("edgesClipped"));
+		torusEdgesOption.setText(bundle.getString("edgesTorus"));
+		kleinBottleEdgesOption.setText(bundle.getString("edgesKleinBottle"));
+		speedMenu.setText(bundle.getString("speedMenu"));
+		for (int i = 0; i < SPEEDS.length; i++) {
+			speedOptions[i].setText(speedText(SPEEDS[i]));
+		}
+		stopOnCycleOption.setText(bundle.getString("stopOnCycleOption"));
 
 		languageMenu.setText(bundle.getString("languageBar"));
 		spanishOption.setText(bundle.getString("spanishBar"));
@@ -479,6 +806,13 @@ public class GLMenuBar {
 		gameMenu.setText(bundle.getString("gameMenu"));
 		newGameMenuItem.setText(bundle.getString("newGameMenuItem"));
 		solutionMenuItem.setText(bundle.getString("solutionMenuItem"));
+		openPatternMenuItem.setText(bundle.getString("openPatternMenuItem"));
+		savePatternMenuItem.setText(bundle.getString("savePatternMenuItem"));
+		openSnapshotMenuItem.setText(bundle.getString("openSnapshotMenuItem"));
+		saveSnapshotMenuItem.setText(bundle.getString("saveSnapshotMenuItem"));
+		recordJournalMenuItem.setText(bundle.getString("recordJournalMenuItem"));
+		replayJournalMenuItem.setText(bundle.getString("replayJournalMenuItem"));
+		censusMenuItem.setText(bundle.getString("censusMenuItem"));
 		returnMenuItem.setText(bundle.getString("exitMenuItem"));
 
 		helpDialogTitle = bundle.getString("titleHelpLabel");
@@ -497,6 +831,19 @@ public class GLMenuBar {
 		footerView.updateUIFromBoardState();
 	}
 
+	/**
+	 * Gets the text of the option selecting a simulation rate.
+	 * 
+	 * @param rate The simulation rate, or {@link GLModel#UNLIMITED_RATE}.
+	 * @return The text of the option.
+	 */
+	private String speedText(int rate) {
+		if (rate == GLModel.UNLIMITED_RATE) {
+			return bundle.getString("speedUnlimited");
+		}
+		return rate + " " + bundle.getString("speedUnit");
+	}
+
 	/**
 	 * Sets the LanguageManager instance for this class.
 	 * 
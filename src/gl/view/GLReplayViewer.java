@@ -0,0 +1,234 @@
+package gl.view;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ResourceBundle;
+
+import gl.model.GLBoard;
+import gl.model.GLJournalReader;
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.image.Image;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.paint.Color;
+import javafx.stage.Stage;
+
+/**
+ * The {@code GLReplayViewer} class shows a game recorded to a journal, in a
+ * window of its own. A slider goes to any generation recorded, buttons step
+ * one generation back or forward, and the recording can be played. The
+ * board is read from the journal as the generation changes, so the journal
+ * is never loaded whole.
+ *
+ * @author David Burchat
+ * @author Marcos Astudillo
+ */
+public class GLReplayViewer {
+
+	/**
+	 * The largest size of the board on screen, in pixels.
+	 */
+	private static final double BOARD_SIZE = 600;
+
+	/**
+	 * The ResourceBundle used for localization.
+	 */
+	private ResourceBundle bundle;
+
+	/**
+	 * The primary stage of the application.
+	 */
+	private Stage primaryStage;
+
+	/**
+	 * The main view, showing the alerts.
+	 */
+	private GLView gameView;
+
+	/**
+	 * The journal replayed.
+	 */
+	private GLJournalReader journal;
+
+	/**
+	 * The board holding the generation shown.
+	 */
+	private GLBoard board;
+
+	/**
+	 * The canvas the board is drawn on.
+	 */
+	private GLBoardCanvas canvas = new GLBoardCanvas();
+
+	/**
+	 * The color of live cells.
+	 */
+	private Color aliveColor;
+
+	/**
+	 * The slider selecting the generation.
+	 */
+	private Slider generationSlider;
+
+	/**
+	 * The label showing the generation.
+	 */
+	private Label generationLabel;
+
+	/**
+	 * The generation shown.
+	 */
+	private long shownGeneration = -1;
+
+	/**
+	 * Plays the recording, a generation per frame, while it runs.
+	 */
+	private AnimationTimer player;
+
+
+	/**
+	 * Constructs a new GLReplayViewer.
+	 *
+	 * @param bundle       The ResourceBundle for localization.
+	 * @param primaryStage The primary Stage of the application.
+	 * @param gameView     The main view, showing the alerts.
+	 * @param aliveColor   The color of live cells.
+	 */
+	public GLReplayViewer(ResourceBundle bundle, Stage primaryStage, GLView gameView, Color aliveColor) {
+		this.bundle = bundle;
+		this.primaryStage = primaryStage;
+		this.gameView = gameView;
+		this.aliveColor = aliveColor;
+	}
+
+	/**
+	 * Opens a window replaying a journal, which is closed with the window.
+	 *
+	 * @param journal The journal to replay.
+	 */
+	public void open(GLJournalReader journal) {
+		this.journal = journal;
+		this.board = new GLBoard(journal.getRows(), journal.getCols());
+		Stage replayStage = new Stage();
+		replayStage.initOwner(primaryStage);
+		InputStream iconImageU = getClass().getResourceAsStream("/resources/AC-logo.png");
+		if (iconImageU != null) {
+			Image iconImage = new Image(iconImageU);
+			replayStage.getIcons().add(iconImage);
+		}
+		replayStage.setTitle(bundle.getString("replayTitle"));
+
+		double cellSize = Math.min(BOARD_SIZE / Math.max(1, journal.getRows()),
+				BOARD_SIZE / Math.max(1, journal.getCols()));
+		canvas.resize(journal.getRows(), journal.getCols(), cellSize);
+		canvas.setOnViewportChanged(() -> canvas.draw(board, aliveColor, null));
+		Pane boardContainer = new Pane(canvas);
+		canvas.widthProperty().bind(boardContainer.widthProperty());
+		canvas.heightProperty().bind(boardContainer.heightProperty());
+
+		generationSlider = new Slider(journal.getFirstGeneration(), journal.getLastGeneration(),
+				journal.getFirstGeneration());
+		generationSlider.setBlockIncrement(1);
+		generationSlider.valueProperty().addListener((observable, oldValue, newValue) -> show(newValue.longValue()));
+		HBox.setHgrow(generationSlider, Priority.ALWAYS);
+
+		Button previousButton = new Button("<");
+		previousButton.setOnAction(e -> generationSlider.setValue(generationSlider.getValue() - 1));
+		Button nextButton = new Button(">");
+		nextButton.setOnAction(e -> generationSlider.setValue(generationSlider.getValue() + 1));
+		Button playButton = new Button(bundle.getString("replayPlay"));
+		playButton.setOnAction(e -> {
+			if (player != null) {
+				stopPlaying(playButton);
+			} else {
+				startPlaying(playButton);
+			}
+		});
+		generationLabel = new Label();
+		generationLabel.setMinWidth(140);
+
+		HBox controls = new HBox(10, previousButton, generationSlider, nextButton, playButton, generationLabel);
+		controls.setAlignment(Pos.CENTER);
+		controls.setPadding(new Insets(10));
+
+		BorderPane root = new BorderPane();
+		root.setCenter(boardContainer);
+		root.setBottom(controls);
+		replayStage.setOnHidden(e -> {
+			stopPlaying(playButton);
+			try {
+				journal.close();
+			} catch (IOException ex) {
+				// Nothing was written, so nothing is lost
+			}
+		});
+		replayStage.setScene(new Scene(root, BOARD_SIZE + 20, BOARD_SIZE + 70));
+		show(journal.getFirstGeneration());
+		replayStage.show();
+	}
+
+	/**
+	 * Shows a generation of the journal.
+	 *
+	 * @param generation The generation to show.
+	 */
+	private void show(long generation) {
+		if (generation == shownGeneration) {
+			return;
+		}
+		try {
+			shownGeneration = journal.seek(generation, board);
+		} catch (IOException e) {
+			gameView.showInvalidInputAlert(bundle.getString("journalReadError") + "\n" + e.getMessage());
+			return;
+		}
+		generationLabel.setText(bundle.getString("replayGeneration") + " " + shownGeneration);
+		canvas.draw(board, aliveColor, null);
+	}
+
+	/**
+	 * Plays the recording from the generation selected, a generation per frame,
+	 * until its end.
+	 *
+	 * @param playButton The button playing and pausing the recording.
+	 */
+	private void startPlaying(Button playButton) {
+		if (generationSlider.getValue() >= journal.getLastGeneration()) {
+			generationSlider.setValue(journal.getFirstGeneration());
+		}
+		playButton.setText(bundle.getString("replayPause"));
+		player = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				// Generations dropped while recording are stepped over
+				if (generationSlider.getValue() >= journal.getLastGeneration()) {
+					stopPlaying(playButton);
+				} else {
+					generationSlider.setValue(generationSlider.getValue() + 1);
+				}
+			}
+		};
+		player.start();
+	}
+
+	/**
+	 * Stops playing the recording.
+	 *
+	 * @param playButton The button playing and pausing the recording.
+	 */
+	private void stopPlaying(Button playButton) {
+		if (player != null) {
+			player.stop();
+			player = null;
+		}
+		playButton.setText(bundle.getString("replayPlay"));
+	}
+}
@@ -5,15 +5,15 @@ import java.util.ResourceBundle;
 
 import gl.controller.GLController;
 import gl.model.GLModel;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.GridPane;
-import javafx.scene.layout.StackPane;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import support.LanguageManager;
@@ -68,9 +68,9 @@ public class GLView {
 	int WINDOW_HEIGHT = 730;
 
 	/**
-	 * The grid pane used for displaying the game board.
+	 * The canvas the game board is drawn on.
 	 */
-	GridPane boardPane = new GridPane();
+	GLBoardCanvas boardCanvas = new GLBoardCanvas();
 
 	/**
 	 * The controller for managing the Game of Life application.
@@ -144,10 +144,11 @@ public class GLView {
         topContainer.getChildren().addAll(menuBarView.createMenuBar(), headerView.getHeader());
         root.setTop(topContainer);
 
-        StackPane boardContainer = new StackPane();
-        boardContainer.setAlignment(Pos.CENTER);
-        boardPane.setPrefSize(CELL_SIZE * board_width, CELL_SIZE * board_height);
-        boardContainer.getChildren().add(boardPane);
+        // The canvas fills the center and is zoomed and panned instead of scrolled
+        Pane boardContainer = new Pane(boardCanvas);
+        boardContainer.setMinSize(0, 0);
+        boardCanvas.widthProperty().bind(boardContainer.widthProperty());
+        boardCanvas.heightProperty().bind(boardContainer.heightProperty());
         BorderPane.setMargin(boardContainer, new Insets(10));
 
         VBox footerContainer = new VBox();
@@ -156,9 +157,6 @@ public class GLView {
         footerContainer.getChildren().add(footer);
         root.setBottom(footerContainer);
 
-        ScrollPane scrollPane = new ScrollPane(boardPane);
-        root.setCenter(scrollPane);
-
         return root;
     }
 
@@ -185,6 +183,33 @@ public class GLView {
         alert.showAndWait();
     }
 
+    /**
+     * Displays the progress of a solution computed in the background, with a
+     * button cancelling it. The alert closes once the task is done.
+     * 
+     * @param task The task computing the solution.
+     */
+    public void showSolutionProgress(Task<?> task) {
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(300);
+        progressBar.progressProperty().bind(task.progressProperty());
+
+        Alert alert = new Alert(Alert.AlertType.NONE, null, ButtonType.CANCEL);
+        alert.initOwner(primaryStage);
+        alert.setTitle(bundle.getString("solutionDialogTitle"));
+        alert.setHeaderText(bundle.getString("solutionProgressText"));
+        alert.getDialogPane().setContent(progressBar);
+        // Closing the alert before the task is done cancels it
+        alert.setOnHidden(e -> task.cancel());
+        task.runningProperty().addListener((observable, wasRunning, running) -> {
+            if (!running) {
+                alert.setResult(ButtonType.CANCEL);
+                alert.close();
+            }
+        });
+        alert.show();
+    }
+
     /**
      * Sets the LanguageManager instance for this class.
      * 